@@ -0,0 +1,186 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.microsoft.sqlserver.jdbc.SQLServerColumnEncryptionKeyStoreProvider;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+import com.microsoft.sqlserver.jdbc.benchmarks.TokenStream.Column;
+import com.microsoft.sqlserver.jdbc.benchmarks.TokenStream.ColumnEncryptionKey;
+
+
+/**
+ * Measures encrypting and decrypting Always Encrypted cells with AEAD_AES_256_CBC_HMAC_SHA256, through a batch of
+ * prepared INSERTs of an encrypted parameter and through a result set with an encrypted column. Scores are per cell.
+ *
+ * The column encryption key is stored in plain text by a key store provider registered for the benchmark, so no
+ * master key is involved. The result set returns the cipher text that the driver sent in the first INSERT.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AeadEncryptionBenchmark {
+    static final int CELLS = 100;
+    private static final String KEY_STORE_NAME = "BENCHMARK_KEY_STORE";
+    private static final String INSERT = "insert into benchmark (value) values (?)";
+    private static final String SELECT = "select value from benchmark";
+
+    private static boolean isKeyStoreRegistered;
+
+    @Param({"Deterministic", "Randomized"})
+    public String encryptionType;
+
+    @Param({"16", "256", "4096"})
+    public int cellSize;
+
+    private FakeTdsServer server;
+    private Connection connection;
+    private PreparedStatement insert;
+    private Statement select;
+    private byte[] value;
+    private volatile byte[] cipherText;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        registerKeyStore();
+
+        Random random = new Random(0);
+        byte[] rootKey = new byte[32];
+        random.nextBytes(rootKey);
+        ColumnEncryptionKey key = new ColumnEncryptionKey(rootKey, KEY_STORE_NAME, "benchmark");
+        int type = "Deterministic".equals(encryptionType) ? TokenStream.ENCRYPTION_DETERMINISTIC
+                                                          : TokenStream.ENCRYPTION_RANDOMIZED;
+        List<Column> columns = Collections.singletonList(Column.varbinaryColumn("value", 8000).encrypted(type));
+
+        server = new FakeTdsServer(request -> {
+            // The driver calls sp_describe_parameter_encryption through sp_executesql before the first INSERT, which
+            // is the only RPC without an encrypted parameter.
+            if (request.isRpc() && request.getEncryptedValues().isEmpty())
+                return new TokenStream(key).describeParameterEncryption(key, "@P0", type).toByteArray();
+            if (request.isRpc()) {
+                if (null == cipherText)
+                    cipherText = request.getEncryptedValues().get(0);
+                return FakeTdsServer.oneRowInsertedPerRpc(request);
+            }
+            if (request.isSqlBatch() && SELECT.equals(request.getSql())) {
+                TokenStream tokens = new TokenStream(key).colMetadata(columns.get(0));
+                for (int i = 0; i < CELLS; i++)
+                    tokens.row(columns, cipherText);
+                return tokens.done(TokenStream.DONE_COUNT, TokenStream.CMD_SELECT, CELLS).toByteArray();
+            }
+            return FakeTdsServer.done(request);
+        }, true);
+
+        connection = DriverManager.getConnection(server.getConnectionUrl());
+        insert = connection.prepareStatement(INSERT);
+        select = connection.createStatement();
+
+        value = new byte[cellSize];
+        random.nextBytes(value);
+        insert.setBytes(1, value);
+        insert.executeUpdate();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        server.close();
+    }
+
+    /**
+     * Executes a batch of INSERTs, encrypting the parameter of each.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public int[] encrypt() throws SQLException {
+        for (int i = 0; i < CELLS; i++) {
+            insert.setBytes(1, value);
+            insert.addBatch();
+        }
+        return insert.executeBatch();
+    }
+
+    /**
+     * Reads a result set, decrypting the encrypted column of each row.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void decrypt(Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = select.executeQuery(SELECT)) {
+            while (rs.next())
+                blackhole.consume(rs.getBytes(1));
+        }
+    }
+
+    private static synchronized void registerKeyStore() throws SQLServerException {
+        // Key store providers can only be registered once in a process
+        if (!isKeyStoreRegistered) {
+            SQLServerConnection.registerColumnEncryptionKeyStoreProviders(
+                    Collections.<String, SQLServerColumnEncryptionKeyStoreProvider>singletonMap(KEY_STORE_NAME,
+                            new PlainTextKeyStoreProvider()));
+            isKeyStoreRegistered = true;
+        }
+    }
+
+    /**
+     * A key store provider whose column encryption keys are not encrypted.
+     */
+    private static final class PlainTextKeyStoreProvider extends SQLServerColumnEncryptionKeyStoreProvider {
+        private String name = KEY_STORE_NAME;
+
+        @Override
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public byte[] decryptColumnEncryptionKey(String masterKeyPath, String encryptionAlgorithm,
+                byte[] encryptedColumnEncryptionKey) {
+            return encryptedColumnEncryptionKey.clone();
+        }
+
+        @Override
+        public byte[] encryptColumnEncryptionKey(String masterKeyPath, String encryptionAlgorithm,
+                byte[] columnEncryptionKey) {
+            return columnEncryptionKey.clone();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures executing a batch of prepared INSERTs, which builds one request of many RPCs. Scores are per batched
+ * execution.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BatchRpcBenchmark {
+    static final int BATCH_SIZE = 100;
+
+    private FakeTdsServer server;
+    private Connection connection;
+    private PreparedStatement statement;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        server = new FakeTdsServer(
+                request -> request.isRpc() ? FakeTdsServer.oneRowInsertedPerRpc(request) : FakeTdsServer.done(request));
+        connection = DriverManager.getConnection(server.getConnectionUrl());
+        statement = connection.prepareStatement(ParameterEncodeBenchmark.INSERT);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] executeBatch() throws SQLException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            ParameterEncodeBenchmark.setParameters(statement, i);
+            statement.addBatch();
+        }
+        return statement.executeBatch();
+    }
+}
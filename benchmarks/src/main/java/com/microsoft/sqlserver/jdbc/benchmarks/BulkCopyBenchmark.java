@@ -0,0 +1,194 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+import com.microsoft.sqlserver.jdbc.benchmarks.TokenStream.Column;
+
+
+/**
+ * Measures bulk copying rows from an in-memory ISQLServerBulkRecord, with the rows encoded inline or on worker threads.
+ * Scores are per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BulkCopyBenchmark {
+    static final int ROWS = 10000;
+    private static final String TABLE = "benchmark";
+
+    @Param({"0", "4"})
+    public int encodingThreadCount;
+
+    private FakeTdsServer server;
+    private Connection connection;
+    private Object[][] rows;
+    private SQLServerBulkCopyOptions options;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        byte[] destinationMetadata = new TokenStream()
+                .colMetadata(Column.intColumn("id"), Column.bigintColumn("amount"), Column.floatColumn("ratio"),
+                        Column.nvarcharColumn("name", 50), Column.decimalColumn("price", 18, 2))
+                .done(TokenStream.DONE_COUNT, TokenStream.CMD_SELECT, 0).toByteArray();
+        byte[] noCollations = new TokenStream().colMetadata(Column.nvarcharColumn("collation_name", 128))
+                .done(TokenStream.DONE_COUNT, TokenStream.CMD_SELECT, 0).toByteArray();
+        byte[] rowsCopied = new TokenStream().done(TokenStream.DONE_COUNT, TokenStream.CMD_BULKINSERT, ROWS)
+                .toByteArray();
+
+        server = new FakeTdsServer(request -> {
+            if (request.isBulkLoad())
+                return rowsCopied;
+            if (request.isSqlBatch() && request.getSql().contains("FMTONLY"))
+                return destinationMetadata;
+            if (request.isSqlBatch() && request.getSql().contains("sys.columns"))
+                return noCollations;
+            return FakeTdsServer.done(request);
+        });
+        connection = DriverManager.getConnection(server.getConnectionUrl());
+
+        options = new SQLServerBulkCopyOptions();
+        options.setEncodingThreadCount(encodingThreadCount);
+
+        rows = new Object[ROWS][];
+        for (int i = 0; i < ROWS; i++)
+            rows[i] = new Object[] {i, i * 1000L, i / 3.0, "name " + i, BigDecimal.valueOf(i, 2)};
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void writeToServer() throws SQLException {
+        try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(connection)) {
+            bulkCopy.setDestinationTableName(TABLE);
+            bulkCopy.setBulkCopyOptions(options);
+            bulkCopy.writeToServer(new InMemoryBulkRecord(rows));
+        }
+    }
+
+    /**
+     * A bulk copy source over rows already in memory, so that only the driver's encoding is measured.
+     */
+    static final class InMemoryBulkRecord implements ISQLServerBulkRecord {
+        private static final String[] NAMES = {"id", "amount", "ratio", "name", "price"};
+        private static final int[] TYPES = {Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.NVARCHAR, Types.DECIMAL};
+        private static final int[] PRECISIONS = {10, 19, 15, 50, 18};
+        private static final int[] SCALES = {0, 0, 0, 0, 2};
+
+        private final Object[][] rows;
+        private int current = -1;
+
+        InMemoryBulkRecord(Object[][] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            return new LinkedHashSet<>(Arrays.asList(1, 2, 3, 4, 5));
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return NAMES[column - 1];
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return TYPES[column - 1];
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return PRECISIONS[column - 1];
+        }
+
+        @Override
+        public int getScale(int column) {
+            return SCALES[column - 1];
+        }
+
+        @Override
+        public boolean isAutoIncrement(int column) {
+            return false;
+        }
+
+        @Override
+        public Object[] getRowData() throws SQLServerException {
+            return rows[current];
+        }
+
+        @Override
+        public boolean next() throws SQLServerException {
+            return ++current < rows.length;
+        }
+
+        @Override
+        public void addColumnMetadata(int positionInFile, String name, int jdbcType, int precision, int scale,
+                DateTimeFormatter dateTimeFormatter) throws SQLServerException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addColumnMetadata(int positionInFile, String name, int jdbcType, int precision,
+                int scale) throws SQLServerException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setTimestampWithTimezoneFormat(String dateTimeFormat) {}
+
+        @Override
+        public void setTimestampWithTimezoneFormat(DateTimeFormatter dateTimeFormatter) {}
+
+        @Override
+        public void setTimeWithTimezoneFormat(String timeFormat) {}
+
+        @Override
+        public void setTimeWithTimezoneFormat(DateTimeFormatter dateTimeFormatter) {}
+
+        @Override
+        public DateTimeFormatter getColumnDateTimeFormatter(int column) {
+            return null;
+        }
+    }
+}
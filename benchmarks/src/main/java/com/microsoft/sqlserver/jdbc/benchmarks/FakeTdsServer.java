@@ -0,0 +1,497 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * A TDS endpoint on a local socket that replays canned token streams, so that the driver's request encoding and
+ * response decoding can be measured without a SQL Server.
+ *
+ * The endpoint completes the prelogin (without encryption) and login handshakes itself, accepting any credentials.
+ * Every other request is described by a {@link Request} and passed to a {@link Responder}, which returns the token
+ * stream to reply with.
+ *
+ * An endpoint created with column encryption acknowledges the Always Encrypted feature at login. Its responses must
+ * then be built with a {@link TokenStream} for column encryption.
+ */
+public final class FakeTdsServer implements AutoCloseable {
+    static final int PKT_QUERY = 1;
+    static final int PKT_RPC = 3;
+    static final int PKT_REPLY = 4;
+    static final int PKT_CANCEL_REQ = 6;
+    static final int PKT_BULK = 7;
+    static final int PKT_LOGON70 = 16;
+    static final int PKT_PRELOGIN = 18;
+
+    private static final int PACKET_HEADER_SIZE = 8;
+    private static final int PACKET_SIZE = 4096;
+    private static final int STATUS_BIT_EOM = 0x01;
+
+    // Names of the stored procedures that the driver calls by id
+    private static final String[] PROC_NAMES = {null, "sp_cursor", "sp_cursoropen", "sp_cursorprepare",
+            "sp_cursorexecute", "sp_cursorprepexec", "sp_cursorunprepare", "sp_cursorfetch", "sp_cursoroption",
+            "sp_cursorclose", "sp_executesql", "sp_prepare", "sp_execute", "sp_prepexec", "sp_prepexecrpc",
+            "sp_unprepare"};
+
+    private static final byte[] LOGIN_RESPONSE = new TokenStream().loginAck().envChangeDatabase("benchmark")
+            .envChangeCollation().done(TokenStream.DONE_FINAL, 0, 0).toByteArray();
+
+    private static final byte[] COLUMN_ENCRYPTION_LOGIN_RESPONSE = new TokenStream().loginAck()
+            .envChangeDatabase("benchmark").envChangeCollation().featureExtAckColumnEncryption()
+            .done(TokenStream.DONE_FINAL, 0, 0).toByteArray();
+
+    // Parameter status flag of a value encrypted with Always Encrypted
+    private static final int PARAM_STATUS_ENCRYPTED = 0x08;
+
+    private static final byte[] ATTENTION_ACK = new TokenStream().done(TokenStream.DONE_ATTN, 0, 0).toByteArray();
+
+    /**
+     * Returns the token stream to send in response to a request.
+     */
+    @FunctionalInterface
+    public interface Responder {
+        byte[] respond(Request request) throws IOException;
+    }
+
+    /**
+     * A request received from the driver.
+     */
+    public static final class Request {
+        private final int type;
+        private final String sql;
+        private final List<String> procedures;
+        private final List<byte[]> encryptedValues;
+
+        Request(int type, String sql, List<String> procedures, List<byte[]> encryptedValues) {
+            this.type = type;
+            this.sql = sql;
+            this.procedures = procedures;
+            this.encryptedValues = encryptedValues;
+        }
+
+        /**
+         * Returns true for a SQL batch, whose text is returned by {@link #getSql()}.
+         */
+        public boolean isSqlBatch() {
+            return PKT_QUERY == type;
+        }
+
+        /**
+         * Returns true for one or more RPCs, whose procedure names are returned by {@link #getProcedures()}.
+         */
+        public boolean isRpc() {
+            return PKT_RPC == type;
+        }
+
+        /**
+         * Returns true for the rows sent by a bulk copy.
+         */
+        public boolean isBulkLoad() {
+            return PKT_BULK == type;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<String> getProcedures() {
+            return procedures;
+        }
+
+        /**
+         * Returns the cipher texts of the RPC parameters encrypted with Always Encrypted, in the order they were sent.
+         */
+        public List<byte[]> getEncryptedValues() {
+            return encryptedValues;
+        }
+    }
+
+    /**
+     * Returns a token stream for a request that only completes successfully: a DONE token for a SQL batch or a bulk
+     * load, or a DONEPROC token for each RPC.
+     */
+    public static byte[] done(Request request) {
+        TokenStream tokens = new TokenStream();
+        if (request.isRpc()) {
+            for (int i = 0; i < request.getProcedures().size(); i++)
+                tokens.doneProc(doneProcStatus(request, i), TokenStream.CMD_EXECUTE, 0);
+        } else {
+            tokens.done(TokenStream.DONE_FINAL, 0, 0);
+        }
+        return tokens.toByteArray();
+    }
+
+    /**
+     * Returns a token stream that reports one inserted row for each RPC of a request, including the prepared
+     * statement handle returned by sp_prepexec.
+     */
+    public static byte[] oneRowInsertedPerRpc(Request request) {
+        TokenStream tokens = new TokenStream();
+        List<String> procedures = request.getProcedures();
+        for (int i = 0; i < procedures.size(); i++) {
+            tokens.doneInProc(TokenStream.DONE_MORE | TokenStream.DONE_COUNT, TokenStream.CMD_INSERT, 1);
+            tokens.returnStatus(0);
+            if ("sp_prepexec".equals(procedures.get(i)))
+                tokens.returnValue(0, "", 1);
+            tokens.doneProc(doneProcStatus(request, i), TokenStream.CMD_EXECUTE, 0);
+        }
+        return tokens.toByteArray();
+    }
+
+    private static int doneProcStatus(Request request, int index) {
+        return (index < request.getProcedures().size() - 1) ? TokenStream.DONE_MORE | TokenStream.DONE_RPCINBATCH
+                                                             : TokenStream.DONE_FINAL;
+    }
+
+    private final ServerSocket serverSocket;
+    private final Responder responder;
+    private final boolean columnEncryption;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "FakeTdsServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts listening on a free port of the loopback interface.
+     */
+    public FakeTdsServer(Responder responder) throws IOException {
+        this(responder, false);
+    }
+
+    /**
+     * Starts listening on a free port of the loopback interface.
+     *
+     * @param columnEncryption
+     *        whether connections use Always Encrypted
+     */
+    public FakeTdsServer(Responder responder, boolean columnEncryption) throws IOException {
+        this.responder = responder;
+        this.columnEncryption = columnEncryption;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::acceptConnections);
+    }
+
+    /**
+     * Returns a connection URL for this endpoint.
+     */
+    public String getConnectionUrl() {
+        return "jdbc:sqlserver://" + serverSocket.getInetAddress().getHostAddress() + ":"
+                + serverSocket.getLocalPort() + ";user=benchmark;password=benchmark;encrypt=false"
+                + (columnEncryption ? ";columnEncryptionSetting=Enabled" : "");
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // The server socket was closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            byte[] header = new byte[PACKET_HEADER_SIZE];
+            byte[] payload = new byte[PACKET_SIZE];
+            while (true) {
+                // Read a whole request message
+                int type;
+                message.reset();
+                do {
+                    in.readFully(header);
+                    type = header[0] & 0xFF;
+                    int payloadLength = (((header[2] & 0xFF) << 8) | (header[3] & 0xFF)) - PACKET_HEADER_SIZE;
+                    if (payloadLength > payload.length)
+                        payload = new byte[payloadLength];
+                    in.readFully(payload, 0, payloadLength);
+                    message.write(payload, 0, payloadLength);
+                } while (0 == (header[1] & STATUS_BIT_EOM));
+
+                switch (type) {
+                    case PKT_PRELOGIN:
+                        writeMessage(out, preloginResponse());
+                        break;
+                    case PKT_LOGON70:
+                        writeMessage(out, columnEncryption ? COLUMN_ENCRYPTION_LOGIN_RESPONSE : LOGIN_RESPONSE);
+                        break;
+                    case PKT_CANCEL_REQ:
+                        writeMessage(out, ATTENTION_ACK);
+                        break;
+                    default:
+                        writeMessage(out, responder.respond(parseRequest(type, message.toByteArray())));
+                        break;
+                }
+            }
+        } catch (EOFException e) {
+            // The driver closed the connection
+        } catch (IOException | RuntimeException e) {
+            if (!serverSocket.isClosed())
+                e.printStackTrace();
+        }
+    }
+
+    private static byte[] preloginResponse() {
+        // VERSION and ENCRYPTION options, followed by the terminator and the option data
+        return new byte[] {0x00, 0x00, 0x0B, 0x00, 0x06, // VERSION at offset 11, length 6
+                0x01, 0x00, 0x11, 0x00, 0x01, // ENCRYPTION at offset 17, length 1
+                (byte) 0xFF, // Terminator
+                14, 0, 0x0F, (byte) 0xA0, 0, 0, // SQL Server 14.0.4000
+                0x02}; // ENCRYPT_NOT_SUP
+    }
+
+    private static void writeMessage(OutputStream out, byte[] message) throws IOException {
+        int payloadSize = PACKET_SIZE - PACKET_HEADER_SIZE;
+        byte[] packet = new byte[PACKET_SIZE];
+        int offset = 0;
+        int packetNum = 1;
+        do {
+            int length = Math.min(payloadSize, message.length - offset);
+            boolean isLast = (offset + length == message.length);
+            packet[0] = PKT_REPLY;
+            packet[1] = (byte) (isLast ? STATUS_BIT_EOM : 0);
+            packet[2] = (byte) ((length + PACKET_HEADER_SIZE) >>> 8);
+            packet[3] = (byte) (length + PACKET_HEADER_SIZE);
+            packet[4] = 0; // SPID
+            packet[5] = 0x33;
+            packet[6] = (byte) packetNum++;
+            packet[7] = 0; // Window
+            System.arraycopy(message, offset, packet, PACKET_HEADER_SIZE, length);
+            out.write(packet, 0, length + PACKET_HEADER_SIZE);
+            offset += length;
+        } while (offset < message.length);
+        out.flush();
+    }
+
+    private static Request parseRequest(int type, byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message).order(ByteOrder.LITTLE_ENDIAN);
+        switch (type) {
+            case PKT_QUERY:
+                skipAllHeaders(buffer);
+                return new Request(type,
+                        new String(message, buffer.position(), buffer.remaining(), StandardCharsets.UTF_16LE),
+                        Collections.<String>emptyList(), Collections.<byte[]>emptyList());
+
+            case PKT_RPC: {
+                skipAllHeaders(buffer);
+                List<byte[]> encryptedValues = new ArrayList<>();
+                return new Request(type, null, parseRpcs(buffer, encryptedValues), encryptedValues);
+            }
+
+            default:
+                return new Request(type, null, Collections.<String>emptyList(), Collections.<byte[]>emptyList());
+        }
+    }
+
+    private static void skipAllHeaders(ByteBuffer buffer) {
+        buffer.position(buffer.getInt(0));
+    }
+
+    /**
+     * Returns the names of the procedures called by a request of one or more RPCs, and adds the cipher texts of its
+     * encrypted parameters to the given list.
+     */
+    private static List<String> parseRpcs(ByteBuffer buffer, List<byte[]> encryptedValues) {
+        List<String> procedures = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            int nameLength = buffer.getShort() & 0xFFFF;
+            if (0xFFFF == nameLength)
+                procedures.add(PROC_NAMES[buffer.getShort()]);
+            else
+                procedures.add(readUnicode(buffer, nameLength));
+            buffer.getShort(); // Option flags
+
+            // Parameters, up to the batch delimiter
+            while (buffer.hasRemaining() && 0xFF != (buffer.get(buffer.position()) & 0xFF)) {
+                readUnicode(buffer, buffer.get() & 0xFF); // Name
+                int status = buffer.get() & 0xFF;
+                if (0 == (status & PARAM_STATUS_ENCRYPTED)) {
+                    skipTypedValue(buffer);
+                } else {
+                    encryptedValues.add(readEncryptedValue(buffer));
+                }
+            }
+
+            if (buffer.hasRemaining())
+                buffer.get(); // Batch delimiter
+        }
+        return procedures;
+    }
+
+    /**
+     * Skips the TYPE_INFO and value of an RPC parameter.
+     */
+    private static void skipTypedValue(ByteBuffer buffer) {
+        int tdsType = buffer.get() & 0xFF;
+        int maxLength = skipTypeInfo(buffer, tdsType);
+        switch (tdsType) {
+            case 0x30: // INT1
+            case 0x32: // BIT
+                skip(buffer, 1);
+                break;
+            case 0x34: // INT2
+                skip(buffer, 2);
+                break;
+            case 0x38: // INT4
+            case 0x3A: // DATETIM4
+            case 0x3B: // FLT4
+            case 0x7A: // MONEY4
+                skip(buffer, 4);
+                break;
+            case 0x3C: // MONEY
+            case 0x3D: // DATETIME
+            case 0x3E: // FLT8
+            case 0x7F: // INT8
+                skip(buffer, 8);
+                break;
+
+            case 0xA5: // BIGVARBINARY
+            case 0xAD: // BIGBINARY
+            case 0xA7: // BIGVARCHAR
+            case 0xAF: // BIGCHAR
+            case 0xE7: // NVARCHAR
+            case 0xEF: // NCHAR
+                skipVariableLengthValue(buffer, maxLength);
+                break;
+
+            default:
+                // Types whose value starts with a one byte length
+                skip(buffer, buffer.get() & 0xFF);
+                break;
+        }
+    }
+
+    /**
+     * Skips the rest of the TYPE_INFO of a parameter of the given type, and returns the maximum length of a variable
+     * length type.
+     */
+    private static int skipTypeInfo(ByteBuffer buffer, int tdsType) {
+        switch (tdsType) {
+            case 0x30: // INT1
+            case 0x32: // BIT
+            case 0x34: // INT2
+            case 0x38: // INT4
+            case 0x3A: // DATETIM4
+            case 0x3B: // FLT4
+            case 0x7A: // MONEY4
+            case 0x3C: // MONEY
+            case 0x3D: // DATETIME
+            case 0x3E: // FLT8
+            case 0x7F: // INT8
+            case 0x28: // DATEN
+                return 0;
+
+            case 0x24: // GUID
+            case 0x26: // INTN
+            case 0x68: // BITN
+            case 0x6D: // FLTN
+            case 0x6E: // MONEYN
+            case 0x6F: // DATETIMN
+                return buffer.get() & 0xFF; // Max length
+
+            case 0x6A: // DECIMALN
+            case 0x6C: // NUMERICN
+                skip(buffer, 3); // Max length, precision and scale
+                return 0;
+
+            case 0x29: // TIMEN
+            case 0x2A: // DATETIME2N
+            case 0x2B: // DATETIMEOFFSETN
+                buffer.get(); // Scale
+                return 0;
+
+            case 0xA5: // BIGVARBINARY
+            case 0xAD: // BIGBINARY
+                return buffer.getShort() & 0xFFFF;
+
+            case 0xA7: // BIGVARCHAR
+            case 0xAF: // BIGCHAR
+            case 0xE7: // NVARCHAR
+            case 0xEF: // NCHAR
+                int maxLength = buffer.getShort() & 0xFFFF;
+                skip(buffer, 5); // Collation
+                return maxLength;
+
+            default:
+                throw new UnsupportedOperationException(
+                        "Unsupported parameter type: 0x" + Integer.toHexString(tdsType));
+        }
+    }
+
+    /**
+     * Reads the cipher text of an encrypted RPC parameter, which is sent as a BIGVARBINARY value followed by the
+     * TYPE_INFO of the plain text value and the encryption metadata.
+     */
+    private static byte[] readEncryptedValue(ByteBuffer buffer) {
+        if (0xA5 != (buffer.get() & 0xFF) || 8000 != (buffer.getShort() & 0xFFFF))
+            throw new UnsupportedOperationException("Unsupported encrypted parameter");
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] cipherText = null;
+        if (0xFFFF != length) {
+            cipherText = new byte[length];
+            buffer.get(cipherText);
+        }
+
+        skipTypeInfo(buffer, buffer.get() & 0xFF);
+        // Encryption algorithm and type, key ids and versions, normalization rule version
+        skip(buffer, 1 + 1 + 4 + 4 + 4 + 8 + 1);
+        return cipherText;
+    }
+
+    private static void skipVariableLengthValue(ByteBuffer buffer, int maxLength) {
+        if (0xFFFF != maxLength) {
+            int length = buffer.getShort() & 0xFFFF;
+            if (0xFFFF != length)
+                skip(buffer, length);
+            return;
+        }
+
+        // PLP value: total length, then chunks up to a zero length terminator
+        if (-1L == buffer.getLong())
+            return;
+        for (int chunkLength = buffer.getInt(); 0 != chunkLength; chunkLength = buffer.getInt())
+            skip(buffer, chunkLength);
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    private static String readUnicode(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.position(), 2 * length, StandardCharsets.UTF_16LE);
+        skip(buffer, 2 * length);
+        return value;
+    }
+}
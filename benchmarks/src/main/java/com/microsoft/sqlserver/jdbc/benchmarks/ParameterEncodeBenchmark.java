@@ -0,0 +1,73 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures executing a prepared INSERT, which encodes the parameter values into an RPC request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParameterEncodeBenchmark {
+    static final String INSERT = "insert into benchmark (id, amount, ratio, name, price) values (?, ?, ?, ?, ?)";
+
+    private FakeTdsServer server;
+    private Connection connection;
+    private PreparedStatement statement;
+    private int id;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        server = new FakeTdsServer(
+                request -> request.isRpc() ? FakeTdsServer.oneRowInsertedPerRpc(request) : FakeTdsServer.done(request));
+        connection = DriverManager.getConnection(server.getConnectionUrl());
+        statement = connection.prepareStatement(INSERT);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int executeUpdate() throws SQLException {
+        setParameters(statement, id++);
+        return statement.executeUpdate();
+    }
+
+    static void setParameters(PreparedStatement statement, int id) throws SQLException {
+        statement.setInt(1, id);
+        statement.setLong(2, id * 1000L);
+        statement.setDouble(3, id / 3.0);
+        statement.setString(4, "name " + id);
+        statement.setBigDecimal(5, BigDecimal.valueOf(id, 2));
+    }
+}
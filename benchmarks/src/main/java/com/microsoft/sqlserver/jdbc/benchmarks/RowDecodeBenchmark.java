@@ -0,0 +1,118 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.microsoft.sqlserver.jdbc.benchmarks.TokenStream.Column;
+
+
+/**
+ * Measures decoding result set rows with the typed getters. Scores are per row; run with -prof gc to see the bytes
+ * allocated per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RowDecodeBenchmark {
+    static final int ROWS = 1000;
+    private static final String QUERY = "select id, amount, ratio, name, price from benchmark";
+
+    private FakeTdsServer server;
+    private Connection connection;
+    private Statement statement;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        List<Column> columns = Arrays.asList(Column.intColumn("id"), Column.bigintColumn("amount"),
+                Column.floatColumn("ratio"), Column.nvarcharColumn("name", 50), Column.decimalColumn("price", 18, 2));
+        TokenStream tokens = new TokenStream().colMetadata(columns.toArray(new Column[0]));
+        for (int i = 0; i < ROWS; i++)
+            tokens.row(columns, i, i * 1000L, i / 3.0, "name " + i, BigDecimal.valueOf(i, 2));
+        byte[] response = tokens.done(TokenStream.DONE_COUNT, TokenStream.CMD_SELECT, ROWS).toByteArray();
+
+        server = new FakeTdsServer(
+                request -> request.isSqlBatch() && QUERY.equals(request.getSql()) ? response
+                                                                                   : FakeTdsServer.done(request));
+        connection = DriverManager.getConnection(server.getConnectionUrl());
+        statement = connection.createStatement();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        server.close();
+    }
+
+    /**
+     * Reads the INT, BIGINT and FLOAT columns with getInt, getLong and getDouble.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void primitiveGetters(Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(QUERY)) {
+            while (rs.next()) {
+                blackhole.consume(rs.getInt(1));
+                blackhole.consume(rs.getLong(2));
+                blackhole.consume(rs.getDouble(3));
+            }
+        }
+    }
+
+    /**
+     * Reads the NVARCHAR and DECIMAL columns with getString and getBigDecimal.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void objectGetters(Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(QUERY)) {
+            while (rs.next()) {
+                blackhole.consume(rs.getString(4));
+                blackhole.consume(rs.getBigDecimal(5));
+            }
+        }
+    }
+
+    /**
+     * Reads all columns with getObject.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void getObject(Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(QUERY)) {
+            while (rs.next()) {
+                for (int column = 1; column <= 5; column++)
+                    blackhole.consume(rs.getObject(column));
+            }
+        }
+    }
+}
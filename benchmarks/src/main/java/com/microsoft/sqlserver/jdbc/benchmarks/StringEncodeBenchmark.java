@@ -0,0 +1,74 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures executing a prepared INSERT with a single NVARCHAR parameter, which encodes the string into the RPC request
+ * as UTF-16LE. Strings longer than 4000 characters are sent as NVARCHAR(MAX) and span several packets.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StringEncodeBenchmark {
+    static final String INSERT = "insert into benchmark (name) values (?)";
+
+    @Param({"16", "1000", "100000"})
+    public int length;
+
+    private FakeTdsServer server;
+    private Connection connection;
+    private PreparedStatement statement;
+    private String value;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append((char) ('a' + i % 26));
+        value = builder.toString();
+
+        server = new FakeTdsServer(
+                request -> request.isRpc() ? FakeTdsServer.oneRowInsertedPerRpc(request) : FakeTdsServer.done(request));
+        connection = DriverManager.getConnection(server.getConnectionUrl());
+        statement = connection.prepareStatement(INSERT);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int executeUpdate() throws SQLException {
+        statement.setString(1, value);
+        return statement.executeUpdate();
+    }
+}
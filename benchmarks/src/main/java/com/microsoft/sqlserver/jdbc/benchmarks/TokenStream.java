@@ -0,0 +1,531 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Builds the TDS token streams that FakeTdsServer sends in response to the driver's requests.
+ *
+ * Only the tokens and data types used by the benchmarks are supported. All values are written in TDS 7.4 format.
+ */
+public final class TokenStream {
+    static final int TDS_RET_STAT = 0x79;
+    static final int TDS_COLMETADATA = 0x81;
+    static final int TDS_RETURN_VALUE = 0xAC;
+    static final int TDS_LOGIN_ACK = 0xAD;
+    static final int TDS_FEATURE_EXTENSION_ACK = 0xAE;
+    static final int TDS_ROW = 0xD1;
+    static final int TDS_ENV_CHG = 0xE3;
+    static final int TDS_DONE = 0xFD;
+    static final int TDS_DONEPROC = 0xFE;
+    static final int TDS_DONEINPROC = 0xFF;
+
+    static final int DONE_FINAL = 0x0000;
+    static final int DONE_MORE = 0x0001;
+    static final int DONE_COUNT = 0x0010;
+    static final int DONE_ATTN = 0x0020;
+    static final int DONE_RPCINBATCH = 0x0080;
+
+    static final int CMD_SELECT = 0xC1;
+    static final int CMD_INSERT = 0xC3;
+    static final int CMD_EXECUTE = 0xE0;
+    static final int CMD_BULKINSERT = 0xF0;
+
+    static final int VER_DENALI = 0x74000004;
+
+    static final int FEATURE_EXT_AE = 0x04;
+    static final int FEATURE_EXT_TERMINATOR = 0xFF;
+
+    public static final int ENCRYPTION_DETERMINISTIC = 1;
+    public static final int ENCRYPTION_RANDOMIZED = 2;
+    static final int AEAD_AES_256_CBC_HMAC_SHA256 = 2;
+    private static final int FLAG_ENCRYPTED = 0x0800;
+    private static final int MAX_ENCRYPTED_LENGTH = 8000;
+
+    // SQL_Latin1_General_CP1_CI_AS
+    private static final byte[] COLLATION = {0x09, 0x04, (byte) 0xD0, 0x00, 0x34};
+
+    /**
+     * The SQL Server data types that result set columns can have.
+     */
+    public enum Type {
+        INT,
+        BIGINT,
+        FLOAT,
+        NVARCHAR,
+        DECIMAL,
+        VARBINARY
+    }
+
+    /**
+     * A column encryption key, as sent to the driver in the CEK table of COLMETADATA or in the result of
+     * sp_describe_parameter_encryption.
+     */
+    public static final class ColumnEncryptionKey {
+        static final int DATABASE_ID = 5;
+        static final int KEY_ID = 1;
+        static final int KEY_VERSION = 1;
+        static final byte[] KEY_MD_VERSION = {0, 0, 0, 0, 0, 0, 0, 1};
+        static final String KEY_ENCRYPTION_ALGORITHM = "RSA_OAEP";
+
+        final byte[] encryptedKey;
+        final String keyStoreName;
+        final String keyPath;
+
+        /**
+         * Creates a key whose encrypted value is decrypted by the key store provider registered with the given name.
+         */
+        public ColumnEncryptionKey(byte[] encryptedKey, String keyStoreName, String keyPath) {
+            this.encryptedKey = encryptedKey;
+            this.keyStoreName = keyStoreName;
+            this.keyPath = keyPath;
+        }
+    }
+
+    /**
+     * A result set column.
+     */
+    public static final class Column {
+        final String name;
+        final Type type;
+        final int length;
+        final int precision;
+        final int scale;
+        // 0 for a plain text column
+        final int encryptionType;
+
+        private Column(String name, Type type, int length, int precision, int scale) {
+            this(name, type, length, precision, scale, 0);
+        }
+
+        private Column(String name, Type type, int length, int precision, int scale, int encryptionType) {
+            this.name = name;
+            this.type = type;
+            this.length = length;
+            this.precision = precision;
+            this.scale = scale;
+            this.encryptionType = encryptionType;
+        }
+
+        public static Column intColumn(String name) {
+            return new Column(name, Type.INT, 4, 10, 0);
+        }
+
+        public static Column bigintColumn(String name) {
+            return new Column(name, Type.BIGINT, 8, 19, 0);
+        }
+
+        public static Column floatColumn(String name) {
+            return new Column(name, Type.FLOAT, 8, 15, 0);
+        }
+
+        public static Column nvarcharColumn(String name, int maxChars) {
+            return new Column(name, Type.NVARCHAR, 2 * maxChars, maxChars, 0);
+        }
+
+        public static Column decimalColumn(String name, int precision, int scale) {
+            int length = (precision <= 9) ? 5 : (precision <= 19) ? 9 : (precision <= 28) ? 13 : 17;
+            return new Column(name, Type.DECIMAL, length, precision, scale);
+        }
+
+        public static Column varbinaryColumn(String name, int maxLength) {
+            return new Column(name, Type.VARBINARY, maxLength, maxLength, 0);
+        }
+
+        /**
+         * Returns this column encrypted with Always Encrypted. The values of an encrypted column are the cipher texts,
+         * as byte arrays.
+         *
+         * @param encryptionType
+         *        ENCRYPTION_DETERMINISTIC or ENCRYPTION_RANDOMIZED
+         */
+        public Column encrypted(int encryptionType) {
+            return new Column(name, type, length, precision, scale, encryptionType);
+        }
+    }
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ColumnEncryptionKey columnEncryptionKey;
+    private final boolean columnEncryption;
+
+    /**
+     * Starts a token stream for a connection without Always Encrypted.
+     */
+    public TokenStream() {
+        this.columnEncryptionKey = null;
+        this.columnEncryption = false;
+    }
+
+    /**
+     * Starts a token stream for a connection with Always Encrypted, to which the server acknowledged the column
+     * encryption feature. Its COLMETADATA tokens carry a CEK table, which holds the given key if any column is
+     * encrypted.
+     *
+     * @param columnEncryptionKey
+     *        the key of the encrypted columns, or null if no column is encrypted
+     */
+    public TokenStream(ColumnEncryptionKey columnEncryptionKey) {
+        this.columnEncryptionKey = columnEncryptionKey;
+        this.columnEncryption = true;
+    }
+
+    /**
+     * Writes a COLMETADATA token describing the given columns.
+     */
+    public TokenStream colMetadata(Column... columns) {
+        writeByte(TDS_COLMETADATA);
+        writeShort(columns.length);
+        if (columnEncryption)
+            writeCekTable(columns);
+        for (Column column : columns) {
+            writeInt(0); // UserType
+            if (0 == column.encryptionType) {
+                writeShort(0x0001); // Flags: nullable
+                writeTypeInfo(column);
+            } else {
+                writeShort(0x0001 | FLAG_ENCRYPTED);
+                writeByte(0xA5); // BIGVARBINARY holding the cipher text
+                writeShort(MAX_ENCRYPTED_LENGTH);
+                writeCryptoMetadata(column);
+            }
+            writeBVarchar(column.name);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a ROW token with the given values, one per column. A null value is written as SQL NULL.
+     */
+    public TokenStream row(List<Column> columns, Object... values) {
+        writeByte(TDS_ROW);
+        for (int i = 0; i < values.length; i++)
+            writeValue(columns.get(i), values[i]);
+        return this;
+    }
+
+    /**
+     * Writes a DONE token.
+     */
+    public TokenStream done(int status, int curCmd, long rowCount) {
+        return writeDone(TDS_DONE, status, curCmd, rowCount);
+    }
+
+    /**
+     * Writes a DONEPROC token.
+     */
+    public TokenStream doneProc(int status, int curCmd, long rowCount) {
+        return writeDone(TDS_DONEPROC, status, curCmd, rowCount);
+    }
+
+    /**
+     * Writes a DONEINPROC token.
+     */
+    public TokenStream doneInProc(int status, int curCmd, long rowCount) {
+        return writeDone(TDS_DONEINPROC, status, curCmd, rowCount);
+    }
+
+    /**
+     * Writes a RETURNSTATUS token.
+     */
+    public TokenStream returnStatus(int value) {
+        writeByte(TDS_RET_STAT);
+        writeInt(value);
+        return this;
+    }
+
+    /**
+     * Writes a RETURNVALUE token for an int OUTPUT parameter, such as the handle returned by sp_prepexec.
+     */
+    public TokenStream returnValue(int ordinal, String name, int value) {
+        writeByte(TDS_RETURN_VALUE);
+        writeShort(ordinal);
+        writeBVarchar(name);
+        writeByte(0x01); // Status: OUTPUT parameter
+        writeInt(0); // UserType
+        writeShort(0); // Flags
+        writeByte(0x26); // INTN
+        writeByte(4);
+        writeByte(4);
+        writeInt(value);
+        return this;
+    }
+
+    /**
+     * Writes a LOGINACK token for a SQL Server 2017 server speaking TDS 7.4.
+     */
+    public TokenStream loginAck() {
+        String programName = "Microsoft SQL Server";
+        writeByte(TDS_LOGIN_ACK);
+        writeShort(1 + 4 + 1 + 2 * programName.length() + 4);
+        writeByte(1); // Interface: SQL
+        writeIntBigEndian(VER_DENALI);
+        writeBVarchar(programName);
+        writeByte(14); // Major version
+        writeByte(0); // Minor version
+        writeByte(0x0F); // Build number, high byte
+        writeByte(0xA0); // Build number, low byte
+        return this;
+    }
+
+    /**
+     * Writes a FEATUREEXTACK token that acknowledges version 1 of the column encryption feature.
+     */
+    public TokenStream featureExtAckColumnEncryption() {
+        writeByte(TDS_FEATURE_EXTENSION_ACK);
+        writeByte(FEATURE_EXT_AE);
+        writeInt(1);
+        writeByte(1); // Version
+        writeByte(FEATURE_EXT_TERMINATOR);
+        return this;
+    }
+
+    /**
+     * Writes the two result sets that sp_describe_parameter_encryption returns for a statement with a single
+     * parameter, encrypted with the given key, followed by the DONEPROC token of the RPC.
+     *
+     * @param key
+     *        the column encryption key of the parameter
+     * @param parameterName
+     *        the name of the parameter, such as @P0
+     * @param encryptionType
+     *        ENCRYPTION_DETERMINISTIC or ENCRYPTION_RANDOMIZED
+     */
+    public TokenStream describeParameterEncryption(ColumnEncryptionKey key, String parameterName,
+            int encryptionType) {
+        List<Column> keyColumns = Arrays.asList(Column.intColumn("column_encryption_key_ordinal"),
+                Column.intColumn("database_id"), Column.intColumn("column_encryption_key_id"),
+                Column.intColumn("column_encryption_key_version"),
+                Column.varbinaryColumn("column_encryption_key_metadata_version", 8),
+                Column.varbinaryColumn("column_encryption_key_encrypted_value", 4000),
+                Column.nvarcharColumn("column_master_key_store_provider_name", 128),
+                Column.nvarcharColumn("column_master_key_path", 4000),
+                Column.nvarcharColumn("column_encryption_key_encryption_algorithm_name", 128));
+        colMetadata(keyColumns.toArray(new Column[0]));
+        row(keyColumns, 1, ColumnEncryptionKey.DATABASE_ID, ColumnEncryptionKey.KEY_ID,
+                ColumnEncryptionKey.KEY_VERSION, ColumnEncryptionKey.KEY_MD_VERSION, key.encryptedKey,
+                key.keyStoreName, key.keyPath, ColumnEncryptionKey.KEY_ENCRYPTION_ALGORITHM);
+        doneInProc(DONE_MORE | DONE_COUNT, CMD_SELECT, 1);
+
+        List<Column> parameterColumns = Arrays.asList(Column.intColumn("parameter_ordinal"),
+                Column.nvarcharColumn("parameter_name", 128), Column.intColumn("column_encryption_algorithm"),
+                Column.intColumn("column_encryption_type"), Column.intColumn("column_encryption_key_ordinal"),
+                Column.intColumn("column_encryption_normalization_rule_version"));
+        colMetadata(parameterColumns.toArray(new Column[0]));
+        row(parameterColumns, 1, parameterName, AEAD_AES_256_CBC_HMAC_SHA256, encryptionType, 1, 1);
+        doneInProc(DONE_MORE | DONE_COUNT, CMD_SELECT, 1);
+
+        returnStatus(0);
+        return doneProc(DONE_FINAL, CMD_EXECUTE, 0);
+    }
+
+    /**
+     * Writes an ENVCHANGE token that changes the database.
+     */
+    public TokenStream envChangeDatabase(String database) {
+        writeByte(TDS_ENV_CHG);
+        writeShort(1 + 1 + 2 * database.length() + 1 + 2 * "master".length());
+        writeByte(1); // ENVCHANGE_DATABASE
+        writeBVarchar(database);
+        writeBVarchar("master");
+        return this;
+    }
+
+    /**
+     * Writes an ENVCHANGE token that sets the database collation.
+     */
+    public TokenStream envChangeCollation() {
+        writeByte(TDS_ENV_CHG);
+        writeShort(1 + 1 + COLLATION.length + 1);
+        writeByte(7); // ENVCHANGE_SQLCOLLATION
+        writeByte(COLLATION.length);
+        out.write(COLLATION, 0, COLLATION.length);
+        writeByte(0);
+        return this;
+    }
+
+    /**
+     * Appends a previously built token stream.
+     */
+    public TokenStream append(byte[] tokens) {
+        out.write(tokens, 0, tokens.length);
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private TokenStream writeDone(int token, int status, int curCmd, long rowCount) {
+        writeByte(token);
+        writeShort(status);
+        writeShort(curCmd);
+        writeLong(rowCount);
+        return this;
+    }
+
+    /**
+     * Writes the CEK table of COLMETADATA, which holds the column encryption key if any column is encrypted.
+     */
+    private void writeCekTable(Column[] columns) {
+        boolean hasEncryptedColumn = false;
+        for (Column column : columns)
+            hasEncryptedColumn |= (0 != column.encryptionType);
+        if (!hasEncryptedColumn) {
+            writeShort(0);
+            return;
+        }
+
+        writeShort(1);
+        writeInt(ColumnEncryptionKey.DATABASE_ID);
+        writeInt(ColumnEncryptionKey.KEY_ID);
+        writeInt(ColumnEncryptionKey.KEY_VERSION);
+        out.write(ColumnEncryptionKey.KEY_MD_VERSION, 0, ColumnEncryptionKey.KEY_MD_VERSION.length);
+        writeByte(1); // Number of encrypted values of the key
+        writeShort(columnEncryptionKey.encryptedKey.length);
+        out.write(columnEncryptionKey.encryptedKey, 0, columnEncryptionKey.encryptedKey.length);
+        writeBVarchar(columnEncryptionKey.keyStoreName);
+        writeUsVarchar(columnEncryptionKey.keyPath);
+        writeBVarchar(ColumnEncryptionKey.KEY_ENCRYPTION_ALGORITHM);
+    }
+
+    /**
+     * Writes the crypto metadata of an encrypted column: the ordinal of its key in the CEK table, the TYPE_INFO of the
+     * plain text values and the encryption algorithm.
+     */
+    private void writeCryptoMetadata(Column column) {
+        writeShort(0); // Ordinal
+        writeInt(0); // UserType
+        writeTypeInfo(column);
+        writeByte(AEAD_AES_256_CBC_HMAC_SHA256);
+        writeByte(column.encryptionType);
+        writeByte(1); // Normalization rule version
+    }
+
+    private void writeTypeInfo(Column column) {
+        switch (column.type) {
+            case INT:
+            case BIGINT:
+                writeByte(0x26); // INTN
+                writeByte(column.length);
+                break;
+            case FLOAT:
+                writeByte(0x6D); // FLTN
+                writeByte(column.length);
+                break;
+            case NVARCHAR:
+                writeByte(0xE7); // NVARCHAR
+                writeShort(column.length);
+                out.write(COLLATION, 0, COLLATION.length);
+                break;
+            case DECIMAL:
+                writeByte(0x6A); // DECIMALN
+                writeByte(column.length);
+                writeByte(column.precision);
+                writeByte(column.scale);
+                break;
+            case VARBINARY:
+                writeByte(0xA5); // BIGVARBINARY
+                writeShort(column.length);
+                break;
+            default:
+                throw new IllegalArgumentException(column.type.toString());
+        }
+    }
+
+    private void writeValue(Column column, Object value) {
+        if (null == value) {
+            if (Type.NVARCHAR == column.type || Type.VARBINARY == column.type || 0 != column.encryptionType)
+                writeShort(0xFFFF);
+            else
+                writeByte(0);
+            return;
+        }
+
+        if (0 != column.encryptionType || Type.VARBINARY == column.type) {
+            byte[] bytes = (byte[]) value;
+            writeShort(bytes.length);
+            out.write(bytes, 0, bytes.length);
+            return;
+        }
+
+        switch (column.type) {
+            case INT:
+                writeByte(4);
+                writeInt(((Number) value).intValue());
+                break;
+            case BIGINT:
+                writeByte(8);
+                writeLong(((Number) value).longValue());
+                break;
+            case FLOAT:
+                writeByte(8);
+                writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+                break;
+            case NVARCHAR: {
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_16LE);
+                writeShort(bytes.length);
+                out.write(bytes, 0, bytes.length);
+                break;
+            }
+            case DECIMAL: {
+                BigInteger unscaled = ((BigDecimal) value).setScale(column.scale).unscaledValue();
+                writeByte(column.length);
+                writeByte(unscaled.signum() < 0 ? 0 : 1);
+                byte[] magnitude = unscaled.abs().toByteArray();
+                for (int i = 0; i < column.length - 1; i++)
+                    writeByte(i < magnitude.length ? magnitude[magnitude.length - 1 - i] : 0);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(column.type.toString());
+        }
+    }
+
+    private void writeBVarchar(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_16LE);
+        writeByte(value.length());
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private void writeUsVarchar(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_16LE);
+        writeShort(value.length());
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private void writeByte(int value) {
+        out.write(value);
+    }
+
+    private void writeShort(int value) {
+        out.write(value);
+        out.write(value >>> 8);
+    }
+
+    private void writeInt(int value) {
+        writeShort(value);
+        writeShort(value >>> 16);
+    }
+
+    private void writeIntBigEndian(int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) value);
+        writeInt((int) (value >>> 32));
+    }
+}
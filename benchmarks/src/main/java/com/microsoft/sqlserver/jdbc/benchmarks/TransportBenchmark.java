@@ -0,0 +1,111 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.microsoft.sqlserver.jdbc.benchmarks.TokenStream.Column;
+
+
+/**
+ * Compares the socket stream and SocketChannel transports, selected by the useSocketChannel connection property, on a
+ * round trip with a small response and on a response of many packets. Scores are per statement execution.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransportBenchmark {
+    static final int ROWS = 2000;
+    private static final String SMALL_QUERY = "select 1";
+    private static final String LARGE_QUERY = "select id, name from benchmark";
+
+    @Param({"false", "true"})
+    public boolean useSocketChannel;
+
+    private FakeTdsServer server;
+    private Connection connection;
+    private Statement statement;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        List<Column> valueColumn = Collections.singletonList(Column.intColumn("value"));
+        byte[] smallResponse = new TokenStream().colMetadata(valueColumn.get(0)).row(valueColumn, 1)
+                .done(TokenStream.DONE_COUNT, TokenStream.CMD_SELECT, 1).toByteArray();
+
+        List<Column> columns = Arrays.asList(Column.intColumn("id"), Column.nvarcharColumn("name", 200));
+        TokenStream tokens = new TokenStream().colMetadata(columns.toArray(new Column[0]));
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            name.append((char) ('a' + i % 26));
+        for (int i = 0; i < ROWS; i++)
+            tokens.row(columns, i, name.toString());
+        byte[] largeResponse = tokens.done(TokenStream.DONE_COUNT, TokenStream.CMD_SELECT, ROWS).toByteArray();
+
+        server = new FakeTdsServer(request -> {
+            if (request.isSqlBatch() && SMALL_QUERY.equals(request.getSql()))
+                return smallResponse;
+            if (request.isSqlBatch() && LARGE_QUERY.equals(request.getSql()))
+                return largeResponse;
+            return FakeTdsServer.done(request);
+        });
+        connection = DriverManager.getConnection(server.getConnectionUrl() + ";useSocketChannel=" + useSocketChannel);
+        statement = connection.createStatement();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        server.close();
+    }
+
+    /**
+     * Executes a query with a one-row response, which measures the latency of a round trip.
+     */
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(SMALL_QUERY)) {
+            while (rs.next())
+                blackhole.consume(rs.getInt(1));
+        }
+    }
+
+    /**
+     * Executes a query with a response of about 800 KB, which measures the throughput of reads.
+     */
+    @Benchmark
+    public void largeResult(Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(LARGE_QUERY)) {
+            while (rs.next())
+                blackhole.consume(rs.getString(2));
+        }
+    }
+}
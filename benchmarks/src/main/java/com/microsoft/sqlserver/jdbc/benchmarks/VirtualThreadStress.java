@@ -0,0 +1,137 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+import com.microsoft.sqlserver.jdbc.SQLServerPoolingDataSource;
+
+
+/**
+ * Stress test that runs 10,000 virtual threads against FakeTdsServer and fails if a virtual thread blocks in the driver
+ * while it is pinned to its carrier thread.
+ *
+ * Each virtual thread borrows one of 50 pooled connections, executes a statement with a query timeout and returns the
+ * connection, so that the threads contend for the pool, the command scheduler of each connection and the shared timer.
+ * Every 200th statement outlasts its timeout and is cancelled from the background task executor of the driver, which
+ * is set to a virtual thread per task executor as well.
+ *
+ * Pinning is detected with the jdk.tracePinnedThreads system property, which makes the JVM print a stack trace to
+ * System.out whenever a virtual thread parks while it holds a monitor. The test requires Java 21 or later and is
+ * skipped on earlier versions. Blocking in a monitor no longer pins from Java 24 on, where the check passes trivially.
+ *
+ * Run it with
+ * {@code java -cp benchmarks/target/benchmarks.jar com.microsoft.sqlserver.jdbc.benchmarks.VirtualThreadStress}. The
+ * exit status is 1 if a thread was pinned or a statement failed.
+ */
+public final class VirtualThreadStress {
+    private static final int THREADS = 10000;
+    private static final int CONNECTIONS = 50;
+    private static final int TIMED_OUT_EVERY = 200;
+
+    private VirtualThreadStress() {}
+
+    public static void main(String[] args) throws Exception {
+        // Must be set before the first virtual thread is started.
+        System.setProperty("jdk.tracePinnedThreads", "short");
+
+        ExecutorService virtualThreads;
+        try {
+            virtualThreads = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (NoSuchMethodException e) {
+            System.err.println("Skipped: virtual threads require Java 21 or later.");
+            return;
+        }
+
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream pinnedTraces = new ByteArrayOutputStream();
+        AtomicInteger timeouts = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        try (FakeTdsServer server = new FakeTdsServer(request -> {
+            // Outlast the one second query timeout of the statements that are expected to time out.
+            if (request.isSqlBatch() && request.getSql().startsWith("waitfor")) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new TokenStream().done(TokenStream.DONE_COUNT, TokenStream.CMD_INSERT, 1).toByteArray();
+            }
+            return FakeTdsServer.done(request);
+        }); SQLServerPoolingDataSource dataSource = new SQLServerPoolingDataSource()) {
+            dataSource.setURL(server.getConnectionUrl());
+            dataSource.setMaxPoolSize(CONNECTIONS);
+            dataSource.setConnectionWaitTimeout(60000);
+
+            SQLServerConnection.setBackgroundTaskExecutor(virtualThreads);
+            System.setOut(new PrintStream(pinnedTraces, true));
+            try {
+                for (int i = 0; i < THREADS; i++) {
+                    boolean timesOut = (0 == i % TIMED_OUT_EVERY);
+                    virtualThreads.execute(() -> {
+                        try (Connection connection = dataSource.getConnection();
+                                Statement stmt = connection.createStatement()) {
+                            stmt.setQueryTimeout(1);
+                            if (timesOut) {
+                                try {
+                                    stmt.executeUpdate("waitfor delay '00:00:02'");
+                                    throw new IllegalStateException("The statement did not time out.");
+                                } catch (SQLTimeoutException e) {
+                                    timeouts.incrementAndGet();
+                                }
+                            } else {
+                                stmt.execute("select 1");
+                            }
+                        } catch (SQLException | RuntimeException e) {
+                            failures.incrementAndGet();
+                            firstFailure.compareAndSet(null, e);
+                        }
+                    });
+                }
+                virtualThreads.shutdown();
+                if (!virtualThreads.awaitTermination(5, TimeUnit.MINUTES))
+                    throw new IllegalStateException("The virtual threads did not finish within 5 minutes.");
+            } finally {
+                System.setOut(stdout);
+                SQLServerConnection.setBackgroundTaskExecutor(null);
+            }
+        }
+
+        System.out.println(THREADS + " virtual threads on " + CONNECTIONS + " connections finished in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms; " + timeouts
+                + " statements timed out.");
+
+        boolean passed = true;
+        if (0 != failures.get()) {
+            System.out.println(failures + " statements failed, the first with:");
+            firstFailure.get().printStackTrace(System.out);
+            passed = false;
+        }
+        if (0 != pinnedTraces.size()) {
+            System.out.println("Virtual threads were pinned to their carrier threads:");
+            System.out.println(pinnedTraces.toString());
+            passed = false;
+        }
+        if (!passed)
+            System.exit(1);
+        System.out.println("No virtual thread was pinned.");
+    }
+}
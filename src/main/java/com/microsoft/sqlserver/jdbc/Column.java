@@ -193,6 +193,79 @@ final class Column {
         return (null != filter) ? filter.apply(value, jdbcType) : value;
     }
 
+    /**
+     * Returns whether the primitive getters can read this column's value as a long without boxing it.
+     *
+     * @param integralTypesOnly
+     *        excludes DECIMAL and NUMERIC values, whose fractional digits are lost when read as a long
+     */
+    final boolean hasPrimitiveLongValue(boolean integralTypesOnly) {
+        if (!hasPrimitiveValue())
+            return false;
+
+        switch (typeInfo.getSSType()) {
+            case BIT:
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return true;
+            case DECIMAL:
+            case NUMERIC:
+                return !integralTypesOnly;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns whether the primitive getters can read this column's value as a double without boxing it.
+     *
+     * @param floatingTypesOnly
+     *        excludes integral values, which may be rounded differently when read as a double and then narrowed
+     */
+    final boolean hasPrimitiveDoubleValue(boolean floatingTypesOnly) {
+        if (!hasPrimitiveValue())
+            return false;
+
+        switch (typeInfo.getSSType()) {
+            case FLOAT:
+            case REAL:
+                return true;
+            case BIT:
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return !floatingTypesOnly;
+            default:
+                return false;
+        }
+    }
+
+    private boolean hasPrimitiveValue() {
+        return null == cryptoMetadata && null == filter && getterDTV.holdsServerValue();
+    }
+
+    /**
+     * Retrieves this column's value as a long, without boxing it. Only valid if hasPrimitiveLongValue returns true.
+     *
+     * If the column has not yet been read from the response then this method reads it.
+     */
+    final long getLongValue(TDSReader tdsReader) throws SQLServerException {
+        return getterDTV.getLongValue(typeInfo, tdsReader);
+    }
+
+    /**
+     * Retrieves this column's value as a double, without boxing it. Only valid if hasPrimitiveDoubleValue returns
+     * true.
+     *
+     * If the column has not yet been read from the response then this method reads it.
+     */
+    final double getDoubleValue(TDSReader tdsReader) throws SQLServerException {
+        return getterDTV.getDoubleValue(typeInfo, tdsReader);
+    }
+
     int getInt(TDSReader tdsReader) throws SQLServerException {
         return (Integer) getValue(JDBCType.INTEGER, null, null, tdsReader);
     }
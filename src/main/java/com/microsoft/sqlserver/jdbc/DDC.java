@@ -622,19 +622,19 @@ final class DDC {
                                     new BufferedReader(new InputStreamReader(stream, typeInfo.getCharset())));
                         } else {
                             return new ByteArrayInputStream(
-                                    (new String(stream.getBytes(), typeInfo.getCharset())).getBytes(US_ASCII));
+                                    stream.getString(typeInfo.getEncoding()).getBytes(US_ASCII));
                         }
                     } else if (StreamType.CHARACTER == getterArgs.streamType
                             || StreamType.NCHARACTER == getterArgs.streamType) {
                         if (getterArgs.isAdaptive)
                             return new BufferedReader(new InputStreamReader(stream, typeInfo.getCharset()));
                         else
-                            return new StringReader(new String(stream.getBytes(), typeInfo.getCharset()));
+                            return new StringReader(stream.getString(typeInfo.getEncoding()));
                     }
 
                     // None of the special/fast textual conversion cases applied. Just go the normal route of converting
                     // via String.
-                    return convertStringToObject(new String(stream.getBytes(), typeInfo.getCharset()),
+                    return convertStringToObject(stream.getString(typeInfo.getEncoding()),
                             typeInfo.getCharset(), jdbcType, getterArgs.streamType);
 
                 case CLOB:
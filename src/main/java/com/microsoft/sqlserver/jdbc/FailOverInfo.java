@@ -6,6 +6,8 @@
 package com.microsoft.sqlserver.jdbc;
 
 import java.text.MessageFormat;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 
@@ -21,6 +23,9 @@ final class FailoverInfo {
     private String failoverInstance;
     private boolean setUpInfocalled;
 
+    // Guards the members while the failover partner port is looked up, which may query the SQL Browser service.
+    private final Lock lock = new ReentrantLock();
+
     // This member is exposed outside for reading, we need to know in advance if the
     // failover partner is the currently active server before making a DNS resolution and a connect attempt.
     private boolean useFailoverPartner;
@@ -81,29 +86,38 @@ final class FailoverInfo {
         setUpInfocalled = true;
     }
 
-    synchronized ServerPortPlaceHolder failoverPermissionCheck(SQLServerConnection con,
-            boolean link) throws SQLServerException {
-        setupInfo(con);
-        return new ServerPortPlaceHolder(failoverPartner, portNumber, failoverInstance, link);
+    ServerPortPlaceHolder failoverPermissionCheck(SQLServerConnection con, boolean link) throws SQLServerException {
+        lock.lock();
+        try {
+            setupInfo(con);
+            return new ServerPortPlaceHolder(failoverPartner, portNumber, failoverInstance, link);
+        } finally {
+            lock.unlock();
+        }
     }
 
     // Add/replace the failover server,
-    synchronized void failoverAdd(SQLServerConnection connection, boolean actualUseFailoverPartner,
+    void failoverAdd(SQLServerConnection connection, boolean actualUseFailoverPartner,
             String actualFailoverPartner) throws SQLServerException {
-        if (useFailoverPartner != actualUseFailoverPartner) {
-            if (connection.getConnectionLogger().isLoggable(Level.FINE))
-                connection.getConnectionLogger()
-                        .fine(connection.toString() + " Failover detected. failover partner=" + actualFailoverPartner);
-            useFailoverPartner = actualUseFailoverPartner;
-        }
-        // The checking for actualUseFailoverPartner may look weird but this is required
-        // We only change the failoverpartner info when we connect to the primary
-        // if we connect to the secondary and it sends a failover partner
-        // we wont store that information.
-        if (!actualUseFailoverPartner && !failoverPartner.equals(actualFailoverPartner)) {
-            failoverPartner = actualFailoverPartner;
-            // new FO partner need to setup again.
-            setUpInfocalled = false;
+        lock.lock();
+        try {
+            if (useFailoverPartner != actualUseFailoverPartner) {
+                if (connection.getConnectionLogger().isLoggable(Level.FINE))
+                    connection.getConnectionLogger().fine(
+                            connection.toString() + " Failover detected. failover partner=" + actualFailoverPartner);
+                useFailoverPartner = actualUseFailoverPartner;
+            }
+            // The checking for actualUseFailoverPartner may look weird but this is required
+            // We only change the failoverpartner info when we connect to the primary
+            // if we connect to the secondary and it sends a failover partner
+            // we wont store that information.
+            if (!actualUseFailoverPartner && !failoverPartner.equals(actualFailoverPartner)) {
+                failoverPartner = actualFailoverPartner;
+                // new FO partner need to setup again.
+                setUpInfocalled = false;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -6,12 +6,15 @@
 package com.microsoft.sqlserver.jdbc;
 
 import java.util.HashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 
 final class FailoverMapSingleton {
     private static int INITIALHASHMAPSIZE = 5;
     private static HashMap<String, FailoverInfo> failoverMap = new HashMap<>(INITIALHASHMAPSIZE);
+    private static final Lock lock = new ReentrantLock();
 
     private FailoverMapSingleton() {
         /* hide the constructor to stop the instantiation of this class. */}
@@ -30,7 +33,8 @@ final class FailoverMapSingleton {
 
     static FailoverInfo getFailoverInfo(SQLServerConnection connection, String primaryServer, String instance,
             String database) {
-        synchronized (FailoverMapSingleton.class) {
+        lock.lock();
+        try {
             if (true == failoverMap.isEmpty()) {
                 return null;
             } else {
@@ -43,6 +47,8 @@ final class FailoverMapSingleton {
                     fo.log(connection);
                 return fo;
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -54,7 +60,8 @@ final class FailoverMapSingleton {
             String failoverPartner) throws SQLServerException {
         FailoverInfo fo;
 
-        synchronized (FailoverMapSingleton.class) {
+        lock.lock();
+        try {
             // one more check to make sure someone already did not do this
             if (null == (fo = getFailoverInfo(connection, primaryServer, instance, database))) {
                 if (connection.getConnectionLogger().isLoggable(Level.FINE))
@@ -64,6 +71,8 @@ final class FailoverMapSingleton {
             } else
                 // if the class exists make sure the latest info is updated
                 fo.failoverAdd(connection, actualuseFailover, failoverPartner);
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -0,0 +1,245 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Cache of federated authentication access tokens shared by all connections of the process.
+ *
+ * Tokens are keyed by authentication method, STS URL, SPN and user, and for ActiveDirectoryPassword by a digest of
+ * the password, so that a login never gets a token fetched with other credentials. A cached token is handed out until
+ * it is about to expire. Logins that find no usable token while another login is fetching one wait on that fetch,
+ * for no longer than their login timeout, rather than start their own. A token that was used since it was fetched
+ * is refreshed on the shared timer shortly before it expires; a token that was not is dropped along with the
+ * credentials needed to refresh it.
+ */
+final class FedAuthTokenCache {
+    private static final Logger logger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.FedAuthTokenCache");
+
+    // Tokens are refreshed this long before they expire.
+    static final long REFRESH_MARGIN_MILLIS = 5 * 60 * 1000L;
+
+    // Tokens are not handed out to logins once they expire within this time.
+    static final long MIN_VALIDITY_MILLIS = 60 * 1000L;
+
+    /**
+     * Fetches a token from the STS.
+     */
+    interface TokenSource {
+        SqlFedAuthToken fetch() throws SQLServerException;
+    }
+
+    private static final class Entry {
+        final String key;
+
+        // The source of the last login, used to refresh the token.
+        volatile TokenSource source;
+        volatile SqlFedAuthToken token;
+
+        // Set when a login uses the token, cleared when the token is refreshed in the background.
+        volatile boolean isUsed;
+
+        // Guarded by the entry.
+        CompletableFuture<SqlFedAuthToken> pendingFetch;
+        ScheduledFuture<?> refreshTimer;
+
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final SQLServerFedAuthTokenStatistics.Counters counters =
+            new SQLServerFedAuthTokenStatistics.Counters();
+
+    private FedAuthTokenCache() {
+        /* hide the constructor to stop the instantiation of this class. */}
+
+    /**
+     * Returns the cache key of the given credentials, or null if they cannot be cached.
+     */
+    static String getKey(String authentication, String stsurl, String spn, String user, String password) {
+        StringBuilder key = new StringBuilder(authentication).append('\n').append(stsurl).append('\n').append(spn)
+                .append('\n').append(user);
+
+        if (null != password) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(String.valueOf(user).getBytes(UTF_8));
+                digest.update((byte) 0);
+                digest.update(password.getBytes(UTF_8));
+                key.append('\n').append(Base64.getEncoder().encodeToString(digest.digest()));
+            } catch (NoSuchAlgorithmException e) {
+                if (logger.isLoggable(Level.FINE))
+                    logger.fine("Not caching federated authentication tokens: " + e.getMessage());
+                return null;
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a token for the given key, from the cache if it holds one that is still valid, or else from the given
+     * source. Concurrent calls for the same key share a single fetch; a call that waits on the fetch of another fails
+     * once timeoutMillis have passed.
+     */
+    static SqlFedAuthToken getToken(String key, TokenSource source, long timeoutMillis) throws SQLServerException {
+        if (null == key)
+            return source.fetch();
+
+        Entry entry = entries.computeIfAbsent(key, Entry::new);
+        entry.source = source;
+
+        CompletableFuture<SqlFedAuthToken> fetch;
+        boolean isFetching = false;
+        synchronized (entry) {
+            SqlFedAuthToken token = entry.token;
+            if (isUsable(token)) {
+                entry.isUsed = true;
+                counters.increment(SQLServerFedAuthTokenStatistics.Counters.CACHE_HITS);
+                return token;
+            }
+
+            fetch = entry.pendingFetch;
+            if (null == fetch) {
+                fetch = entry.pendingFetch = new CompletableFuture<>();
+                isFetching = true;
+            }
+        }
+
+        if (isFetching)
+            return fetch(entry, source, fetch, true);
+
+        counters.increment(SQLServerFedAuthTokenStatistics.Counters.SHARED_FETCHES);
+        try {
+            SqlFedAuthToken token = fetch.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            entry.isUsed = true;
+            return token;
+        } catch (InterruptedException e) {
+            // re-interrupt the current thread, in order to restore the thread's interrupt status.
+            Thread.currentThread().interrupt();
+            throw new SQLServerException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            // Rethrow the error of the login that fetched the token.
+            if (e.getCause() instanceof SQLServerException)
+                throw (SQLServerException) e.getCause();
+            throw new SQLServerException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new SQLServerException(SQLServerException.getErrString("R_fedAuthTokenTimedOut"), e);
+        }
+    }
+
+    private static boolean isUsable(SqlFedAuthToken token) {
+        return null != token && token.expiresOn.getTime() - System.currentTimeMillis() > MIN_VALIDITY_MILLIS;
+    }
+
+    /**
+     * Fetches a token from the source and completes the pending fetch of the entry with it.
+     */
+    private static SqlFedAuthToken fetch(Entry entry, TokenSource source, CompletableFuture<SqlFedAuthToken> fetch,
+            boolean isUsed) throws SQLServerException {
+        long startNanos = System.nanoTime();
+        SqlFedAuthToken token;
+        try {
+            token = source.fetch();
+        } catch (SQLServerException | RuntimeException e) {
+            counters.addFetch(System.nanoTime() - startNanos, false);
+            synchronized (entry) {
+                entry.pendingFetch = null;
+            }
+            fetch.completeExceptionally(e);
+            throw e;
+        }
+
+        counters.addFetch(System.nanoTime() - startNanos, true);
+        synchronized (entry) {
+            entry.token = token;
+            entry.isUsed = isUsed;
+            entry.pendingFetch = null;
+            scheduleRefresh(entry, token);
+        }
+        fetch.complete(token);
+        return token;
+    }
+
+    private static void scheduleRefresh(Entry entry, SqlFedAuthToken token) {
+        assert Thread.holdsLock(entry);
+
+        if (null != entry.refreshTimer)
+            entry.refreshTimer.cancel(false);
+
+        long delayMillis = token.expiresOn.getTime() - System.currentTimeMillis() - REFRESH_MARGIN_MILLIS;
+        if (delayMillis <= 0) {
+            // The token is too short-lived to be refreshed ahead of its expiry; it is fetched again on demand.
+            entry.refreshTimer = null;
+            return;
+        }
+
+        // The timer thread must not block, so the refresh runs on the background executor.
+        entry.refreshTimer = SharedTimer.schedule(() -> SharedTimer.execute(() -> refresh(entry)), delayMillis);
+    }
+
+    private static void refresh(Entry entry) {
+        CompletableFuture<SqlFedAuthToken> fetch;
+        synchronized (entry) {
+            entry.refreshTimer = null;
+            if (!entry.isUsed) {
+                entries.remove(entry.key, entry);
+                if (logger.isLoggable(Level.FINER))
+                    logger.finer("Dropped unused federated authentication token expiring at " + entry.token.expiresOn);
+                return;
+            }
+
+            // A login is fetching a token already.
+            if (null != entry.pendingFetch)
+                return;
+            fetch = entry.pendingFetch = new CompletableFuture<>();
+        }
+
+        counters.increment(SQLServerFedAuthTokenStatistics.Counters.BACKGROUND_REFRESHES);
+        try {
+            SqlFedAuthToken token = fetch(entry, entry.source, fetch, false);
+            if (logger.isLoggable(Level.FINER))
+                logger.finer("Refreshed federated authentication token, now expiring at " + token.expiresOn);
+        } catch (SQLServerException | RuntimeException e) {
+            // The current token stays cached until it expires; the next login after that fetches a new one.
+            if (logger.isLoggable(Level.FINE))
+                logger.fine("Refreshing federated authentication token failed: " + e.getMessage());
+        }
+    }
+
+    static SQLServerFedAuthTokenStatistics getStatistics() {
+        return counters.snapshot();
+    }
+
+    /**
+     * Drops all cached tokens.
+     */
+    static void clear() {
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (null != entry.refreshTimer)
+                    entry.refreshTimer.cancel(false);
+                entry.refreshTimer = null;
+            }
+        }
+        entries.clear();
+    }
+}
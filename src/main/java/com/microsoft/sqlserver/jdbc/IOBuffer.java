@@ -23,13 +23,20 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.KeyStore;
 import java.security.Provider;
 import java.security.Security;
@@ -49,22 +56,23 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SimpleTimeZone;
 import java.util.TimeZone;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
@@ -381,11 +389,11 @@ final class TDS {
     }
 
     // Prelogin packet length, including the tds header,
-    // version, encrpytion, and traceid data sessions.
+    // version, encrpytion, traceid, and MARS data sessions.
     // For detailed info, please check the definition of
     // preloginRequest in Prelogin function.
-    static final byte B_PRELOGIN_MESSAGE_LENGTH = 67;
-    static final byte B_PRELOGIN_MESSAGE_LENGTH_WITH_FEDAUTH = 73;
+    static final byte B_PRELOGIN_MESSAGE_LENGTH = 73;
+    static final byte B_PRELOGIN_MESSAGE_LENGTH_WITH_FEDAUTH = 79;
 
     // Scroll options and concurrency options lifted out
     // of the the Yukon cursors spec for sp_cursoropen.
@@ -571,6 +579,33 @@ final class TDSChannel {
         return new TDSReader(this, con, command);
     }
 
+    // Multiplexer of the MARS sessions of this channel, or null if MARS is not in use
+    private SMPChannel smpChannel;
+
+    final boolean isMultiplexed() {
+        return null != smpChannel;
+    }
+
+    /**
+     * Starts multiplexing MARS sessions over this channel. Called after prelogin negotiated MARS and before login.
+     */
+    final void enableMultiplexing() {
+        assert null == smpChannel;
+
+        if (logger.isLoggable(Level.FINER))
+            logger.finer(toString() + " Enabling MARS session multiplexing");
+
+        smpChannel = new SMPChannel(this, con);
+    }
+
+    /**
+     * Returns the MARS session that a new command runs on.
+     */
+    final SMPChannel.Session acquireSession(TDSCommand command) throws SQLServerException {
+        assert null != smpChannel;
+        return smpChannel.acquireSession(command);
+    }
+
     // Socket for raw TCP/IP communications with SQL Server
     private Socket tcpSocket;
 
@@ -599,6 +634,31 @@ final class TDSChannel {
     private InputStream inputStream;
     private OutputStream outputStream;
 
+    // Channel for direct NIO communications with SQL Server, used in place of the streams above when the
+    // useSocketChannel connection property is set. The channel is non-blocking while in use; reads and writes
+    // wait for readiness on their own selectors so that a cancel request can be written while another thread
+    // waits for response data.
+    private SocketChannel socketChannel;
+    private Selector channelReadSelector;
+    private Selector channelWriteSelector;
+    private boolean isUsingSocketChannel = false;
+
+    // Size of the direct buffers used for SocketChannel I/O. Response data is read ahead into the read buffer so that
+    // a packet header and its payload (and often subsequent packets) are drained from the socket by a single read.
+    private static final int SOCKET_CHANNEL_BUFFER_SIZE = 2 * TDS.MAX_PACKET_SIZE;
+    private ByteBuffer channelReadBuffer;
+    private ByteBuffer channelWriteBuffer;
+    private final Lock channelWriteLock = new ReentrantLock();
+
+    // Engine encrypting the SocketChannel I/O of an encrypted connection, in place of the SSL socket. Records are
+    // decrypted from the read-ahead buffer into sslReadBuffer, or straight into the caller's array when it can hold
+    // any record, and encrypted from the caller's array into the write buffer.
+    private SSLEngine sslEngine;
+    private ByteBuffer sslReadBuffer;
+
+    // Continuation of an asynchronous execution or a row publisher waiting on the shared selector for response data
+    private volatile Runnable awaitingContinuation;
+
     /** TDS packet payload logger */
     private static Logger packetLogger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.TDS.DATA");
     private final boolean isLoggingPackets = packetLogger.isLoggable(Level.FINEST);
@@ -624,7 +684,10 @@ final class TDSChannel {
     }
 
     void resetPooledConnection() {
-        tdsWriter.resetPooledConnection();
+        if (null != smpChannel)
+            smpChannel.resetPooledConnection();
+        else
+            tdsWriter.resetPooledConnection();
     }
 
     TDSChannel(SQLServerConnection con) {
@@ -664,11 +727,249 @@ final class TDSChannel {
 
             inputStream = tcpInputStream = tcpSocket.getInputStream();
             outputStream = tcpOutputStream = tcpSocket.getOutputStream();
+
+            if (con.useSocketChannel()) {
+                socketChannel = tcpSocket.getChannel();
+                if (null != socketChannel) {
+                    channelReadSelector = Selector.open();
+                    channelWriteSelector = Selector.open();
+                    channelReadBuffer = ByteBuffer.allocateDirect(SOCKET_CHANNEL_BUFFER_SIZE);
+                    ((Buffer) channelReadBuffer).limit(0);
+                    channelWriteBuffer = ByteBuffer.allocateDirect(SOCKET_CHANNEL_BUFFER_SIZE);
+                    enableSocketChannel();
+                } else if (logger.isLoggable(Level.FINER)) {
+                    logger.finer(this.toString() + ": Socket has no channel; using socket streams");
+                }
+            }
         } catch (IOException ex) {
             SQLServerException.ConvertConnectExceptionToSQLServerException(host, port, con, ex);
         }
     }
 
+    /**
+     * Switches I/O from the TCP socket streams to the non-blocking SocketChannel.
+     */
+    private void enableSocketChannel() throws IOException {
+        assert null != socketChannel && !isUsingSocketChannel;
+
+        if (logger.isLoggable(Level.FINER))
+            logger.finer(toString() + " Switching to SocketChannel I/O");
+
+        socketChannel.configureBlocking(false);
+        socketChannel.register(channelReadSelector, SelectionKey.OP_READ);
+        socketChannel.register(channelWriteSelector, SelectionKey.OP_WRITE);
+        isUsingSocketChannel = true;
+    }
+
+    /**
+     * Reads from the SocketChannel, refilling the read-ahead buffer when it is empty.
+     */
+    private int readFromSocketChannel(byte[] data, int offset, int length) throws IOException {
+        if (null != sslEngine)
+            return readFromSSLEngine(data, offset, length);
+
+        if (!channelReadBuffer.hasRemaining() && fillChannelReadBuffer() < 0)
+            return -1;
+
+        int bytesToCopy = Math.min(length, channelReadBuffer.remaining());
+        channelReadBuffer.get(data, offset, bytesToCopy);
+        return bytesToCopy;
+    }
+
+    /**
+     * Reads from the SocketChannel into the read-ahead buffer, after the bytes left in it.
+     *
+     * @return the number of bytes read, or -1 at the end of the stream
+     */
+    private int fillChannelReadBuffer() throws IOException {
+        channelReadBuffer.compact();
+        try {
+            int bytesRead;
+            while (0 == (bytesRead = socketChannel.read(channelReadBuffer)))
+                awaitSocketChannel(channelReadSelector, tcpSocket.getSoTimeout());
+            return bytesRead;
+        } finally {
+            ((Buffer) channelReadBuffer).flip();
+        }
+    }
+
+    /**
+     * Reads decrypted response data, decrypting the next records read ahead from the SocketChannel when none is left.
+     */
+    private int readFromSSLEngine(byte[] data, int offset, int length) throws IOException {
+        while (!sslReadBuffer.hasRemaining()) {
+            // Decrypting straight into the caller's array saves copying the data out of sslReadBuffer.
+            boolean isDirect = length >= sslReadBuffer.capacity();
+            ByteBuffer dst = isDirect ? ByteBuffer.wrap(data, offset, length) : sslReadBuffer;
+            if (!isDirect)
+                ((Buffer) sslReadBuffer).clear();
+
+            SSLEngineResult result = sslEngine.unwrap(channelReadBuffer, dst);
+            if (!isDirect)
+                ((Buffer) sslReadBuffer).flip();
+
+            switch (result.getStatus()) {
+                case OK:
+                    continueSSLEngineHandshake(result.getHandshakeStatus());
+                    if (isDirect && result.bytesProduced() > 0)
+                        return result.bytesProduced();
+                    break;
+
+                case BUFFER_UNDERFLOW:
+                    if (fillChannelReadBuffer() < 0)
+                        return -1;
+                    break;
+
+                case CLOSED:
+                    return -1;
+
+                default:
+                    throw new SSLException(SQLServerException.getErrString("R_sslEngineFailed") + result.getStatus());
+            }
+        }
+
+        int bytesToCopy = Math.min(length, sslReadBuffer.remaining());
+        sslReadBuffer.get(data, offset, bytesToCopy);
+        return bytesToCopy;
+    }
+
+    /**
+     * Answers the handshake messages the server may send after the SSL handshake, such as a key update.
+     */
+    private void continueSSLEngineHandshake(HandshakeStatus status) throws IOException {
+        if (HandshakeStatus.NEED_TASK == status) {
+            for (Runnable task; null != (task = sslEngine.getDelegatedTask());)
+                task.run();
+            status = sslEngine.getHandshakeStatus();
+        }
+
+        if (HandshakeStatus.NEED_WRAP == status)
+            writeToSocketChannel(new byte[0], 0, 0);
+    }
+
+    /**
+     * Writes all of the given bytes to the SocketChannel through the direct write buffer, encrypting them if the
+     * connection is encrypted.
+     */
+    private void writeToSocketChannel(byte[] data, int offset, int length) throws IOException {
+        // Writes come from both the thread executing a command and a thread sending an attention signal.
+        channelWriteLock.lock();
+        try {
+            if (null != sslEngine) {
+                ByteBuffer src = ByteBuffer.wrap(data, offset, length);
+                do {
+                    ((Buffer) channelWriteBuffer).clear();
+                    SSLEngineResult result = sslEngine.wrap(src, channelWriteBuffer);
+                    if (SSLEngineResult.Status.OK != result.getStatus())
+                        throw new SSLException(
+                                SQLServerException.getErrString("R_sslEngineFailed") + result.getStatus());
+
+                    ((Buffer) channelWriteBuffer).flip();
+                    drainChannelWriteBuffer();
+                } while (src.hasRemaining());
+                return;
+            }
+
+            while (length > 0) {
+                int bytesToCopy = Math.min(length, channelWriteBuffer.capacity());
+                ((Buffer) channelWriteBuffer).clear();
+                channelWriteBuffer.put(data, offset, bytesToCopy);
+                ((Buffer) channelWriteBuffer).flip();
+                drainChannelWriteBuffer();
+
+                offset += bytesToCopy;
+                length -= bytesToCopy;
+            }
+        } finally {
+            channelWriteLock.unlock();
+        }
+    }
+
+    private void drainChannelWriteBuffer() throws IOException {
+        while (channelWriteBuffer.hasRemaining()) {
+            if (0 == socketChannel.write(channelWriteBuffer))
+                awaitSocketChannel(channelWriteSelector, 0);
+        }
+    }
+
+    /**
+     * Waits until the SocketChannel is ready for the operation the selector is registered for.
+     *
+     * @param selector
+     *        the read or write selector
+     * @param timeoutMillis
+     *        how long to wait, with the same semantics as SO_TIMEOUT (0 waits indefinitely)
+     */
+    private void awaitSocketChannel(Selector selector, int timeoutMillis) throws IOException {
+        long deadline = (timeoutMillis > 0) ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        long waitMillis = timeoutMillis;
+        boolean interrupted = false;
+
+        try {
+            // Interrupts do not close the channel, as they would for a blocking channel, and do not affect socket
+            // stream reads either. Remember them for the caller, but keep waiting.
+            while (0 == selector.select(waitMillis)) {
+                if (Thread.interrupted())
+                    interrupted = true;
+
+                if (timeoutMillis > 0) {
+                    waitMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (waitMillis <= 0)
+                        throw new SocketTimeoutException(SQLServerException.getErrString("R_readTimedOut"));
+                }
+            }
+            selector.selectedKeys().clear();
+        } catch (ClosedSelectorException e) {
+            // The channel was closed while waiting on it.
+            throw new IOException(SQLServerException.getErrString("R_socketChannelClosed"), e);
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the response ready callback of an asynchronous execution once its response can be read.
+     *
+     * While the SocketChannel is in use, encrypted or not, the shared selector waits for the response so that no thread
+     * is held while the server executes the request. Otherwise, as when the connection has no SocketChannel or uses
+     * MARS, where the data on the channel may belong to another session, the callback runs right away and reading the
+     * response blocks.
+     */
+    final void awaitResponse(TDSCommand command) {
+        awaitReadable(command::onResponseReady);
+    }
+
+    /**
+     * Runs a continuation once response data can be read, in the same way as {@link #awaitResponse(TDSCommand)}.
+     *
+     * @param onReadable
+     *        run once, on the shared selector thread or the calling thread; it must not block
+     */
+    final void awaitReadable(Runnable onReadable) {
+        if (!isUsingSocketChannel || null != smpChannel || channelReadBuffer.hasRemaining()
+                || (null != sslEngine && sslReadBuffer.hasRemaining())) {
+            onReadable.run();
+            return;
+        }
+
+        // Closing the channel runs the continuation as well.
+        AtomicBoolean ran = new AtomicBoolean();
+        Runnable continuation = () -> {
+            if (ran.compareAndSet(false, true))
+                onReadable.run();
+        };
+        awaitingContinuation = continuation;
+        try {
+            SharedSelector.await(socketChannel, continuation);
+        } catch (IOException e) {
+            if (logger.isLoggable(Level.FINE))
+                logger.fine(toString() + " Ignored error waiting on the shared selector: " + e.getMessage());
+
+            continuation.run();
+        }
+    }
+
     /**
      * Disables SSL on this TDS channel.
      */
@@ -676,6 +977,17 @@ final class TDSChannel {
         if (logger.isLoggable(Level.FINER))
             logger.finer(toString() + " Disabling SSL...");
 
+        // The SSL engine is dropped without closing it, which would send the server an unexpected close_notify.
+        if (null != sslEngine) {
+            assert !sslReadBuffer.hasRemaining() : "Unread SSL data: " + sslReadBuffer.remaining();
+            sslEngine = null;
+            sslReadBuffer = null;
+
+            if (logger.isLoggable(Level.FINER))
+                logger.finer(toString() + " SSL disabled");
+            return;
+        }
+
         /*
          * The mission: To close the SSLSocket and release everything that it is holding onto other than the TCP/IP
          * socket and streams. The challenge: Simply closing the SSLSocket tries to do additional, unnecessary shutdown
@@ -788,6 +1100,14 @@ final class TDSChannel {
             }
         }
 
+        /**
+         * Reads the handshake response bytes that are available, reading the next response packet if none are.
+         */
+        int readAvailable(byte b[], int offset, int maxBytes) throws IOException {
+            ensureSSLPayload();
+            return readInternal(b, offset, Math.min(maxBytes, tdsReader.available()));
+        }
+
         public long skip(long n) throws IOException {
             if (logger.isLoggable(Level.FINEST))
                 logger.finest(logContext + " Skipping " + n + " bytes...");
@@ -1736,6 +2056,17 @@ final class TDSChannel {
 
             sslContext.init(null, tm, null);
 
+            // Encrypt the SocketChannel I/O with an SSL engine rather than go back to the socket streams.
+            if (isUsingSocketChannel) {
+                handshakeState = SSLHandhsakeState.SSL_HANDHSAKE_STARTED;
+                enableSSLEngine(sslContext, host, port);
+                handshakeState = SSLHandhsakeState.SSL_HANDHSAKE_COMPLETE;
+
+                if (logger.isLoggable(Level.FINER))
+                    logger.finer(toString() + " SSL enabled");
+                return;
+            }
+
             // Got the SSL context. Now create an SSL socket over our own proxy socket
             // which we can toggle between TDS-encapsulated and raw communications.
             // Initially, the proxy is set to encapsulate the SSL handshake in TDS packets.
@@ -1831,6 +2162,81 @@ final class TDSChannel {
         }
     }
 
+    /**
+     * Performs the SSL handshake with an SSL engine, encapsulating the handshake in TDS prelogin messages the same way
+     * as the SSL socket does, and then encrypts the SocketChannel I/O with the engine.
+     */
+    private void enableSSLEngine(SSLContext sslContext, String host, int port) throws IOException {
+        if (logger.isLoggable(Level.FINEST))
+            logger.finest(toString() + " Creating SSL engine");
+
+        SSLEngine engine = sslContext.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+
+        SSLHandshakeOutputStream handshakeOutputStream = new SSLHandshakeOutputStream(this);
+        SSLHandshakeInputStream handshakeInputStream = new SSLHandshakeInputStream(this, handshakeOutputStream);
+        ByteBuffer handshakeOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        ByteBuffer handshakeIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        ((Buffer) handshakeIn).limit(0);
+        ByteBuffer appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        ByteBuffer noData = ByteBuffer.allocate(0);
+
+        if (logger.isLoggable(Level.FINER))
+            logger.finer(toString() + " Starting SSL handshake");
+
+        engine.beginHandshake();
+        HandshakeStatus status = engine.getHandshakeStatus();
+        while (HandshakeStatus.FINISHED != status && HandshakeStatus.NOT_HANDSHAKING != status) {
+            SSLEngineResult result;
+            switch (status) {
+                case NEED_TASK:
+                    for (Runnable task; null != (task = engine.getDelegatedTask());)
+                        task.run();
+                    status = engine.getHandshakeStatus();
+                    continue;
+
+                case NEED_WRAP:
+                    ((Buffer) handshakeOut).clear();
+                    result = engine.wrap(noData, handshakeOut);
+                    handshakeOutputStream.write(handshakeOut.array(), 0, handshakeOut.position());
+                    break;
+
+                default:
+                    // NEED_UNWRAP, or NEED_UNWRAP_AGAIN on Java 9 and later, which unwraps what is already read.
+                    result = engine.unwrap(handshakeIn, appIn);
+                    if (SSLEngineResult.Status.BUFFER_UNDERFLOW == result.getStatus()) {
+                        handshakeIn.compact();
+                        int bytesRead = handshakeInputStream.readAvailable(handshakeIn.array(),
+                                handshakeIn.position(), handshakeIn.remaining());
+                        ((Buffer) handshakeIn).position(handshakeIn.position() + bytesRead);
+                        ((Buffer) handshakeIn).flip();
+                    }
+                    break;
+            }
+
+            if (SSLEngineResult.Status.CLOSED == result.getStatus()
+                    || SSLEngineResult.Status.BUFFER_OVERFLOW == result.getStatus())
+                throw new SSLException(SQLServerException.getErrString("R_sslEngineFailed") + result.getStatus());
+            status = result.getHandshakeStatus();
+        }
+
+        // The handshake may end with a message of the client, which is still to be sent.
+        if (handshakeOutputStream.messageStarted) {
+            try {
+                handshakeOutputStream.endMessage();
+            } catch (SQLServerException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        // Records past the handshake are sent without TDS encapsulation; nothing may have been read ahead yet.
+        assert !handshakeIn.hasRemaining() && !channelReadBuffer.hasRemaining();
+
+        sslReadBuffer = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        ((Buffer) sslReadBuffer).limit(0);
+        sslEngine = engine;
+    }
+
     /**
      * Validate FIPS if fips set as true
      * 
@@ -1968,6 +2374,9 @@ final class TDSChannel {
 
     final int read(byte[] data, int offset, int length) throws SQLServerException {
         try {
+            if (isUsingSocketChannel)
+                return readFromSocketChannel(data, offset, length);
+
             return inputStream.read(data, offset, length);
         } catch (IOException e) {
             if (logger.isLoggable(Level.FINE))
@@ -1985,7 +2394,10 @@ final class TDSChannel {
 
     final void write(byte[] data, int offset, int length) throws SQLServerException {
         try {
-            outputStream.write(data, offset, length);
+            if (isUsingSocketChannel)
+                writeToSocketChannel(data, offset, length);
+            else
+                outputStream.write(data, offset, length);
         } catch (IOException e) {
             if (logger.isLoggable(Level.FINER))
                 logger.finer(toString() + " write failed:" + e.getMessage());
@@ -1995,6 +2407,10 @@ final class TDSChannel {
     }
 
     final void flush() throws SQLServerException {
+        // SocketChannel writes are unbuffered
+        if (isUsingSocketChannel)
+            return;
+
         try {
             outputStream.flush();
         } catch (IOException e) {
@@ -2006,6 +2422,14 @@ final class TDSChannel {
     }
 
     final void close() {
+        // Closing the selectors first wakes up any thread waiting on the SocketChannel.
+        closeSelector(channelReadSelector);
+        closeSelector(channelWriteSelector);
+
+        // Likewise for threads waiting for the data of a MARS session that another thread reads.
+        if (null != smpChannel)
+            smpChannel.close();
+
         if (null != sslSocket)
             disableSSL();
 
@@ -2044,6 +2468,23 @@ final class TDSChannel {
                     logger.log(Level.FINE, this.toString() + ": Ignored error closing socket", e);
             }
         }
+
+        // Closing the channel deregisters it from the shared selector without waking up an asynchronous execution
+        // waiting for its response, which then fails reading from the closed channel.
+        Runnable continuation = awaitingContinuation;
+        if (null != continuation)
+            continuation.run();
+    }
+
+    private void closeSelector(Selector selector) {
+        if (null != selector) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                if (logger.isLoggable(Level.FINE))
+                    logger.log(Level.FINE, this.toString() + ": Ignored error closing selector", e);
+            }
+        }
     }
 
     /**
@@ -2171,8 +2612,10 @@ final class TDSChannel {
  * finding a socket from TDSChannel class.
  * 
  * In the case when useParallel is set to true, this is achieved by trying to make parallel connections to multiple IP
- * addresses. This class is responsible for spawning multiple threads and keeping track of the search result and the
- * connected socket or exception to be thrown.
+ * addresses on the SocketConnectReactor shared by all connections. A connection that does not use a SocketChannel then
+ * connects a plain socket to the address that won, as the streams of a socket obtained from a SocketChannel do not
+ * support concurrent reads and closes on Java 8 to 12. This class keeps track of the search result and the connected
+ * socket or exception to be thrown.
  * 
  * In the case where multiSubnetFailover is false, we try our old logic of trying to connect to the first ip address
  * 
@@ -2189,34 +2632,17 @@ final class SocketFinder {
         FAILURE// failed in finding a socket
     }
 
-    // Thread pool - the values in the constructor are chosen based on the
-    // explanation given in design_connection_director_multisubnet.doc
-    private static final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 5,
-            TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
-
     // When parallel connections are to be used, use minimum timeout slice of 1500 milliseconds.
     private static final int minTimeoutForParallelConnections = 1500;
 
     // lock used for synchronization while updating
     // data within a socketFinder object
-    private final Object socketFinderlock = new Object();
-
-    // lock on which the parent thread would wait
-    // after spawning threads.
-    private final Object parentThreadLock = new Object();
+    private final Lock socketFinderlock = new ReentrantLock();
 
     // indicates whether the socketFinder has succeeded or failed
     // in finding a socket or is still trying to find a socket
     private volatile Result result = Result.UNKNOWN;
 
-    // total no of socket connector threads
-    // spawned by a socketFinder object
-    private int noOfSpawnedThreads = 0;
-
-    // no of threads that finished their socket connection
-    // attempts and notified socketFinder about their result
-    private int noOfThreadsThatNotified = 0;
-
     // If a valid connected socket is found, this value would be non-null,
     // else this would be null
     private volatile Socket selectedSocket = null;
@@ -2268,7 +2694,7 @@ final class SocketFinder {
             // case.
             if (useParallel || useTnir) {
                 // Ignore TNIR if host resolves to more than 64 IPs. Make sure we are using original timeout for this.
-                inetAddrs = InetAddress.getAllByName(hostName);
+                inetAddrs = getAllByName(hostName);
 
                 if ((useTnir) && (inetAddrs.length > ipAddressLimit)) {
                     useTnir = false;
@@ -2316,30 +2742,26 @@ final class SocketFinder {
                 return getConnectedSocket(inetAddrs[0], portNumber, timeoutInMilliSeconds);
             }
             timeoutInMilliSeconds = Math.max(timeoutInMilliSeconds, minTimeoutForParallelConnections);
-            if (Util.isIBM()) {
-                if (logger.isLoggable(Level.FINER)) {
-                    logger.finer(this.toString() + "Using Java NIO with timeout:" + timeoutInMilliSeconds);
-                }
-                findSocketUsingJavaNIO(inetAddrs, portNumber, timeoutInMilliSeconds);
-            } else {
-                if (logger.isLoggable(Level.FINER)) {
-                    logger.finer(this.toString() + "Using Threading with timeout:" + timeoutInMilliSeconds);
-                }
-                findSocketUsingThreading(inetAddrs, portNumber, timeoutInMilliSeconds);
+            if (logger.isLoggable(Level.FINER)) {
+                logger.finer(this.toString() + " Using the connect reactor with timeout:" + timeoutInMilliSeconds);
             }
+            findSocketUsingReactor(inetAddrs, portNumber, timeoutInMilliSeconds);
 
             // If the thread continued execution due to timeout, the result may not be known.
             // In that case, update the result to failure. Note that this case is possible
             // for both IPv4 and IPv6.
             // Using double-checked locking for performance reasons.
             if (result.equals(Result.UNKNOWN)) {
-                synchronized (socketFinderlock) {
+                socketFinderlock.lock();
+                try {
                     if (result.equals(Result.UNKNOWN)) {
                         result = Result.FAILURE;
                         if (logger.isLoggable(Level.FINER)) {
                             logger.finer(this.toString() + " The parent thread updated the result to failure");
                         }
                     }
+                } finally {
+                    socketFinderlock.unlock();
                 }
             }
 
@@ -2367,6 +2789,10 @@ final class SocketFinder {
             SQLServerException.ConvertConnectExceptionToSQLServerException(hostName, portNumber, conn, ex);
         } catch (IOException ex) {
             close(selectedSocket);
+
+            // The addresses of the host may have changed.
+            ServerEndpointCache.removeAddresses(hostName);
+
             // The code below has been moved from connectHelper.
             // If we do not move it, the functions open(caller of findSocket)
             // and findSocket will have to
@@ -2387,8 +2813,9 @@ final class SocketFinder {
     }
 
     /**
-     * This function uses java NIO to connect to all the addresses in inetAddrs with in a specified timeout. If it
-     * succeeds in connecting, it closes all the other open sockets and updates the result to success.
+     * Connects to one of the addresses in inetAddrs within the specified timeout on the connect reactor shared by all
+     * connections. Unless the connection uses a SocketChannel, the channel that won only selects the address, and a
+     * plain socket is connected to it in the time left. If it succeeds in connecting, it updates the result to success.
      * 
      * @param inetAddrs
      *        the array of inetAddress to which connection should be made
@@ -2396,147 +2823,50 @@ final class SocketFinder {
      *        the port number at which connection should be made
      * @param timeoutInMilliSeconds
      * @throws IOException
+     * @throws InterruptedException
      */
-    private void findSocketUsingJavaNIO(InetAddress[] inetAddrs, int portNumber,
-            int timeoutInMilliSeconds) throws IOException {
-        // The driver does not allow a time out of zero.
-        // Also, the unit of time the user can specify in the driver is seconds.
-        // So, even if the user specifies 1 second(least value), the least possible
-        // value that can come here as timeoutInMilliSeconds is 500 milliseconds.
+    private void findSocketUsingReactor(InetAddress[] inetAddrs, int portNumber,
+            int timeoutInMilliSeconds) throws IOException, InterruptedException {
         assert timeoutInMilliSeconds != 0 : "The timeout cannot be zero";
         assert inetAddrs.length != 0 : "Number of inetAddresses should not be zero in this function";
 
-        Selector selector = null;
-        LinkedList<SocketChannel> socketChannels = new LinkedList<>();
-        SocketChannel selectedChannel = null;
-
-        try {
-            selector = Selector.open();
-
-            for (InetAddress inetAddr : inetAddrs) {
-                SocketChannel sChannel = SocketChannel.open();
-                socketChannels.add(sChannel);
-
-                // make the channel non-blocking
-                sChannel.configureBlocking(false);
-
-                // register the channel for connect event
-                int ops = SelectionKey.OP_CONNECT;
-                SelectionKey key = sChannel.register(selector, ops);
-
-                sChannel.connect(new InetSocketAddress(inetAddr, portNumber));
-
-                if (logger.isLoggable(Level.FINER))
-                    logger.finer(this.toString() + " initiated connection to address: " + inetAddr + ", portNumber: "
-                            + portNumber);
-            }
-
-            long timerNow = System.currentTimeMillis();
-            long timerExpire = timerNow + timeoutInMilliSeconds;
-
-            // Denotes the no of channels that still need to processed
-            int noOfOutstandingChannels = inetAddrs.length;
-
-            while (true) {
-                long timeRemaining = timerExpire - timerNow;
-                // if the timeout expired or a channel is selected or there are no more channels left to processes
-                if ((timeRemaining <= 0) || (selectedChannel != null) || (noOfOutstandingChannels <= 0))
-                    break;
-
-                // denotes the no of channels that are ready to be processed. i.e. they are either connected
-                // or encountered an exception while trying to connect
-                int readyChannels = selector.select(timeRemaining);
-
-                if (logger.isLoggable(Level.FINER))
-                    logger.finer(this.toString() + " no of channels ready: " + readyChannels);
-
-                // There are no real time guarantees on the time out of the select API used above.
-                // This check is necessary
-                // a) to guard against cases where the select returns faster than expected.
-                // b) for cases where no channels could connect with in the time out
-                if (readyChannels != 0) {
-                    Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                    Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
-
-                    while (keyIterator.hasNext()) {
-
-                        SelectionKey key = keyIterator.next();
-                        SocketChannel ch = (SocketChannel) key.channel();
-
-                        if (logger.isLoggable(Level.FINER))
-                            logger.finer(this.toString() + " processing the channel :" + ch);// this traces the IP by
-                                                                                             // default
-
-                        boolean connected = false;
-                        try {
-                            connected = ch.finishConnect();
-
-                            // ch.finishConnect should either return true or throw an exception
-                            // as we have subscribed for OP_CONNECT.
-                            assert connected == true : "finishConnect on channel:" + ch + " cannot be false";
-
-                            selectedChannel = ch;
+        long timerExpire = System.currentTimeMillis() + timeoutInMilliSeconds;
+        SocketChannel selectedChannel = SocketConnectReactor.connect(this, inetAddrs, portNumber,
+                timeoutInMilliSeconds);
+        if (null == selectedChannel)
+            return;
 
-                            if (logger.isLoggable(Level.FINER))
-                                logger.finer(this.toString() + " selected the channel :" + selectedChannel);
+        if (conn.useSocketChannel()) {
+            selectedSocket = selectedChannel.socket();
+        } else {
+            InetSocketAddress address = (InetSocketAddress) selectedChannel.getRemoteAddress();
+            close(selectedChannel);
 
-                            break;
-                        } catch (IOException ex) {
-                            if (logger.isLoggable(Level.FINER))
-                                logger.finer(this.toString() + " the exception: " + ex.getClass() + " with message: "
-                                        + ex.getMessage() + " occurred while processing the channel: " + ch);
-                            updateSelectedException(ex, this.toString());
-                            // close the channel pro-actively so that we do not
-                            // rely to network resources
-                            ch.close();
-                        }
+            long timeRemaining = timerExpire - System.currentTimeMillis();
+            if (timeRemaining <= 0)
+                throw new IOException(SQLServerException.getErrString("R_connectionTimedOut"));
 
-                        // unregister the key and remove from the selector's selectedKeys
-                        key.cancel();
-                        keyIterator.remove();
-                        noOfOutstandingChannels--;
-                    }
-                }
+            if (logger.isLoggable(Level.FINER))
+                logger.finer(this.toString() + " Connecting a socket to the selected address: " + address);
 
-                timerNow = System.currentTimeMillis();
-            }
-        } catch (IOException ex) {
-            // in case of an exception, close the selected channel.
-            // All other channels will be closed in the finally block,
-            // as they need to be closed irrespective of a success/failure
-            close(selectedChannel);
-            throw ex;
-        } finally {
-            // close the selector
-            // As per java docs, on selector.close(), any uncancelled keys still
-            // associated with this
-            // selector are invalidated, their channels are deregistered, and any other
-            // resources associated with this selector are released.
-            // So, its not necessary to cancel each key again
-            close(selector);
-
-            // Close all channels except the selected one.
-            // As we close channels pro-actively in the try block,
-            // its possible that we close a channel twice.
-            // Closing a channel second time is a no-op.
-            // This code is should be in the finally block to guard against cases where
-            // we pre-maturely exit try block due to an exception in selector or other places.
-            for (SocketChannel s : socketChannels) {
-                if (s != selectedChannel) {
-                    close(s);
-                }
+            Socket socket = new Socket();
+            try {
+                socket.connect(address, (int) timeRemaining);
+            } catch (IOException e) {
+                close(socket);
+                throw e;
             }
+            selectedSocket = socket;
         }
+        result = Result.SUCCESS;
+    }
 
-        // if a channel was selected, make the necessary updates
-        if (selectedChannel != null) {
-            // Note that this must be done after selector is closed. Otherwise,
-            // we would get an illegalBlockingMode exception at run time.
-            selectedChannel.configureBlocking(true);
-            selectedSocket = selectedChannel.socket();
-
-            result = Result.SUCCESS;
-        }
+    /**
+     * Resolves the addresses of a host, taking them from ServerEndpointCache if the connection caches them.
+     */
+    private InetAddress[] getAllByName(String hostName) throws UnknownHostException {
+        int ttl = conn.getEndpointCacheTtl();
+        return (ttl > 0) ? ServerEndpointCache.getAllByName(hostName, ttl) : InetAddress.getAllByName(hostName);
     }
 
     // This method contains the old logic of connecting to
@@ -2545,6 +2875,10 @@ final class SocketFinder {
     // 0 timeout is not allowed. The code has been re-factored so that the logic
     // is common for hostName or InetAddress.
     private Socket getDefaultSocket(String hostName, int portNumber, int timeoutInMilliSeconds) throws IOException {
+        // The first of the cached addresses is the address InetSocketAddress would resolve the host name to.
+        if (conn.getEndpointCacheTtl() > 0)
+            return getConnectedSocket(getAllByName(hostName)[0], portNumber, timeoutInMilliSeconds);
+
         // Open the socket, with or without a timeout, throwing an UnknownHostException
         // if there is a failure to resolve the host name to an InetSocketAddress.
         //
@@ -2565,120 +2899,16 @@ final class SocketFinder {
         assert timeoutInMilliSeconds != 0 : "timeout cannot be zero";
         if (addr.isUnresolved())
             throw new java.net.UnknownHostException();
-        selectedSocket = new Socket();
+        selectedSocket = createSocket();
         selectedSocket.connect(addr, timeoutInMilliSeconds);
         return selectedSocket;
     }
 
-    private void findSocketUsingThreading(InetAddress[] inetAddrs, int portNumber,
-            int timeoutInMilliSeconds) throws IOException, InterruptedException {
-        assert timeoutInMilliSeconds != 0 : "The timeout cannot be zero";
-
-        assert inetAddrs.length != 0 : "Number of inetAddresses should not be zero in this function";
-
-        LinkedList<Socket> sockets = new LinkedList<>();
-        LinkedList<SocketConnector> socketConnectors = new LinkedList<>();
-
-        try {
-
-            // create a socket, inetSocketAddress and a corresponding socketConnector per inetAddress
-            noOfSpawnedThreads = inetAddrs.length;
-            for (InetAddress inetAddress : inetAddrs) {
-                Socket s = new Socket();
-                sockets.add(s);
-
-                InetSocketAddress inetSocketAddress = new InetSocketAddress(inetAddress, portNumber);
-
-                SocketConnector socketConnector = new SocketConnector(s, inetSocketAddress, timeoutInMilliSeconds,
-                        this);
-                socketConnectors.add(socketConnector);
-            }
-
-            // acquire parent lock and spawn all threads
-            synchronized (parentThreadLock) {
-                for (SocketConnector sc : socketConnectors) {
-                    threadPoolExecutor.execute(sc);
-                }
-
-                long timerNow = System.currentTimeMillis();
-                long timerExpire = timerNow + timeoutInMilliSeconds;
-
-                // The below loop is to guard against the spurious wake up problem
-                while (true) {
-                    long timeRemaining = timerExpire - timerNow;
-
-                    if (logger.isLoggable(Level.FINER)) {
-                        logger.finer(this.toString() + " TimeRemaining:" + timeRemaining + "; Result:" + result
-                                + "; Max. open thread count: " + threadPoolExecutor.getLargestPoolSize()
-                                + "; Current open thread count:" + threadPoolExecutor.getActiveCount());
-                    }
-
-                    // if there is no time left or if the result is determined, break.
-                    // Note that a dirty read of result is totally fine here.
-                    // Since this thread holds the parentThreadLock, even if we do a dirty
-                    // read here, the child thread, after updating the result, would not be
-                    // able to call notify on the parentThreadLock
-                    // (and thus finish execution) as it would be waiting on parentThreadLock
-                    // held by this thread(the parent thread).
-                    // So, this thread will wait again and then be notified by the childThread.
-                    // On the other hand, if we try to take socketFinderLock here to avoid
-                    // dirty read, we would introduce a dead lock due to the
-                    // reverse order of locking in updateResult method.
-                    if (timeRemaining <= 0 || (!result.equals(Result.UNKNOWN)))
-                        break;
-
-                    parentThreadLock.wait(timeRemaining);
-
-                    if (logger.isLoggable(Level.FINER)) {
-                        logger.finer(this.toString() + " The parent thread wokeup.");
-                    }
-
-                    timerNow = System.currentTimeMillis();
-                }
-
-            }
-
-        } finally {
-            // Close all sockets except the selected one.
-            // As we close sockets pro-actively in the child threads,
-            // its possible that we close a socket twice.
-            // Closing a socket second time is a no-op.
-            // If a child thread is waiting on the connect call on a socket s,
-            // closing the socket s here ensures that an exception is thrown
-            // in the child thread immediately. This mitigates the problem
-            // of thread explosion by ensuring that unnecessary threads die
-            // quickly without waiting for "min(timeOut, 21)" seconds
-            for (Socket s : sockets) {
-                if (s != selectedSocket) {
-                    close(s);
-                }
-            }
-        }
-
-        if (selectedSocket != null) {
-            result = Result.SUCCESS;
-        }
-    }
-
     /**
-     * search result
+     * Creates an unconnected socket, backed by a SocketChannel if the connection communicates over one.
      */
-    Result getResult() {
-        return result;
-    }
-
-    void close(Selector selector) {
-        if (null != selector) {
-            if (logger.isLoggable(Level.FINER))
-                logger.finer(this.toString() + ": Closing Selector");
-
-            try {
-                selector.close();
-            } catch (IOException e) {
-                if (logger.isLoggable(Level.FINE))
-                    logger.log(Level.FINE, this.toString() + ": Ignored the following error while closing Selector", e);
-            }
-        }
+    private Socket createSocket() throws IOException {
+        return conn.useSocketChannel() ? SocketChannel.open().socket() : new Socket();
     }
 
     void close(Socket socket) {
@@ -2710,105 +2940,6 @@ final class SocketFinder {
         }
     }
 
-    /**
-     * Used by socketConnector threads to notify the socketFinder of their connection attempt result(a connected socket
-     * or exception). It updates the result, socket and exception variables of socketFinder object. This method notifies
-     * the parent thread if a socket is found or if all the spawned threads have notified. It also closes a socket if it
-     * is not selected for use by socketFinder.
-     * 
-     * @param socket
-     *        the SocketConnector's socket
-     * @param exception
-     *        Exception that occurred in socket connector thread
-     * @param threadId
-     *        Id of the calling Thread for diagnosis
-     */
-    void updateResult(Socket socket, IOException exception, String threadId) {
-        if (result.equals(Result.UNKNOWN)) {
-            if (logger.isLoggable(Level.FINER)) {
-                logger.finer("The following child thread is waiting for socketFinderLock:" + threadId);
-            }
-
-            synchronized (socketFinderlock) {
-                if (logger.isLoggable(Level.FINER)) {
-                    logger.finer("The following child thread acquired socketFinderLock:" + threadId);
-                }
-
-                if (result.equals(Result.UNKNOWN)) {
-                    // if the connection was successful and no socket has been
-                    // selected yet
-                    if (exception == null && selectedSocket == null) {
-                        selectedSocket = socket;
-                        result = Result.SUCCESS;
-                        if (logger.isLoggable(Level.FINER)) {
-                            logger.finer("The socket of the following thread has been chosen:" + threadId);
-                        }
-                    }
-
-                    // if an exception occurred
-                    if (exception != null) {
-                        updateSelectedException(exception, threadId);
-                    }
-                }
-
-                noOfThreadsThatNotified++;
-
-                // if all threads notified, but the result is still unknown,
-                // update the result to failure
-                if ((noOfThreadsThatNotified >= noOfSpawnedThreads) && result.equals(Result.UNKNOWN)) {
-                    result = Result.FAILURE;
-                }
-
-                if (!result.equals(Result.UNKNOWN)) {
-                    // 1) Note that at any point of time, there is only one
-                    // thread(parent/child thread) competing for parentThreadLock.
-                    // 2) The only time where a child thread could be waiting on
-                    // parentThreadLock is before the wait call in the parentThread
-                    // 3) After the above happens, the parent thread waits to be
-                    // notified on parentThreadLock. After being notified,
-                    // it would be the ONLY thread competing for the lock.
-                    // for the following reasons
-                    // a) The parentThreadLock is taken while holding the socketFinderLock.
-                    // So, all child threads, except one, block on socketFinderLock
-                    // (not parentThreadLock)
-                    // b) After parentThreadLock is notified by a child thread, the result
-                    // would be known(Refer the double-checked locking done at the
-                    // start of this method). So, all child threads would exit
-                    // as no-ops and would never compete with parent thread
-                    // for acquiring parentThreadLock
-                    // 4) As the parent thread is the only thread that competes for the
-                    // parentThreadLock, it need not wait to acquire the lock once it wakes
-                    // up and gets scheduled.
-                    // This results in better performance as it would close unnecessary
-                    // sockets and thus help child threads die quickly.
-
-                    if (logger.isLoggable(Level.FINER)) {
-                        logger.finer("The following child thread is waiting for parentThreadLock:" + threadId);
-                    }
-
-                    synchronized (parentThreadLock) {
-                        if (logger.isLoggable(Level.FINER)) {
-                            logger.finer("The following child thread acquired parentThreadLock:" + threadId);
-                        }
-
-                        parentThreadLock.notify();
-                    }
-
-                    if (logger.isLoggable(Level.FINER)) {
-                        logger.finer(
-                                "The following child thread released parentThreadLock and notified the parent thread:"
-                                        + threadId);
-                    }
-                }
-            }
-
-            if (logger.isLoggable(Level.FINER)) {
-                logger.finer("The following child thread released socketFinderLock:" + threadId);
-            }
-        }
-
-    }
-
     /**
      * Updates the selectedException if
      * <p>
@@ -2852,102 +2983,6 @@ final class SocketFinder {
 }
 
 
-/**
- * This is used to connect a socket in a separate thread
- */
-final class SocketConnector implements Runnable {
-    // socket on which connection attempt would be made
-    private final Socket socket;
-
-    // the socketFinder associated with this connector
-    private final SocketFinder socketFinder;
-
-    // inetSocketAddress to connect to
-    private final InetSocketAddress inetSocketAddress;
-
-    // timeout in milliseconds
-    private final int timeoutInMilliseconds;
-
-    // Logging variables
-    private static final Logger logger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.SocketConnector");
-    private final String traceID;
-
-    // Id of the thread. used for diagnosis
-    private final String threadID;
-
-    // a counter used to give unique IDs to each connector thread.
-    // this will have the id of the thread that was last created.
-    private static long lastThreadID = 0;
-
-    /**
-     * Constructs a new SocketConnector object with the associated socket and socketFinder
-     */
-    SocketConnector(Socket socket, InetSocketAddress inetSocketAddress, int timeOutInMilliSeconds,
-            SocketFinder socketFinder) {
-        this.socket = socket;
-        this.inetSocketAddress = inetSocketAddress;
-        this.timeoutInMilliseconds = timeOutInMilliSeconds;
-        this.socketFinder = socketFinder;
-        this.threadID = Long.toString(nextThreadID());
-        this.traceID = "SocketConnector:" + this.threadID + "(" + socketFinder.toString() + ")";
-    }
-
-    /**
-     * If search for socket has not finished, this function tries to connect a socket(with a timeout) synchronously. It
-     * further notifies the socketFinder the result of the connection attempt
-     */
-    public void run() {
-        IOException exception = null;
-        // Note that we do not need socketFinder lock here
-        // as we update nothing in socketFinder based on the condition.
-        // So, its perfectly fine to make a dirty read.
-        SocketFinder.Result result = socketFinder.getResult();
-        if (result.equals(SocketFinder.Result.UNKNOWN)) {
-            try {
-                if (logger.isLoggable(Level.FINER)) {
-                    logger.finer(this.toString() + " connecting to InetSocketAddress:" + inetSocketAddress
-                            + " with timeout:" + timeoutInMilliseconds);
-                }
-
-                socket.connect(inetSocketAddress, timeoutInMilliseconds);
-            } catch (IOException ex) {
-                if (logger.isLoggable(Level.FINER)) {
-                    logger.finer(this.toString() + " exception:" + ex.getClass() + " with message:" + ex.getMessage()
-                            + " occurred while connecting to InetSocketAddress:" + inetSocketAddress);
-                }
-                exception = ex;
-            }
-
-            socketFinder.updateResult(socket, exception, this.toString());
-        }
-
-    }
-
-    /**
-     * Used for tracing
-     * 
-     * @return traceID string
-     */
-    public String toString() {
-        return traceID;
-    }
-
-    /**
-     * Generates the next unique thread id.
-     */
-    private static synchronized long nextThreadID() {
-        if (lastThreadID == Long.MAX_VALUE) {
-            if (logger.isLoggable(Level.FINER))
-                logger.finer("Resetting the Id count");
-            lastThreadID = 1;
-        } else {
-            lastThreadID++;
-        }
-        return lastThreadID;
-    }
-}
-
-
 /**
  * TDSWriter implements the client to server TDS data pipe.
  */
@@ -2962,6 +2997,9 @@ final class TDSWriter {
     private final TDSChannel tdsChannel;
     private final SQLServerConnection con;
 
+    // MARS session that packets are written to, or null to write them to the channel directly
+    private final SMPChannel.Session session;
+
     // Flag to indicate whether data written via writeXXX() calls
     // is loggable. Data is normally loggable. But sensitive
     // data, such as user credentials, should never be logged for
@@ -3028,12 +3066,51 @@ final class TDSWriter {
 
     private CryptoMetadata cryptoMeta = null;
 
+    // Set when this writer is a row encoder, which collects what is written in memory instead of sending packets.
+    private ByteArrayOutputStream encodedBytes = null;
+
     TDSWriter(TDSChannel tdsChannel, SQLServerConnection con) {
+        this(tdsChannel, con, null);
+    }
+
+    TDSWriter(TDSChannel tdsChannel, SQLServerConnection con, SMPChannel.Session session) {
         this.tdsChannel = tdsChannel;
         this.con = con;
+        this.session = session;
         traceID = "TDSWriter@" + Integer.toHexString(hashCode()) + " (" + con.toString() + ")";
     }
 
+    /**
+     * Returns a writer that encodes values in memory rather than into the current message, so that they can be encoded
+     * on another thread. The encoded bytes are sent by passing the result of {@link #takeEncodedBytes()} to this
+     * writer's writeBytes.
+     */
+    TDSWriter newRowEncoder() {
+        TDSWriter encoder = new TDSWriter(tdsChannel, con, session);
+        encoder.encodedBytes = new ByteArrayOutputStream(currentPacketSize);
+        encoder.currentPacketSize = currentPacketSize;
+        encoder.stagingBuffer = ByteBuffer.allocate(currentPacketSize).order(ByteOrder.LITTLE_ENDIAN);
+        encoder.logBuffer = ByteBuffer.allocate(currentPacketSize).order(ByteOrder.LITTLE_ENDIAN);
+        return encoder;
+    }
+
+    /**
+     * Returns the bytes written to this row encoder since the last call, and resets it.
+     */
+    byte[] takeEncodedBytes() {
+        assert null != encodedBytes;
+        drainStagingBuffer();
+        byte[] bytes = encodedBytes.toByteArray();
+        encodedBytes.reset();
+        return bytes;
+    }
+
+    private void drainStagingBuffer() {
+        encodedBytes.write(stagingBuffer.array(), 0, ((Buffer) stagingBuffer).position());
+        ((Buffer) stagingBuffer).clear();
+        ((Buffer) logBuffer).clear();
+    }
+
     // TDS message start/end operations
 
     void preparePacket() throws SQLServerException {
@@ -3702,23 +3779,34 @@ final class TDSWriter {
         }
     }
 
+    /**
+     * Writes a string in UTF-16LE. The characters are put straight into the staging buffer through a little-endian
+     * char view of it, a packet at a time. A character that does not fit in the rest of the packet is split across
+     * packets by writeChar.
+     */
     void writeString(String value) throws SQLServerException {
-        int charsCopied = 0;
+        int charsWritten = 0;
         int length = value.length();
-        while (charsCopied < length) {
-            int bytesToCopy = 2 * (length - charsCopied);
+        while (charsWritten < length) {
+            int charsToWrite = stagingBuffer.remaining() / 2;
+            if (0 == charsToWrite) {
+                writeChar(value.charAt(charsWritten++));
+                continue;
+            }
 
-            if (bytesToCopy > valueBytes.length)
-                bytesToCopy = valueBytes.length;
+            if (charsToWrite > length - charsWritten)
+                charsToWrite = length - charsWritten;
 
-            int bytesCopied = 0;
-            while (bytesCopied < bytesToCopy) {
-                char ch = value.charAt(charsCopied++);
-                valueBytes[bytesCopied++] = (byte) ((ch >> 0) & 0xFF);
-                valueBytes[bytesCopied++] = (byte) ((ch >> 8) & 0xFF);
+            int end = charsWritten + charsToWrite;
+            stagingBuffer.asCharBuffer().put(value, charsWritten, end);
+            ((Buffer) stagingBuffer).position(((Buffer) stagingBuffer).position() + 2 * charsToWrite);
+            if (tdsChannel.isLoggingPackets()) {
+                if (dataIsLoggable)
+                    logBuffer.asCharBuffer().put(value, charsWritten, end);
+                ((Buffer) logBuffer).position(((Buffer) logBuffer).position() + 2 * charsToWrite);
             }
 
-            writeBytes(valueBytes, 0, bytesCopied);
+            charsWritten = end;
         }
     }
 
@@ -3978,6 +4066,13 @@ final class TDSWriter {
     }
 
     private void writePacket(int tdsMessageStatus) throws SQLServerException {
+        // A row encoder has no message of its own; a full staging buffer is simply kept.
+        if (null != encodedBytes) {
+            assert TDS.STATUS_NORMAL == tdsMessageStatus;
+            drainStagingBuffer();
+            return;
+        }
+
         final boolean atEOM = (TDS.STATUS_BIT_EOM == (TDS.STATUS_BIT_EOM & tdsMessageStatus));
         final boolean isCancelled = ((TDS.PKT_CANCEL_REQ == tdsMessageType)
                 || ((tdsMessageStatus & TDS.STATUS_BIT_ATTENTION) == TDS.STATUS_BIT_ATTENTION));
@@ -4051,9 +4146,16 @@ final class TDSWriter {
         }
     }
 
+    private void writeToChannel(byte[] data, int offset, int length) throws SQLServerException {
+        if (null == session)
+            tdsChannel.write(data, offset, length);
+        else
+            session.write(data, offset, length);
+    }
+
     void flush(boolean atEOM) throws SQLServerException {
         // First, flush any data left in the socket buffer.
-        tdsChannel.write(socketBuffer.array(), ((Buffer) socketBuffer).position(), socketBuffer.remaining());
+        writeToChannel(socketBuffer.array(), ((Buffer) socketBuffer).position(), socketBuffer.remaining());
         ((Buffer) socketBuffer).position(((Buffer) socketBuffer).limit());
 
         // If there is data in the staging buffer that needs to be written
@@ -4086,7 +4188,7 @@ final class TDSWriter {
                 preparePacket();
 
             // Finally, start sending data from the new socket buffer.
-            tdsChannel.write(socketBuffer.array(), ((Buffer) socketBuffer).position(), socketBuffer.remaining());
+            writeToChannel(socketBuffer.array(), ((Buffer) socketBuffer).position(), socketBuffer.remaining());
             ((Buffer) socketBuffer).position(((Buffer) socketBuffer).limit());
         }
     }
@@ -4579,7 +4681,7 @@ final class TDSWriter {
 
                     writePacket(TDS.STATUS_BIT_EOM);
 
-                    TDSReader tdsReader = tdsChannel.getReader(command);
+                    TDSReader tdsReader = new TDSReader(tdsChannel, con, command, session);
                     int tokenType = tdsReader.peekTokenType();
 
                     if (TDS.TDS_ERR == tokenType) {
@@ -6145,10 +6247,21 @@ final class TDSWriter {
  */
 final class TDSPacket {
     final byte[] header = new byte[TDS.PACKET_HEADER_SIZE];
-    final byte[] payload;
+    byte[] payload;
     int payloadLength;
     volatile TDSPacket next;
 
+    // Set once a TDSReaderMark refers to this packet. Marked packets are never recycled since the mark may outlive the
+    // reader's traversal of the packet.
+    boolean isMarked;
+
+    // Set while the packet is buffered in memory ahead of the packet being read, and counted as such by the connection.
+    boolean isBuffered;
+
+    // Set while the payload of the packet is in a spill file rather than in memory, at the given position.
+    TDSPacketSpillFile spillFile;
+    long spillPosition;
+
     final public String toString() {
         return "TDSPacket(SPID:" + Util.readUnsignedShortBigEndian(header, TDS.PACKET_HEADER_SPID) + " Seq:"
                 + header[TDS.PACKET_HEADER_SEQUENCE_NUM] + ")";
@@ -6166,6 +6279,199 @@ final class TDSPacket {
 };
 
 
+/**
+ * TDSPacketPool recycles response packets for a single connection.
+ *
+ * Without pooling, every packet read from the server allocates a new payload of up to the negotiated packet size. A
+ * TDSReader returns a packet to the pool only once it has streamed past it and nothing else (no mark, no preceding
+ * packet in the chain) can still reach it. Packets whose payload does not match the current packet size, e.g. those
+ * allocated before the packet size was renegotiated at login, are dropped instead of pooled.
+ */
+final class TDSPacketPool {
+    // Maximum number of idle packets retained per connection.
+    static final int MAX_POOLED_PACKETS = 8;
+
+    private final TDSPacket[] packets = new TDSPacket[MAX_POOLED_PACKETS];
+    private int numPooledPackets = 0;
+
+    private final SQLServerPacketPoolStatistics.Counters counters = new SQLServerPacketPoolStatistics.Counters();
+
+    /**
+     * Returns a packet with a payload of the given size, reusing a pooled packet if one is available.
+     */
+    synchronized TDSPacket acquire(int size) {
+        while (numPooledPackets > 0) {
+            TDSPacket packet = packets[--numPooledPackets];
+            packets[numPooledPackets] = null;
+            if (packet.payload.length == size) {
+                counters.increment(SQLServerPacketPoolStatistics.Counters.HITS);
+                return packet;
+            }
+        }
+
+        counters.increment(SQLServerPacketPoolStatistics.Counters.MISSES);
+        return new TDSPacket(size);
+    }
+
+    /**
+     * Returns a packet to the pool. The caller must guarantee that the packet is no longer referenced.
+     */
+    synchronized void release(TDSPacket packet) {
+        assert null == packet.next && !packet.isMarked;
+        if (numPooledPackets < MAX_POOLED_PACKETS && packet.payload.length > 0) {
+            packet.payloadLength = 0;
+            packets[numPooledPackets++] = packet;
+            counters.increment(SQLServerPacketPoolStatistics.Counters.RECYCLED_PACKETS);
+        } else {
+            counters.increment(SQLServerPacketPoolStatistics.Counters.DISCARDED_PACKETS);
+        }
+    }
+
+    synchronized void clear() {
+        Arrays.fill(packets, null);
+        numPooledPackets = 0;
+    }
+
+    SQLServerPacketPoolStatistics getStatistics() {
+        return counters.snapshot();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TDSPacketPool(" + counters.snapshot() + " pooled:" + numPooledPackets + ")";
+    }
+}
+
+
+/**
+ * TDSPacketSpillFile holds the payloads of response packets buffered by a reader after the packets buffered by its
+ * connection exceeded the responseBufferSpillThreshold connection property.
+ *
+ * Payloads are appended to a temporary file that is deleted when closed, and are read back through memory mapped
+ * regions of the file when the reader reaches their packets. The file is closed once all of its payloads have been
+ * read back, or when the connection is closed.
+ */
+final class TDSPacketSpillFile {
+    private static final Logger logger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.TDS.Reader");
+
+    // Size of the regions of the file mapped at once to read payloads back.
+    private static final int MAPPED_REGION_SIZE = 4 * 1024 * 1024;
+
+    private final SQLServerConnection con;
+    private final SQLServerResponseBufferStatistics.Counters bufferCounters;
+    private final FileChannel fileChannel;
+    private final String traceID;
+
+    final public String toString() {
+        return traceID;
+    }
+
+    private long writePosition = 0;
+    private int pendingPayloads = 0;
+    private long pendingBytes = 0;
+    private boolean isClosed = false;
+
+    private MappedByteBuffer mappedRegion;
+    private long mappedRegionPosition;
+
+    TDSPacketSpillFile(SQLServerConnection con) throws IOException {
+        this.con = con;
+        this.bufferCounters = con.getResponseBufferCounters();
+
+        Path path = Files.createTempFile("mssql-jdbc-", ".tds");
+        try {
+            fileChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+
+        traceID = "TDSPacketSpillFile (" + path + ")";
+        if (logger.isLoggable(Level.FINER))
+            logger.finer(con.toString() + " Spilling buffered response packets to " + path);
+
+        bufferCounters.add(SQLServerResponseBufferStatistics.Counters.SPILL_FILES, 1);
+        con.registerSpillFile(this);
+    }
+
+    /**
+     * Writes the payload of a packet to this file.
+     *
+     * @return a packet with the header of the given packet and its payload in this file, or null if this file is
+     *         closed, having had all of its payloads read back
+     */
+    synchronized TDSPacket spill(TDSPacket packet) throws IOException {
+        if (isClosed)
+            return null;
+
+        TDSPacket spilledPacket = new TDSPacket(0);
+        System.arraycopy(packet.header, 0, spilledPacket.header, 0, TDS.PACKET_HEADER_SIZE);
+        spilledPacket.payloadLength = packet.payloadLength;
+        spilledPacket.spillFile = this;
+        spilledPacket.spillPosition = writePosition;
+
+        ByteBuffer payload = ByteBuffer.wrap(packet.payload, 0, packet.payloadLength);
+        while (payload.hasRemaining())
+            writePosition += fileChannel.write(payload, writePosition);
+
+        ++pendingPayloads;
+        pendingBytes += packet.payloadLength;
+        bufferCounters.addSpilled(packet.payloadLength);
+        return spilledPacket;
+    }
+
+    /**
+     * Reads the payload of a spilled packet back into the given buffer, which becomes the payload of the packet.
+     */
+    synchronized void load(TDSPacket packet, byte[] buffer) throws IOException {
+        assert this == packet.spillFile && buffer.length >= packet.payloadLength;
+        if (isClosed)
+            throw new IOException(SQLServerException.getErrString("R_connectionIsClosed"));
+
+        long position = packet.spillPosition;
+        int length = packet.payloadLength;
+        if (null == mappedRegion || position < mappedRegionPosition
+                || position + length > mappedRegionPosition + mappedRegion.capacity()) {
+            mappedRegionPosition = position;
+            mappedRegion = fileChannel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.max(length, Math.min(MAPPED_REGION_SIZE, writePosition - position)));
+        }
+
+        ((Buffer) mappedRegion).position((int) (position - mappedRegionPosition));
+        mappedRegion.get(buffer, 0, length);
+        packet.payload = buffer;
+        packet.spillFile = null;
+
+        pendingBytes -= length;
+        bufferCounters.addSpilled(-length);
+        if (0 == --pendingPayloads)
+            close();
+    }
+
+    /**
+     * Closes and deletes this file.
+     */
+    synchronized void close() {
+        if (isClosed)
+            return;
+
+        isClosed = true;
+        mappedRegion = null;
+        bufferCounters.addSpilled(-pendingBytes);
+        pendingBytes = 0;
+        con.deregisterSpillFile(this);
+
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            if (logger.isLoggable(Level.FINE))
+                logger.fine(toString() + " Ignored error closing spill file: " + e.getMessage());
+        }
+    }
+}
+
+
 /**
  * TDSReaderMark encapsulates a fixed position in the response data stream.
  *
@@ -6174,8 +6480,8 @@ final class TDSPacket {
  * destroyed.
  */
 final class TDSReaderMark {
-    final TDSPacket packet;
-    final int payloadOffset;
+    TDSPacket packet;
+    int payloadOffset;
 
     TDSReaderMark(TDSPacket packet, int payloadOffset) {
         this.packet = packet;
@@ -6192,6 +6498,7 @@ final class TDSReaderMark {
 final class TDSReader {
     private final static Logger logger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.TDS.Reader");
     final private String traceID;
+    private final Lock readPacketLock = new ReentrantLock();
     private TimeoutTimer tcpKeepAliveTimeoutTimer;
 
     final public String toString() {
@@ -6201,6 +6508,9 @@ final class TDSReader {
     private final TDSChannel tdsChannel;
     private final SQLServerConnection con;
 
+    // MARS session that packets are read from, or null to read them from the channel directly
+    private final SMPChannel.Session session;
+
     private final TDSCommand command;
 
     final TDSCommand getCommand() {
@@ -6208,6 +6518,10 @@ final class TDSReader {
         return command;
     }
 
+    final SMPChannel.Session getSession() {
+        return session;
+    }
+
     final SQLServerConnection getConnection() {
         return con;
     }
@@ -6218,12 +6532,26 @@ final class TDSReader {
     private int packetNum = 0;
 
     private boolean isStreaming = true;
+
+    // True when the current packet was reached by unlinking its predecessor, so that no earlier packet in the chain
+    // (and hence no mark on an earlier packet) can reach it anymore.
+    private boolean isCurrentPacketUnlinked = false;
+    private final TDSPacketPool packetPool;
+
+    // Response packets buffered by the connection beyond this many bytes are spilled to a file; 0 never spills.
+    private final int spillThreshold;
+    private final SQLServerResponseBufferStatistics.Counters bufferCounters;
+    private TDSPacketSpillFile spillFile;
+
     private boolean useColumnEncryption = false;
     private boolean serverSupportsColumnEncryption = false;
     private boolean serverSupportsDataClassification = false;
 
     private final byte valueBytes[] = new byte[256];
 
+    // Scratch buffer for strings that span packets
+    private byte[] stringBytes;
+
     protected SensitivityClassification sensitivityClassification;
 
     private static final AtomicInteger lastReaderID = new AtomicInteger(0);
@@ -6233,9 +6561,17 @@ final class TDSReader {
     }
 
     TDSReader(TDSChannel tdsChannel, SQLServerConnection con, TDSCommand command) {
+        this(tdsChannel, con, command, null);
+    }
+
+    TDSReader(TDSChannel tdsChannel, SQLServerConnection con, TDSCommand command, SMPChannel.Session session) {
         this.tdsChannel = tdsChannel;
         this.con = con;
+        this.session = session; // may be null
         this.command = command; // may be null
+        this.packetPool = con.getTDSPacketPool();
+        this.spillThreshold = con.getResponseBufferSpillThreshold();
+        this.bufferCounters = con.getResponseBufferCounters();
         if (null != command) {
             // if cancelQueryTimeout is set, we should wait for the total amount of queryTimeout + cancelQueryTimeout to
             // terminate the connection.
@@ -6244,7 +6580,7 @@ final class TDSReader {
                                                              ? (new TimeoutTimer(
                                                                      command.getCancelQueryTimeoutSeconds()
                                                                              + command.getQueryTimeoutSeconds(),
-                                                                     null, con))
+                                                                     TimeUnit.SECONDS, null, con))
                                                              : null;
         }
         // if the logging level is not detailed than fine or more we will not have proper reader IDs.
@@ -6323,12 +6659,26 @@ final class TDSReader {
         // response, then unlink the current packet from the next
         // before moving to allow the packet to be reclaimed.
         TDSPacket nextPacket = consumedPacket.next;
+
+        // The packet is no longer buffered ahead of the reader. If it was spilled, read its payload back.
+        if (null != nextPacket.spillFile) {
+            loadSpilledPacket(nextPacket);
+        } else if (nextPacket.isBuffered) {
+            nextPacket.isBuffered = false;
+            bufferCounters.addBuffered(-nextPacket.payloadLength);
+        }
+
         if (isStreaming) {
             if (logger.isLoggable(Level.FINEST))
                 logger.finest(toString() + " Moving to next packet -- unlinking consumed packet");
 
             consumedPacket.next = null;
+
+            // The consumed packet can be recycled right away if nothing but this reader could still reach it.
+            if (isCurrentPacketUnlinked && !consumedPacket.isMarked)
+                packetPool.release(consumedPacket);
         }
+        isCurrentPacketUnlinked = isStreaming;
         currentPacket = nextPacket;
         payloadOffset = 0;
         return true;
@@ -6337,20 +6687,30 @@ final class TDSReader {
     /**
      * Reads the next packet of the TDS channel.
      *
-     * This method is synchronized to guard against simultaneously reading packets from one thread that is processing
-     * the response and another thread that is trying to buffer it with TDSCommand.detach().
+     * Reads are serialized to guard against simultaneously reading packets from one thread that is processing the
+     * response and another thread that is trying to buffer it with TDSCommand.detach(). A lock is used rather than a
+     * monitor so that a virtual thread blocked on the socket does not pin its carrier thread.
      */
-    synchronized final boolean readPacket() throws SQLServerException {
+    final boolean readPacket() throws SQLServerException {
+        readPacketLock.lock();
+        try {
+            return readNextPacket();
+        } finally {
+            readPacketLock.unlock();
+        }
+    }
+
+    private boolean readNextPacket() throws SQLServerException {
         if (null != command && !command.readingResponse())
             return false;
 
         // Number of packets in should always be less than number of packets out.
         // If the server has been notified for an interrupt, it may be less by
-        // more than one packet.
-        assert tdsChannel.numMsgsRcvd < tdsChannel.numMsgsSent : "numMsgsRcvd:" + tdsChannel.numMsgsRcvd
-                + " should be less than numMsgsSent:" + tdsChannel.numMsgsSent;
+        // more than one packet. The counts are not kept per MARS session.
+        assert null != session || tdsChannel.numMsgsRcvd < tdsChannel.numMsgsSent : "numMsgsRcvd:"
+                + tdsChannel.numMsgsRcvd + " should be less than numMsgsSent:" + tdsChannel.numMsgsSent;
 
-        TDSPacket newPacket = new TDSPacket(con.getTDSPacketSize());
+        TDSPacket newPacket = packetPool.acquire(con.getTDSPacketSize());
         if (null != tcpKeepAliveTimeoutTimer) {
             if (logger.isLoggable(Level.FINEST)) {
                 logger.finest(this.toString() + ": starting timer...");
@@ -6359,7 +6719,7 @@ final class TDSReader {
         }
         // First, read the packet header.
         for (int headerBytesRead = 0; headerBytesRead < TDS.PACKET_HEADER_SIZE;) {
-            int bytesRead = tdsChannel.read(newPacket.header, headerBytesRead,
+            int bytesRead = readFromChannel(newPacket.header, headerBytesRead,
                     TDS.PACKET_HEADER_SIZE - headerBytesRead);
             if (bytesRead < 0) {
                 if (logger.isLoggable(Level.FINER))
@@ -6408,7 +6768,7 @@ final class TDSReader {
 
         // Now for the payload...
         for (int payloadBytesRead = 0; payloadBytesRead < newPacket.payloadLength;) {
-            int bytesRead = tdsChannel.read(newPacket.payload, payloadBytesRead,
+            int bytesRead = readFromChannel(newPacket.payload, payloadBytesRead,
                     newPacket.payloadLength - payloadBytesRead);
             if (bytesRead < 0)
                 con.terminate(SQLServerException.DRIVER_ERROR_IO_FAILED,
@@ -6419,9 +6779,6 @@ final class TDSReader {
 
         ++packetNum;
 
-        lastPacket.next = newPacket;
-        lastPacket = newPacket;
-
         // When logging, append the payload to the log buffer and write out the whole thing.
         if (tdsChannel.isLoggingPackets()) {
             System.arraycopy(newPacket.payload, 0, logBuffer, TDS.PACKET_HEADER_SIZE, newPacket.payloadLength);
@@ -6429,6 +6786,14 @@ final class TDSReader {
                     this.toString() + " received Packet:" + packetNum + " (" + newPacket.payloadLength + " bytes)");
         }
 
+        // A packet read while earlier packets are still waiting to be read, as when the response is detached or fully
+        // buffered, is buffered.
+        if (lastPacket != currentPacket)
+            newPacket = bufferPacket(newPacket);
+
+        lastPacket.next = newPacket;
+        lastPacket = newPacket;
+
         // If end of message, then bump the count of messages received and disable
         // interrupts. If an interrupt happened prior to disabling, then expect
         // to read the attention ack packet as well.
@@ -6443,8 +6808,74 @@ final class TDSReader {
         return true;
     }
 
+    /**
+     * Counts a packet as buffered in memory or, once the packets buffered by the connection exceed the spill
+     * threshold, spills its payload to the spill file of this reader.
+     *
+     * @return the packet to link into the chain of packets of this reader
+     */
+    private TDSPacket bufferPacket(TDSPacket packet) {
+        if (spillThreshold > 0 && bufferCounters.get(SQLServerResponseBufferStatistics.Counters.BUFFERED_BYTES)
+                + packet.payloadLength > spillThreshold) {
+            try {
+                TDSPacket spilledPacket = (null != spillFile) ? spillFile.spill(packet) : null;
+                if (null == spilledPacket) {
+                    spillFile = new TDSPacketSpillFile(con);
+                    spilledPacket = spillFile.spill(packet);
+                }
+
+                // The payload is on disk now, so the buffer can be reused for the next packet.
+                packetPool.release(packet);
+                return spilledPacket;
+            } catch (IOException e) {
+                if (logger.isLoggable(Level.WARNING))
+                    logger.warning(toString() + " Buffering response packet in memory after spilling failed: "
+                            + e.getMessage());
+            }
+        }
+
+        packet.isBuffered = true;
+        bufferCounters.addBuffered(packet.payloadLength);
+        return packet;
+    }
+
+    private void loadSpilledPacket(TDSPacket packet) throws SQLServerException {
+        try {
+            packet.spillFile.load(packet, packetPool.acquire(con.getTDSPacketSize()).payload);
+        } catch (IOException e) {
+            if (logger.isLoggable(Level.FINE))
+                logger.fine(toString() + " Reading spilled response packet failed: " + e.getMessage());
+
+            con.terminate(SQLServerException.DRIVER_ERROR_IO_FAILED, e.getMessage(), e);
+        }
+    }
+
+    private int readFromChannel(byte[] data, int offset, int length) throws SQLServerException {
+        return (null == session) ? tdsChannel.read(data, offset, length) : session.read(data, offset, length);
+    }
+
     final TDSReaderMark mark() {
         TDSReaderMark mark = new TDSReaderMark(currentPacket, payloadOffset);
+        currentPacket.isMarked = true;
+        isStreaming = false;
+
+        if (logger.isLoggable(Level.FINEST))
+            logger.finest(this.toString() + ": Buffering from: " + mark.toString());
+
+        return mark;
+    }
+
+    /**
+     * Marks the current position like {@link #mark()}, but moves the given mark instead of allocating a new one. Only
+     * the owner of the mark may call this, as any other holder of the mark would be moved along with it.
+     */
+    final TDSReaderMark mark(TDSReaderMark mark) {
+        if (null == mark)
+            return mark();
+
+        mark.packet = currentPacket;
+        mark.payloadOffset = payloadOffset;
+        currentPacket.isMarked = true;
         isStreaming = false;
 
         if (logger.isLoggable(Level.FINEST))
@@ -6459,6 +6890,7 @@ final class TDSReader {
 
         currentPacket = mark.packet;
         payloadOffset = mark.payloadOffset;
+        isCurrentPacketUnlinked = false;
     }
 
     final void stream() {
@@ -6542,11 +6974,39 @@ final class TDSReader {
     }
 
     final String readUnicodeString(int length) throws SQLServerException {
-        int byteLength = 2 * length;
-        byte bytes[] = new byte[byteLength];
-        readBytes(bytes, 0, byteLength);
-        return Util.readUnicodeString(bytes, 0, byteLength, con);
+        return readString(2 * length, Encoding.UNICODE);
+    }
+
+    /**
+     * Reads a string of the given length in bytes. A string that is entirely in the current packet is decoded straight
+     * from the packet. A string that spans packets is first copied into stringBytes, which is re-used for values up to
+     * the largest non-PLP value.
+     */
+    final String readString(int byteLength, Encoding encoding) throws SQLServerException {
+        if (0 == byteLength)
+            return "";
+
+        // Ensure that we have a packet to read from.
+        if (!ensurePayload())
+            throwInvalidTDS();
+
+        if (payloadOffset + byteLength <= currentPacket.payloadLength) {
+            String value = encoding.decode(currentPacket.payload, payloadOffset, byteLength);
+            payloadOffset += byteLength;
+            return value;
+        }
+
+        byte[] bytes;
+        if (byteLength > DataTypes.SHORT_VARTYPE_MAX_BYTES) {
+            bytes = new byte[byteLength];
+        } else {
+            if (null == stringBytes || stringBytes.length < byteLength)
+                stringBytes = new byte[DataTypes.SHORT_VARTYPE_MAX_BYTES];
+            bytes = stringBytes;
+        }
 
+        readBytes(bytes, 0, byteLength);
+        return encoding.decode(bytes, 0, byteLength);
     }
 
     final char readChar() throws SQLServerException {
@@ -6629,6 +7089,29 @@ final class TDSReader {
                 jdbcType, streamType);
     }
 
+    /**
+     * Reads a DECIMAL or NUMERIC value as a long, with the same result as BigDecimal.longValue(). Whole numbers whose
+     * magnitude fits in 8 bytes are decoded without allocating.
+     */
+    final long readDecimalAsLong(int valueLength, int scale) throws SQLServerException {
+        if (valueLength > valueBytes.length) {
+            if (logger.isLoggable(Level.WARNING)) {
+                logger.warning(toString() + " Invalid value length:" + valueLength);
+            }
+            throwInvalidTDS();
+        }
+
+        readBytes(valueBytes, 0, valueLength);
+        if (0 != scale || valueLength > 9)
+            return Util.readBigDecimal(valueBytes, valueLength, scale).longValue();
+
+        // The first byte is the sign (0 is negative), followed by the magnitude in little-endian order.
+        long magnitude = 0;
+        for (int i = valueLength - 1; i >= 1; i--)
+            magnitude = (magnitude << 8) | (valueBytes[i] & 0xFF);
+        return (0 == valueBytes[0]) ? -magnitude : magnitude;
+    }
+
     final Object readMoney(int valueLength, JDBCType jdbcType, StreamType streamType) throws SQLServerException {
         BigInteger bi;
         switch (valueLength) {
@@ -6971,71 +7454,58 @@ final class TDSReader {
 /**
  * Timer for use with Commands that support a timeout.
  *
- * Once started, the timer runs for the prescribed number of seconds unless stopped. If the timer runs out, it
- * interrupts its associated Command with a reason like "timed out".
+ * Once started, the timer runs for the prescribed amount of time unless stopped. If the timer runs out, it interrupts
+ * its associated Command with a reason like "timed out". A timer can be started again after it has been stopped. All
+ * timers are driven by the SharedTimer scheduler rather than by a thread of their own.
  */
 final class TimeoutTimer implements Runnable {
-    private static final String threadGroupName = "mssql-jdbc-TimeoutTimer";
-    private final int timeoutSeconds;
+    private final long timeoutMillis;
     private final TDSCommand command;
-    private volatile Future<?> task;
     private final SQLServerConnection con;
+    private volatile ScheduledFuture<?> task;
 
-    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
-        private final AtomicReference<ThreadGroup> tgr = new AtomicReference<>();
-        private final AtomicInteger threadNumber = new AtomicInteger(0);
-
-        @Override
-        public Thread newThread(Runnable r) {
-            ThreadGroup tg = tgr.get();
-
-            if (tg == null || tg.isDestroyed()) {
-                tg = new ThreadGroup(threadGroupName);
-                tgr.set(tg);
-            }
-
-            Thread t = new Thread(tg, r, tg.getName() + "-" + threadNumber.incrementAndGet());
-            t.setDaemon(true);
-            return t;
-        }
-    });
-
-    private volatile boolean canceled = false;
+    // Guards against a timer that is stopped concurrently with its expiration both stopping and timing out.
+    private final AtomicBoolean armed = new AtomicBoolean(false);
+    private volatile boolean expired = false;
 
-    TimeoutTimer(int timeoutSeconds, TDSCommand command, SQLServerConnection con) {
-        assert timeoutSeconds > 0;
+    TimeoutTimer(long timeout, TimeUnit unit, TDSCommand command, SQLServerConnection con) {
+        assert timeout > 0;
 
-        this.timeoutSeconds = timeoutSeconds;
+        this.timeoutMillis = unit.toMillis(timeout);
         this.command = command;
         this.con = con;
     }
 
     final void start() {
-        task = executor.submit(this);
+        expired = false;
+        armed.set(true);
+        task = SharedTimer.schedule(this, timeoutMillis);
     }
 
     final void stop() {
-        task.cancel(true);
-        canceled = true;
+        if (armed.compareAndSet(true, false))
+            task.cancel(false);
+    }
+
+    /**
+     * Returns whether the timer ran out before it was stopped.
+     */
+    final boolean expired() {
+        return expired;
     }
 
+    /**
+     * Called on the shared timer thread when the timer runs out.
+     */
     public void run() {
-        int secondsRemaining = timeoutSeconds;
-        try {
-            // Poll every second while time is left on the timer.
-            // Return if/when the timer is canceled.
-            do {
-                if (canceled)
-                    return;
-
-                Thread.sleep(1000);
-            } while (--secondsRemaining > 0);
-        } catch (InterruptedException e) {
-            // re-interrupt the current thread, in order to restore the thread's interrupt status.
-            Thread.currentThread().interrupt();
+        if (!armed.compareAndSet(true, false))
             return;
-        }
 
+        expired = true;
+        SharedTimer.execute(this::onExpired);
+    }
+
+    private void onExpired() {
         // If the timer wasn't canceled before it ran out of
         // time then interrupt the registered command.
         try {
@@ -7111,7 +7581,7 @@ abstract class TDSCommand {
 
     // Lock to ensure atomicity when manipulating more than one of the following
     // shared interrupt state variables below.
-    private final Object interruptLock = new Object();
+    private final Lock interruptLock = new ReentrantLock();
 
     // Flag set when this command starts execution, indicating that it is
     // ready to respond to interrupts; and cleared when its last response packet is
@@ -7125,8 +7595,11 @@ abstract class TDSCommand {
     }
 
     protected void setInterruptsEnabled(boolean interruptsEnabled) {
-        synchronized (interruptLock) {
+        interruptLock.lock();
+        try {
             this.interruptsEnabled = interruptsEnabled;
+        } finally {
+            interruptLock.unlock();
         }
     }
 
@@ -7151,8 +7624,11 @@ abstract class TDSCommand {
     }
 
     protected void setRequestComplete(boolean requestComplete) {
-        synchronized (interruptLock) {
+        interruptLock.lock();
+        try {
             this.requestComplete = requestComplete;
+        } finally {
+            interruptLock.unlock();
         }
     }
 
@@ -7175,8 +7651,11 @@ abstract class TDSCommand {
     }
 
     protected void setProcessedResponse(boolean processedResponse) {
-        synchronized (interruptLock) {
+        interruptLock.lock();
+        try {
             this.processedResponse = processedResponse;
+        } finally {
+            interruptLock.unlock();
         }
     }
 
@@ -7200,6 +7679,33 @@ abstract class TDSCommand {
         return readingResponse;
     }
 
+    // Set for a command executed asynchronously. Such a command finishes its request with deferResponse() instead of
+    // startResponse() and returns without waiting for the server. The callback is run once, when the response is
+    // ready to be read with readResponse(): when the channel has response data, when the response was detached by
+    // another command, or when the connection was closed.
+    private final AtomicReference<Runnable> responseReadyCallback = new AtomicReference<>();
+    private boolean isAsync = false;
+    private volatile boolean responseDeferred = false;
+
+    final void setResponseReadyCallback(Runnable callback) {
+        responseReadyCallback.set(callback);
+        isAsync = true;
+    }
+
+    final boolean isAsync() {
+        return isAsync;
+    }
+
+    final boolean isResponseDeferred() {
+        return responseDeferred;
+    }
+
+    final void onResponseReady() {
+        Runnable callback = responseReadyCallback.getAndSet(null);
+        if (null != callback)
+            callback.run();
+    }
+
     /**
      * Creates this command with an optional timeout.
      *
@@ -7213,7 +7719,9 @@ abstract class TDSCommand {
         this.logContext = logContext;
         this.queryTimeoutSeconds = queryTimeoutSeconds;
         this.cancelQueryTimeoutSeconds = cancelQueryTimeoutSeconds;
-        this.timeoutTimer = (queryTimeoutSeconds > 0) ? (new TimeoutTimer(queryTimeoutSeconds, this, null)) : null;
+        this.timeoutTimer = (queryTimeoutSeconds > 0)
+                ? (new TimeoutTimer(queryTimeoutSeconds, TimeUnit.SECONDS, this, null))
+                : null;
     }
 
     /**
@@ -7289,6 +7797,9 @@ abstract class TDSCommand {
 
         // Postcondition: the entire response has been read
         assert !readingResponse;
+
+        // An asynchronous execution waiting for this response can now read it from the buffered packets.
+        onResponseReady();
     }
 
     final void close() {
@@ -7374,7 +7885,8 @@ abstract class TDSCommand {
     void interrupt(String reason) throws SQLServerException {
         // Multiple, possibly simultaneous, interrupts may occur.
         // Only the first one should be recognized and acted upon.
-        synchronized (interruptLock) {
+        interruptLock.lock();
+        try {
             if (interruptsEnabled && !wasInterrupted()) {
                 if (logger.isLoggable(Level.FINEST))
                     logger.finest(this + ": Raising interrupt for reason:" + reason);
@@ -7385,6 +7897,8 @@ abstract class TDSCommand {
                     attentionPending = tdsWriter.sendAttention();
 
             }
+        } finally {
+            interruptLock.unlock();
         }
     }
 
@@ -7432,7 +7946,8 @@ abstract class TDSCommand {
      * completes after being interrupted (0 or more packets sent with no EOM bit).
      */
     final void onRequestComplete() throws SQLServerException {
-        synchronized (interruptLock) {
+        interruptLock.lock();
+        try {
             assert !requestComplete;
 
             if (logger.isLoggable(Level.FINEST))
@@ -7466,6 +7981,8 @@ abstract class TDSCommand {
                 assert !processedResponse;
                 readingResponse = true;
             }
+        } finally {
+            interruptLock.unlock();
         }
     }
 
@@ -7485,7 +8002,8 @@ abstract class TDSCommand {
 
         // Atomically disable interrupts and check for a previous interrupt requiring
         // an attention ack to be read.
-        synchronized (interruptLock) {
+        interruptLock.lock();
+        try {
             if (interruptsEnabled) {
                 if (logger.isLoggable(Level.FINEST))
                     logger.finest(this + ": disabling interrupts");
@@ -7499,6 +8017,8 @@ abstract class TDSCommand {
 
                 interruptsEnabled = false;
             }
+        } finally {
+            interruptLock.unlock();
         }
 
         // If an attention packet needs to be read then read it. This should
@@ -7559,7 +8079,8 @@ abstract class TDSCommand {
         // (Re)initialize this command's interrupt state for its current execution.
         // To ensure atomically consistent behavior, do not leave the interrupt lock
         // until interrupts have been (re)enabled.
-        synchronized (interruptLock) {
+        interruptLock.lock();
+        try {
             requestComplete = false;
             readingResponse = false;
             processedResponse = false;
@@ -7567,6 +8088,8 @@ abstract class TDSCommand {
             wasInterrupted = false;
             interruptReason = null;
             interruptsEnabled = true;
+        } finally {
+            interruptLock.unlock();
         }
 
         return tdsWriter;
@@ -7584,6 +8107,24 @@ abstract class TDSCommand {
     }
 
     final TDSReader startResponse(boolean isAdaptive) throws SQLServerException {
+        finishRequest();
+        return readResponse(isAdaptive);
+    }
+
+    /**
+     * Finishes the TDS request of an asynchronous execution without reading the response, which is read with
+     * readResponse() once the response ready callback has run.
+     *
+     * @throws SQLServerException
+     *         if there is any kind of error.
+     */
+    final void deferResponse() throws SQLServerException {
+        assert isAsync;
+        finishRequest();
+        responseDeferred = true;
+    }
+
+    private void finishRequest() throws SQLServerException {
         // Finish sending the request message. If this command was interrupted
         // at any point before endMessage() returns, then endMessage() throws an
         // exception with the reason for the interrupt. Request interrupts
@@ -7608,7 +8149,16 @@ abstract class TDSCommand {
 
             timeoutTimer.start();
         }
+    }
 
+    /**
+     * Reads the TDS response from the server after the request has been finished.
+     *
+     * @return the TDS reader used to read the response.
+     * @throws SQLServerException
+     *         if there is any kind of error.
+     */
+    final TDSReader readResponse(boolean isAdaptive) throws SQLServerException {
         if (logger.isLoggable(Level.FINEST))
             logger.finest(this.toString() + ": Reading response...");
 
@@ -329,6 +329,83 @@ public interface ISQLServerConnection extends java.sql.Connection {
      */
     public int getStatementHandleCacheEntryCount();
 
+    /**
+     * Sets the size up to which the prepared statement cache of this connection is grown while statements are evicted
+     * from it at a high rate. The cache is doubled, up to this size, when more than a tenth of the cache lookups in a
+     * window of as many lookups as the cache holds evicted a statement. A value not greater than the statement pooling
+     * cache size keeps the cache at that size.
+     * 
+     * @param value
+     *        The new maximum cache size.
+     */
+    public void setMaxStatementPoolingCacheSize(int value);
+
+    /**
+     * Returns the size up to which the prepared statement cache of this connection is grown while statements are
+     * evicted from it at a high rate.
+     * 
+     * @return Returns the current setting per the description.
+     */
+    public int getMaxStatementPoolingCacheSize();
+
+    /**
+     * Returns the counters of the prepared statement handles of this connection: cache hits, misses and evictions,
+     * handles waiting to be unprepared, unprepare batches, and executions by sp_prepexec, sp_execute and sp_executesql.
+     * 
+     * @return a snapshot of the counters
+     */
+    public SQLServerStatementHandleStatistics getStatementHandleStatistics();
+
+    /**
+     * Returns the counters of the response data this connection buffers ahead of its processing: the bytes buffered in
+     * memory and their peak, and the bytes and files spilled to disk past the responseBufferSpillThreshold connection
+     * property.
+     * 
+     * @return a snapshot of the counters
+     */
+    public SQLServerResponseBufferStatistics getResponseBufferStatistics();
+
+    /**
+     * Returns the counters of the packets this connection reads from the server into buffers recycled from earlier
+     * packets, rather than into newly allocated ones.
+     * 
+     * @return a snapshot of the counters
+     */
+    public SQLServerPacketPoolStatistics getPacketPoolStatistics();
+
+    /**
+     * Sets the number of statements for which this connection caches the parameter encryption metadata returned by
+     * sp_describe_parameter_encryption. A value less than 1 means no cache.
+     * 
+     * @param value
+     *        The new cache size.
+     */
+    public void setParameterEncryptionMetadataCacheSize(int value);
+
+    /**
+     * Returns the number of statements for which this connection caches the parameter encryption metadata returned by
+     * sp_describe_parameter_encryption. A value less than 1 means no cache.
+     * 
+     * @return Returns the current setting per the description.
+     */
+    public int getParameterEncryptionMetadataCacheSize();
+
+    /**
+     * Returns the number of times the parameter encryption metadata of a statement was found in the cache of this
+     * connection, saving a call to sp_describe_parameter_encryption.
+     * 
+     * @return the number of cache hits
+     */
+    public long getParameterEncryptionMetadataCacheHitCount();
+
+    /**
+     * Returns the number of times the parameter encryption metadata of a statement was not found in the cache of this
+     * connection and had to be retrieved by calling sp_describe_parameter_encryption.
+     * 
+     * @return the number of cache misses
+     */
+    public long getParameterEncryptionMetadataCacheMissCount();
+
     /**
      * Sets the value to Disable/enable statement pooling.
      * 
@@ -343,4 +420,14 @@ public interface ISQLServerConnection extends java.sql.Connection {
      * @return true if statement pooling is disabled, false if it is enabled.
      */
     public boolean getDisableStatementPooling();
+
+    /**
+     * Returns a new pipeline, which executes several prepared statements of this connection in a single round trip to
+     * the server.
+     * 
+     * @return a new SQLServerPipeline
+     * @throws SQLServerException
+     *         if the connection is closed
+     */
+    public SQLServerPipeline pipeline() throws SQLServerException;
 }
@@ -363,7 +363,10 @@ public interface ISQLServerDataSource extends javax.sql.CommonDataSource {
     public String getFailoverPartner();
 
     /**
-     * Sets the value of the multiSubnetFailover connection property.
+     * Sets the value of the multiSubnetFailover connection property. When true, the driver tries the addresses of the
+     * server in parallel on a selector thread shared by all connections, starting one attempt at a time and
+     * alternating between IPv6 and IPv4 addresses. Unless useSocketChannel is true, the driver then connects a socket
+     * to the address that answered first, which takes one more round trip to the server.
      * 
      * @param multiSubnetFailover
      *        The new value of the multiSubnetFailover connection property.
@@ -681,6 +684,66 @@ public interface ISQLServerDataSource extends javax.sql.CommonDataSource {
      */
     public int getStatementPoolingCacheSize();
 
+    /**
+     * Sets the size up to which the prepared statement cache of a connection is grown while statements are evicted
+     * from it at a high rate. A value not greater than the statement pooling cache size keeps the cache at that size.
+     * 
+     * @param maxStatementPoolingCacheSize
+     *        Changes the setting per the description.
+     */
+    public void setMaxStatementPoolingCacheSize(int maxStatementPoolingCacheSize);
+
+    /**
+     * Returns the size up to which the prepared statement cache of a connection is grown while statements are evicted
+     * from it at a high rate.
+     * 
+     * @return Returns the current setting per the description.
+     */
+    public int getMaxStatementPoolingCacheSize();
+
+    /**
+     * Sets the number of statements for which this data source caches the parameter metadata, so that the connections
+     * it opens share it rather than each retrieve it from the server. The cache is used by connections with statement
+     * pooling enabled. A value less than 1 means no cache.
+     * 
+     * @param sharedParameterMetadataCacheSize
+     *        Changes the setting per the description.
+     */
+    public void setSharedParameterMetadataCacheSize(int sharedParameterMetadataCacheSize);
+
+    /**
+     * Returns the number of statements for which this data source caches the parameter metadata shared by the
+     * connections it opens. A value less than 1 means no cache.
+     * 
+     * @return Returns the current setting per the description.
+     */
+    public int getSharedParameterMetadataCacheSize();
+
+    /**
+     * Returns the counters of the prepared statement handles of all connections opened by this data source, including
+     * connections that have been closed.
+     * 
+     * @return a snapshot of the counters
+     */
+    public SQLServerStatementHandleStatistics getStatementHandleStatistics();
+
+    /**
+     * Sets the number of statements for which a connection caches the parameter encryption metadata returned by
+     * sp_describe_parameter_encryption. A value less than 1 means no cache.
+     * 
+     * @param parameterEncryptionMetadataCacheSize
+     *        Changes the setting per the description.
+     */
+    public void setParameterEncryptionMetadataCacheSize(int parameterEncryptionMetadataCacheSize);
+
+    /**
+     * Returns the number of statements for which a connection caches the parameter encryption metadata returned by
+     * sp_describe_parameter_encryption. A value less than 1 means no cache.
+     * 
+     * @return Returns the current setting per the description.
+     */
+    public int getParameterEncryptionMetadataCacheSize();
+
     /**
      * Sets the value to disable/enable statement pooling.
      * 
@@ -805,4 +868,94 @@ public interface ISQLServerDataSource extends javax.sql.CommonDataSource {
      *        indicates whether Bulk Copy API should be used for Batch Insert operations.
      */
     public void setUseBulkCopyForBatchInsert(boolean useBulkCopyForBatchInsert);
+
+    /**
+     * Returns whether the driver communicates with the server over a java.nio SocketChannel.
+     * 
+     * @return useSocketChannel property value
+     */
+    public boolean getUseSocketChannel();
+
+    /**
+     * Sets whether the driver should communicate with the server over a java.nio SocketChannel instead of socket
+     * streams. Encrypted connections encrypt the data on the channel with an SSLEngine instead of an SSLSocket. A
+     * connection that uses a SocketChannel keeps the channel that wins the parallel connection attempts of
+     * multiSubnetFailover, rather than connect again to its address.
+     * 
+     * @param useSocketChannel
+     *        indicates whether the SocketChannel transport should be used.
+     */
+    public void setUseSocketChannel(boolean useSocketChannel);
+
+    /**
+     * Returns whether the driver requests Multiple Active Result Sets (MARS) from the server.
+     * 
+     * @return multipleActiveResultSets property value
+     */
+    public boolean getMultipleActiveResultSets();
+
+    /**
+     * Sets whether the driver should request Multiple Active Result Sets (MARS) from the server. With MARS, every
+     * command runs on a session of its own, multiplexed over the connection, so that a command can execute while the
+     * result set of another command is still being read, without reading the rest of that result set into memory.
+     * 
+     * @param multipleActiveResultSets
+     *        indicates whether MARS should be requested.
+     */
+    public void setMultipleActiveResultSets(boolean multipleActiveResultSets);
+
+    /**
+     * Sets the number of bytes of response data a connection buffers in memory ahead of its processing, as when a
+     * command is executed before the results of another command are read, beyond which the connection writes further
+     * response data to a temporary file and reads it back from there. The default is 0, which never writes to a file.
+     * 
+     * @param responseBufferSpillThreshold
+     *        Changes the setting per the description.
+     */
+    public void setResponseBufferSpillThreshold(int responseBufferSpillThreshold);
+
+    /**
+     * Returns the number of bytes of response data a connection buffers in memory before it writes further response
+     * data to a temporary file. 0 means never.
+     * 
+     * @return Returns the current setting per the description.
+     */
+    public int getResponseBufferSpillThreshold();
+
+    /**
+     * Sets whether the access tokens of ActiveDirectoryPassword and ActiveDirectoryIntegrated authentication are taken
+     * from a cache shared by the connections of the process. Cached tokens are refreshed before they expire, and logins
+     * that need a token at the same time wait on a single fetch. The default is true.
+     * 
+     * @param useFedAuthTokenCache
+     *        indicates whether the token cache should be used.
+     */
+    public void setUseFedAuthTokenCache(boolean useFedAuthTokenCache);
+
+    /**
+     * Returns whether the access tokens of ActiveDirectoryPassword and ActiveDirectoryIntegrated authentication are
+     * taken from a cache shared by the connections of the process.
+     * 
+     * @return useFedAuthTokenCache property value
+     */
+    public boolean getUseFedAuthTokenCache();
+
+    /**
+     * Sets the number of seconds for which the driver remembers how connections reached a server: the addresses its
+     * host name resolved to, the port of a named instance returned by SQL Browser, and the server a login was routed
+     * to. New connections to the server then skip those lookups. An entry is dropped when a connection that used it
+     * fails. The default is 0, which does not remember them.
+     * 
+     * @param endpointCacheTtl
+     *        Changes the setting per the description.
+     */
+    public void setEndpointCacheTtl(int endpointCacheTtl);
+
+    /**
+     * Returns the number of seconds for which the driver remembers how connections reached a server. 0 means that it
+     * does not remember them.
+     * 
+     * @return Returns the current setting per the description.
+     */
+    public int getEndpointCacheTtl();
 }
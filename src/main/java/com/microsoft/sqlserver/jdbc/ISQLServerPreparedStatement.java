@@ -9,6 +9,8 @@ import java.math.BigDecimal;
 import java.sql.ParameterMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 
 /**
@@ -763,4 +765,62 @@ public interface ISQLServerPreparedStatement extends java.sql.PreparedStatement,
      */
     public ParameterMetaData getParameterMetaData(boolean forceRefresh) throws SQLServerException;
 
+    /**
+     * Executes the SQL query in this <code>PreparedStatement</code> object asynchronously on a thread pool of the
+     * driver. Equivalent to {@link #executeQueryAsync(Executor)} with that pool.
+     *
+     * @return a future completed with the <code>ResultSet</code> object, or with the exception that executeQuery would
+     *         throw
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync();
+
+    /**
+     * Executes the SQL query in this <code>PreparedStatement</code> object asynchronously, with the current parameter
+     * values. The execution proceeds as described for {@link ISQLServerStatement#executeQueryAsync(String, Executor)}.
+     *
+     * @param executor
+     *        the executor that sends the request and reads the response
+     * @return a future completed with the <code>ResultSet</code> object, or with the exception that executeQuery would
+     *         throw
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync(Executor executor);
+
+    /**
+     * Executes the SQL statement in this <code>PreparedStatement</code> object asynchronously on a thread pool of the
+     * driver. Equivalent to {@link #executeUpdateAsync(Executor)} with that pool.
+     *
+     * @return a future completed with the row count, or with the exception that executeUpdate would throw
+     */
+    public CompletableFuture<Integer> executeUpdateAsync();
+
+    /**
+     * Executes the SQL statement in this <code>PreparedStatement</code> object asynchronously, with the current
+     * parameter values. The execution proceeds as described for
+     * {@link ISQLServerStatement#executeQueryAsync(String, Executor)}.
+     *
+     * @param executor
+     *        the executor that sends the request and reads the response
+     * @return a future completed with the row count, or with the exception that executeUpdate would throw
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(Executor executor);
+
+    /**
+     * Returns a publisher of the rows of the SQL query in this <code>PreparedStatement</code> object, which publishes
+     * them on a thread pool of the driver. Equivalent to {@link #executeQueryPublisher(Executor)} with that pool.
+     *
+     * @return the publisher
+     */
+    public SQLServerRowPublisher executeQueryPublisher();
+
+    /**
+     * Returns a publisher of the rows of the SQL query in this <code>PreparedStatement</code> object, executed with the
+     * parameter values current when the subscriber first requests rows. The publisher proceeds as described for
+     * {@link ISQLServerStatement#executeQueryPublisher(String, Executor)}.
+     *
+     * @param executor
+     *        the executor that executes the query and publishes the rows
+     * @return the publisher
+     */
+    public SQLServerRowPublisher executeQueryPublisher(Executor executor);
+
 }
@@ -1571,4 +1571,20 @@ public interface ISQLServerResultSet extends java.sql.ResultSet {
      * @return SensitivityClassification
      */
     public SensitivityClassification getSensitivityClassification();
+
+    /**
+     * Reads the next rows of this result set into a column batch, up to the capacity of the batch. Integer, floating
+     * point, character and binary values are read into the column vectors of the batch without creating an object per
+     * value. Only forward only result sets that do not use a server cursor can be read into a column batch.
+     * 
+     * After this call the cursor is positioned on the last row read, whose values can no longer be retrieved with the
+     * getter methods.
+     * 
+     * @param batch
+     *        the column batch to read into; its previous contents are replaced
+     * @return the number of rows read, 0 if there are no more rows
+     * @throws SQLServerException
+     *         If any errors occur.
+     */
+    public int readBatch(SQLServerColumnBatch batch) throws SQLServerException;
 }
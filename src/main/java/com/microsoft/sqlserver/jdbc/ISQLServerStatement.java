@@ -5,6 +5,11 @@
 
 package com.microsoft.sqlserver.jdbc;
 
+import java.sql.ResultSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+
 /**
  * Provides an interface to the {@link SQLServerStatement} class.
  */
@@ -56,4 +61,84 @@ public interface ISQLServerStatement extends java.sql.Statement {
      *         if any error occurs
      */
     public void setCancelQueryTimeout(int seconds) throws SQLServerException;
+
+    /**
+     * Executes the given SQL statement asynchronously, which returns a single <code>ResultSet</code> object, on a
+     * thread pool of the driver. Equivalent to {@link #executeQueryAsync(String, Executor)} with that pool.
+     *
+     * @param sql
+     *        an SQL statement to be sent to the database, typically a static SQL SELECT statement
+     * @return a future completed with the <code>ResultSet</code> object, or with the exception that executeQuery would
+     *         throw
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync(String sql);
+
+    /**
+     * Executes the given SQL statement asynchronously, which returns a single <code>ResultSet</code> object.
+     * <p>
+     * The request is sent, and the response read, on a thread of the executor, which can be a small fixed pool shared
+     * by many connections. When the <code>useSocketChannel</code> connection property is set and the connection is not
+     * encrypted after login, no thread is held while the server executes the statement: a selector shared by all
+     * connections waits for the response. Otherwise an executor thread waits for the response. Executions that use a
+     * server cursor, and any round trips needed to retrieve Always Encrypted metadata, also complete on the executor.
+     * <p>
+     * Only one asynchronous execution of a statement can be in progress at a time. Until the future is completed, the
+     * statement must not be used otherwise. Other statements of the connection can be executed meanwhile, which
+     * buffers the response of the asynchronous execution in memory first.
+     *
+     * @param sql
+     *        an SQL statement to be sent to the database, typically a static SQL SELECT statement
+     * @param executor
+     *        the executor that sends the request and reads the response
+     * @return a future completed with the <code>ResultSet</code> object, or with the exception that executeQuery would
+     *         throw
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync(String sql, Executor executor);
+
+    /**
+     * Executes the given SQL statement asynchronously, which may be an INSERT, UPDATE, or DELETE statement or an SQL
+     * statement that returns nothing, on a thread pool of the driver. Equivalent to
+     * {@link #executeUpdateAsync(String, Executor)} with that pool.
+     *
+     * @param sql
+     *        an SQL Data Manipulation Language (DML) statement or an SQL statement that returns nothing
+     * @return a future completed with the row count, or with the exception that executeUpdate would throw
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(String sql);
+
+    /**
+     * Executes the given SQL statement asynchronously, which may be an INSERT, UPDATE, or DELETE statement or an SQL
+     * statement that returns nothing. The execution proceeds as described for
+     * {@link #executeQueryAsync(String, Executor)}.
+     *
+     * @param sql
+     *        an SQL Data Manipulation Language (DML) statement or an SQL statement that returns nothing
+     * @param executor
+     *        the executor that sends the request and reads the response
+     * @return a future completed with the row count, or with the exception that executeUpdate would throw
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(String sql, Executor executor);
+
+    /**
+     * Returns a publisher of the rows of the given query, which publishes them on a thread pool of the driver.
+     * Equivalent to {@link #executeQueryPublisher(String, Executor)} with that pool.
+     *
+     * @param sql
+     *        an SQL statement to be sent to the database, typically a static SQL SELECT statement
+     * @return the publisher
+     */
+    public SQLServerRowPublisher executeQueryPublisher(String sql);
+
+    /**
+     * Returns a publisher of the rows of the given query. The query is executed asynchronously when the subscriber
+     * first requests rows, and rows are read from the server only as the subscriber requests them. See
+     * {@link SQLServerRowPublisher}.
+     *
+     * @param sql
+     *        an SQL statement to be sent to the database, typically a static SQL SELECT statement
+     * @param executor
+     *        the executor that executes the query and publishes the rows
+     * @return the publisher
+     */
+    public SQLServerRowPublisher executeQueryPublisher(String sql, Executor executor);
 }
@@ -0,0 +1,457 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Multiplexes the sessions of a connection with Multiple Active Result Sets (MARS) over its TDS channel using the
+ * Session Multiplexing Protocol (SMP).
+ *
+ * Every SMP packet starts with a 16 byte header naming the session it belongs to, and every session carries its own
+ * stream of TDS messages. A command can therefore run on one session while the response of a command on another
+ * session is still on the wire, instead of detaching (buffering) that response first. SMP sits above SSL: the channel
+ * is multiplexed once prelogin and the SSL handshake are done, and the login request is sent on the first session.
+ *
+ * Each side may only send the DATA packets of a session up to the window announced by the other side, and the window
+ * announced for a session only advances as its packets are read. The server therefore never has more than
+ * RECEIVE_WINDOW unread packets of a session in flight, and a response that nobody reads waits on the server rather
+ * than in memory.
+ *
+ * Packets are read from the channel by one thread at a time. That thread hands the packets of other sessions over to
+ * them and applies the window updates it receives, so that any number of threads can wait for the data of their own
+ * session.
+ */
+final class SMPChannel {
+    private static final Logger logger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.TDS.SMP");
+
+    // SMP packet header:
+    // byte SMID (always 0x53)
+    // byte flags
+    // ushort session ID
+    // uint packet length, header included
+    // uint sequence number of the last DATA packet sent
+    // uint window: the highest sequence number that the other side may send
+    private static final int HEADER_LENGTH = 16;
+    private static final byte SMID = 0x53;
+    private static final byte FLAG_SYN = 0x01;
+    private static final byte FLAG_ACK = 0x02;
+    private static final byte FLAG_FIN = 0x04;
+    private static final byte FLAG_DATA = 0x08;
+
+    // Number of DATA packets the server may send ahead of the packets read from a session. The window is advanced
+    // once half of it has been read, so that the server can keep sending while the rest is read.
+    private static final int RECEIVE_WINDOW = 4;
+
+    // Window that the server grants a new session until it announces one of its own.
+    private static final int INITIAL_SEND_WINDOW = 4;
+
+    // Upper bound on the sessions of a connection. When every session has a response left to read, a new command
+    // detaches the response of the least recently used session, as it would without MARS.
+    static final int MAX_SESSIONS = 64;
+
+    private final TDSChannel tdsChannel;
+    private final SQLServerConnection con;
+    private final String traceID;
+
+    final public String toString() {
+        return traceID;
+    }
+
+    // Sessions indexed by their ID. Sessions are opened by the command scheduler and live as long as the channel.
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+    // Guards the receive queues and windows of the sessions, and the reading flag below.
+    private final Lock lock = new ReentrantLock();
+    private final Condition packetRead = lock.newCondition();
+
+    // Set while a thread reads a packet from the channel. Other threads wait for packetRead instead.
+    private boolean isReading = false;
+    private volatile boolean isClosed = false;
+
+    // Packets are written whole, from the threads executing commands, the threads sending attention signals, and the
+    // threads acknowledging packets they read.
+    private final Lock writeLock = new ReentrantLock();
+    private final byte[] writeBuffer = new byte[HEADER_LENGTH + TDS.MAX_PACKET_SIZE];
+
+    // Counter used to find the least recently used session.
+    private long lastUse = 0;
+
+    // Set when a pooled connection is reset, to reset it with the next message sent on any session.
+    private volatile boolean resetConnectionPending = false;
+
+    SMPChannel(TDSChannel tdsChannel, SQLServerConnection con) {
+        this.tdsChannel = tdsChannel;
+        this.con = con;
+        traceID = "SMPChannel (" + con.toString() + ")";
+    }
+
+    /**
+     * A session multiplexed over the channel. The TDS reader and writer of a command running on the session read and
+     * write through it instead of the channel.
+     */
+    final class Session {
+        private final int id;
+        private final TDSWriter tdsWriter;
+        private final String traceID;
+
+        // Command that last ran on this session, and when, as a value of lastUse.
+        private TDSCommand command;
+        private long lastUsed;
+
+        // DATA packets received and not yet read, guarded by the channel lock.
+        private final ArrayDeque<byte[]> receivedPackets = new ArrayDeque<>(RECEIVE_WINDOW);
+        private int receiveWindow = RECEIVE_WINDOW;
+        private int announcedReceiveWindow = RECEIVE_WINDOW;
+        private boolean isFinished = false;
+
+        // Packet being read, accessed only from the thread reading the response of the session's command.
+        private byte[] payload = new byte[0];
+        private int payloadOffset = 0;
+
+        // Sequence number of the last DATA packet sent and the window granted by the server, guarded by the channel
+        // lock. Sequence numbers wrap around, so they are compared by the sign of their difference.
+        private int sendSequenceNumber = 0;
+        private int sendWindow = INITIAL_SEND_WINDOW;
+
+        // Keeps the DATA and ACK packets of the session in sequence number order.
+        private final Lock sendLock = new ReentrantLock();
+
+        private Session(int id) {
+            this.id = id;
+            this.tdsWriter = new TDSWriter(tdsChannel, con, this);
+            this.traceID = SMPChannel.this.toString() + " session " + id;
+        }
+
+        final public String toString() {
+            return traceID;
+        }
+
+        final TDSWriter getWriter() {
+            return tdsWriter;
+        }
+
+        final TDSReader getReader(TDSCommand command) {
+            return new TDSReader(tdsChannel, con, command, this);
+        }
+
+        /**
+         * Returns whether no response is left to read on this session.
+         */
+        private boolean isIdle() {
+            return null == command || !command.readingResponse();
+        }
+
+        /**
+         * Reads the response data of this session, waiting for the next DATA packet when the current one has been read.
+         *
+         * @return the number of bytes read, or -1 at the end of the session
+         */
+        final int read(byte[] data, int offset, int length) throws SQLServerException {
+            if (payloadOffset == payload.length) {
+                byte[] nextPayload = receive(this);
+                if (null == nextPayload)
+                    return -1;
+
+                payload = nextPayload;
+                payloadOffset = 0;
+            }
+
+            int bytesToCopy = Math.min(length, payload.length - payloadOffset);
+            System.arraycopy(payload, payloadOffset, data, offset, bytesToCopy);
+            payloadOffset += bytesToCopy;
+            return bytesToCopy;
+        }
+
+        /**
+         * Sends data on this session in a DATA packet, waiting for the server to grant a window for it if necessary.
+         */
+        final void write(byte[] data, int offset, int length) throws SQLServerException {
+            if (0 == length)
+                return;
+
+            sendLock.lock();
+            try {
+                int sequenceNumber;
+                int window;
+                lock.lock();
+                try {
+                    while (sendSequenceNumber - sendWindow >= 0) {
+                        if (isClosed)
+                            con.terminate(SQLServerException.DRIVER_ERROR_IO_FAILED,
+                                    SQLServerException.getErrString("R_connectionIsClosed"));
+
+                        readPacket();
+                    }
+
+                    sequenceNumber = ++sendSequenceNumber;
+                    window = announcedReceiveWindow = receiveWindow;
+                } finally {
+                    lock.unlock();
+                }
+
+                writePacket(FLAG_DATA, id, sequenceNumber, window, data, offset, length);
+            } finally {
+                sendLock.unlock();
+            }
+        }
+
+        /**
+         * Announces the current receive window of this session to the server.
+         */
+        private void acknowledge() throws SQLServerException {
+            sendLock.lock();
+            try {
+                int sequenceNumber;
+                int window;
+                lock.lock();
+                try {
+                    // A DATA packet sent in the meantime may have announced the window already.
+                    if (receiveWindow == announcedReceiveWindow)
+                        return;
+
+                    sequenceNumber = sendSequenceNumber;
+                    window = announcedReceiveWindow = receiveWindow;
+                } finally {
+                    lock.unlock();
+                }
+
+                writePacket(FLAG_ACK, id, sequenceNumber, window, null, 0, 0);
+            } finally {
+                sendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns a session for a new command to run on: the first session without a response left to read, a newly
+     * opened session, or, once MAX_SESSIONS are open, the least recently used session after detaching the response of
+     * its command. Called by the command scheduler only.
+     */
+    Session acquireSession(TDSCommand newCommand) throws SQLServerException {
+        Session session = null;
+        for (Session candidate : sessions) {
+            if (candidate.isIdle()) {
+                session = candidate;
+                break;
+            }
+        }
+
+        if (null == session) {
+            if (sessions.size() < MAX_SESSIONS) {
+                session = openSession();
+            } else {
+                session = sessions.get(0);
+                for (Session candidate : sessions) {
+                    if (candidate.lastUsed < session.lastUsed)
+                        session = candidate;
+                }
+
+                if (logger.isLoggable(Level.FINER))
+                    logger.finer(session + ": all sessions busy; detaching " + session.command);
+
+                session.command.detach();
+            }
+        }
+
+        session.command = newCommand;
+        session.lastUsed = ++lastUse;
+
+        if (resetConnectionPending) {
+            session.tdsWriter.resetPooledConnection();
+            resetConnectionPending = false;
+        }
+
+        return session;
+    }
+
+    /**
+     * Opens a new session by sending a SYN packet for it.
+     */
+    Session openSession() throws SQLServerException {
+        Session session = new Session(sessions.size());
+        sessions.add(session);
+
+        if (logger.isLoggable(Level.FINER))
+            logger.finer(session + ": opening session");
+
+        writePacket(FLAG_SYN, session.id, 0, RECEIVE_WINDOW, null, 0, 0);
+        return session;
+    }
+
+    /**
+     * Resets the pooled connection with the next message sent on any session.
+     */
+    void resetPooledConnection() {
+        resetConnectionPending = true;
+    }
+
+    /**
+     * Takes the next DATA packet received for a session, reading packets from the channel until there is one.
+     *
+     * @return the payload of the packet, or null at the end of the session
+     */
+    private byte[] receive(Session session) throws SQLServerException {
+        byte[] receivedPayload;
+        boolean acknowledge;
+        lock.lock();
+        try {
+            while (session.receivedPackets.isEmpty()) {
+                if (session.isFinished || isClosed)
+                    return null;
+
+                readPacket();
+            }
+
+            receivedPayload = session.receivedPackets.poll();
+            ++session.receiveWindow;
+            acknowledge = session.receiveWindow - session.announcedReceiveWindow >= RECEIVE_WINDOW / 2;
+        } finally {
+            lock.unlock();
+        }
+
+        // Write outside of the lock, so that packets for other sessions can be read meanwhile.
+        if (acknowledge)
+            session.acknowledge();
+
+        return receivedPayload;
+    }
+
+    /**
+     * Reads the next packet from the channel and applies it to its session, or, if another thread is reading a packet,
+     * waits until it has done so. Called with the lock held, which is released while reading.
+     */
+    private void readPacket() throws SQLServerException {
+        if (isReading) {
+            packetRead.awaitUninterruptibly();
+            return;
+        }
+
+        byte[] header = new byte[HEADER_LENGTH];
+        byte[] packetPayload = null;
+        isReading = true;
+        lock.unlock();
+        try {
+            if (!readFully(header))
+                return;
+
+            int packetLength = Util.readInt(header, 4);
+            if (SMID != header[0] || packetLength < HEADER_LENGTH
+                    || packetLength > HEADER_LENGTH + TDS.MAX_PACKET_SIZE) {
+                if (logger.isLoggable(Level.WARNING)) {
+                    logger.warning(toString() + " SMP header contained invalid SMID:" + header[0] + " or length:"
+                            + packetLength);
+                }
+                con.throwInvalidTDS();
+            }
+
+            packetPayload = new byte[packetLength - HEADER_LENGTH];
+            if (!readFully(packetPayload))
+                return;
+        } finally {
+            lock.lock();
+            isReading = false;
+            packetRead.signalAll();
+        }
+
+        int flags = header[1];
+        int sessionId = Util.readUnsignedShort(header, 2);
+        int sequenceNumber = Util.readInt(header, 8);
+        int window = Util.readInt(header, 12);
+
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest(toString() + " received flags:" + flags + " session:" + sessionId + " sequence number:"
+                    + sequenceNumber + " window:" + window + " (" + packetPayload.length + " bytes)");
+        }
+
+        Session session = (sessionId < sessions.size()) ? sessions.get(sessionId) : null;
+        if (null == session || 0 != (flags & FLAG_SYN)) {
+            if (logger.isLoggable(Level.WARNING))
+                logger.warning(toString() + " unexpected SMP packet flags:" + flags + " for session:" + sessionId);
+            con.throwInvalidTDS();
+        }
+
+        // Every packet carries the window that the server grants, which only moves forward.
+        if (window - session.sendWindow > 0)
+            session.sendWindow = window;
+
+        if (FLAG_DATA == flags) {
+            if (packetPayload.length > 0)
+                session.receivedPackets.add(packetPayload);
+        } else if (FLAG_FIN == flags) {
+            session.isFinished = true;
+        } else if (FLAG_ACK != flags) {
+            if (logger.isLoggable(Level.WARNING))
+                logger.warning(toString() + " unexpected SMP packet flags:" + flags + " for session:" + sessionId);
+            con.throwInvalidTDS();
+        }
+    }
+
+    /**
+     * Reads the given buffer in full from the channel.
+     *
+     * @return false if the end of the channel was reached first, which closes this channel
+     */
+    private boolean readFully(byte[] buffer) throws SQLServerException {
+        for (int bytesRead = 0; bytesRead < buffer.length;) {
+            int count = tdsChannel.read(buffer, bytesRead, buffer.length - bytesRead);
+            if (count < 0) {
+                if (logger.isLoggable(Level.FINER))
+                    logger.finer(toString() + " end of channel after " + bytesRead + " bytes of SMP packet");
+
+                isClosed = true;
+                return false;
+            }
+            bytesRead += count;
+        }
+        return true;
+    }
+
+    private void writePacket(byte flags, int sessionId, int sequenceNumber, int window, byte[] data, int offset,
+            int length) throws SQLServerException {
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest(toString() + " sending flags:" + flags + " session:" + sessionId + " sequence number:"
+                    + sequenceNumber + " window:" + window + " (" + length + " bytes)");
+        }
+
+        writeLock.lock();
+        try {
+            writeBuffer[0] = SMID;
+            writeBuffer[1] = flags;
+            Util.writeShort((short) sessionId, writeBuffer, 2);
+            Util.writeInt(HEADER_LENGTH + length, writeBuffer, 4);
+            Util.writeInt(sequenceNumber, writeBuffer, 8);
+            Util.writeInt(window, writeBuffer, 12);
+            if (length > 0)
+                System.arraycopy(data, offset, writeBuffer, HEADER_LENGTH, length);
+
+            tdsChannel.write(writeBuffer, 0, HEADER_LENGTH + length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Closes this channel, waking up the threads waiting for the data of a session. Called when the TDS channel closes.
+     */
+    void close() {
+        lock.lock();
+        try {
+            isClosed = true;
+            packetRead.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
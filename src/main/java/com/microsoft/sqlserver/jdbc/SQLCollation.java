@@ -5,9 +5,18 @@
 
 package com.microsoft.sqlserver.jdbc;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
@@ -41,6 +50,10 @@ final class SQLCollation implements java.io.Serializable {
     private static final int UTF8_IN_TDSCOLLATION = 0x4000000;
 
     // Utility methods for getting details of this collation's encoding
+    final Encoding getEncoding() {
+        return encoding;
+    }
+
     final Charset getCharset() throws SQLServerException {
         return encoding.charset();
     }
@@ -53,6 +66,10 @@ final class SQLCollation implements java.io.Serializable {
         return encoding.hasAsciiCompatibleSBCS();
     }
 
+    final byte[] encode(String value) throws SQLServerException {
+        return encoding.encode(value);
+    }
+
     static final int tdsLength() {
         return 5;
     } // Length of collation in TDS (in bytes)
@@ -580,6 +597,13 @@ enum Encoding {
     private boolean jvmSupportConfirmed = false;
     private Charset charset;
 
+    // Decoders and encoders for the characters outside the ASCII range, cached per thread as they are not thread safe
+    private final ThreadLocal<CharsetDecoder> decoders = new ThreadLocal<>();
+    private final ThreadLocal<CharsetEncoder> encoders = new ThreadLocal<>();
+
+    // From Java 9, String decodes and encodes ascii with intrinsics that are faster than the paths below
+    private static final boolean useAsciiFastPath = Util.SYSTEM_SPEC_VERSION.startsWith("1.");
+
     private Encoding(String charsetName, boolean supportsAsciiConversion, boolean hasAsciiCompatibleSBCS) {
         this.charsetName = charsetName;
         this.supportsAsciiConversion = supportsAsciiConversion;
@@ -637,4 +661,112 @@ enum Encoding {
     boolean hasAsciiCompatibleSBCS() {
         return hasAsciiCompatibleSBCS;
     }
+
+    /**
+     * Decodes bytes in this encoding, with the same result as new String(bytes, offset, length, charset()).
+     *
+     * For an encoding that supports conversion to ascii, every byte below 0x80 is a character of its own. A value of
+     * only such bytes is decoded as ISO-8859-1, which copies the bytes without a lookup, and otherwise only the bytes
+     * after the leading ascii ones go through a decoder cached for the current thread. This is only done on Java 8,
+     * where new String(bytes, charset) also creates a new decoder for every call.
+     */
+    final String decode(byte[] bytes, int offset, int length) throws SQLServerException {
+        if (!useAsciiFastPath)
+            return new String(bytes, offset, length, charset());
+
+        return decodeWithAsciiFastPath(bytes, offset, length);
+    }
+
+    /**
+     * Decodes bytes as decode does on Java 8, whatever the version of the runtime.
+     */
+    final String decodeWithAsciiFastPath(byte[] bytes, int offset, int length) throws SQLServerException {
+        Charset charset = charset();
+        if (UNICODE == this || !supportsAsciiConversion)
+            return new String(bytes, offset, length, charset);
+
+        // Or all the bytes together first, which is cheaper than stopping at the first byte that is not ascii
+        int bits = 0;
+        for (int i = offset; i < offset + length; i++)
+            bits |= bytes[i];
+
+        if (bits >= 0)
+            return new String(bytes, offset, length, ISO_8859_1);
+
+        int asciiLength = 0;
+        while (bytes[offset + asciiLength] >= 0)
+            ++asciiLength;
+
+        // None of these encodings decodes a byte into more than one character
+        char[] chars = new char[length];
+        for (int i = 0; i < asciiLength; i++)
+            chars[i] = (char) bytes[offset + i];
+
+        CharsetDecoder decoder = decoders.get();
+        if (null == decoder) {
+            decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            decoders.set(decoder);
+        }
+
+        decoder.reset();
+        CharBuffer out = CharBuffer.wrap(chars, asciiLength, length - asciiLength);
+        CoderResult result = decoder.decode(ByteBuffer.wrap(bytes, offset + asciiLength, length - asciiLength), out,
+                true);
+        if (result.isUnderflow())
+            result = decoder.flush(out);
+        if (!result.isUnderflow())
+            return new String(bytes, offset, length, charset);
+
+        return new String(chars, 0, out.position());
+    }
+
+    /**
+     * Encodes a string in this encoding, with the same result as value.getBytes(charset()). The ascii fast path of
+     * decode applies in the same way.
+     */
+    final byte[] encode(String value) throws SQLServerException {
+        if (!useAsciiFastPath)
+            return value.getBytes(charset());
+
+        return encodeWithAsciiFastPath(value);
+    }
+
+    /**
+     * Encodes a string as encode does on Java 8, whatever the version of the runtime.
+     */
+    final byte[] encodeWithAsciiFastPath(String value) throws SQLServerException {
+        Charset valueCharset = charset();
+        if (UNICODE == this || !supportsAsciiConversion)
+            return value.getBytes(valueCharset);
+
+        int length = value.length();
+        int asciiLength = 0;
+        while (asciiLength < length && value.charAt(asciiLength) < 0x80)
+            ++asciiLength;
+
+        if (asciiLength == length)
+            return value.getBytes(ISO_8859_1);
+
+        CharsetEncoder encoder = encoders.get();
+        if (null == encoder) {
+            encoder = valueCharset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoders.set(encoder);
+        }
+
+        byte[] bytes = new byte[asciiLength + (int) Math.ceil((length - asciiLength) * encoder.maxBytesPerChar())];
+        for (int i = 0; i < asciiLength; i++)
+            bytes[i] = (byte) value.charAt(i);
+
+        encoder.reset();
+        ByteBuffer out = ByteBuffer.wrap(bytes, asciiLength, bytes.length - asciiLength);
+        CoderResult result = encoder.encode(CharBuffer.wrap(value, asciiLength, length), out, true);
+        if (result.isUnderflow())
+            result = encoder.flush(out);
+        if (!result.isUnderflow())
+            return value.getBytes(valueCharset);
+
+        return Arrays.copyOf(bytes, out.position());
+    }
 }
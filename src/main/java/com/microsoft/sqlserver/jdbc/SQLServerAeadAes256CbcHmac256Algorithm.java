@@ -5,18 +5,15 @@
 
 package com.microsoft.sqlserver.jdbc;
 
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.text.MessageFormat;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.Mac;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -60,6 +57,20 @@ class SQLServerAeadAes256CbcHmac256Algorithm extends SQLServerEncryptionAlgorith
     private int minimumCipherTextLengthInBytesWithAuthenticationTag = minimumCipherTextLengthInBytesNoAuthenticationTag
             + keySizeInBytes;
 
+    // SecureRandom is thread safe, and seeding a new instance for every value is expensive
+    private static final SecureRandom random = new SecureRandom();
+
+    /*
+     * An instance of this algorithm is shared by all connections that use the same column encryption key and
+     * encryption type, so each value is encrypted or decrypted with a cipher and MACs taken from a pool of this
+     * instance. They are initialized with the keys once, which saves the provider lookup and key setup for every value.
+     * The pool keeps at most one context per processor; more threads working at once get contexts that are discarded
+     * after use. The key schedules of the contexts live only as long as this instance.
+     */
+    private static final int MAX_POOLED_CONTEXTS = Runtime.getRuntime().availableProcessors();
+    private final Queue<CryptoContext> cryptoContexts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledContextCount = new AtomicInteger();
+
     /**
      * Initializes a new instance of SQLServerAeadAes256CbcHmac256Algorithm with a given key, encryption type and
      * algorithm version
@@ -100,27 +111,7 @@ class SQLServerAeadAes256CbcHmac256Algorithm extends SQLServerEncryptionAlgorith
      */
     protected byte[] encryptData(byte[] plainText, boolean hasAuthenticationTag) throws SQLServerException {
         aeLogger.entering(SQLServerAeadAes256CbcHmac256Algorithm.class.getName(), "encryptData", "Encrypting data.");
-        // we will generate this initialization vector based whether
-        // this encryption type is deterministic
         assert (plainText != null);
-        byte[] iv = new byte[blockSizeInBytes];
-        // Secret/private key to be used in AES encryption
-        SecretKeySpec skeySpec = new SecretKeySpec(columnEncryptionkey.getEncryptionKey(), "AES");
-
-        if (isDeterministic) {
-            // this method makes sure this is 16 bytes key
-            try {
-                iv = SQLServerSecurityUtility.getHMACWithSHA256(plainText, columnEncryptionkey.getIVKey(),
-                        blockSizeInBytes);
-            } catch (InvalidKeyException | NoSuchAlgorithmException e) {
-                MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_EncryptionFailed"));
-                Object[] msgArgs = {e.getMessage()};
-                throw new SQLServerException(this, form.format(msgArgs), null, 0, false);
-            }
-        } else {
-            SecureRandom random = new SecureRandom();
-            random.nextBytes(iv);
-        }
 
         int numBlocks = plainText.length / blockSizeInBytes + 1;
 
@@ -130,55 +121,44 @@ class SQLServerAeadAes256CbcHmac256Algorithm extends SQLServerEncryptionAlgorith
         int cipherStartIndex = ivStartIndex + blockSizeInBytes;
 
         // Output buffer size = size of VersionByte + Authentication Tag + IV + cipher Text blocks.
-        int outputBufSize = 1 + authenticationTagLen + iv.length + (numBlocks * blockSizeInBytes);
+        int outputBufSize = 1 + authenticationTagLen + blockSizeInBytes + (numBlocks * blockSizeInBytes);
         byte[] outBuffer = new byte[outputBufSize];
 
         // Copying the version to output buffer
         outBuffer[0] = algorithmVersion;
-        // Coping IV to the output buffer
-        System.arraycopy(iv, 0, outBuffer, ivStartIndex, iv.length);
-
-        // Start the AES encryption
 
+        CryptoContext context;
         try {
-            // initialization vector
-            IvParameterSpec ivector = new IvParameterSpec(iv);
-            Cipher encryptCipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            encryptCipher.init(Cipher.ENCRYPT_MODE, skeySpec, ivector);
-
-            int count = 0;
-            int cipherIndex = cipherStartIndex; // this is where cipherText starts
-
-            if (numBlocks > 1) {
-                count = (numBlocks - 1) * blockSizeInBytes;
-                cipherIndex += encryptCipher.update(plainText, 0, count, outBuffer, cipherIndex);
+            context = acquireCryptoContext();
+
+            // The initialization vector is written to the output buffer directly. It is derived from the plain text
+            // if this encryption type is deterministic.
+            if (isDeterministic) {
+                context.ivMac.update(plainText);
+                context.ivMac.doFinal(context.hash, 0);
+                System.arraycopy(context.hash, 0, outBuffer, ivStartIndex, blockSizeInBytes);
+            } else {
+                random.nextBytes(context.iv);
+                System.arraycopy(context.iv, 0, outBuffer, ivStartIndex, blockSizeInBytes);
             }
-            // doFinal will complete the encryption
-            byte[] buffTmp = encryptCipher.doFinal(plainText, count, plainText.length - count);
-            // Encryption completed
-            System.arraycopy(buffTmp, 0, outBuffer, cipherIndex, buffTmp.length);
 
-            if (hasAuthenticationTag) {
+            // Encrypt into the output buffer, after the IV
+            context.cipher.init(Cipher.ENCRYPT_MODE, context.encryptionKey,
+                    new IvParameterSpec(outBuffer, ivStartIndex, blockSizeInBytes));
+            context.cipher.doFinal(plainText, 0, plainText.length, outBuffer, cipherStartIndex);
 
-                Mac hmac = Mac.getInstance("HmacSHA256");
-                SecretKeySpec initkey = new SecretKeySpec(columnEncryptionkey.getMacKey(), "HmacSHA256");
-                hmac.init(initkey);
-                hmac.update(version, 0, version.length);
-                hmac.update(iv, 0, iv.length);
-                hmac.update(outBuffer, cipherStartIndex, numBlocks * blockSizeInBytes);
-                hmac.update(versionSize, 0, version.length);
-                byte[] hash = hmac.doFinal();
+            if (hasAuthenticationTag) {
+                computeAuthenticationTag(context.mac, outBuffer, ivStartIndex, outBuffer, cipherStartIndex,
+                        numBlocks * blockSizeInBytes, context.hash);
                 // coping the authentication tag in the output buffer which holds cipher text
-                System.arraycopy(hash, 0, outBuffer, hmacStartIndex, authenticationTagLen);
-
+                System.arraycopy(context.hash, 0, outBuffer, hmacStartIndex, authenticationTagLen);
             }
-        } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException | InvalidKeyException
-                | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
-
+        } catch (GeneralSecurityException e) {
             MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_EncryptionFailed"));
             Object[] msgArgs = {e.getMessage()};
             throw new SQLServerException(this, form.format(msgArgs), null, 0, false);
         }
+        releaseCryptoContext(context);
 
         aeLogger.exiting(SQLServerAeadAes256CbcHmac256Algorithm.class.getName(), "encryptData", "Data encrypted.");
         return outBuffer;
@@ -203,8 +183,6 @@ class SQLServerAeadAes256CbcHmac256Algorithm extends SQLServerEncryptionAlgorith
     private byte[] decryptData(byte[] cipherText, boolean hasAuthenticationTag) throws SQLServerException {
         assert (cipherText != null);
 
-        byte[] iv = new byte[blockSizeInBytes];
-
         int minimumCipherTextLength = hasAuthenticationTag ? minimumCipherTextLengthInBytesWithAuthenticationTag
                                                            : minimumCipherTextLengthInBytesNoAuthenticationTag;
 
@@ -238,46 +216,52 @@ class SQLServerAeadAes256CbcHmac256Algorithm extends SQLServerEncryptionAlgorith
             startIndex += keySizeInBytes;
         }
 
-        // Read IV from cipher text
-        System.arraycopy(cipherText, startIndex, iv, 0, iv.length);
-        startIndex += iv.length;
+        // The IV is read from the cipher text in place
+        int ivOffset = startIndex;
+        startIndex += blockSizeInBytes;
 
         // To read encrypted text from cipher
         int cipherTextOffset = startIndex;
         // All data after IV is encrypted data
         int cipherTextCount = cipherText.length - startIndex;
 
-        if (hasAuthenticationTag) {
-            byte[] authenticationTag;
-            try {
-                authenticationTag = prepareAuthenticationTag(iv, cipherText, cipherTextOffset, cipherTextCount);
-            } catch (InvalidKeyException | NoSuchAlgorithmException e) {
-                MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_DecryptionFailed"));
-                Object[] msgArgs = {e.getMessage()};
-                throw new SQLServerException(this, form.format(msgArgs), null, 0, false);
-
+        CryptoContext context;
+        try {
+            context = acquireCryptoContext();
+            if (hasAuthenticationTag) {
+                computeAuthenticationTag(context.mac, cipherText, ivOffset, cipherText, cipherTextOffset,
+                        cipherTextCount, context.hash);
             }
-            if (!(SQLServerSecurityUtility.compareBytes(authenticationTag, cipherText, authenticationTagOffset,
-                    cipherTextCount))) {
+        } catch (GeneralSecurityException e) {
+            MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_DecryptionFailed"));
+            Object[] msgArgs = {e.getMessage()};
+            throw new SQLServerException(this, form.format(msgArgs), null, 0, false);
+        }
 
-                throw new SQLServerException(this, SQLServerException.getErrString("R_InvalidAuthenticationTag"), null,
-                        0, false);
+        if (hasAuthenticationTag && !(SQLServerSecurityUtility.compareBytes(context.hash, cipherText,
+                authenticationTagOffset, keySizeInBytes))) {
+            releaseCryptoContext(context);
 
-            }
+            throw new SQLServerException(this, SQLServerException.getErrString("R_InvalidAuthenticationTag"), null, 0,
+                    false);
 
         }
 
         // Decrypt the text and return
-        return decryptData(iv, cipherText, cipherTextOffset, cipherTextCount);
+        byte[] plainText = decryptData(context, cipherText, ivOffset, cipherTextOffset, cipherTextCount);
+        releaseCryptoContext(context);
+        return plainText;
     }
 
     /**
-     * Decrypt data with specified IV
+     * Decrypt data with the IV at the given offset of the cipher text
      * 
-     * @param iv
-     *        initialization vector
+     * @param context
+     *        cipher and keys taken from the pool
      * @param cipherText
      *        text to be decrypted
+     * @param ivOffset
+     *        offset of the initialization vector in the cipher text
      * @param offset
      *        of cipher text
      * @param count
@@ -285,21 +269,16 @@ class SQLServerAeadAes256CbcHmac256Algorithm extends SQLServerEncryptionAlgorith
      * @return plain text
      * @throws SQLServerException
      */
-    private byte[] decryptData(byte[] iv, byte[] cipherText, int offset, int count) throws SQLServerException {
+    private byte[] decryptData(CryptoContext context, byte[] cipherText, int ivOffset, int offset,
+            int count) throws SQLServerException {
         aeLogger.entering(SQLServerAeadAes256CbcHmac256Algorithm.class.getName(), "decryptData", "Decrypting data.");
         assert (cipherText != null);
-        assert (iv != null);
         byte[] plainText = null;
-        // key to be used for decryption
-        SecretKeySpec skeySpec = new SecretKeySpec(columnEncryptionkey.getEncryptionKey(), "AES");
-        IvParameterSpec ivector = new IvParameterSpec(iv);
-        Cipher decryptCipher;
         try {
-            decryptCipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-            decryptCipher.init(Cipher.DECRYPT_MODE, skeySpec, ivector);
-            plainText = decryptCipher.doFinal(cipherText, offset, count);
-        } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException | InvalidKeyException
-                | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException e) {
+            context.cipher.init(Cipher.DECRYPT_MODE, context.encryptionKey,
+                    new IvParameterSpec(cipherText, ivOffset, blockSizeInBytes));
+            plainText = context.cipher.doFinal(cipherText, offset, count);
+        } catch (GeneralSecurityException e) {
 
             MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_DecryptionFailed"));
             Object[] msgArgs = {e.getMessage()};
@@ -312,36 +291,77 @@ class SQLServerAeadAes256CbcHmac256Algorithm extends SQLServerEncryptionAlgorith
     }
 
     /**
-     * Prepare the authentication tag
+     * Computes the authentication tag, which is the HMAC of the version byte, IV, cipher text and version size, into
+     * the given buffer
      * 
+     * @param hmac
+     *        MAC initialized with the MAC key
      * @param iv
-     *        initialization vector
+     *        buffer holding the initialization vector
+     * @param ivOffset
+     *        offset of the initialization vector
      * @param cipherText
      * @param offset
      * @param length
      *        length of cipher text
-     * @return authentication tag
-     * @throws NoSuchAlgorithmException
-     * @throws InvalidKeyException
+     * @param authenticationTag
+     *        buffer of keySizeInBytes that receives the authentication tag
+     * @throws GeneralSecurityException
      */
-    private byte[] prepareAuthenticationTag(byte[] iv, byte[] cipherText, int offset,
-            int length) throws NoSuchAlgorithmException, InvalidKeyException {
+    private void computeAuthenticationTag(Mac hmac, byte[] iv, int ivOffset, byte[] cipherText, int offset, int length,
+            byte[] authenticationTag) throws GeneralSecurityException {
         assert (cipherText != null);
-        byte[] computedHash;
-        byte[] authenticationTag = new byte[keySizeInBytes];
-
-        Mac hmac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec key = new SecretKeySpec(columnEncryptionkey.getMacKey(), "HmacSHA256");
-        hmac.init(key);
         hmac.update(version, 0, version.length);
-        hmac.update(iv, 0, iv.length);
+        hmac.update(iv, ivOffset, blockSizeInBytes);
         hmac.update(cipherText, offset, length);
         hmac.update(versionSize, 0, version.length);
-        computedHash = hmac.doFinal();
-        System.arraycopy(computedHash, 0, authenticationTag, 0, authenticationTag.length);
+        hmac.doFinal(authenticationTag, 0);
+    }
 
-        return authenticationTag;
+    /**
+     * Takes a cipher and MACs from the pool, creating them if the pool is empty
+     */
+    private CryptoContext acquireCryptoContext() throws GeneralSecurityException {
+        CryptoContext context = cryptoContexts.poll();
+        if (null == context)
+            return new CryptoContext();
+        pooledContextCount.decrementAndGet();
+        return context;
+    }
+
+    /**
+     * Returns a cipher and MACs to the pool once a value is encrypted or decrypted. A context whose operation failed is
+     * not returned, because its MACs may hold part of a value.
+     */
+    private void releaseCryptoContext(CryptoContext context) {
+        if (pooledContextCount.incrementAndGet() <= MAX_POOLED_CONTEXTS)
+            cryptoContexts.offer(context);
+        else
+            pooledContextCount.decrementAndGet();
+    }
 
+    /**
+     * The cipher and MACs used for one value at a time, with buffers for the values computed for each cell
+     */
+    private final class CryptoContext {
+        final Cipher cipher;
+        // Secret/private key to be used in AES encryption
+        final SecretKeySpec encryptionKey;
+        // Computes authentication tags
+        final Mac mac;
+        // Computes the initialization vector of deterministic encryption
+        final Mac ivMac;
+        final byte[] hash = new byte[keySizeInBytes];
+        final byte[] iv = new byte[blockSizeInBytes];
+
+        CryptoContext() throws GeneralSecurityException {
+            cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            encryptionKey = new SecretKeySpec(columnEncryptionkey.getEncryptionKey(), "AES");
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(columnEncryptionkey.getMacKey(), "HmacSHA256"));
+            ivMac = Mac.getInstance("HmacSHA256");
+            ivMac.init(new SecretKeySpec(columnEncryptionkey.getIVKey(), "HmacSHA256"));
+        }
     }
 
 }
@@ -42,6 +42,16 @@ import java.util.Set;
 import java.util.SimpleTimeZone;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import javax.sql.RowSet;
@@ -250,67 +260,7 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
      * Timer for the bulk copy operation. The other timeout timers in the TDS layer only measure the response of the
      * first packet from SQL Server.
      */
-    private final class BulkTimeoutTimer implements Runnable {
-        private final int timeoutSeconds;
-        private int secondsRemaining;
-        private final TDSCommand command;
-        private Thread timerThread;
-        private volatile boolean canceled = false;
-
-        BulkTimeoutTimer(int timeoutSeconds, TDSCommand command) {
-            assert timeoutSeconds > 0;
-            assert null != command;
-
-            this.timeoutSeconds = timeoutSeconds;
-            this.secondsRemaining = timeoutSeconds;
-            this.command = command;
-        }
-
-        final void start() {
-            timerThread = new Thread(this);
-            timerThread.setDaemon(true);
-            timerThread.start();
-        }
-
-        final void stop() {
-            canceled = true;
-            timerThread.interrupt();
-        }
-
-        final boolean expired() {
-            return (secondsRemaining <= 0);
-        }
-
-        public void run() {
-            try {
-                // Poll every second while time is left on the timer.
-                // Return if/when the timer is canceled.
-                do {
-                    if (canceled)
-                        return;
-
-                    Thread.sleep(1000);
-                } while (--secondsRemaining > 0);
-            } catch (InterruptedException e) {
-                // re-interrupt the current thread, in order to restore the thread's interrupt status.
-                Thread.currentThread().interrupt();
-                return;
-            }
-
-            // If the timer wasn't canceled before it ran out of
-            // time then interrupt the registered command.
-            try {
-                command.interrupt(SQLServerException.getErrString("R_queryTimedOut"));
-            } catch (SQLServerException e) {
-                // Unfortunately, there's nothing we can do if we
-                // fail to time out the request. There is no way
-                // to report back what happened.
-                command.log(Level.FINE, "Command could not be timed out. Reason: " + e.getMessage());
-            }
-        }
-    }
-
-    private BulkTimeoutTimer timeoutTimer = null;
+    private TimeoutTimer timeoutTimer = null;
 
     /**
      * The maximum temporal precision we can send when using varchar(precision) in bulkcommand, to send a
@@ -318,6 +268,21 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
      */
     private static final int sourceBulkRecordTemporalMaxPrecision = 50;
 
+    /*
+     * Number of rows read from an ISQLServerBulkRecord and encoded together when copyOptions.getEncodingThreadCount()
+     * is not zero.
+     */
+    private static final int ROWS_PER_ENCODED_BLOCK = 512;
+
+    // Queued by the reading thread after the last block of a batch.
+    private static final Future<byte[]> END_OF_BATCH = CompletableFuture.completedFuture(null);
+
+    /*
+     * Runs the reading and encoding threads of the current writeToServer call when its rows are encoded on worker
+     * threads, and is null otherwise.
+     */
+    private transient ExecutorService encoderExecutor;
+
     /**
      * Constructs a SQLServerBulkCopy using the specified open instance of SQLServerConnection.
      * 
@@ -500,6 +465,13 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
         loggerExternal.exiting(loggerClassName, "close");
     }
 
+    /**
+     * Returns the connection the rows are copied over.
+     */
+    SQLServerConnection getConnection() {
+        return connection;
+    }
+
     /**
      * Returns the name of the destination table on the server.
      * 
@@ -687,7 +659,9 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
             InsertBulk() {
                 super("InsertBulk", 0, 0);
                 int timeoutSeconds = copyOptions.getBulkCopyTimeout();
-                timeoutTimer = (timeoutSeconds > 0) ? (new BulkTimeoutTimer(timeoutSeconds, this)) : null;
+                timeoutTimer = (timeoutSeconds > 0)
+                        ? (new TimeoutTimer(timeoutSeconds, TimeUnit.SECONDS, this, null))
+                        : null;
             }
 
             final boolean doExecute() throws SQLServerException {
@@ -1188,7 +1162,7 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
     /**
      * Helper method that throws a timeout exception if the cause of the exception was that the query was cancelled
      */
-    private void checkForTimeoutException(SQLException e, BulkTimeoutTimer timeoutTimer) throws SQLServerException {
+    private void checkForTimeoutException(SQLException e, TimeoutTimer timeoutTimer) throws SQLServerException {
         if ((null != e.getSQLState()) && (e.getSQLState().equals(SQLState.STATEMENT_CANCELED.getSQLStateCode()))
                 && timeoutTimer.expired()) {
             // If SQLServerBulkCopy is managing the transaction, a rollback is needed.
@@ -1650,7 +1624,18 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
 
         validateColumnMappings();
 
-        sendBulkLoadBCP();
+        // The encoding threads are shared by all the batches of this operation.
+        if (null != sourceBulkRecord && 0 != copyOptions.getEncodingThreadCount() && !hasEncryptedDestinationColumn())
+            encoderExecutor = Executors.newFixedThreadPool(copyOptions.getEncodingThreadCount() + 1,
+                    new EncoderThreadFactory());
+        try {
+            sendBulkLoadBCP();
+        } finally {
+            if (null != encoderExecutor) {
+                encoderExecutor.shutdownNow();
+                encoderExecutor = null;
+            }
+        }
 
         long end = System.currentTimeMillis();
         if (loggerExternal.isLoggable(Level.FINER)) {
@@ -3501,6 +3486,9 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
      */
     private boolean writeBatchData(TDSWriter tdsWriter, TDSCommand command,
             boolean insertRowByRow) throws SQLServerException {
+        if (null != encoderExecutor)
+            return writeEncodedBatchData(tdsWriter);
+
         int batchsize = copyOptions.getBatchSize();
         int row = 0;
         while (true) {
@@ -3521,12 +3509,11 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
                 tdsWriter = sendBulkCopyCommand(command);
             }
 
-            // Write row header for each row.
-            tdsWriter.writeByte((byte) TDS.TDS_ROW);
-            int mappingColumnCount = columnMappings.size();
-
             // Copying from a resultset.
             if (null != sourceResultSet) {
+                // Write row header for each row.
+                tdsWriter.writeByte((byte) TDS.TDS_ROW);
+
                 // Loop for each destination column. The mappings is a many to one mapping
                 // where multiple source columns can be mapped to one destination column.
                 for (ColumnMapping columnMapping : columnMappings) {
@@ -3542,23 +3529,7 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
             }
             // Copy from a file.
             else {
-                // Get all the column values of the current row.
-                Object[] rowObjects;
-
-                try {
-                    rowObjects = sourceBulkRecord.getRowData();
-                } catch (Exception ex) {
-                    // if no more data available to retrive
-                    throw new SQLServerException(SQLServerException.getErrString("R_unableRetrieveSourceData"), ex);
-                }
-
-                for (ColumnMapping columnMapping : columnMappings) {
-                    // If the SQLServerBulkCSVRecord does not have metadata for columns, it returns strings in the
-                    // object array.
-                    // COnvert the strings using destination table types.
-                    writeColumn(tdsWriter, columnMapping.sourceColumnOrdinal, columnMapping.destinationColumnOrdinal,
-                            rowObjects[columnMapping.sourceColumnOrdinal - 1]);
-                }
+                writeRow(tdsWriter, getRowData());
             }
             row++;
 
@@ -3572,6 +3543,132 @@ public class SQLServerBulkCopy implements java.lang.AutoCloseable, java.io.Seria
         }
     }
 
+    /**
+     * Returns the column values of the current row of the ISQLServerBulkRecord.
+     */
+    private Object[] getRowData() throws SQLServerException {
+        try {
+            return sourceBulkRecord.getRowData();
+        } catch (Exception ex) {
+            // if no more data available to retrive
+            throw new SQLServerException(SQLServerException.getErrString("R_unableRetrieveSourceData"), ex);
+        }
+    }
+
+    /**
+     * Writes a ROW token with the column values read from an ISQLServerBulkRecord.
+     */
+    private void writeRow(TDSWriter tdsWriter, Object[] rowObjects) throws SQLServerException {
+        // Write row header for each row.
+        tdsWriter.writeByte((byte) TDS.TDS_ROW);
+
+        for (ColumnMapping columnMapping : columnMappings) {
+            // If the SQLServerBulkCSVRecord does not have metadata for columns, it returns strings in the
+            // object array.
+            // COnvert the strings using destination table types.
+            writeColumn(tdsWriter, columnMapping.sourceColumnOrdinal, columnMapping.destinationColumnOrdinal,
+                    rowObjects[columnMapping.sourceColumnOrdinal - 1]);
+        }
+    }
+
+    private boolean hasEncryptedDestinationColumn() {
+        for (ColumnMapping columnMapping : columnMappings) {
+            if (null != destColumnMetadata.get(columnMapping.destinationColumnOrdinal).cryptoMeta)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes a batch of rows from the ISQLServerBulkRecord, encoding them on worker threads. One worker reads blocks
+     * of rows from the source and hands each block to an encoding thread; this thread writes the encoded blocks in the
+     * order they were read. At most two blocks per encoding thread are in flight, which bounds the memory used when
+     * encoding outpaces the network.
+     */
+    private boolean writeEncodedBatchData(TDSWriter tdsWriter) throws SQLServerException {
+        ExecutorService executor = encoderExecutor;
+        BlockingQueue<Future<byte[]>> encodedBlocks = new ArrayBlockingQueue<>(
+                2 * copyOptions.getEncodingThreadCount());
+        Future<Boolean> reader = executor.submit(() -> readRowBlocks(tdsWriter, executor, encodedBlocks));
+        try {
+            byte[] encodedRows;
+            while (null != (encodedRows = encodedBlocks.take().get()))
+                tdsWriter.writeBytes(encodedRows);
+
+            return reader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLServerException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLServerException)
+                throw (SQLServerException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new SQLServerException(cause.getMessage(), cause);
+        } finally {
+            // Stops the reader if the rows could not be sent
+            reader.cancel(true);
+        }
+    }
+
+    /**
+     * Reads a batch of rows from the ISQLServerBulkRecord and queues their encoding. Returns true if the batch ended
+     * because it reached the batch size, false if there are no more rows. A failure to read is queued in place of
+     * the next block, so that the rows read before it are still sent.
+     */
+    private boolean readRowBlocks(TDSWriter tdsWriter, ExecutorService executor,
+            BlockingQueue<Future<byte[]>> encodedBlocks) throws InterruptedException {
+        int batchsize = copyOptions.getBatchSize();
+        int row = 0;
+        boolean moreDataAvailable = false;
+        try {
+            boolean endOfBatch = false;
+            while (!endOfBatch) {
+                List<Object[]> rows = new ArrayList<>(ROWS_PER_ENCODED_BLOCK);
+                while (rows.size() < ROWS_PER_ENCODED_BLOCK) {
+                    if (0 != batchsize && row >= batchsize) {
+                        moreDataAvailable = true;
+                        endOfBatch = true;
+                        break;
+                    }
+                    if (!goToNextRow()) {
+                        endOfBatch = true;
+                        break;
+                    }
+                    rows.add(getRowData());
+                    row++;
+                }
+
+                if (!rows.isEmpty())
+                    encodedBlocks.put(executor.submit(() -> encodeRows(tdsWriter.newRowEncoder(), rows)));
+            }
+            encodedBlocks.put(END_OF_BATCH);
+        } catch (SQLServerException | RuntimeException e) {
+            CompletableFuture<byte[]> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            encodedBlocks.put(failure);
+        }
+        return moreDataAvailable;
+    }
+
+    private byte[] encodeRows(TDSWriter rowEncoder, List<Object[]> rows) throws SQLServerException {
+        for (Object[] rowObjects : rows)
+            writeRow(rowEncoder, rowObjects);
+        return rowEncoder.takeEncodedBytes();
+    }
+
+    private static final class EncoderThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "mssql-jdbc-BulkCopyEncoder-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     protected void setStmtColumnEncriptionSetting(
             SQLServerStatementColumnEncryptionSetting stmtColumnEncriptionSetting) {
         this.stmtColumnEncriptionSetting = stmtColumnEncriptionSetting;
@@ -80,6 +80,14 @@ public class SQLServerBulkCopyOptions {
 
     private boolean allowEncryptedValueModifications;
 
+    /**
+     * Number of threads that encode rows into TDS format while the thread calling writeToServer sends the rows that
+     * are already encoded. Applies when copying from an ISQLServerBulkRecord to columns that are not encrypted.
+     * 
+     * Default: 0 - rows are read and encoded on the thread calling writeToServer
+     */
+    private int encodingThreadCount;
+
     /**
      * Constructs a SQLServerBulkCopySettings class using defaults for all of the settings.
      */
@@ -93,6 +101,7 @@ public class SQLServerBulkCopyOptions {
         tableLock = false;
         useInternalTransaction = false;
         allowEncryptedValueModifications = false;
+        encodingThreadCount = 0;
     }
 
     /**
@@ -293,4 +302,40 @@ public class SQLServerBulkCopyOptions {
     public void setAllowEncryptedValueModifications(boolean allowEncryptedValueModifications) {
         this.allowEncryptedValueModifications = allowEncryptedValueModifications;
     }
+
+    /**
+     * Returns the number of threads that encode rows while previously encoded rows are sent to the server.
+     * 
+     * @return Number of encoding threads; 0 if rows are encoded on the thread calling writeToServer.
+     */
+    public int getEncodingThreadCount() {
+        return encodingThreadCount;
+    }
+
+    /**
+     * Sets the number of threads that encode rows while previously encoded rows are sent to the server.
+     * <p>
+     * When copying from an ISQLServerBulkRecord, encoding the rows into TDS format is usually what limits the rate at
+     * which rows are sent. With a non-zero encodingThreadCount, one additional thread reads rows from the
+     * ISQLServerBulkRecord in blocks, the encoding threads encode the blocks in parallel, and the thread calling
+     * writeToServer only sends the encoded blocks in order. The ISQLServerBulkRecord is therefore called from a thread
+     * other than the one calling writeToServer, and it must return a new array from each call to getRowData.
+     * <p>
+     * Rows read from a ResultSet, and rows copied to columns encrypted with Always Encrypted, are always encoded on the
+     * thread calling writeToServer.
+     * 
+     * @param encodingThreadCount
+     *        Number of encoding threads, or 0 to encode rows on the thread calling writeToServer.
+     * @throws SQLServerException
+     *         If the encodingThreadCount being set is negative.
+     */
+    public void setEncodingThreadCount(int encodingThreadCount) throws SQLServerException {
+        if (encodingThreadCount >= 0) {
+            this.encodingThreadCount = encodingThreadCount;
+        } else {
+            MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_invalidNegativeArg"));
+            Object[] msgArgs = {"encodingThreadCount"};
+            SQLServerException.makeFromDriverError(null, null, form.format(msgArgs), null, false);
+        }
+    }
 }
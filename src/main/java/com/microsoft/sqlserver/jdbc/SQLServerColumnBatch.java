@@ -0,0 +1,512 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+
+/**
+ * Holds a batch of result set rows in column vectors, filled by {@link ISQLServerResultSet#readBatch}.
+ *
+ * Values of integer and floating point columns are decoded straight from the response into primitive vectors, and
+ * values of character and binary columns are copied as undecoded bytes into a data vector indexed by an offset vector.
+ * Neither creates an object per value. Values of all other columns (for example decimal and date/time columns, and
+ * encrypted columns) are stored as the objects {@link java.sql.ResultSet#getObject(int)} would return.
+ *
+ * The layout follows Apache Arrow: a validity bitmap per column with one bit per row, least significant bit first,
+ * set when the value is not null; and for variable length columns an offset vector of rowCount + 1 entries where the
+ * value of row r occupies bytes offsets[r] up to offsets[r + 1] of the data vector. The vectors are reused by the next
+ * call to readBatch, and may be longer than the number of rows read.
+ *
+ * Column indexes start at 1, as in {@link java.sql.ResultSet}; row indexes start at 0.
+ */
+public final class SQLServerColumnBatch {
+    /**
+     * The kind of vector that holds the values of a column.
+     */
+    public enum VectorType {
+        /** bit, tinyint, smallint, int and bigint values, in a long[] vector */
+        LONG,
+
+        /** float and real values, in a double[] vector */
+        DOUBLE,
+
+        /** char, varchar, nchar, nvarchar, binary and varbinary values, in a byte[] data vector and int[] offsets */
+        BYTES,
+
+        /** values of all other types, in an Object[] vector */
+        OBJECT
+    }
+
+    private static final int INITIAL_BYTES_PER_VALUE = 16;
+
+    private final int capacity;
+    private int rowCount;
+
+    // The columns of the result set the vectors were allocated for.
+    private Column[] columns;
+
+    private VectorType[] vectorTypes;
+    private byte[][] validity;
+    private long[][] longVectors;
+    private double[][] doubleVectors;
+    private byte[][] dataVectors;
+    private int[][] offsetVectors;
+    private Object[][] objectVectors;
+    private Charset[] charsets;
+
+    /**
+     * Creates a column batch.
+     *
+     * @param capacity
+     *        the maximum number of rows a call to readBatch reads into this batch
+     */
+    public SQLServerColumnBatch(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the maximum number of rows this batch holds.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of rows read into this batch.
+     *
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of columns of this batch.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return (null == columns) ? 0 : columns.length;
+    }
+
+    /**
+     * Returns the kind of vector that holds the values of a column.
+     *
+     * @param column
+     *        the column index
+     * @return the vector type
+     */
+    public VectorType getVectorType(int column) {
+        return vectorTypes[column - 1];
+    }
+
+    /**
+     * Returns the validity bitmap of a column, in which the bit of a row is set when its value is not null.
+     *
+     * @param column
+     *        the column index
+     * @return the validity bitmap
+     */
+    public byte[] getValidityBitmap(int column) {
+        return validity[column - 1];
+    }
+
+    /**
+     * Returns whether a value is null.
+     *
+     * @param column
+     *        the column index
+     * @param row
+     *        the row index
+     * @return true if the value is null
+     */
+    public boolean isNull(int column, int row) {
+        return 0 == (validity[column - 1][row >> 3] & (1 << (row & 7)));
+    }
+
+    /**
+     * Returns the vector of a {@link VectorType#LONG} column. Null values are 0.
+     *
+     * @param column
+     *        the column index
+     * @return the value vector, or null if the column is of another vector type
+     */
+    public long[] getLongVector(int column) {
+        return longVectors[column - 1];
+    }
+
+    /**
+     * Returns a value of a {@link VectorType#LONG} column.
+     *
+     * @param column
+     *        the column index
+     * @param row
+     *        the row index
+     * @return the value, or 0 if it is null
+     */
+    public long getLong(int column, int row) {
+        return longVectors[column - 1][row];
+    }
+
+    /**
+     * Returns the vector of a {@link VectorType#DOUBLE} column. Null values are 0.
+     *
+     * @param column
+     *        the column index
+     * @return the value vector, or null if the column is of another vector type
+     */
+    public double[] getDoubleVector(int column) {
+        return doubleVectors[column - 1];
+    }
+
+    /**
+     * Returns a value of a {@link VectorType#DOUBLE} column.
+     *
+     * @param column
+     *        the column index
+     * @param row
+     *        the row index
+     * @return the value, or 0 if it is null
+     */
+    public double getDouble(int column, int row) {
+        return doubleVectors[column - 1][row];
+    }
+
+    /**
+     * Returns the data vector of a {@link VectorType#BYTES} column.
+     *
+     * @param column
+     *        the column index
+     * @return the data vector, or null if the column is of another vector type
+     */
+    public byte[] getDataVector(int column) {
+        return dataVectors[column - 1];
+    }
+
+    /**
+     * Returns the offset vector of a {@link VectorType#BYTES} column. Null values are empty.
+     *
+     * @param column
+     *        the column index
+     * @return the offset vector, or null if the column is of another vector type
+     */
+    public int[] getOffsetVector(int column) {
+        return offsetVectors[column - 1];
+    }
+
+    /**
+     * Returns the character set of the data vector of a character column: UTF-16LE for nchar and nvarchar columns, and
+     * the character set of the column collation for char and varchar columns.
+     *
+     * @param column
+     *        the column index
+     * @return the character set, or null if the column is not a character column
+     */
+    public Charset getCharset(int column) {
+        return charsets[column - 1];
+    }
+
+    /**
+     * Returns a copy of a value of a {@link VectorType#BYTES} column.
+     *
+     * @param column
+     *        the column index
+     * @param row
+     *        the row index
+     * @return the value, or null if it is null
+     */
+    public byte[] getBytes(int column, int row) {
+        if (isNull(column, row))
+            return null;
+
+        int[] offsets = offsetVectors[column - 1];
+        return Arrays.copyOfRange(dataVectors[column - 1], offsets[row], offsets[row + 1]);
+    }
+
+    /**
+     * Decodes a value of a {@link VectorType#BYTES} column into a String. Binary values are returned as hexadecimal
+     * strings, as {@link java.sql.ResultSet#getString(int)} returns them.
+     *
+     * @param column
+     *        the column index
+     * @param row
+     *        the row index
+     * @return the value, or null if it is null
+     */
+    public String getString(int column, int row) {
+        if (isNull(column, row))
+            return null;
+
+        int[] offsets = offsetVectors[column - 1];
+        int offset = offsets[row];
+        int length = offsets[row + 1] - offset;
+        Charset charset = charsets[column - 1];
+        if (null == charset)
+            return Util.bytesToHexString(Arrays.copyOfRange(dataVectors[column - 1], offset, offset + length), length);
+        return new String(dataVectors[column - 1], offset, length, charset);
+    }
+
+    /**
+     * Returns the vector of a {@link VectorType#OBJECT} column.
+     *
+     * @param column
+     *        the column index
+     * @return the value vector, or null if the column is of another vector type
+     */
+    public Object[] getObjectVector(int column) {
+        return objectVectors[column - 1];
+    }
+
+    /**
+     * Returns a value of a {@link VectorType#OBJECT} column.
+     *
+     * @param column
+     *        the column index
+     * @param row
+     *        the row index
+     * @return the value, or null if it is null
+     */
+    public Object getObject(int column, int row) {
+        return objectVectors[column - 1][row];
+    }
+
+    /**
+     * Prepares this batch for reading rows of a result set with the given columns, allocating the vectors if this batch
+     * has not been used with these columns before.
+     */
+    void start(Column[] resultSetColumns) {
+        rowCount = 0;
+        if (resultSetColumns == columns) {
+            for (int[] offsets : offsetVectors) {
+                if (null != offsets)
+                    offsets[0] = 0;
+            }
+            return;
+        }
+
+        int n = resultSetColumns.length;
+        columns = resultSetColumns;
+        vectorTypes = new VectorType[n];
+        validity = new byte[n][];
+        longVectors = new long[n][];
+        doubleVectors = new double[n][];
+        dataVectors = new byte[n][];
+        offsetVectors = new int[n][];
+        objectVectors = new Object[n][];
+        charsets = new Charset[n];
+
+        for (int i = 0; i < n; i++) {
+            vectorTypes[i] = vectorTypeOf(resultSetColumns[i]);
+            validity[i] = new byte[(capacity + 7) >> 3];
+            switch (vectorTypes[i]) {
+                case LONG:
+                    longVectors[i] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    doubleVectors[i] = new double[capacity];
+                    break;
+                case BYTES:
+                    dataVectors[i] = new byte[capacity * INITIAL_BYTES_PER_VALUE];
+                    offsetVectors[i] = new int[capacity + 1];
+                    charsets[i] = resultSetColumns[i].getTypeInfo().getCharset();
+                    break;
+                default:
+                    objectVectors[i] = new Object[capacity];
+                    break;
+            }
+        }
+    }
+
+    void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    private static VectorType vectorTypeOf(Column column) {
+        // Encrypted values must be decrypted, and filtered values converted, which the object path does.
+        if (null != column.getCryptoMetadata() || null != column.filter)
+            return VectorType.OBJECT;
+
+        TypeInfo typeInfo = column.getTypeInfo();
+        switch (typeInfo.getSSType()) {
+            case BIT:
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                return VectorType.LONG;
+
+            case FLOAT:
+            case REAL:
+                return VectorType.DOUBLE;
+
+            case CHAR:
+            case VARCHAR:
+            case NCHAR:
+            case NVARCHAR:
+            case BINARY:
+            case VARBINARY:
+            case VARCHARMAX:
+            case NVARCHARMAX:
+            case VARBINARYMAX:
+                return VectorType.BYTES;
+
+            default:
+                return VectorType.OBJECT;
+        }
+    }
+
+    /**
+     * Returns whether the values of a column are decoded by {@link #readValue}.
+     */
+    boolean readsValues(int column) {
+        return VectorType.OBJECT != vectorTypes[column - 1];
+    }
+
+    /**
+     * Sets a null value, or a value already decoded into an object.
+     */
+    void setValue(int column, int row, Object value) {
+        int i = column - 1;
+        switch (vectorTypes[i]) {
+            case LONG:
+                longVectors[i][row] = 0;
+                break;
+            case DOUBLE:
+                doubleVectors[i][row] = 0;
+                break;
+            case BYTES:
+                offsetVectors[i][row + 1] = offsetVectors[i][row];
+                break;
+            default:
+                objectVectors[i][row] = value;
+                break;
+        }
+        setValid(i, row, null != value);
+    }
+
+    /**
+     * Reads the value of a column from the current position in the response.
+     */
+    void readValue(int column, int row, TDSReader tdsReader) throws SQLServerException {
+        int i = column - 1;
+        TypeInfo typeInfo = columns[i].getTypeInfo();
+        boolean isNull;
+
+        switch (vectorTypes[i]) {
+            case LONG: {
+                int valueLength = readValueLength(typeInfo, tdsReader);
+                isNull = (0 == valueLength);
+                long value;
+                switch (valueLength) {
+                    case 0:
+                        value = 0;
+                        break;
+                    case 1:
+                        value = tdsReader.readUnsignedByte();
+                        break;
+                    case 2:
+                        value = tdsReader.readShort();
+                        break;
+                    case 4:
+                        value = tdsReader.readInt();
+                        break;
+                    case 8:
+                        value = tdsReader.readLong();
+                        break;
+                    default:
+                        tdsReader.throwInvalidTDS();
+                        return;
+                }
+                longVectors[i][row] = value;
+                break;
+            }
+
+            case DOUBLE: {
+                int valueLength = readValueLength(typeInfo, tdsReader);
+                isNull = (0 == valueLength);
+                double value;
+                if (isNull)
+                    value = 0;
+                else if (8 == valueLength && SSType.FLOAT == typeInfo.getSSType())
+                    value = Double.longBitsToDouble(tdsReader.readLong());
+                else if (4 == valueLength && SSType.REAL == typeInfo.getSSType())
+                    value = Float.intBitsToFloat(tdsReader.readInt());
+                else {
+                    tdsReader.throwInvalidTDS();
+                    return;
+                }
+                doubleVectors[i][row] = value;
+                break;
+            }
+
+            default: {
+                assert VectorType.BYTES == vectorTypes[i];
+                int[] offsets = offsetVectors[i];
+                int offset = offsets[row];
+                if (SSLenType.PARTLENTYPE == typeInfo.getSSLenType()) {
+                    long payloadLength = tdsReader.readLong();
+                    isNull = (PLPInputStream.PLP_NULL == payloadLength);
+                    if (!isNull) {
+                        if (PLPInputStream.UNKNOWN_PLP_LEN != payloadLength)
+                            ensureDataCapacity(i, offset, (int) payloadLength);
+
+                        // The value is sent in chunks, terminated by a chunk of length 0.
+                        int chunkLength;
+                        while (PLPInputStream.PLP_TERMINATOR != (chunkLength = tdsReader.readInt())) {
+                            ensureDataCapacity(i, offset, chunkLength);
+                            tdsReader.readBytes(dataVectors[i], offset, chunkLength);
+                            offset += chunkLength;
+                        }
+                    }
+                } else {
+                    int valueLength = tdsReader.readUnsignedShort();
+                    isNull = (65535 == valueLength);
+                    if (!isNull) {
+                        if (valueLength > typeInfo.getMaxLength())
+                            tdsReader.throwInvalidTDS();
+
+                        ensureDataCapacity(i, offset, valueLength);
+                        tdsReader.readBytes(dataVectors[i], offset, valueLength);
+                        offset += valueLength;
+                    }
+                }
+                offsets[row + 1] = offset;
+                break;
+            }
+        }
+        setValid(i, row, !isNull);
+    }
+
+    /**
+     * Returns the length of a fixed length value, which is 0 for a null value.
+     */
+    private static int readValueLength(TypeInfo typeInfo, TDSReader tdsReader) throws SQLServerException {
+        int valueLength = (SSLenType.FIXEDLENTYPE == typeInfo.getSSLenType()) ? typeInfo.getMaxLength()
+                                                                               : tdsReader.readUnsignedByte();
+        if (valueLength > typeInfo.getMaxLength())
+            tdsReader.throwInvalidTDS();
+        return valueLength;
+    }
+
+    private void ensureDataCapacity(int i, int offset, int valueLength) {
+        byte[] data = dataVectors[i];
+        if (offset + valueLength > data.length)
+            dataVectors[i] = Arrays.copyOf(data, Math.max(offset + valueLength, 2 * data.length));
+    }
+
+    private void setValid(int i, int row, boolean isValid) {
+        if (isValid)
+            validity[i][row >> 3] |= (1 << (row & 7));
+        else
+            validity[i][row >> 3] &= ~(1 << (row & 7));
+    }
+}
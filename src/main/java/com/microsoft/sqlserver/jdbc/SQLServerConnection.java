@@ -34,11 +34,16 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 import javax.sql.XAConnection;
@@ -143,6 +148,11 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
             this(sql + parametersDefinition);
         }
 
+        CityHash128Key(String database, String sql, String parametersDefinition) {
+            this((null == database) ? (sql + parametersDefinition)
+                                    : (database.length() + ":" + database + sql + parametersDefinition));
+        }
+
         @SuppressWarnings("deprecation")
         CityHash128Key(String s) {
             unhashedString = s;
@@ -300,11 +310,64 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
     private ConcurrentLinkedHashMap<CityHash128Key, PreparedStatementHandle> preparedStatementHandleCache;
     /** Cache of prepared statement parameter metadata */
     private ConcurrentLinkedHashMap<CityHash128Key, SQLServerParameterMetaData> parameterMetadataCache;
+
+    /** Default size for the parameter metadata cache shared by the connections of a data source */
+    static final int DEFAULT_SHARED_PARAMETER_METADATA_CACHE_SIZE = 100;
+
+    /**
+     * Cache of prepared statement parameter metadata shared by the connections of the data source that opened this
+     * connection, keyed by server, login, database and SQL text, or null if the connection was not opened by a data
+     * source. Unlike prepared statement handles, which belong to the session, the metadata holds on any connection to
+     * the same database.
+     */
+    private ConcurrentLinkedHashMap<CityHash128Key, SQLServerParameterMetaData> sharedParameterMetadataCache;
     /**
      * Checks whether statement pooling is enabled or disabled. The default is set to true;
      */
     private boolean disableStatementPooling = true;
 
+    /** Default upper bound for growing the prepared statement caches, 0 keeps them at statementPoolingCacheSize */
+    static final int DEFAULT_MAX_STATEMENT_POOLING_CACHE_SIZE = 0;
+
+    /** Size up to which the prepared statement caches are grown while handles are evicted at a high rate */
+    private int maxStatementPoolingCacheSize = DEFAULT_MAX_STATEMENT_POOLING_CACHE_SIZE;
+
+    /**
+     * Share of the prepared statement handle cache lookups in a window that may evict a handle before the caches are
+     * grown. A window is as many lookups as the cache holds handles.
+     */
+    private static final double STATEMENT_POOLING_CACHE_GROWTH_EVICTION_RATE = 0.1;
+
+    /** Minimum number of lookups in a window, so that small caches are not grown on a few evictions */
+    private static final int MIN_STATEMENT_POOLING_CACHE_WINDOW = 64;
+
+    /** Lookups of the prepared statement handle cache in the current window */
+    private final AtomicInteger statementPoolingCacheWindowLookups = new AtomicInteger();
+
+    /** Evictions from the prepared statement handle cache before the current window */
+    private volatile long statementPoolingCacheWindowStartEvictions;
+
+    /** Counters of the prepared statement handle life cycle, which add to those of the data source, if any */
+    private SQLServerStatementHandleStatistics.Counters statementHandleCounters = new SQLServerStatementHandleStatistics.Counters(
+            null);
+
+    /** Default size for the parameter encryption metadata cache */
+    static final int DEFAULT_PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE = 100;
+
+    /** Size of the parameter encryption metadata cache */
+    private int parameterEncryptionMetadataCacheSize = DEFAULT_PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE;
+
+    /**
+     * Cache of the parameter encryption metadata returned by sp_describe_parameter_encryption, keyed by database, SQL
+     * text and parameter definitions. An entry holds one CryptoMetadata per parameter, or null for a parameter that is
+     * not encrypted, and is only read to create new CryptoMetadata for the executing statement.
+     */
+    private final ConcurrentLinkedHashMap<CityHash128Key, CryptoMetadata[]> parameterEncryptionMetadataCache = new Builder<CityHash128Key, CryptoMetadata[]>()
+            .maximumWeightedCapacity(DEFAULT_PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE).build();
+
+    private final AtomicLong parameterEncryptionMetadataCacheHits = new AtomicLong();
+    private final AtomicLong parameterEncryptionMetadataCacheMisses = new AtomicLong();
+
     /**
      * Locates statement parameters.
      * 
@@ -528,6 +591,30 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         this.useBulkCopyForBatchInsert = useBulkCopyForBatchInsert;
     }
 
+    /**
+     * boolean value for deciding if the driver should communicate over a java.nio SocketChannel.
+     */
+    private boolean useSocketChannel = SQLServerDriverBooleanProperty.USE_SOCKET_CHANNEL.getDefaultValue();
+
+    final boolean useSocketChannel() {
+        return useSocketChannel;
+    }
+
+    /**
+     * boolean value for deciding if the driver should request Multiple Active Result Sets (MARS) from the server.
+     */
+    private boolean multipleActiveResultSets = SQLServerDriverBooleanProperty.MULTIPLE_ACTIVE_RESULT_SETS
+            .getDefaultValue();
+
+    // Set when the server agreed to MARS at prelogin, in which case commands run on multiplexed sessions.
+    private boolean negotiatedMultipleActiveResultSets = false;
+
+    /**
+     * boolean value for deciding if federated authentication access tokens are taken from the token cache shared by the
+     * connections of the process.
+     */
+    private boolean useFedAuthTokenCache = SQLServerDriverBooleanProperty.USE_FED_AUTH_TOKEN_CACHE.getDefaultValue();
+
     boolean userSetTNIR = true;
 
     private boolean sendTimeAsDatetime = SQLServerDriverBooleanProperty.SEND_TIME_AS_DATETIME.getDefaultValue();
@@ -927,6 +1014,52 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         return tdsPacketSize;
     }
 
+    // Response packets recycled by this connection's TDSReaders.
+    private final TDSPacketPool tdsPacketPool = new TDSPacketPool();
+
+    final TDSPacketPool getTDSPacketPool() {
+        return tdsPacketPool;
+    }
+
+    /** Default threshold for spilling buffered response packets to disk, 0 never spills */
+    static final int DEFAULT_RESPONSE_BUFFER_SPILL_THRESHOLD = 0;
+
+    // Bytes of buffered response packets beyond which further buffered packets are spilled to a temporary file.
+    private int responseBufferSpillThreshold = DEFAULT_RESPONSE_BUFFER_SPILL_THRESHOLD;
+
+    final int getResponseBufferSpillThreshold() {
+        return responseBufferSpillThreshold;
+    }
+
+    /** Default number of seconds for which the endpoints of a server are cached, 0 does not cache them */
+    static final int DEFAULT_ENDPOINT_CACHE_TTL = 0;
+
+    // Number of seconds for which ServerEndpointCache remembers the addresses, instance port and routing target of a
+    // server.
+    private int endpointCacheTtl = DEFAULT_ENDPOINT_CACHE_TTL;
+
+    final int getEndpointCacheTtl() {
+        return endpointCacheTtl;
+    }
+
+    private final SQLServerResponseBufferStatistics.Counters responseBufferCounters =
+            new SQLServerResponseBufferStatistics.Counters();
+
+    final SQLServerResponseBufferStatistics.Counters getResponseBufferCounters() {
+        return responseBufferCounters;
+    }
+
+    // Spill files holding response packets not yet read back, closed with the connection.
+    private final Set<TDSPacketSpillFile> spillFiles = ConcurrentHashMap.newKeySet();
+
+    final void registerSpillFile(TDSPacketSpillFile spillFile) {
+        spillFiles.add(spillFile);
+    }
+
+    final void deregisterSpillFile(TDSPacketSpillFile spillFile) {
+        spillFiles.remove(spillFile);
+    }
+
     private TDSChannel tdsChannel;
 
     private TDSCommand currentCommand = null;
@@ -1492,6 +1625,76 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                 }
             }
 
+            sPropKey = SQLServerDriverIntProperty.PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE.toString();
+            if (activeConnectionProperties.getProperty(sPropKey) != null
+                    && activeConnectionProperties.getProperty(sPropKey).length() > 0) {
+                try {
+                    int n = Integer.parseInt(activeConnectionProperties.getProperty(sPropKey));
+                    this.setParameterEncryptionMetadataCacheSize(n);
+                } catch (NumberFormatException e) {
+                    MessageFormat form = new MessageFormat(
+                            SQLServerException.getErrString("R_parameterEncryptionMetadataCacheSize"));
+                    Object[] msgArgs = {activeConnectionProperties.getProperty(sPropKey)};
+                    SQLServerException.makeFromDriverError(this, this, form.format(msgArgs), null, false);
+                }
+            }
+
+            sPropKey = SQLServerDriverIntProperty.MAX_STATEMENT_POOLING_CACHE_SIZE.toString();
+            if (activeConnectionProperties.getProperty(sPropKey) != null
+                    && activeConnectionProperties.getProperty(sPropKey).length() > 0) {
+                try {
+                    int n = Integer.parseInt(activeConnectionProperties.getProperty(sPropKey));
+                    this.setMaxStatementPoolingCacheSize(n);
+                } catch (NumberFormatException e) {
+                    MessageFormat form = new MessageFormat(
+                            SQLServerException.getErrString("R_maxStatementPoolingCacheSize"));
+                    Object[] msgArgs = {activeConnectionProperties.getProperty(sPropKey)};
+                    SQLServerException.makeFromDriverError(this, this, form.format(msgArgs), null, false);
+                }
+            }
+
+            sPropKey = SQLServerDriverIntProperty.RESPONSE_BUFFER_SPILL_THRESHOLD.toString();
+            if (activeConnectionProperties.getProperty(sPropKey) != null
+                    && activeConnectionProperties.getProperty(sPropKey).length() > 0) {
+                try {
+                    int n = Integer.parseInt(activeConnectionProperties.getProperty(sPropKey));
+                    if (n >= 0) {
+                        responseBufferSpillThreshold = n;
+                    } else {
+                        MessageFormat form = new MessageFormat(
+                                SQLServerException.getErrString("R_invalidResponseBufferSpillThreshold"));
+                        Object[] msgArgs = {activeConnectionProperties.getProperty(sPropKey)};
+                        SQLServerException.makeFromDriverError(this, this, form.format(msgArgs), null, false);
+                    }
+                } catch (NumberFormatException e) {
+                    MessageFormat form = new MessageFormat(
+                            SQLServerException.getErrString("R_invalidResponseBufferSpillThreshold"));
+                    Object[] msgArgs = {activeConnectionProperties.getProperty(sPropKey)};
+                    SQLServerException.makeFromDriverError(this, this, form.format(msgArgs), null, false);
+                }
+            }
+
+            sPropKey = SQLServerDriverIntProperty.ENDPOINT_CACHE_TTL.toString();
+            if (activeConnectionProperties.getProperty(sPropKey) != null
+                    && activeConnectionProperties.getProperty(sPropKey).length() > 0) {
+                try {
+                    int n = Integer.parseInt(activeConnectionProperties.getProperty(sPropKey));
+                    if (n >= 0) {
+                        endpointCacheTtl = n;
+                    } else {
+                        MessageFormat form = new MessageFormat(
+                                SQLServerException.getErrString("R_invalidEndpointCacheTtl"));
+                        Object[] msgArgs = {activeConnectionProperties.getProperty(sPropKey)};
+                        SQLServerException.makeFromDriverError(this, this, form.format(msgArgs), null, false);
+                    }
+                } catch (NumberFormatException e) {
+                    MessageFormat form = new MessageFormat(
+                            SQLServerException.getErrString("R_invalidEndpointCacheTtl"));
+                    Object[] msgArgs = {activeConnectionProperties.getProperty(sPropKey)};
+                    SQLServerException.makeFromDriverError(this, this, form.format(msgArgs), null, false);
+                }
+            }
+
             // Must be set after STATEMENT_POOLING_CACHE_SIZE
             sPropKey = SQLServerDriverBooleanProperty.DISABLE_STATEMENT_POOLING.toString();
             sPropValue = activeConnectionProperties.getProperty(sPropKey);
@@ -1831,6 +2034,24 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                 useBulkCopyForBatchInsert = booleanPropertyOn(sPropKey, sPropValue);
             }
 
+            sPropKey = SQLServerDriverBooleanProperty.USE_SOCKET_CHANNEL.toString();
+            sPropValue = activeConnectionProperties.getProperty(sPropKey);
+            if (null != sPropValue) {
+                useSocketChannel = booleanPropertyOn(sPropKey, sPropValue);
+            }
+
+            sPropKey = SQLServerDriverBooleanProperty.MULTIPLE_ACTIVE_RESULT_SETS.toString();
+            sPropValue = activeConnectionProperties.getProperty(sPropKey);
+            if (null != sPropValue) {
+                multipleActiveResultSets = booleanPropertyOn(sPropKey, sPropValue);
+            }
+
+            sPropKey = SQLServerDriverBooleanProperty.USE_FED_AUTH_TOKEN_CACHE.toString();
+            sPropValue = activeConnectionProperties.getProperty(sPropKey);
+            if (null != sPropValue) {
+                useFedAuthTokenCache = booleanPropertyOn(sPropKey, sPropValue);
+            }
+
             sPropKey = SQLServerDriverStringProperty.SSL_PROTOCOL.toString();
             sPropValue = activeConnectionProperties.getProperty(sPropKey);
             if (null == sPropValue) {
@@ -1994,6 +2215,18 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         // indicates the no of times the connection was routed to a different server
         int noOfRedirections = 0;
 
+        // Key of the server that earlier logins were routed to, if the endpoints of servers are cached. Routing is not
+        // cached for database mirroring, which has failover partners instead.
+        String routingCacheKey = null;
+        if (endpointCacheTtl > 0 && !isDBMirroring) {
+            routingCacheKey = ServerEndpointCache.getRoutingKey(primary, primaryInstanceName, primaryPortNumber,
+                    activeConnectionProperties.getProperty(SQLServerDriverStringProperty.DATABASE_NAME.toString()),
+                    applicationIntent);
+        }
+
+        // Set while the current attempt connects to a routing target taken from the cache.
+        boolean isCachedRoutingTarget = false;
+
         // Only three ways out of this loop:
         // 1) Successfully connected
         // 2) Parser threw exception while main timer was expired
@@ -2019,8 +2252,17 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                         currentPrimaryPlaceHolder = routingInfo;
                         routingInfo = null;
                     } else if (null == currentPrimaryPlaceHolder) {
-                        currentPrimaryPlaceHolder = primaryPermissionCheck(primary, primaryInstanceName,
-                                primaryPortNumber);
+                        // Go straight to the server that an earlier login was routed to, if it is cached.
+                        if (null != routingCacheKey)
+                            currentPrimaryPlaceHolder = ServerEndpointCache.getRoutingTarget(routingCacheKey);
+
+                        if (null != currentPrimaryPlaceHolder) {
+                            currentPrimaryPlaceHolder.doSecurityCheck();
+                            isCachedRoutingTarget = true;
+                        } else {
+                            currentPrimaryPlaceHolder = primaryPermissionCheck(primary, primaryInstanceName,
+                                    primaryPortNumber);
+                        }
                     }
                     currentConnectPlaceHolder = currentPrimaryPlaceHolder;
                 }
@@ -2039,7 +2281,9 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                 // Attempt login.
                 // use Place holder to make sure that the failoverdemand is done.
 
-                connectHelper(currentConnectPlaceHolder, TimerRemaining(intervalExpire), timeout, useParallel, useTnir,
+                // As after routing, a routing target is connected to without multiSubnetFailover and TNIR.
+                connectHelper(currentConnectPlaceHolder, TimerRemaining(intervalExpire), timeout,
+                        useParallel && !isCachedRoutingTarget, useTnir && !isCachedRoutingTarget,
                         (0 == attemptNumber), // Is
                                               // this
                                               // the
@@ -2105,6 +2349,20 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                 } else
                     break; // leave the while loop -- we've successfully connected
             } catch (SQLServerException sqlex) {
+                // Forget how this attempt reached the server, so that the next attempt or login looks it up again.
+                if (endpointCacheTtl > 0 && !isDBMirroring) {
+                    if (null != routingCacheKey)
+                        ServerEndpointCache.removeRoutingTarget(routingCacheKey);
+                    if (null != primaryInstanceName && 0 == primaryPortNumber) {
+                        ServerEndpointCache.removeInstancePort(primary, primaryInstanceName);
+                        currentPrimaryPlaceHolder = null;
+                    }
+                    if (isCachedRoutingTarget) {
+                        isCachedRoutingTarget = false;
+                        currentPrimaryPlaceHolder = null;
+                    }
+                }
+
                 if ((SQLServerException.LOGON_FAILED == sqlex.getErrorCode()) // actual logon failed, i.e. bad password
                         || (SQLServerException.PASSWORD_EXPIRED == sqlex.getErrorCode()) // actual logon failed, i.e.
                                                                                          // password isExpired
@@ -2203,6 +2461,9 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         }
 
         // If we get here, connection/login succeeded! Just a few more checks & record-keeping
+        if (null != routingCacheKey && noOfRedirections > 0)
+            ServerEndpointCache.putRoutingTarget(routingCacheKey, currentConnectPlaceHolder, endpointCacheTtl);
+
         // if connected to failover host, but said host doesn't have DbMirroring set up, throw an error
         if (useFailoverHost && null == failoverPartnerServerProvided) {
             String curserverinfo = currentConnectPlaceHolder.getServerName();
@@ -2283,7 +2544,14 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         // look to see primary port number is specified
         if (0 == primaryPortNumber) {
             if (null != primaryInstanceName) {
-                instancePort = getInstancePort(primary, primaryInstanceName);
+                instancePort = (endpointCacheTtl > 0) ? ServerEndpointCache.getInstancePort(primary,
+                        primaryInstanceName) : null;
+                if (null == instancePort) {
+                    instancePort = getInstancePort(primary, primaryInstanceName);
+                    if (endpointCacheTtl > 0 && null != instancePort)
+                        ServerEndpointCache.putInstancePort(primary, primaryInstanceName, instancePort,
+                                endpointCacheTtl);
+                }
                 if (connectionlogger.isLoggable(Level.FINER))
                     connectionlogger.fine(toString() + " SQL Server port returned by SQL Browser: " + instancePort);
                 try {
@@ -2391,6 +2659,11 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
             tdsChannel.enableSSL(serverInfo.getServerName(), serverInfo.getPortNumber());
         }
 
+        // If prelogin negotiated MARS then, multiplex sessions over the TDS channel from the login on.
+        if (negotiatedMultipleActiveResultSets) {
+            tdsChannel.enableMultiplexing();
+        }
+
         // We have successfully connected, now do the login. logon takes seconds timeout
         executeCommand(new LogonCommand());
     }
@@ -2438,16 +2711,17 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
 
         byte[] preloginOptionsBeforeFedAuth = {
                 // OPTION_TOKEN (BYTE), OFFSET (USHORT), LENGTH (USHORT)
-                TDS.B_PRELOGIN_OPTION_VERSION, 0, (byte) (16 + fedAuthOffset), 0, 6, // UL_VERSION + US_SUBBUILD
-                TDS.B_PRELOGIN_OPTION_ENCRYPTION, 0, (byte) (22 + fedAuthOffset), 0, 1, // B_FENCRYPTION
-                TDS.B_PRELOGIN_OPTION_TRACEID, 0, (byte) (23 + fedAuthOffset), 0, 36, // ClientConnectionId + ActivityId
+                TDS.B_PRELOGIN_OPTION_VERSION, 0, (byte) (21 + fedAuthOffset), 0, 6, // UL_VERSION + US_SUBBUILD
+                TDS.B_PRELOGIN_OPTION_ENCRYPTION, 0, (byte) (27 + fedAuthOffset), 0, 1, // B_FENCRYPTION
+                TDS.B_PRELOGIN_OPTION_TRACEID, 0, (byte) (28 + fedAuthOffset), 0, 36, // ClientConnectionId + ActivityId
+                TDS.B_PRELOGIN_OPTION_MARS, 0, (byte) (64 + fedAuthOffset), 0, 1, // B_MARS
         };
         System.arraycopy(preloginOptionsBeforeFedAuth, 0, preloginRequest, preloginRequestOffset,
                 preloginOptionsBeforeFedAuth.length);
         preloginRequestOffset = preloginRequestOffset + preloginOptionsBeforeFedAuth.length;
 
         if (fedAuthRequiredByUser) {
-            byte[] preloginOptions2 = {TDS.B_PRELOGIN_OPTION_FEDAUTHREQUIRED, 0, 64, 0, 1,};
+            byte[] preloginOptions2 = {TDS.B_PRELOGIN_OPTION_FEDAUTHREQUIRED, 0, 70, 0, 1,};
             System.arraycopy(preloginOptions2, 0, preloginRequest, preloginRequestOffset, preloginOptions2.length);
             preloginRequestOffset = preloginRequestOffset + preloginOptions2.length;
         }
@@ -2466,7 +2740,10 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
 
                 // TRACEID Data Session (ClientConnectionId + ActivityId) - Initialize to 0
                 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
-                0,};
+                0,
+
+                // - MARS -
+                (byte) (multipleActiveResultSets ? 1 : 0),};
         System.arraycopy(preloginOptionData, 0, preloginRequest, preloginRequestOffset, preloginOptionData.length);
         preloginRequestOffset = preloginRequestOffset + preloginOptionData.length;
 
@@ -2487,10 +2764,10 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         int offset;
 
         if (fedAuthRequiredByUser) {
-            offset = preloginRequest.length - 36 - 1; // point to the TRACEID Data Session (one more byte for fedauth
-                                                      // data session)
+            offset = preloginRequest.length - 36 - 2; // point to the TRACEID Data Session (one more byte for MARS
+                                                      // and one for fedauth data session)
         } else {
-            offset = preloginRequest.length - 36; // point to the TRACEID Data Session
+            offset = preloginRequest.length - 36 - 1; // point to the TRACEID Data Session (one more byte for MARS)
         }
 
         // copy ClientConnectionId
@@ -2618,6 +2895,7 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         // back the server version and the encryption level.
         boolean receivedVersionOption = false;
         negotiatedEncryptionLevel = TDS.ENCRYPT_INVALID;
+        negotiatedMultipleActiveResultSets = false;
 
         int responseIndex = TDS.PACKET_HEADER_SIZE;
         while (true) {
@@ -2754,6 +3032,24 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                     }
                     break;
 
+                case TDS.B_PRELOGIN_OPTION_MARS:
+                    // The server uses MARS only if asked to. Servers that do not support it answer 0.
+                    if (1 != optionLength) {
+                        if (connectionlogger.isLoggable(Level.WARNING)) {
+                            connectionlogger
+                                    .warning(toString() + " MARS option length:" + optionLength + " is incorrect.");
+                        }
+                        throwInvalidTDS();
+                    }
+
+                    negotiatedMultipleActiveResultSets = multipleActiveResultSets
+                            && 1 == preloginResponse[optionOffset];
+                    if (multipleActiveResultSets && !negotiatedMultipleActiveResultSets
+                            && connectionlogger.isLoggable(Level.FINER)) {
+                        connectionlogger.finer(toString() + " Server declined MARS; commands will share one session.");
+                    }
+                    break;
+
                 case TDS.B_PRELOGIN_OPTION_FEDAUTHREQUIRED:
                     // Only 0x00 and 0x01 are accepted values from the server.
                     if (0 != preloginResponse[optionOffset] && 1 != preloginResponse[optionOffset]) {
@@ -2840,7 +3136,7 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         throw ex;
     }
 
-    private final Object schedulerLock = new Object();
+    private final Lock schedulerLock = new ReentrantLock();
 
     /**
      * Executes a command through the scheduler.
@@ -2849,14 +3145,20 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
      *        the command to execute
      */
     boolean executeCommand(TDSCommand newCommand) throws SQLServerException {
-        synchronized (schedulerLock) {
-            // Detach (buffer) the response from any previously executing
+        schedulerLock.lock();
+        try {
+            // With MARS, the new command runs on a session of its own, leaving the
+            // response of any previously executing command on the wire of its session.
+            SMPChannel.Session session = tdsChannel.isMultiplexed() ? tdsChannel.acquireSession(newCommand) : null;
+
+            // Otherwise, detach (buffer) the response from any previously executing
             // command so that we can execute the new command.
             //
             // Note that detaching the response does not process it. Detaching just
             // buffers the response off of the wire to clear the TDS channel.
             if (null != currentCommand) {
-                currentCommand.detach();
+                if (null == session)
+                    currentCommand.detach();
                 currentCommand = null;
             }
 
@@ -2866,7 +3168,10 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
             // serialize command execution.
             boolean commandComplete = false;
             try {
-                commandComplete = newCommand.execute(tdsChannel.getWriter(), tdsChannel.getReader(newCommand));
+                if (null != session)
+                    commandComplete = newCommand.execute(session.getWriter(), session.getReader(newCommand));
+                else
+                    commandComplete = newCommand.execute(tdsChannel.getWriter(), tdsChannel.getReader(newCommand));
             } finally {
                 // We should never displace an existing currentCommand
                 // assert null == currentCommand;
@@ -2880,9 +3185,37 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
             }
 
             return commandComplete;
+        } finally {
+            schedulerLock.unlock();
         }
     }
 
+    /**
+     * Runs the response ready callback of an asynchronous execution once its response can be read.
+     *
+     * @param command
+     *        the command that deferred reading its response
+     */
+    void awaitResponse(TDSCommand command) {
+        TDSChannel channel = tdsChannel;
+        if (null == channel || isSessionUnAvailable())
+            command.onResponseReady();
+        else
+            channel.awaitResponse(command);
+    }
+
+    /**
+     * Runs a continuation once response data can be read from the connection, or right away if the connection cannot
+     * be waited on.
+     */
+    void awaitReadable(Runnable onReadable) {
+        TDSChannel channel = tdsChannel;
+        if (null == channel || isSessionUnAvailable())
+            onReadable.run();
+        else
+            channel.awaitReadable(onReadable);
+    }
+
     void resetCurrentCommand() throws SQLServerException {
         if (null != currentCommand) {
             currentCommand.detach();
@@ -2994,6 +3327,15 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         return st;
     }
 
+    @Override
+    public SQLServerPipeline pipeline() throws SQLServerException {
+        loggerExternal.entering(getClassNameLogging(), "pipeline");
+        checkClosed();
+        SQLServerPipeline pipeline = new SQLServerPipeline(this);
+        loggerExternal.exiting(getClassNameLogging(), "pipeline", pipeline);
+        return pipeline;
+    }
+
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "prepareStatement", sql);
@@ -3148,6 +3490,15 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         if (null != parameterMetadataCache)
             parameterMetadataCache.clear();
 
+        parameterEncryptionMetadataCache.clear();
+
+        if (connectionlogger.isLoggable(Level.FINER))
+            connectionlogger.finer(toString() + " " + tdsPacketPool.toString());
+        tdsPacketPool.clear();
+
+        for (TDSPacketSpillFile spillFile : spillFiles)
+            spillFile.close();
+
         // Clean-up queue etc. related to batching of prepared statement discard actions (sp_unprepare).
         cleanupPreparedStatementDiscardActions();
 
@@ -3977,7 +4328,7 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                     null);
         }
 
-        onFedAuthInfo(sqlFedAuthInfo, tdsTokenHandler);
+        onFedAuthInfo(sqlFedAuthInfo, tdsTokenHandler, tdsReader.getSession());
     }
 
     final class FedAuthTokenCommand extends UninterruptableTDSCommand {
@@ -3998,9 +4349,11 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
 
     /**
      * Generates (if appropriate) and sends a Federated Authentication Access token to the server, using the Federated
-     * Authentication Info.
+     * Authentication Info. With MARS the token is sent on the session of the login, given by session, and otherwise
+     * session is null.
      */
-    void onFedAuthInfo(SqlFedAuthInfo fedAuthInfo, TDSTokenHandler tdsTokenHandler) throws SQLServerException {
+    void onFedAuthInfo(SqlFedAuthInfo fedAuthInfo, TDSTokenHandler tdsTokenHandler,
+            SMPChannel.Session session) throws SQLServerException {
         assert (null != activeConnectionProperties.getProperty(SQLServerDriverStringProperty.USER.toString())
                 && null != activeConnectionProperties.getProperty(SQLServerDriverStringProperty.PASSWORD.toString()))
                 || ((authenticationString.trim().equalsIgnoreCase(
@@ -4015,114 +4368,173 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         assert null != fedAuthToken;
 
         TDSCommand fedAuthCommand = new FedAuthTokenCommand(fedAuthToken, tdsTokenHandler);
-        fedAuthCommand.execute(tdsChannel.getWriter(), tdsChannel.getReader(fedAuthCommand));
+        if (null != session)
+            fedAuthCommand.execute(session.getWriter(), session.getReader(fedAuthCommand));
+        else
+            fedAuthCommand.execute(tdsChannel.getWriter(), tdsChannel.getReader(fedAuthCommand));
     }
 
+    /**
+     * Returns an access token for the login, from the token cache shared by the connections of the process unless the
+     * useFedAuthTokenCache connection property is false.
+     */
     private SqlFedAuthToken getFedAuthToken(SqlFedAuthInfo fedAuthInfo) throws SQLServerException {
-        SqlFedAuthToken fedAuthToken = null;
-
-        // fedAuthInfo should not be null.
-        assert null != fedAuthInfo;
-
         String user = activeConnectionProperties.getProperty(SQLServerDriverStringProperty.USER.toString());
         String password = activeConnectionProperties.getProperty(SQLServerDriverStringProperty.PASSWORD.toString());
+        int timeoutMillis = TimerRemaining(timerExpire);
+        FedAuthTokenSource source = new FedAuthTokenSource(fedAuthInfo, authenticationString, user, password,
+                clientConnectionId, timeoutMillis, toString());
+        if (!useFedAuthTokenCache)
+            return source.fetch();
 
-        // No:of milliseconds to sleep for the inital back off.
-        int sleepInterval = 100;
+        String key = FedAuthTokenCache.getKey(authenticationString.trim().toLowerCase(Locale.ENGLISH),
+                fedAuthInfo.stsurl, fedAuthInfo.spn, user, password);
+        return FedAuthTokenCache.getToken(key, source, timeoutMillis);
+    }
 
-        while (true) {
-            if (authenticationString.trim().equalsIgnoreCase(SqlAuthentication.ActiveDirectoryPassword.toString())) {
-                fedAuthToken = SQLServerADAL4JUtils.getSqlFedAuthToken(fedAuthInfo, user, password,
-                        authenticationString);
+    /**
+     * Returns the number of federated authentication access tokens taken from the token cache shared by the
+     * connections of the process and fetched from the STS, along with the time the fetches took.
+     *
+     * @return a snapshot of the counters of the token cache
+     */
+    public static SQLServerFedAuthTokenStatistics getFedAuthTokenStatistics() {
+        return FedAuthTokenCache.getStatistics();
+    }
 
-                // Break out of the retry loop in successful case.
-                break;
-            } else if (authenticationString.trim()
-                    .equalsIgnoreCase(SqlAuthentication.ActiveDirectoryIntegrated.toString())) {
+    /**
+     * Fetches access tokens from the STS for the credentials of a login. The token cache keeps the source of a token to
+     * refresh it in the background, so a source holds the credentials it needs rather than the connection.
+     */
+    private static final class FedAuthTokenSource implements FedAuthTokenCache.TokenSource {
+        private final SqlFedAuthInfo fedAuthInfo;
+        private final String authenticationString;
+        private final String user;
+        private final String password;
+        private final UUID clientConnectionId;
+        private final int timeoutMillis;
+        private final String loggingInfo;
+
+        FedAuthTokenSource(SqlFedAuthInfo fedAuthInfo, String authenticationString, String user, String password,
+                UUID clientConnectionId, int timeoutMillis, String loggingInfo) {
+            this.fedAuthInfo = fedAuthInfo;
+            this.authenticationString = authenticationString;
+            this.user = user;
+            this.password = password;
+            this.clientConnectionId = clientConnectionId;
+            this.timeoutMillis = timeoutMillis;
+            this.loggingInfo = loggingInfo;
+        }
 
-                // If operating system is windows and sqljdbc_auth is loaded then choose the DLL authentication.
-                if (System.getProperty("os.name").toLowerCase(Locale.ENGLISH).startsWith("windows")
-                        && AuthenticationJNI.isDllLoaded()) {
-                    try {
-                        long expirationFileTime = 0;
-                        FedAuthDllInfo dllInfo = AuthenticationJNI.getAccessTokenForWindowsIntegrated(
-                                fedAuthInfo.stsurl, fedAuthInfo.spn, clientConnectionId.toString(),
-                                ActiveDirectoryAuthentication.JDBC_FEDAUTH_CLIENT_ID, expirationFileTime);
+        @Override
+        public SqlFedAuthToken fetch() throws SQLServerException {
+            SqlFedAuthToken fedAuthToken = null;
 
-                        // AccessToken should not be null.
-                        assert null != dllInfo.accessTokenBytes;
+            // fedAuthInfo should not be null.
+            assert null != fedAuthInfo;
 
-                        byte[] accessTokenFromDLL = dllInfo.accessTokenBytes;
+            // A token refreshed in the background gets as long as the login that created the source had.
+            long timerExpire = System.currentTimeMillis() + timeoutMillis;
 
-                        String accessToken = new String(accessTokenFromDLL, UTF_16LE);
+            // No:of milliseconds to sleep for the inital back off.
+            int sleepInterval = 100;
 
-                        fedAuthToken = new SqlFedAuthToken(accessToken, dllInfo.expiresIn);
+            while (true) {
+                if (authenticationString.trim()
+                        .equalsIgnoreCase(SqlAuthentication.ActiveDirectoryPassword.toString())) {
+                    fedAuthToken = SQLServerADAL4JUtils.getSqlFedAuthToken(fedAuthInfo, user, password,
+                            authenticationString);
 
-                        // Break out of the retry loop in successful case.
-                        break;
-                    } catch (DLLException adalException) {
+                    // Break out of the retry loop in successful case.
+                    break;
+                } else if (authenticationString.trim()
+                        .equalsIgnoreCase(SqlAuthentication.ActiveDirectoryIntegrated.toString())) {
 
-                        // the sqljdbc_auth.dll return -1 for errorCategory, if unable to load the adalsql.dll
-                        int errorCategory = adalException.GetCategory();
-                        if (-1 == errorCategory) {
-                            MessageFormat form = new MessageFormat(
-                                    SQLServerException.getErrString("R_UnableLoadADALSqlDll"));
-                            Object[] msgArgs = {Integer.toHexString(adalException.GetState())};
-                            throw new SQLServerException(form.format(msgArgs), null);
-                        }
+                    // If operating system is windows and sqljdbc_auth is loaded then choose the DLL authentication.
+                    if (System.getProperty("os.name").toLowerCase(Locale.ENGLISH).startsWith("windows")
+                            && AuthenticationJNI.isDllLoaded()) {
+                        try {
+                            long expirationFileTime = 0;
+                            FedAuthDllInfo dllInfo = AuthenticationJNI.getAccessTokenForWindowsIntegrated(
+                                    fedAuthInfo.stsurl, fedAuthInfo.spn, clientConnectionId.toString(),
+                                    ActiveDirectoryAuthentication.JDBC_FEDAUTH_CLIENT_ID, expirationFileTime);
 
-                        int millisecondsRemaining = TimerRemaining(timerExpire);
-                        if (ActiveDirectoryAuthentication.GET_ACCESS_TOKEN_TANSISENT_ERROR != errorCategory
-                                || timerHasExpired(timerExpire) || (sleepInterval >= millisecondsRemaining)) {
+                            // AccessToken should not be null.
+                            assert null != dllInfo.accessTokenBytes;
 
-                            String errorStatus = Integer.toHexString(adalException.GetStatus());
+                            byte[] accessTokenFromDLL = dllInfo.accessTokenBytes;
 
-                            if (connectionlogger.isLoggable(Level.FINER)) {
-                                connectionlogger.fine(
-                                        toString() + " SQLServerConnection.getFedAuthToken.AdalException category:"
-                                                + errorCategory + " error: " + errorStatus);
-                            }
+                            String accessToken = new String(accessTokenFromDLL, UTF_16LE);
 
-                            MessageFormat form1 = new MessageFormat(
-                                    SQLServerException.getErrString("R_ADALAuthenticationMiddleErrorMessage"));
-                            String errorCode = Integer.toHexString(adalException.GetStatus()).toUpperCase();
-                            Object[] msgArgs1 = {errorCode, adalException.GetState()};
-                            SQLServerException middleException = new SQLServerException(form1.format(msgArgs1),
-                                    adalException);
+                            fedAuthToken = new SqlFedAuthToken(accessToken, dllInfo.expiresIn);
 
-                            MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_ADALExecution"));
-                            Object[] msgArgs = {user, authenticationString};
-                            throw new SQLServerException(form.format(msgArgs), null, 0, middleException);
-                        }
+                            // Break out of the retry loop in successful case.
+                            break;
+                        } catch (DLLException adalException) {
+
+                            // the sqljdbc_auth.dll return -1 for errorCategory, if unable to load the adalsql.dll
+                            int errorCategory = adalException.GetCategory();
+                            if (-1 == errorCategory) {
+                                MessageFormat form = new MessageFormat(
+                                        SQLServerException.getErrString("R_UnableLoadADALSqlDll"));
+                                Object[] msgArgs = {Integer.toHexString(adalException.GetState())};
+                                throw new SQLServerException(form.format(msgArgs), null);
+                            }
 
-                        if (connectionlogger.isLoggable(Level.FINER)) {
-                            connectionlogger.fine(toString() + " SQLServerConnection.getFedAuthToken sleeping: "
-                                    + sleepInterval + " milliseconds.");
-                            connectionlogger.fine(toString() + " SQLServerConnection.getFedAuthToken remaining: "
-                                    + millisecondsRemaining + " milliseconds.");
-                        }
+                            int millisecondsRemaining = TimerRemaining(timerExpire);
+                            if (ActiveDirectoryAuthentication.GET_ACCESS_TOKEN_TANSISENT_ERROR != errorCategory
+                                    || timerHasExpired(timerExpire) || (sleepInterval >= millisecondsRemaining)) {
+
+                                String errorStatus = Integer.toHexString(adalException.GetStatus());
+
+                                if (connectionlogger.isLoggable(Level.FINER)) {
+                                    connectionlogger.fine(
+                                            loggingInfo + " SQLServerConnection.getFedAuthToken.AdalException category:"
+                                                    + errorCategory + " error: " + errorStatus);
+                                }
+
+                                MessageFormat form1 = new MessageFormat(
+                                        SQLServerException.getErrString("R_ADALAuthenticationMiddleErrorMessage"));
+                                String errorCode = Integer.toHexString(adalException.GetStatus()).toUpperCase();
+                                Object[] msgArgs1 = {errorCode, adalException.GetState()};
+                                SQLServerException middleException = new SQLServerException(form1.format(msgArgs1),
+                                        adalException);
+
+                                MessageFormat form = new MessageFormat(
+                                        SQLServerException.getErrString("R_ADALExecution"));
+                                Object[] msgArgs = {user, authenticationString};
+                                throw new SQLServerException(form.format(msgArgs), null, 0, middleException);
+                            }
 
-                        try {
-                            Thread.sleep(sleepInterval);
-                        } catch (InterruptedException e1) {
-                            // re-interrupt the current thread, in order to restore the thread's interrupt status.
-                            Thread.currentThread().interrupt();
+                            if (connectionlogger.isLoggable(Level.FINER)) {
+                                connectionlogger.fine(loggingInfo + " SQLServerConnection.getFedAuthToken sleeping: "
+                                        + sleepInterval + " milliseconds.");
+                                connectionlogger.fine(loggingInfo + " SQLServerConnection.getFedAuthToken remaining: "
+                                        + millisecondsRemaining + " milliseconds.");
+                            }
+
+                            try {
+                                Thread.sleep(sleepInterval);
+                            } catch (InterruptedException e1) {
+                                // re-interrupt the current thread, in order to restore the thread's interrupt status.
+                                Thread.currentThread().interrupt();
+                            }
+                            sleepInterval = sleepInterval * 2;
                         }
-                        sleepInterval = sleepInterval * 2;
                     }
+                    // else choose ADAL4J for integrated authentication. This option is supported for both windows and
+                    // unix, so we don't need to check the OS version here.
+                    else {
+                        fedAuthToken = SQLServerADAL4JUtils.getSqlFedAuthTokenIntegrated(fedAuthInfo,
+                                authenticationString);
+                    }
+                    // Break out of the retry loop in successful case.
+                    break;
                 }
-                // else choose ADAL4J for integrated authentication. This option is supported for both windows and unix,
-                // so we don't need to check the
-                // OS version here.
-                else {
-                    fedAuthToken = SQLServerADAL4JUtils.getSqlFedAuthTokenIntegrated(fedAuthInfo, authenticationString);
-                }
-                // Break out of the retry loop in successful case.
-                break;
             }
-        }
 
-        return fedAuthToken;
+            return fedAuthToken;
+        }
     }
 
     /**
@@ -5376,9 +5788,14 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
     private volatile SQLWarning originalSqlWarnings;
     private List<Statement> openStatements;
 
+    // Guards the request boundary state and the pooled connection parent. Ending a request may roll back the
+    // transaction, so a lock is used rather than a monitor, which would pin a virtual thread waiting for the server.
+    private final Lock lock = new ReentrantLock();
+
     protected void beginRequestInternal() throws SQLException {
         loggerExternal.entering(getClassNameLogging(), "beginRequest", this);
-        synchronized (this) {
+        lock.lock();
+        try {
             if (!requestStarted) {
                 originalDatabaseAutoCommitMode = databaseAutoCommitMode;
                 originalTransactionIsolationLevel = transactionIsolationLevel;
@@ -5395,13 +5812,16 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                 openStatements = new LinkedList<Statement>();
                 requestStarted = true;
             }
+        } finally {
+            lock.unlock();
         }
         loggerExternal.exiting(getClassNameLogging(), "beginRequest", this);
     }
 
     protected void endRequestInternal() throws SQLException {
         loggerExternal.entering(getClassNameLogging(), "endRequest", this);
-        synchronized (this) {
+        lock.lock();
+        try {
             if (requestStarted) {
                 if (!databaseAutoCommitMode) {
                     rollback();
@@ -5448,6 +5868,8 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                 }
                 requestStarted = false;
             }
+        } finally {
+            lock.unlock();
         }
         loggerExternal.exiting(getClassNameLogging(), "endRequest", this);
     }
@@ -5538,18 +5960,24 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
      * should be removed from the pool.
      */
     void notifyPooledConnection(SQLServerException e) {
-        synchronized (this) {
+        lock.lock();
+        try {
             if (null != pooledConnectionParent) {
                 pooledConnectionParent.notifyEvent(e);
             }
+        } finally {
+            lock.unlock();
         }
 
     }
 
     // Detaches this connection from connection pool.
     void DetachFromPool() {
-        synchronized (this) {
+        lock.lock();
+        try {
             pooledConnectionParent = null;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -5718,6 +6146,43 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         return columnEncryptionKeyCacheTtl;
     }
 
+    private static volatile Executor backgroundTaskExecutor;
+
+    /**
+     * Sets the executor that runs the background tasks of the driver, which block while they wait for the server: the
+     * handling of expired query timeouts, the asynchronous statement executions that are not given an executor, and
+     * the refresh of cached federated authentication access tokens. By default the driver runs them on its own daemon
+     * thread pools. On Java 21 and later, an executor that starts a virtual thread for each task, such as the
+     * one returned by Executors.newVirtualThreadPerTaskExecutor(), can be set instead.
+     *
+     * @param executor
+     *        the executor, or null to use the thread pools of the driver
+     */
+    public static void setBackgroundTaskExecutor(Executor executor) {
+        backgroundTaskExecutor = executor;
+    }
+
+    /**
+     * Returns the executor that runs the background tasks of the driver.
+     *
+     * @return the executor set with {@link #setBackgroundTaskExecutor(Executor)}, or null if the thread pools of the
+     *         driver are used
+     */
+    public static Executor getBackgroundTaskExecutor() {
+        return backgroundTaskExecutor;
+    }
+
+    /**
+     * Returns the number of query, keep-alive and bulk copy timeouts that are currently armed across all the
+     * connections of the process. The timeouts share a single scheduler thread, and a timeout is disarmed as soon as
+     * its command completes.
+     *
+     * @return the number of armed timeouts
+     */
+    public static int getArmedTimerCount() {
+        return SharedTimer.getArmedTimerCount();
+    }
+
     /**
      * Enqueues a discarded prepared statement handle to be clean-up on the server.
      * 
@@ -5735,6 +6200,7 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         // Add the new handle to the discarding queue and find out current # enqueued.
         this.discardedPreparedStatementHandles.add(statementHandle);
         this.discardedPreparedStatementHandleCount.incrementAndGet();
+        statementHandleCounters.increment(SQLServerStatementHandleStatistics.Counters.PENDING_DISCARDS);
     }
 
     @Override
@@ -5752,7 +6218,8 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
      */
     private final void cleanupPreparedStatementDiscardActions() {
         discardedPreparedStatementHandles.clear();
-        discardedPreparedStatementHandleCount.set(0);
+        statementHandleCounters.add(SQLServerStatementHandleStatistics.Counters.PENDING_DISCARDS,
+                -discardedPreparedStatementHandleCount.getAndSet(0));
     }
 
     @Override
@@ -5835,6 +6302,12 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
 
             // Decrement threshold counter
             discardedPreparedStatementHandleCount.addAndGet(-handlesRemoved);
+            statementHandleCounters.add(SQLServerStatementHandleStatistics.Counters.PENDING_DISCARDS, -handlesRemoved);
+            if (0 < handlesRemoved) {
+                statementHandleCounters.increment(SQLServerStatementHandleStatistics.Counters.UNPREPARE_BATCHES);
+                statementHandleCounters.add(SQLServerStatementHandleStatistics.Counters.UNPREPARED_HANDLES,
+                        handlesRemoved);
+            }
         }
     }
 
@@ -5874,6 +6347,9 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
     public void setStatementPoolingCacheSize(int value) {
         value = Math.max(0, value);
         statementPoolingCacheSize = value;
+        statementPoolingCacheWindowLookups.set(0);
+        statementPoolingCacheWindowStartEvictions = statementHandleCounters
+                .get(SQLServerStatementHandleStatistics.Counters.CACHE_EVICTIONS);
 
         if (!this.disableStatementPooling && value > 0) {
             prepareCache();
@@ -5899,6 +6375,83 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
                 .maximumWeightedCapacity(getStatementPoolingCacheSize()).build();
     }
 
+    @Override
+    public void setMaxStatementPoolingCacheSize(int value) {
+        maxStatementPoolingCacheSize = Math.max(0, value);
+    }
+
+    @Override
+    public int getMaxStatementPoolingCacheSize() {
+        return maxStatementPoolingCacheSize;
+    }
+
+    @Override
+    public SQLServerStatementHandleStatistics getStatementHandleStatistics() {
+        return statementHandleCounters.snapshot();
+    }
+
+    @Override
+    public SQLServerResponseBufferStatistics getResponseBufferStatistics() {
+        return responseBufferCounters.snapshot();
+    }
+
+    @Override
+    public SQLServerPacketPoolStatistics getPacketPoolStatistics() {
+        return tdsPacketPool.getStatistics();
+    }
+
+    /**
+     * Makes the prepared statement handle counters of this connection add to those of the data source that opens it.
+     * Must be called before the connection is used.
+     */
+    final void setDataSourceStatementHandleCounters(SQLServerStatementHandleStatistics.Counters dataSourceCounters) {
+        statementHandleCounters = new SQLServerStatementHandleStatistics.Counters(dataSourceCounters);
+    }
+
+    /** Counts the execution of a prepared statement by sp_prepexec, sp_execute or sp_executesql */
+    final void countPreparedStatementExecution(int counter) {
+        statementHandleCounters.increment(counter);
+    }
+
+    /**
+     * Grows the prepared statement caches, up to maxStatementPoolingCacheSize, when more than a tenth of the handle
+     * cache lookups in a window evicted a handle. The statements of the workload then do not fit in the cache, and each
+     * eviction will cost an sp_unprepare and an sp_prepexec.
+     */
+    private void adaptStatementPoolingCacheSize() {
+        int size = statementPoolingCacheSize;
+        if (maxStatementPoolingCacheSize <= size)
+            return;
+
+        int window = Math.max(MIN_STATEMENT_POOLING_CACHE_WINDOW, size);
+        if (statementPoolingCacheWindowLookups.incrementAndGet() < window)
+            return;
+
+        // One thread closes the window: the one that takes the count while it is still at least window. Other threads
+        // may have counted past window meanwhile.
+        if (statementPoolingCacheWindowLookups.getAndSet(0) < window)
+            return;
+
+        long evictions = statementHandleCounters.get(SQLServerStatementHandleStatistics.Counters.CACHE_EVICTIONS);
+        long windowEvictions = evictions - statementPoolingCacheWindowStartEvictions;
+        statementPoolingCacheWindowStartEvictions = evictions;
+        if (windowEvictions <= window * STATEMENT_POOLING_CACHE_GROWTH_EVICTION_RATE)
+            return;
+
+        int newSize = (int) Math.min(maxStatementPoolingCacheSize, 2L * size);
+        if (loggerExternal.isLoggable(Level.FINER))
+            loggerExternal.finer(this + ": Growing the statement pooling cache from " + size + " to " + newSize
+                    + " after " + windowEvictions + " evictions in " + window + " lookups");
+
+        // Unlike setStatementPoolingCacheSize, keep the cached handles. A request in progress keeps the grown size.
+        if (originalStatementPoolingCacheSize == size)
+            originalStatementPoolingCacheSize = newSize;
+        statementPoolingCacheSize = newSize;
+        preparedStatementHandleCache.setCapacity(newSize);
+        parameterMetadataCache.setCapacity(newSize);
+        statementHandleCounters.increment(SQLServerStatementHandleStatistics.Counters.CACHE_RESIZES);
+    }
+
     /** Returns a parameter metadata cache entry if statement pooling is enabled */
     final SQLServerParameterMetaData getCachedParameterMetadata(CityHash128Key key) {
         if (!isStatementPoolingEnabled())
@@ -5915,12 +6468,121 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         parameterMetadataCache.put(key, pmd);
     }
 
+    /**
+     * Shares the parameter metadata cache of the data source that opens this connection. Must be called before the
+     * connection is used.
+     */
+    final void setSharedParameterMetadataCache(
+            ConcurrentLinkedHashMap<CityHash128Key, SQLServerParameterMetaData> sharedParameterMetadataCache) {
+        this.sharedParameterMetadataCache = sharedParameterMetadataCache;
+    }
+
+    /**
+     * Returns the parameter metadata retrieved for the SQL text on any connection of the data source to the same
+     * server and database, if statement pooling is enabled. The returned metadata must be copied for the statement.
+     */
+    final SQLServerParameterMetaData getSharedParameterMetadata(String sql) {
+        if (!isStatementPoolingEnabled() || null == sharedParameterMetadataCache)
+            return null;
+
+        return sharedParameterMetadataCache.get(getSharedMetadataKey(sql));
+    }
+
+    /** Shares the parameter metadata of a statement with the other connections of the data source */
+    final void registerSharedParameterMetadata(String sql, SQLServerParameterMetaData pmd) {
+        if (!isStatementPoolingEnabled() || null == sharedParameterMetadataCache || null == pmd)
+            return;
+
+        sharedParameterMetadataCache.put(getSharedMetadataKey(sql), new SQLServerParameterMetaData(null, pmd));
+    }
+
+    /** Removes the parameter metadata of a statement whose objects the server reports to have changed */
+    final void evictCachedParameterMetadata(CityHash128Key key, String sql) {
+        if (null != parameterMetadataCache)
+            parameterMetadataCache.remove(key);
+
+        if (null != sharedParameterMetadataCache)
+            sharedParameterMetadataCache.remove(getSharedMetadataKey(sql));
+    }
+
+    /**
+     * Returns the key of SQL text in the metadata caches of the data source. Object names in the text are resolved in
+     * the current database and the default schema of the login, so both are part of the key, as is the server.
+     */
+    private CityHash128Key getSharedMetadataKey(String sql) {
+        String serverName = currentConnectPlaceHolder.getServerName();
+        String user = activeConnectionProperties.getProperty(SQLServerDriverStringProperty.USER.toString());
+        if (null == user)
+            user = "";
+
+        String scope = serverName.length() + ":" + serverName + currentConnectPlaceHolder.getPortNumber() + ":"
+                + user.length() + ":" + user + sCatalog;
+        return new CityHash128Key(scope, sql, "");
+    }
+
+    @Override
+    public void setParameterEncryptionMetadataCacheSize(int value) {
+        value = Math.max(0, value);
+        parameterEncryptionMetadataCacheSize = value;
+        parameterEncryptionMetadataCache.setCapacity(value);
+    }
+
+    @Override
+    public int getParameterEncryptionMetadataCacheSize() {
+        return parameterEncryptionMetadataCacheSize;
+    }
+
+    @Override
+    public long getParameterEncryptionMetadataCacheHitCount() {
+        return parameterEncryptionMetadataCacheHits.get();
+    }
+
+    @Override
+    public long getParameterEncryptionMetadataCacheMissCount() {
+        return parameterEncryptionMetadataCacheMisses.get();
+    }
+
+    /** Returns a parameter encryption metadata cache entry if the cache is enabled, counting the hit or miss */
+    final CryptoMetadata[] getCachedParameterEncryptionMetadata(CityHash128Key key) {
+        if (0 >= parameterEncryptionMetadataCacheSize)
+            return null;
+
+        CryptoMetadata[] cryptoMetadata = parameterEncryptionMetadataCache.get(key);
+        if (null == cryptoMetadata)
+            parameterEncryptionMetadataCacheMisses.incrementAndGet();
+        else
+            parameterEncryptionMetadataCacheHits.incrementAndGet();
+        return cryptoMetadata;
+    }
+
+    /** Registers a parameter encryption metadata cache entry if the cache is enabled */
+    final void registerCachedParameterEncryptionMetadata(CityHash128Key key, CryptoMetadata[] cryptoMetadata) {
+        if (0 >= parameterEncryptionMetadataCacheSize)
+            return;
+
+        parameterEncryptionMetadataCache.put(key, cryptoMetadata);
+    }
+
+    /** Removes a parameter encryption metadata cache entry that the server no longer accepts. */
+    final void evictCachedParameterEncryptionMetadata(CityHash128Key key) {
+        if (null == key)
+            return;
+
+        parameterEncryptionMetadataCache.remove(key);
+    }
+
     /** Gets or creates prepared statement handle cache entry if statement pooling is enabled */
     final PreparedStatementHandle getCachedPreparedStatementHandle(CityHash128Key key) {
         if (!isStatementPoolingEnabled())
             return null;
 
-        return preparedStatementHandleCache.get(key);
+        PreparedStatementHandle handle = preparedStatementHandleCache.get(key);
+        if (null == handle)
+            statementHandleCounters.increment(SQLServerStatementHandleStatistics.Counters.CACHE_MISSES);
+        else
+            statementHandleCounters.increment(SQLServerStatementHandleStatistics.Counters.CACHE_HITS);
+        adaptStatementPoolingCacheSize();
+        return handle;
     }
 
     /** Gets or creates prepared statement handle cache entry if statement pooling is enabled */
@@ -5958,6 +6620,7 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
         public void onEviction(CityHash128Key key, PreparedStatementHandle handle) {
             if (null != handle) {
                 handle.setIsEvictedFromCache(true); // Mark as evicted from cache.
+                statementHandleCounters.increment(SQLServerStatementHandleStatistics.Counters.CACHE_EVICTIONS);
 
                 // Only discard if not referenced.
                 if (handle.tryDiscardHandle()) {
@@ -6002,9 +6665,14 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
      * @param st
      *        Statement to add to openStatements
      */
-    final synchronized void addOpenStatement(Statement st) {
-        if (null != openStatements) {
-            openStatements.add(st);
+    final void addOpenStatement(Statement st) {
+        lock.lock();
+        try {
+            if (null != openStatements) {
+                openStatements.add(st);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -6014,9 +6682,14 @@ public class SQLServerConnection implements ISQLServerConnection, java.io.Serial
      * @param st
      *        Statement to remove from openStatements
      */
-    final synchronized void removeOpenStatement(Statement st) {
-        if (null != openStatements) {
-            openStatements.remove(st);
+    final void removeOpenStatement(Statement st) {
+        lock.lock();
+        try {
+            if (null != openStatements) {
+                openStatements.remove(st);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -0,0 +1,386 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+
+
+/**
+ * Connection pool backing {@link SQLServerPoolingDataSource}.
+ *
+ * Pooled connections are kept in a shared list and each one carries its own IDLE/IN_USE/REMOVED state, so borrowing
+ * and returning a connection are compare-and-set operations on that state rather than operations under a pool-wide
+ * lock. A thread first tries the connection it returned last, which usually is still idle, before scanning the shared
+ * list. Threads that find the pool exhausted wait on a hand-off queue that returning threads feed directly.
+ *
+ * Validation does not require a round trip: a connection is handed out only while its session is still available,
+ * and SQLServerPooledConnection.getConnection() flags the session for reset so that the reset travels with the next
+ * request sent on the connection.
+ */
+final class SQLServerConnectionPool {
+    private static final java.util.logging.Logger poolLogger = java.util.logging.Logger
+            .getLogger("com.microsoft.sqlserver.jdbc.internals.SQLServerConnectionPool");
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_IN_USE = 1;
+    private static final int STATE_REMOVED = 2;
+
+    private final SQLServerPoolingDataSource dataSource;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long connectionWaitTimeoutMillis;
+    private final String traceID;
+
+    private final CopyOnWriteArrayList<PoolEntry> entries = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<WeakReference<PoolEntry>> lastUsedEntry = new ThreadLocal<>();
+    private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<>(true);
+
+    // Handed to a waiting thread when a connection is removed, so that it can open a new one in its place. It is never
+    // idle, so a waiter that receives it simply looks again.
+    private final PoolEntry wakeUp = new PoolEntry(null);
+
+    // Number of connections that are open or being opened; never exceeds maxPoolSize.
+    private final AtomicInteger totalConnections = new AtomicInteger(0);
+    private final AtomicInteger waiters = new AtomicInteger(0);
+
+    // Opens connections in the background to keep the pool at its minimum size.
+    private final ExecutorService fillExecutor;
+    private final AtomicInteger pendingFills = new AtomicInteger(0);
+
+    private volatile boolean isClosed = false;
+
+    /**
+     * A pooled connection together with its pool state. Also listens for the events telling the pool that the
+     * connection handed out from it was closed or broke.
+     */
+    private final class PoolEntry implements ConnectionEventListener {
+        final SQLServerPooledConnection pooledConnection;
+        final AtomicInteger state = new AtomicInteger(STATE_IN_USE);
+
+        PoolEntry(SQLServerPooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        boolean isUsable() {
+            SQLServerConnection physicalConnection = pooledConnection.getPhysicalConnection();
+            return null != physicalConnection && !physicalConnection.isSessionUnAvailable();
+        }
+
+        @Override
+        public void connectionClosed(ConnectionEvent event) {
+            requite(this);
+        }
+
+        @Override
+        public void connectionErrorOccurred(ConnectionEvent event) {
+            remove(this);
+        }
+    }
+
+    SQLServerConnectionPool(SQLServerPoolingDataSource dataSource, int minPoolSize, int maxPoolSize,
+            long connectionWaitTimeoutMillis) {
+        assert 0 <= minPoolSize && minPoolSize <= maxPoolSize && 0 < maxPoolSize;
+
+        this.dataSource = dataSource;
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.connectionWaitTimeoutMillis = connectionWaitTimeoutMillis;
+        this.traceID = "SQLServerConnectionPool(" + dataSource.toString() + ")";
+        this.fillExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "mssql-jdbc-ConnectionPoolFiller");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return traceID;
+    }
+
+    /**
+     * Starts opening connections in the background until the pool holds its minimum number of connections.
+     */
+    void fill() {
+        if (isClosed)
+            return;
+
+        int needed = minPoolSize - totalConnections.get() - pendingFills.get();
+        for (int i = 0; i < needed; i++) {
+            pendingFills.incrementAndGet();
+            try {
+                fillExecutor.execute(this::fillOne);
+            } catch (RejectedExecutionException e) {
+                // The pool was closed concurrently.
+                pendingFills.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void fillOne() {
+        try {
+            if (isClosed || !reserve(minPoolSize))
+                return;
+
+            PoolEntry entry;
+            try {
+                entry = open();
+            } catch (SQLException e) {
+                if (poolLogger.isLoggable(Level.FINE))
+                    poolLogger.fine(toString() + " Failed to open a connection in the background: " + e.getMessage());
+                return;
+            }
+            requite(entry);
+        } finally {
+            pendingFills.decrementAndGet();
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one or waiting for one to be returned if necessary.
+     */
+    Connection getConnection() throws SQLServerException {
+        checkClosed();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectionWaitTimeoutMillis);
+
+        while (true) {
+            PoolEntry entry = borrowIdle();
+            if (null != entry) {
+                Connection con = handOut(entry);
+                if (null != con)
+                    return con;
+                continue;
+            }
+
+            if (reserve(maxPoolSize)) {
+                try {
+                    entry = open();
+                } catch (SQLServerException e) {
+                    throw e;
+                } catch (SQLException e) {
+                    throw new SQLServerException(e.getMessage(), e);
+                }
+
+                Connection con = handOut(entry);
+                if (null != con)
+                    return con;
+                continue;
+            }
+
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_connectionPoolTimeout"));
+                Object[] msgArgs = {connectionWaitTimeoutMillis};
+                SQLServerException.makeFromDriverError(null, this, form.format(msgArgs),
+                        SQLServerException.EXCEPTION_XOPEN_CONNECTION_CANT_ESTABLISH, false);
+            }
+
+            waiters.incrementAndGet();
+            try {
+                // A connection returned or removed before this thread counted as a waiter was not offered to it, so
+                // look again before waiting.
+                if (0 < getIdleConnections() || totalConnections.get() < maxPoolSize)
+                    continue;
+                entry = handoffQueue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLServerException(e.getMessage(), e);
+            } finally {
+                waiters.decrementAndGet();
+            }
+
+            checkClosed();
+            if (null != entry && entry.state.compareAndSet(STATE_IDLE, STATE_IN_USE)) {
+                Connection con = handOut(entry);
+                if (null != con)
+                    return con;
+            }
+        }
+    }
+
+    /**
+     * Claims an idle connection, preferring the one this thread used last.
+     */
+    private PoolEntry borrowIdle() {
+        WeakReference<PoolEntry> ref = lastUsedEntry.get();
+        if (null != ref) {
+            PoolEntry entry = ref.get();
+            if (null != entry && entry.state.compareAndSet(STATE_IDLE, STATE_IN_USE))
+                return entry;
+        }
+
+        for (PoolEntry entry : entries) {
+            if (entry.state.compareAndSet(STATE_IDLE, STATE_IN_USE))
+                return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a connection handle for a claimed entry, or null if the connection turned out to be unusable.
+     */
+    private Connection handOut(PoolEntry entry) {
+        if (entry.isUsable()) {
+            try {
+                return entry.pooledConnection.getConnection();
+            } catch (SQLException e) {
+                if (poolLogger.isLoggable(Level.FINE))
+                    poolLogger.fine(toString() + " Discarding " + entry.pooledConnection.toString() + ": "
+                            + e.getMessage());
+            }
+        }
+        remove(entry);
+        return null;
+    }
+
+    /**
+     * Reserves room for one more connection if the pool holds fewer than limit connections.
+     */
+    private boolean reserve(int limit) {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= limit)
+                return false;
+        } while (!totalConnections.compareAndSet(total, total + 1));
+        return true;
+    }
+
+    /**
+     * Opens a new connection in the IN_USE state, using a slot that was already reserved.
+     */
+    private PoolEntry open() throws SQLException {
+        PoolEntry entry;
+        try {
+            entry = new PoolEntry((SQLServerPooledConnection) dataSource.getPooledConnection());
+        } catch (SQLException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+
+        entry.pooledConnection.addConnectionEventListener(entry);
+        entries.add(entry);
+
+        if (poolLogger.isLoggable(Level.FINER))
+            poolLogger.finer(toString() + " Opened " + entry.pooledConnection.toString() + "; total connections: "
+                    + totalConnections.get());
+
+        // The pool may have been closed while the connection was being opened.
+        if (isClosed) {
+            remove(entry);
+            checkClosed();
+        }
+        return entry;
+    }
+
+    /**
+     * Returns a connection to the pool.
+     */
+    private void requite(PoolEntry entry) {
+        if (isClosed || !entry.isUsable()) {
+            remove(entry);
+            return;
+        }
+
+        if (!entry.state.compareAndSet(STATE_IN_USE, STATE_IDLE))
+            return;
+        lastUsedEntry.set(new WeakReference<>(entry));
+
+        // Hand the connection to a waiting thread, if any, until someone (possibly another borrower) claims it.
+        while (waiters.get() > 0 && STATE_IDLE == entry.state.get()) {
+            if (handoffQueue.offer(entry))
+                break;
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Closes a connection and removes it from the pool.
+     */
+    private void remove(PoolEntry entry) {
+        if (STATE_REMOVED == entry.state.getAndSet(STATE_REMOVED))
+            return;
+
+        entries.remove(entry);
+        totalConnections.decrementAndGet();
+        entry.pooledConnection.removeConnectionEventListener(entry);
+
+        // Wake a waiting thread so that it can open a connection in the freed slot, unless the slot is taken first.
+        while (waiters.get() > 0 && totalConnections.get() < maxPoolSize) {
+            if (handoffQueue.offer(wakeUp))
+                break;
+            Thread.yield();
+        }
+
+        try {
+            entry.pooledConnection.close();
+        } catch (SQLException e) {
+            if (poolLogger.isLoggable(Level.FINE))
+                poolLogger.fine(toString() + " Ignored error closing " + entry.pooledConnection.toString() + ": "
+                        + e.getMessage());
+        }
+
+        if (poolLogger.isLoggable(Level.FINER))
+            poolLogger.finer(toString() + " Removed " + entry.pooledConnection.toString() + "; total connections: "
+                    + totalConnections.get());
+
+        if (!isClosed)
+            fill();
+    }
+
+    /**
+     * Closes the pool. Idle connections are closed right away; connections in use are closed when they are returned.
+     */
+    void close() {
+        isClosed = true;
+        fillExecutor.shutdownNow();
+
+        for (PoolEntry entry : entries) {
+            if (entry.state.compareAndSet(STATE_IDLE, STATE_IN_USE))
+                remove(entry);
+        }
+    }
+
+    private void checkClosed() throws SQLServerException {
+        if (isClosed)
+            SQLServerException.makeFromDriverError(null, this,
+                    SQLServerException.getErrString("R_connectionPoolClosed"),
+                    SQLServerException.EXCEPTION_XOPEN_CONNECTION_DOES_NOT_EXIST, false);
+    }
+
+    int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    int getIdleConnections() {
+        int idle = 0;
+        for (PoolEntry entry : entries) {
+            if (STATE_IDLE == entry.state.get())
+                ++idle;
+        }
+        return idle;
+    }
+
+    int getThreadsAwaitingConnection() {
+        return waiters.get();
+    }
+}
@@ -570,6 +570,51 @@ class SQLServerConnectionPoolProxy implements ISQLServerConnection, java.io.Seri
         return wrappedConnection.getStatementHandleCacheEntryCount();
     }
 
+    @Override
+    public void setMaxStatementPoolingCacheSize(int value) {
+        wrappedConnection.setMaxStatementPoolingCacheSize(value);
+    }
+
+    @Override
+    public int getMaxStatementPoolingCacheSize() {
+        return wrappedConnection.getMaxStatementPoolingCacheSize();
+    }
+
+    @Override
+    public SQLServerStatementHandleStatistics getStatementHandleStatistics() {
+        return wrappedConnection.getStatementHandleStatistics();
+    }
+
+    @Override
+    public SQLServerResponseBufferStatistics getResponseBufferStatistics() {
+        return wrappedConnection.getResponseBufferStatistics();
+    }
+
+    @Override
+    public SQLServerPacketPoolStatistics getPacketPoolStatistics() {
+        return wrappedConnection.getPacketPoolStatistics();
+    }
+
+    @Override
+    public void setParameterEncryptionMetadataCacheSize(int value) {
+        wrappedConnection.setParameterEncryptionMetadataCacheSize(value);
+    }
+
+    @Override
+    public int getParameterEncryptionMetadataCacheSize() {
+        return wrappedConnection.getParameterEncryptionMetadataCacheSize();
+    }
+
+    @Override
+    public long getParameterEncryptionMetadataCacheHitCount() {
+        return wrappedConnection.getParameterEncryptionMetadataCacheHitCount();
+    }
+
+    @Override
+    public long getParameterEncryptionMetadataCacheMissCount() {
+        return wrappedConnection.getParameterEncryptionMetadataCacheMissCount();
+    }
+
     @Override
     public void setDisableStatementPooling(boolean value) {
         wrappedConnection.setDisableStatementPooling(value);
@@ -579,4 +624,10 @@ class SQLServerConnectionPoolProxy implements ISQLServerConnection, java.io.Seri
     public boolean getDisableStatementPooling() {
         return wrappedConnection.getDisableStatementPooling();
     }
+
+    @Override
+    public SQLServerPipeline pipeline() throws SQLServerException {
+        checkClosed();
+        return wrappedConnection.pipeline();
+    }
 }
@@ -19,6 +19,11 @@ import javax.naming.StringRefAddr;
 
 import org.ietf.jgss.GSSCredential;
 
+import com.microsoft.sqlserver.jdbc.SQLServerConnection.CityHash128Key;
+
+import mssql.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import mssql.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap.Builder;
+
 
 /**
  * Contains a list of properties specific for the {@link SQLServerConnection} class.
@@ -121,6 +126,14 @@ public class SQLServerDataSource
      */
     private transient PrintWriter logWriter;
 
+    // Parameter metadata shared by the connections opened by this data source
+    private final transient ConcurrentLinkedHashMap<CityHash128Key, SQLServerParameterMetaData> sharedParameterMetadataCache = new Builder<CityHash128Key, SQLServerParameterMetaData>()
+            .maximumWeightedCapacity(SQLServerConnection.DEFAULT_SHARED_PARAMETER_METADATA_CACHE_SIZE).build();
+
+    // Counters of the prepared statement handles of the connections opened by this data source
+    private final transient SQLServerStatementHandleStatistics.Counters statementHandleCounters = new SQLServerStatementHandleStatistics.Counters(
+            null);
+
     @Override
     public void setLogWriter(PrintWriter out) {
         loggerExternal.entering(getClassNameLogging(), "setLogWriter", out);
@@ -817,6 +830,51 @@ public class SQLServerDataSource
                 defaultSize);
     }
 
+    @Override
+    public void setMaxStatementPoolingCacheSize(int maxStatementPoolingCacheSize) {
+        setIntProperty(connectionProps, SQLServerDriverIntProperty.MAX_STATEMENT_POOLING_CACHE_SIZE.toString(),
+                maxStatementPoolingCacheSize);
+    }
+
+    @Override
+    public int getMaxStatementPoolingCacheSize() {
+        int defaultSize = SQLServerDriverIntProperty.MAX_STATEMENT_POOLING_CACHE_SIZE.getDefaultValue();
+        return getIntProperty(connectionProps, SQLServerDriverIntProperty.MAX_STATEMENT_POOLING_CACHE_SIZE.toString(),
+                defaultSize);
+    }
+
+    @Override
+    public void setSharedParameterMetadataCacheSize(int sharedParameterMetadataCacheSize) {
+        setIntProperty(connectionProps, SQLServerDriverIntProperty.SHARED_PARAMETER_METADATA_CACHE_SIZE.toString(),
+                sharedParameterMetadataCacheSize);
+    }
+
+    @Override
+    public int getSharedParameterMetadataCacheSize() {
+        int defaultSize = SQLServerDriverIntProperty.SHARED_PARAMETER_METADATA_CACHE_SIZE.getDefaultValue();
+        return getIntProperty(connectionProps,
+                SQLServerDriverIntProperty.SHARED_PARAMETER_METADATA_CACHE_SIZE.toString(), defaultSize);
+    }
+
+    @Override
+    public SQLServerStatementHandleStatistics getStatementHandleStatistics() {
+        return statementHandleCounters.snapshot();
+    }
+
+    @Override
+    public void setParameterEncryptionMetadataCacheSize(int parameterEncryptionMetadataCacheSize) {
+        setIntProperty(connectionProps,
+                SQLServerDriverIntProperty.PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE.toString(),
+                parameterEncryptionMetadataCacheSize);
+    }
+
+    @Override
+    public int getParameterEncryptionMetadataCacheSize() {
+        int defaultSize = SQLServerDriverIntProperty.PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE.getDefaultValue();
+        return getIntProperty(connectionProps,
+                SQLServerDriverIntProperty.PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE.toString(), defaultSize);
+    }
+
     @Override
     public void setDisableStatementPooling(boolean disableStatementPooling) {
         setBooleanProperty(connectionProps, SQLServerDriverBooleanProperty.DISABLE_STATEMENT_POOLING.toString(),
@@ -854,6 +912,66 @@ public class SQLServerDataSource
                 SQLServerDriverBooleanProperty.USE_BULK_COPY_FOR_BATCH_INSERT.getDefaultValue());
     }
 
+    @Override
+    public void setUseSocketChannel(boolean useSocketChannel) {
+        setBooleanProperty(connectionProps, SQLServerDriverBooleanProperty.USE_SOCKET_CHANNEL.toString(),
+                useSocketChannel);
+    }
+
+    @Override
+    public boolean getUseSocketChannel() {
+        return getBooleanProperty(connectionProps, SQLServerDriverBooleanProperty.USE_SOCKET_CHANNEL.toString(),
+                SQLServerDriverBooleanProperty.USE_SOCKET_CHANNEL.getDefaultValue());
+    }
+
+    @Override
+    public void setMultipleActiveResultSets(boolean multipleActiveResultSets) {
+        setBooleanProperty(connectionProps, SQLServerDriverBooleanProperty.MULTIPLE_ACTIVE_RESULT_SETS.toString(),
+                multipleActiveResultSets);
+    }
+
+    @Override
+    public boolean getMultipleActiveResultSets() {
+        return getBooleanProperty(connectionProps,
+                SQLServerDriverBooleanProperty.MULTIPLE_ACTIVE_RESULT_SETS.toString(),
+                SQLServerDriverBooleanProperty.MULTIPLE_ACTIVE_RESULT_SETS.getDefaultValue());
+    }
+
+    @Override
+    public void setResponseBufferSpillThreshold(int responseBufferSpillThreshold) {
+        setIntProperty(connectionProps, SQLServerDriverIntProperty.RESPONSE_BUFFER_SPILL_THRESHOLD.toString(),
+                responseBufferSpillThreshold);
+    }
+
+    @Override
+    public int getResponseBufferSpillThreshold() {
+        return getIntProperty(connectionProps, SQLServerDriverIntProperty.RESPONSE_BUFFER_SPILL_THRESHOLD.toString(),
+                SQLServerDriverIntProperty.RESPONSE_BUFFER_SPILL_THRESHOLD.getDefaultValue());
+    }
+
+    @Override
+    public void setUseFedAuthTokenCache(boolean useFedAuthTokenCache) {
+        setBooleanProperty(connectionProps, SQLServerDriverBooleanProperty.USE_FED_AUTH_TOKEN_CACHE.toString(),
+                useFedAuthTokenCache);
+    }
+
+    @Override
+    public boolean getUseFedAuthTokenCache() {
+        return getBooleanProperty(connectionProps, SQLServerDriverBooleanProperty.USE_FED_AUTH_TOKEN_CACHE.toString(),
+                SQLServerDriverBooleanProperty.USE_FED_AUTH_TOKEN_CACHE.getDefaultValue());
+    }
+
+    @Override
+    public void setEndpointCacheTtl(int endpointCacheTtl) {
+        setIntProperty(connectionProps, SQLServerDriverIntProperty.ENDPOINT_CACHE_TTL.toString(), endpointCacheTtl);
+    }
+
+    @Override
+    public int getEndpointCacheTtl() {
+        return getIntProperty(connectionProps, SQLServerDriverIntProperty.ENDPOINT_CACHE_TTL.toString(),
+                SQLServerDriverIntProperty.ENDPOINT_CACHE_TTL.getDefaultValue());
+    }
+
     @Override
     public void setJASSConfigurationName(String configurationName) {
         setStringProperty(connectionProps, SQLServerDriverStringProperty.JAAS_CONFIG_NAME.toString(),
@@ -1053,12 +1171,25 @@ public class SQLServerDataSource
         } else {
             result = new SQLServerConnection(toString());
         }
+        result.setDataSourceStatementHandleCounters(statementHandleCounters);
+        result.setSharedParameterMetadataCache(getSharedParameterMetadataCache());
         result.connect(mergedProps, pooledConnection);
         if (dsLogger.isLoggable(Level.FINER))
             dsLogger.finer(toString() + " End create new connection " + result.toString());
         return result;
     }
 
+    /**
+     * Returns the parameter metadata cache for a new connection, sized per the sharedParameterMetadataCacheSize
+     * property, or null if the cache is disabled.
+     */
+    private ConcurrentLinkedHashMap<CityHash128Key, SQLServerParameterMetaData> getSharedParameterMetadataCache() {
+        int size = Math.max(0, getSharedParameterMetadataCacheSize());
+        if (sharedParameterMetadataCache.capacity() != size)
+            sharedParameterMetadataCache.setCapacity(size);
+        return (0 == size) ? null : sharedParameterMetadataCache;
+    }
+
     // Implement javax.naming.Referenceable interface methods.
 
     @Override
@@ -309,7 +309,12 @@ enum SQLServerDriverIntProperty {
     SOCKET_TIMEOUT("socketTimeout", 0),
     SERVER_PREPARED_STATEMENT_DISCARD_THRESHOLD("serverPreparedStatementDiscardThreshold", SQLServerConnection.DEFAULT_SERVER_PREPARED_STATEMENT_DISCARD_THRESHOLD),
     STATEMENT_POOLING_CACHE_SIZE("statementPoolingCacheSize", SQLServerConnection.DEFAULT_STATEMENT_POOLING_CACHE_SIZE),
-    CANCEL_QUERY_TIMEOUT("cancelQueryTimeout", -1),;
+    MAX_STATEMENT_POOLING_CACHE_SIZE("maxStatementPoolingCacheSize", SQLServerConnection.DEFAULT_MAX_STATEMENT_POOLING_CACHE_SIZE),
+    PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE("parameterEncryptionMetadataCacheSize", SQLServerConnection.DEFAULT_PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE),
+    SHARED_PARAMETER_METADATA_CACHE_SIZE("sharedParameterMetadataCacheSize", SQLServerConnection.DEFAULT_SHARED_PARAMETER_METADATA_CACHE_SIZE),
+    CANCEL_QUERY_TIMEOUT("cancelQueryTimeout", -1),
+    RESPONSE_BUFFER_SPILL_THRESHOLD("responseBufferSpillThreshold", SQLServerConnection.DEFAULT_RESPONSE_BUFFER_SPILL_THRESHOLD),
+    ENDPOINT_CACHE_TTL("endpointCacheTtl", SQLServerConnection.DEFAULT_ENDPOINT_CACHE_TTL),;
 
     private final String name;
     private final int defaultValue;
@@ -343,7 +348,10 @@ enum SQLServerDriverBooleanProperty {
     XOPEN_STATES("xopenStates", false),
     FIPS("fips", false),
     ENABLE_PREPARE_ON_FIRST_PREPARED_STATEMENT("enablePrepareOnFirstPreparedStatementCall", SQLServerConnection.DEFAULT_ENABLE_PREPARE_ON_FIRST_PREPARED_STATEMENT_CALL),
-    USE_BULK_COPY_FOR_BATCH_INSERT("useBulkCopyForBatchInsert", false);
+    USE_BULK_COPY_FOR_BATCH_INSERT("useBulkCopyForBatchInsert", false),
+    USE_SOCKET_CHANNEL("useSocketChannel", false),
+    MULTIPLE_ACTIVE_RESULT_SETS("multipleActiveResultSets", false),
+    USE_FED_AUTH_TOKEN_CACHE("useFedAuthTokenCache", true);
 
     private final String name;
     private final boolean defaultValue;
@@ -494,6 +502,17 @@ public final class SQLServerDriver implements java.sql.Driver {
             new SQLServerDriverPropertyInfo(SQLServerDriverIntProperty.STATEMENT_POOLING_CACHE_SIZE.toString(),
                     Integer.toString(SQLServerDriverIntProperty.STATEMENT_POOLING_CACHE_SIZE.getDefaultValue()), false,
                     null),
+            new SQLServerDriverPropertyInfo(SQLServerDriverIntProperty.MAX_STATEMENT_POOLING_CACHE_SIZE.toString(),
+                    Integer.toString(SQLServerDriverIntProperty.MAX_STATEMENT_POOLING_CACHE_SIZE.getDefaultValue()),
+                    false, null),
+            new SQLServerDriverPropertyInfo(
+                    SQLServerDriverIntProperty.PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE.toString(),
+                    Integer.toString(
+                            SQLServerDriverIntProperty.PARAMETER_ENCRYPTION_METADATA_CACHE_SIZE.getDefaultValue()),
+                    false, null),
+            new SQLServerDriverPropertyInfo(SQLServerDriverIntProperty.SHARED_PARAMETER_METADATA_CACHE_SIZE.toString(),
+                    Integer.toString(SQLServerDriverIntProperty.SHARED_PARAMETER_METADATA_CACHE_SIZE.getDefaultValue()),
+                    false, null),
             new SQLServerDriverPropertyInfo(SQLServerDriverStringProperty.JAAS_CONFIG_NAME.toString(),
                     SQLServerDriverStringProperty.JAAS_CONFIG_NAME.getDefaultValue(), false, null),
             new SQLServerDriverPropertyInfo(SQLServerDriverStringProperty.SSL_PROTOCOL.toString(),
@@ -502,9 +521,23 @@ public final class SQLServerDriver implements java.sql.Driver {
                             SSLProtocol.TLS_V11.toString(), SSLProtocol.TLS_V12.toString()}),
             new SQLServerDriverPropertyInfo(SQLServerDriverIntProperty.CANCEL_QUERY_TIMEOUT.toString(),
                     Integer.toString(SQLServerDriverIntProperty.CANCEL_QUERY_TIMEOUT.getDefaultValue()), false, null),
+            new SQLServerDriverPropertyInfo(SQLServerDriverIntProperty.RESPONSE_BUFFER_SPILL_THRESHOLD.toString(),
+                    Integer.toString(SQLServerDriverIntProperty.RESPONSE_BUFFER_SPILL_THRESHOLD.getDefaultValue()),
+                    false, null),
+            new SQLServerDriverPropertyInfo(SQLServerDriverIntProperty.ENDPOINT_CACHE_TTL.toString(),
+                    Integer.toString(SQLServerDriverIntProperty.ENDPOINT_CACHE_TTL.getDefaultValue()), false, null),
             new SQLServerDriverPropertyInfo(SQLServerDriverBooleanProperty.USE_BULK_COPY_FOR_BATCH_INSERT.toString(),
                     Boolean.toString(SQLServerDriverBooleanProperty.USE_BULK_COPY_FOR_BATCH_INSERT.getDefaultValue()),
-                    false, TRUE_FALSE),};
+                    false, TRUE_FALSE),
+            new SQLServerDriverPropertyInfo(SQLServerDriverBooleanProperty.USE_SOCKET_CHANNEL.toString(),
+                    Boolean.toString(SQLServerDriverBooleanProperty.USE_SOCKET_CHANNEL.getDefaultValue()), false,
+                    TRUE_FALSE),
+            new SQLServerDriverPropertyInfo(SQLServerDriverBooleanProperty.MULTIPLE_ACTIVE_RESULT_SETS.toString(),
+                    Boolean.toString(SQLServerDriverBooleanProperty.MULTIPLE_ACTIVE_RESULT_SETS.getDefaultValue()),
+                    false, TRUE_FALSE),
+            new SQLServerDriverPropertyInfo(SQLServerDriverBooleanProperty.USE_FED_AUTH_TOKEN_CACHE.toString(),
+                    Boolean.toString(SQLServerDriverBooleanProperty.USE_FED_AUTH_TOKEN_CACHE.getDefaultValue()), false,
+                    TRUE_FALSE),};
 
     /**
      * Properties that can only be set by using Properties. Cannot set in connection string
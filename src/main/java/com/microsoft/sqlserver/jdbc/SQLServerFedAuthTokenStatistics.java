@@ -0,0 +1,146 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A snapshot of the counters of the federated authentication token cache shared by all connections of the process.
+ *
+ * Connections that authenticate with ActiveDirectoryPassword or ActiveDirectoryIntegrated look their access token up
+ * in the cache by STS URL, SPN and user. A token is fetched from the STS only when the cache holds none that is still
+ * valid, and logins that miss the cache at the same time wait on a single fetch. Tokens that are in use are refreshed
+ * in the background before they expire.
+ */
+public final class SQLServerFedAuthTokenStatistics {
+    /**
+     * The live counters of the process.
+     */
+    static final class Counters {
+        static final int CACHE_HITS = 0;
+        static final int FETCHES = 1;
+        static final int FAILED_FETCHES = 2;
+        static final int SHARED_FETCHES = 3;
+        static final int BACKGROUND_REFRESHES = 4;
+        static final int TOTAL_FETCH_NANOS = 5;
+        static final int MAX_FETCH_NANOS = 6;
+        private static final int COUNTER_COUNT = 7;
+
+        private final AtomicLongArray values = new AtomicLongArray(COUNTER_COUNT);
+
+        void increment(int counter) {
+            values.incrementAndGet(counter);
+        }
+
+        /**
+         * Counts a fetch from the STS that took the given number of nanoseconds.
+         */
+        void addFetch(long nanos, boolean succeeded) {
+            values.incrementAndGet(FETCHES);
+            if (!succeeded)
+                values.incrementAndGet(FAILED_FETCHES);
+            values.addAndGet(TOTAL_FETCH_NANOS, nanos);
+            values.accumulateAndGet(MAX_FETCH_NANOS, nanos, Math::max);
+        }
+
+        SQLServerFedAuthTokenStatistics snapshot() {
+            long[] snapshot = new long[COUNTER_COUNT];
+            for (int i = 0; i < COUNTER_COUNT; i++)
+                snapshot[i] = values.get(i);
+            return new SQLServerFedAuthTokenStatistics(snapshot);
+        }
+    }
+
+    private final long[] values;
+
+    private SQLServerFedAuthTokenStatistics(long[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of logins that used a token from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getCacheHitCount() {
+        return values[Counters.CACHE_HITS];
+    }
+
+    /**
+     * Returns the number of tokens fetched from the STS, including failed fetches and background refreshes.
+     *
+     * @return the number of fetches
+     */
+    public long getFetchCount() {
+        return values[Counters.FETCHES];
+    }
+
+    /**
+     * Returns the number of fetches from the STS that failed.
+     *
+     * @return the number of failed fetches
+     */
+    public long getFailedFetchCount() {
+        return values[Counters.FAILED_FETCHES];
+    }
+
+    /**
+     * Returns the number of logins that waited on a fetch started by another login rather than fetch a token of their
+     * own.
+     *
+     * @return the number of shared fetches
+     */
+    public long getSharedFetchCount() {
+        return values[Counters.SHARED_FETCHES];
+    }
+
+    /**
+     * Returns the number of tokens refreshed in the background before they expired.
+     *
+     * @return the number of background refreshes
+     */
+    public long getBackgroundRefreshCount() {
+        return values[Counters.BACKGROUND_REFRESHES];
+    }
+
+    /**
+     * Returns the total time spent fetching tokens from the STS.
+     *
+     * @return the total fetch time in milliseconds
+     */
+    public long getTotalFetchTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(values[Counters.TOTAL_FETCH_NANOS]);
+    }
+
+    /**
+     * Returns the longest time a fetch from the STS took.
+     *
+     * @return the longest fetch time in milliseconds
+     */
+    public long getMaxFetchTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(values[Counters.MAX_FETCH_NANOS]);
+    }
+
+    /**
+     * Returns the average time a fetch from the STS took.
+     *
+     * @return the average fetch time in milliseconds, or 0 if no token was fetched
+     */
+    public long getAverageFetchTimeMillis() {
+        long fetches = getFetchCount();
+        return (0 == fetches) ? 0 : TimeUnit.NANOSECONDS.toMillis(values[Counters.TOTAL_FETCH_NANOS] / fetches);
+    }
+
+    @Override
+    public String toString() {
+        return "SQLServerFedAuthTokenStatistics[cacheHits=" + getCacheHitCount() + ", fetches=" + getFetchCount()
+                + ", failedFetches=" + getFailedFetchCount() + ", sharedFetches=" + getSharedFetchCount()
+                + ", backgroundRefreshes=" + getBackgroundRefreshCount() + ", averageFetchTimeMillis="
+                + getAverageFetchTimeMillis() + ", maxFetchTimeMillis=" + getMaxFetchTimeMillis() + "]";
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A snapshot of the counters that track how a connection recycles the packets it reads from the server.
+ *
+ * Each response packet needs a buffer of the negotiated packet size. A connection takes the buffer from a small pool
+ * of packets it has finished reading when one is available, and allocates a new one otherwise.
+ */
+public final class SQLServerPacketPoolStatistics {
+    /**
+     * The live counters of a connection.
+     */
+    static final class Counters {
+        static final int HITS = 0;
+        static final int MISSES = 1;
+        static final int RECYCLED_PACKETS = 2;
+        static final int DISCARDED_PACKETS = 3;
+        private static final int COUNTER_COUNT = 4;
+
+        private final AtomicLongArray values = new AtomicLongArray(COUNTER_COUNT);
+
+        void increment(int counter) {
+            values.incrementAndGet(counter);
+        }
+
+        SQLServerPacketPoolStatistics snapshot() {
+            long[] snapshot = new long[COUNTER_COUNT];
+            for (int i = 0; i < COUNTER_COUNT; i++)
+                snapshot[i] = values.get(i);
+            return new SQLServerPacketPoolStatistics(snapshot);
+        }
+    }
+
+    private final long[] values;
+
+    private SQLServerPacketPoolStatistics(long[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of packets read into a buffer taken from the pool.
+     *
+     * @return the number of pool hits
+     */
+    public long getHitCount() {
+        return values[Counters.HITS];
+    }
+
+    /**
+     * Returns the number of packets read into a newly allocated buffer because the pool held none of the right size.
+     *
+     * @return the number of pool misses
+     */
+    public long getMissCount() {
+        return values[Counters.MISSES];
+    }
+
+    /**
+     * Returns the number of packets returned to the pool once they were read.
+     *
+     * @return the number of recycled packets
+     */
+    public long getRecycledPacketCount() {
+        return values[Counters.RECYCLED_PACKETS];
+    }
+
+    /**
+     * Returns the number of packets left to the garbage collector once they were read, because the pool was full or
+     * their buffer did not match the packet size.
+     *
+     * @return the number of discarded packets
+     */
+    public long getDiscardedPacketCount() {
+        return values[Counters.DISCARDED_PACKETS];
+    }
+
+    @Override
+    public String toString() {
+        return "SQLServerPacketPoolStatistics[hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", recycledPackets=" + getRecycledPacketCount() + ", discardedPackets=" + getDiscardedPacketCount()
+                + "]";
+    }
+}
@@ -686,6 +686,27 @@ public final class SQLServerParameterMetaData implements ParameterMetaData {
         }
     }
 
+    /**
+     * Construct a SQLServerParameterMetaData that shares the parameter meta data of another one, which was retrieved
+     * for the same SQL text, database and server.
+     *
+     * @param st
+     *        the prepared statement, or null for a copy kept in the parameter meta data cache of a data source, which
+     *        must not hold on to the statement and connection of the original
+     * @param source
+     *        the parameter meta data to share
+     */
+    SQLServerParameterMetaData(SQLServerPreparedStatement st, SQLServerParameterMetaData source) {
+        stmtParent = st;
+        con = (null == st) ? null : st.connection;
+
+        // The meta data is not modified once it has been retrieved.
+        procMetadata = source.procMetadata;
+        queryMetaMap = source.queryMetaMap;
+        procedureIsFound = source.procedureIsFound;
+        isTVP = source.isTVP;
+    }
+
     @Override
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
         boolean f = iface.isInstance(this);
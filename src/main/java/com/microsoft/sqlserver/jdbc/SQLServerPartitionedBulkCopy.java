@@ -0,0 +1,609 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+
+/**
+ * Copies the rows of one ISQLServerBulkRecord into a table over several connections at once. Each connection runs its
+ * own SQLServerBulkCopy, called a stream, and the rows read from the source are split between the streams either round
+ * robin or by a partitioning function.
+ * <p>
+ * Every stream uses the same destination table, column mappings and SQLServerBulkCopyOptions. In particular, when
+ * {@link SQLServerBulkCopyOptions#isTableLock()} is true each stream takes a bulk update (BU) lock on the table. BU
+ * locks are compatible with each other, so the streams load a heap concurrently. On a table with a clustered index
+ * the table lock is exclusive, and a stream waiting for it would stop the rows of the other streams from being read,
+ * so writeToServer rejects the table lock for such a table when there is more than one stream. When the batch size is
+ * zero each stream sends its rows in a single batch, so the rows of a stream are committed or rolled back together,
+ * but not with the rows of the other streams.
+ * <p>
+ * The ISQLServerBulkRecord is read on the thread that calls writeToServer, and its rows are sent on one thread per
+ * stream, so getRowData must return a new array for each row.
+ */
+public class SQLServerPartitionedBulkCopy implements AutoCloseable {
+    private static final String loggerClassName = "com.microsoft.sqlserver.jdbc.SQLServerPartitionedBulkCopy";
+    private static final java.util.logging.Logger loggerExternal = java.util.logging.Logger
+            .getLogger(loggerClassName);
+
+    // Number of rows read for a stream that it has not sent yet, after which reading the source waits for the stream.
+    private static final int ROWS_QUEUED_PER_STREAM = 1024;
+
+    // How often a thread waiting for rows, or for room to queue them, checks whether another stream has failed.
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    // Queued for each stream after the last row.
+    private static final Object[] END_OF_ROWS = new Object[0];
+
+    private final SQLServerBulkCopy[] streams;
+
+    private ToIntFunction<Object[]> partitioner = null;
+
+    // The first failure of the current writeToServer call, which stops all of its streams.
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private List<StreamStatistics> streamStatistics = Collections.emptyList();
+
+    /**
+     * Rows copied and elapsed time of one stream during the last writeToServer call. A row counts as copied once the
+     * server has completed the batch it was sent in.
+     */
+    public static final class StreamStatistics {
+        private final long rowsCopied;
+        private final long elapsedNanos;
+
+        StreamStatistics(long rowsCopied, long elapsedNanos) {
+            this.rowsCopied = rowsCopied;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the number of rows in the batches of the stream that the server completed. The rows of a batch that
+         * failed are not counted.
+         *
+         * @return Number of rows.
+         */
+        public long getRowsCopied() {
+            return rowsCopied;
+        }
+
+        /**
+         * Returns the time the stream took, from connecting the bulk copy to the server acknowledging the last row.
+         *
+         * @return Elapsed time in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        /**
+         * Returns the rate at which the stream copied rows.
+         *
+         * @return Rows per second, or 0 if no time elapsed.
+         */
+        public double getRowsPerSecond() {
+            return (0 == elapsedNanos) ? 0 : rowsCopied * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return rowsCopied + " rows in " + getElapsedMillis() + " ms";
+        }
+    }
+
+    /**
+     * Constructs a SQLServerPartitionedBulkCopy that opens the given number of connections to the destination server.
+     * The connections are closed by {@link #close()}.
+     *
+     * @param connectionUrl
+     *        Connection string for the destination server.
+     * @param streamCount
+     *        Number of connections to copy rows over.
+     * @throws SQLServerException
+     *         If streamCount is not positive or a connection cannot be established.
+     */
+    public SQLServerPartitionedBulkCopy(String connectionUrl, int streamCount) throws SQLServerException {
+        loggerExternal.entering(loggerClassName, "SQLServerPartitionedBulkCopy",
+                new Object[] {"connectionUrl not traced.", streamCount});
+
+        if (0 >= streamCount) {
+            throwInvalidArgument("streamCount");
+        }
+
+        streams = new SQLServerBulkCopy[streamCount];
+        try {
+            for (int i = 0; i < streamCount; i++)
+                streams[i] = new SQLServerBulkCopy(connectionUrl);
+        } catch (SQLServerException e) {
+            close();
+            throw e;
+        }
+
+        loggerExternal.exiting(loggerClassName, "SQLServerPartitionedBulkCopy");
+    }
+
+    /**
+     * Constructs a SQLServerPartitionedBulkCopy that copies rows over the given open connections, one stream per
+     * connection. The connections are not closed by {@link #close()}, and their transactions are used as described for
+     * {@link SQLServerBulkCopy#SQLServerBulkCopy(Connection)}.
+     *
+     * @param connections
+     *        Open connections to the destination server. Must be from the Microsoft JDBC driver for SQL Server.
+     * @throws SQLServerException
+     *         If the list is empty or contains a connection that is not from the Microsoft JDBC driver for SQL Server.
+     */
+    public SQLServerPartitionedBulkCopy(List<? extends Connection> connections) throws SQLServerException {
+        loggerExternal.entering(loggerClassName, "SQLServerPartitionedBulkCopy", connections);
+
+        if (null == connections || connections.isEmpty()) {
+            throwInvalidArgument("connections");
+        }
+
+        streams = new SQLServerBulkCopy[connections.size()];
+        for (int i = 0; i < streams.length; i++)
+            streams[i] = new SQLServerBulkCopy(connections.get(i));
+
+        loggerExternal.exiting(loggerClassName, "SQLServerPartitionedBulkCopy");
+    }
+
+    /**
+     * Returns the number of streams the rows are copied over.
+     *
+     * @return Number of streams.
+     */
+    public int getStreamCount() {
+        return streams.length;
+    }
+
+    /**
+     * Sets the name of the destination table on the server.
+     *
+     * @param tableName
+     *        Destination table name.
+     * @throws SQLServerException
+     *         If the table name is null
+     */
+    public void setDestinationTableName(String tableName) throws SQLServerException {
+        for (SQLServerBulkCopy stream : streams)
+            stream.setDestinationTableName(tableName);
+    }
+
+    /**
+     * Returns the name of the destination table on the server.
+     *
+     * @return Destination table name.
+     */
+    public String getDestinationTableName() {
+        return streams[0].getDestinationTableName();
+    }
+
+    /**
+     * Updates the behavior of all streams.
+     *
+     * @param copyOptions
+     *        Settings to change how the streams behave.
+     * @throws SQLServerException
+     *         If the connections were supplied by the application and the UseInternalTransaction option is specified.
+     */
+    public void setBulkCopyOptions(SQLServerBulkCopyOptions copyOptions) throws SQLServerException {
+        for (SQLServerBulkCopy stream : streams)
+            stream.setBulkCopyOptions(copyOptions);
+    }
+
+    /**
+     * Returns the options of the streams.
+     *
+     * @return SQLServerBulkCopyOptions object with the current settings.
+     */
+    public SQLServerBulkCopyOptions getBulkCopyOptions() {
+        return streams[0].getBulkCopyOptions();
+    }
+
+    /**
+     * Sets the function that decides which stream copies a row, for example so that each stream loads the rows of
+     * one partition of the destination table. The function is called on the thread calling writeToServer with the
+     * row's values as returned by getRowData, and returns the index of the stream; an index outside of the range 0
+     * to getStreamCount() - 1 is reduced modulo the number of streams.
+     *
+     * @param partitioner
+     *        Function that returns the stream index of a row, or null to distribute the rows round robin.
+     */
+    public void setPartitioner(ToIntFunction<Object[]> partitioner) {
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * Adds a new column mapping, using ordinals to specify both the source and destination columns.
+     *
+     * @param sourceColumn
+     *        Source column ordinal.
+     * @param destinationColumn
+     *        Destination column ordinal.
+     * @throws SQLServerException
+     *         If the column mapping is invalid
+     */
+    public void addColumnMapping(int sourceColumn, int destinationColumn) throws SQLServerException {
+        for (SQLServerBulkCopy stream : streams)
+            stream.addColumnMapping(sourceColumn, destinationColumn);
+    }
+
+    /**
+     * Adds a new column mapping, using an ordinal for the source column and a string for the destination column.
+     *
+     * @param sourceColumn
+     *        Source column ordinal.
+     * @param destinationColumn
+     *        Destination column name.
+     * @throws SQLServerException
+     *         If the column mapping is invalid
+     */
+    public void addColumnMapping(int sourceColumn, String destinationColumn) throws SQLServerException {
+        for (SQLServerBulkCopy stream : streams)
+            stream.addColumnMapping(sourceColumn, destinationColumn);
+    }
+
+    /**
+     * Adds a new column mapping, using a column name to describe the source column and an ordinal to specify the
+     * destination column.
+     *
+     * @param sourceColumn
+     *        Source column name.
+     * @param destinationColumn
+     *        Destination column ordinal.
+     * @throws SQLServerException
+     *         If the column mapping is invalid
+     */
+    public void addColumnMapping(String sourceColumn, int destinationColumn) throws SQLServerException {
+        for (SQLServerBulkCopy stream : streams)
+            stream.addColumnMapping(sourceColumn, destinationColumn);
+    }
+
+    /**
+     * Adds a new column mapping, using column names to specify both source and destination columns.
+     *
+     * @param sourceColumn
+     *        Source column name.
+     * @param destinationColumn
+     *        Destination column name.
+     * @throws SQLServerException
+     *         If the column mapping is invalid
+     */
+    public void addColumnMapping(String sourceColumn, String destinationColumn) throws SQLServerException {
+        for (SQLServerBulkCopy stream : streams)
+            stream.addColumnMapping(sourceColumn, destinationColumn);
+    }
+
+    /**
+     * Clears the contents of the column mappings
+     */
+    public void clearColumnMappings() {
+        for (SQLServerBulkCopy stream : streams)
+            stream.clearColumnMappings();
+    }
+
+    /**
+     * Copies all rows from the supplied ISQLServerBulkRecord to the destination table, over all streams at once.
+     * <p>
+     * If a stream fails, or the source cannot be read, the other streams are stopped and the first failure is thrown.
+     * Rows that a stream has already committed remain in the table.
+     *
+     * @param sourceData
+     *        ISQLServerBulkRecord to read data rows from.
+     * @throws SQLServerException
+     *         If there are any issues encountered when performing the bulk copy operation, or if the table lock option
+     *         is set, there is more than one stream and the destination table has a clustered index
+     */
+    public void writeToServer(ISQLServerBulkRecord sourceData) throws SQLServerException {
+        loggerExternal.entering(loggerClassName, "writeToServer");
+
+        if (null == sourceData) {
+            throwInvalidArgument("sourceData");
+        }
+
+        if (1 < streams.length && getBulkCopyOptions().isTableLock() && hasClusteredIndex()) {
+            throw new SQLServerException(SQLServerException.getErrString("R_partitionedBulkCopyTableLock"), null);
+        }
+
+        failure.set(null);
+        PartitionRecord[] partitions = new PartitionRecord[streams.length];
+        StreamStatistics[] statistics = new StreamStatistics[streams.length];
+        List<Future<?>> results = new ArrayList<>(streams.length);
+        ExecutorService executor = Executors.newFixedThreadPool(streams.length, new StreamThreadFactory());
+        try {
+            for (int i = 0; i < streams.length; i++) {
+                final int stream = i;
+                partitions[stream] = new PartitionRecord(sourceData,
+                        streams[stream].getBulkCopyOptions().getBatchSize());
+                results.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        streams[stream].writeToServer(partitions[stream]);
+                        // The last batch has completed too.
+                        partitions[stream].rowsCopied = partitions[stream].rowsSent;
+                    } catch (SQLServerException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        throw e;
+                    } finally {
+                        statistics[stream] = new StreamStatistics(partitions[stream].rowsCopied,
+                                System.nanoTime() - start);
+                    }
+                    return null;
+                }));
+            }
+
+            distributeRows(sourceData, partitions);
+
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    // The failure was recorded by the stream
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        streamStatistics = Collections.unmodifiableList(Arrays.asList(statistics));
+
+        Throwable cause = failure.get();
+        if (cause instanceof SQLServerException)
+            throw (SQLServerException) cause;
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        if (null != cause)
+            throw new SQLServerException(cause.getMessage(), cause);
+
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.finer(toString() + " Copied " + getRowsCopied() + " rows: " + streamStatistics);
+
+        loggerExternal.exiting(loggerClassName, "writeToServer");
+    }
+
+    /**
+     * Returns the number of rows copied by all streams during the last writeToServer call.
+     *
+     * @return Number of rows.
+     */
+    public long getRowsCopied() {
+        long rowsCopied = 0;
+        for (StreamStatistics statistics : streamStatistics) {
+            if (null != statistics)
+                rowsCopied += statistics.getRowsCopied();
+        }
+        return rowsCopied;
+    }
+
+    /**
+     * Returns the rows copied and elapsed time of each stream during the last writeToServer call, in stream order.
+     *
+     * @return List with one entry per stream, or an empty list if writeToServer has not been called.
+     */
+    public List<StreamStatistics> getStreamStatistics() {
+        return streamStatistics;
+    }
+
+    /**
+     * Closes the streams, and the connections opened by this SQLServerPartitionedBulkCopy.
+     */
+    @Override
+    public void close() {
+        for (SQLServerBulkCopy stream : streams) {
+            if (null != stream)
+                stream.close();
+        }
+    }
+
+    private void distributeRows(ISQLServerBulkRecord sourceData,
+            PartitionRecord[] partitions) throws InterruptedException {
+        int nextPartition = 0;
+        try {
+            while (sourceData.next()) {
+                Object[] row = sourceData.getRowData();
+                int partition;
+                if (null == partitioner) {
+                    partition = nextPartition;
+                    nextPartition = (nextPartition + 1) % partitions.length;
+                } else {
+                    partition = Math.floorMod(partitioner.applyAsInt(row), partitions.length);
+                }
+
+                if (!partitions[partition].put(row))
+                    return;
+            }
+        } catch (Exception e) {
+            failure.compareAndSet(null,
+                    new SQLServerException(SQLServerException.getErrString("R_unableRetrieveSourceData"), e));
+            return;
+        }
+
+        for (PartitionRecord partition : partitions) {
+            if (!partition.put(END_OF_ROWS))
+                return;
+        }
+    }
+
+    private boolean hasClusteredIndex() throws SQLServerException {
+        String tableName = getDestinationTableName();
+        if (null == tableName)
+            return false;
+
+        try (Statement stmt = streams[0].getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery("select count(*) from sys.indexes where object_id = OBJECT_ID('"
+                        + Util.escapeSingleQuotes(tableName) + "') and type = 1")) {
+            return rs.next() && 0 < rs.getInt(1);
+        } catch (SQLException e) {
+            throw new SQLServerException(SQLServerException.getErrString("R_unableRetrieveColMeta"), e);
+        }
+    }
+
+    private void throwInvalidArgument(String argument) throws SQLServerException {
+        MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_invalidArgument"));
+        Object[] msgArgs = {argument};
+        SQLServerException.makeFromDriverError(null, null, form.format(msgArgs), null, false);
+    }
+
+    /**
+     * The rows of the source that one stream copies. Column metadata is taken from the source.
+     */
+    private final class PartitionRecord implements ISQLServerBulkRecord {
+        private final ISQLServerBulkRecord source;
+        private final BlockingQueue<Object[]> rows = new ArrayBlockingQueue<>(ROWS_QUEUED_PER_STREAM);
+        private final int batchSize;
+        private Object[] currentRow = null;
+        private long rowsSent = 0;
+        private long rowsCopied = 0;
+
+        PartitionRecord(ISQLServerBulkRecord source, int batchSize) {
+            this.source = source;
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * Queues a row for the stream. Returns false if the copy has failed instead.
+         */
+        boolean put(Object[] row) throws InterruptedException {
+            while (!rows.offer(row, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (null != failure.get())
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean next() throws SQLServerException {
+            // The bulk copy reads the first row of a batch only once the previous batch has completed.
+            if (0 < batchSize && 0 < rowsSent && 0 == rowsSent % batchSize)
+                rowsCopied = rowsSent;
+
+            try {
+                Object[] row;
+                while (null == (row = rows.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS))) {
+                    if (null != failure.get()) {
+                        throw new SQLServerException(SQLServerException.getErrString("R_bulkCopyStreamStopped"),
+                                null);
+                    }
+                }
+                if (END_OF_ROWS == row)
+                    return false;
+
+                currentRow = row;
+                rowsSent++;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLServerException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public Object[] getRowData() {
+            return currentRow;
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            return source.getColumnOrdinals();
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return source.getColumnName(column);
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return source.getColumnType(column);
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return source.getPrecision(column);
+        }
+
+        @Override
+        public int getScale(int column) {
+            return source.getScale(column);
+        }
+
+        @Override
+        public boolean isAutoIncrement(int column) {
+            return source.isAutoIncrement(column);
+        }
+
+        @Override
+        public DateTimeFormatter getColumnDateTimeFormatter(int column) {
+            return source.getColumnDateTimeFormatter(column);
+        }
+
+        @Override
+        public void addColumnMetadata(int positionInFile, String name, int jdbcType, int precision, int scale,
+                DateTimeFormatter dateTimeFormatter) throws SQLServerException {
+            source.addColumnMetadata(positionInFile, name, jdbcType, precision, scale, dateTimeFormatter);
+        }
+
+        @Override
+        public void addColumnMetadata(int positionInFile, String name, int jdbcType, int precision,
+                int scale) throws SQLServerException {
+            source.addColumnMetadata(positionInFile, name, jdbcType, precision, scale);
+        }
+
+        @Override
+        public void setTimestampWithTimezoneFormat(String dateTimeFormat) {
+            source.setTimestampWithTimezoneFormat(dateTimeFormat);
+        }
+
+        @Override
+        public void setTimestampWithTimezoneFormat(DateTimeFormatter dateTimeFormatter) {
+            source.setTimestampWithTimezoneFormat(dateTimeFormatter);
+        }
+
+        @Override
+        public void setTimeWithTimezoneFormat(String timeFormat) {
+            source.setTimeWithTimezoneFormat(timeFormat);
+        }
+
+        @Override
+        public void setTimeWithTimezoneFormat(DateTimeFormatter dateTimeFormatter) {
+            source.setTimeWithTimezoneFormat(dateTimeFormatter);
+        }
+    }
+
+    private static final class StreamThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "mssql-jdbc-BulkCopyStream-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
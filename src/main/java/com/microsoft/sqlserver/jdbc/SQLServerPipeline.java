@@ -0,0 +1,366 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+
+/**
+ * Executes several prepared statements of a connection in a single round trip to the server.
+ *
+ * Statements are added to the pipeline with their current parameter values, which are copied the same way
+ * {@link PreparedStatement#addBatch()} copies them. {@link #execute()} sends all executions in one request, and
+ * {@link #next()} then steps through their results in the order the statements were added: after each call, the
+ * results of the current execution are available from its statement through the usual methods, such as
+ * {@link java.sql.Statement#getResultSet()}, {@link java.sql.Statement#getUpdateCount()} and
+ * {@link java.sql.Statement#getMoreResults()}. Moving to the next execution discards the unread results of the current
+ * one. An error returned for one execution is thrown by the call to {@link #next()} that moves to it and does not
+ * prevent the remaining executions from running.
+ *
+ * Executing another command on the connection while the pipeline still has unread results buffers those results in
+ * memory; re-executing or closing one of the statements, or closing the pipeline, discards them. Cancelling any one of
+ * the statements cancels the whole pipeline, which times out after the longest query timeout of its statements.
+ */
+public final class SQLServerPipeline implements AutoCloseable {
+    private static final String loggerClassName = "com.microsoft.sqlserver.jdbc.SQLServerPipeline";
+    private static final java.util.logging.Logger loggerExternal = java.util.logging.Logger.getLogger(loggerClassName);
+
+    private static final AtomicInteger lastPipelineID = new AtomicInteger(0);
+
+    private final SQLServerConnection connection;
+    private final String traceID;
+
+    /**
+     * A statement execution queued in the pipeline.
+     */
+    private static final class PipelinedExecution {
+        final SQLServerPreparedStatement stmt;
+        final int executeMethod;
+        final Parameter[] params;
+        boolean hasExistingTypeDefinitions;
+        boolean hasNewTypeDefinitions;
+        boolean needsPrepare;
+
+        PipelinedExecution(SQLServerPreparedStatement stmt, int executeMethod, Parameter[] params) {
+            this.stmt = stmt;
+            this.executeMethod = executeMethod;
+            this.params = params;
+        }
+    }
+
+    private final List<PipelinedExecution> executions = new ArrayList<>();
+
+    // Index of the execution whose results are current; -1 before the first call to next().
+    private int current = -1;
+
+    private PipelineCmd command;
+    private TDSReader tdsReader;
+    private boolean isClosed = false;
+
+    SQLServerPipeline(SQLServerConnection connection) {
+        this.connection = connection;
+        this.traceID = "SQLServerPipeline:" + lastPipelineID.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return traceID;
+    }
+
+    /**
+     * Adds an execution of the statement with its current parameter values, equivalent to
+     * {@link PreparedStatement#execute()}.
+     *
+     * @param statement
+     *        a prepared statement created on the connection of this pipeline
+     * @throws SQLServerException
+     *         if the statement cannot be added or the pipeline was already executed
+     */
+    public void add(PreparedStatement statement) throws SQLServerException {
+        loggerExternal.entering(loggerClassName, "add", statement);
+        addExecution(statement, SQLServerStatement.EXECUTE);
+        loggerExternal.exiting(loggerClassName, "add");
+    }
+
+    /**
+     * Adds an execution of the statement with its current parameter values, equivalent to
+     * {@link PreparedStatement#executeQuery()}. Moving to an execution that did not return a result set throws an
+     * exception.
+     *
+     * @param statement
+     *        a prepared statement created on the connection of this pipeline
+     * @throws SQLServerException
+     *         if the statement cannot be added or the pipeline was already executed
+     */
+    public void addQuery(PreparedStatement statement) throws SQLServerException {
+        loggerExternal.entering(loggerClassName, "addQuery", statement);
+        addExecution(statement, SQLServerStatement.EXECUTE_QUERY);
+        loggerExternal.exiting(loggerClassName, "addQuery");
+    }
+
+    /**
+     * Adds an execution of the statement with its current parameter values, equivalent to
+     * {@link PreparedStatement#executeUpdate()}. Moving to an execution that returned a result set throws an exception.
+     *
+     * @param statement
+     *        a prepared statement created on the connection of this pipeline
+     * @throws SQLServerException
+     *         if the statement cannot be added or the pipeline was already executed
+     */
+    public void addUpdate(PreparedStatement statement) throws SQLServerException {
+        loggerExternal.entering(loggerClassName, "addUpdate", statement);
+        addExecution(statement, SQLServerStatement.EXECUTE_UPDATE);
+        loggerExternal.exiting(loggerClassName, "addUpdate");
+    }
+
+    private void addExecution(PreparedStatement statement, int executeMethod) throws SQLServerException {
+        checkClosed();
+        if (null != command)
+            throwError("R_pipelineAlreadyExecuted");
+
+        if (!(statement instanceof SQLServerPreparedStatement) || statement instanceof SQLServerCallableStatement
+                || connection != ((SQLServerPreparedStatement) statement).connection)
+            throwError("R_pipelineUnsupportedStatement");
+
+        SQLServerPreparedStatement stmt = (SQLServerPreparedStatement) statement;
+        stmt.checkClosed();
+
+        // The results of an execution are read through its statement, so each statement can be added only once.
+        for (PipelinedExecution execution : executions) {
+            if (execution.stmt == stmt)
+                throwError("R_pipelineDuplicateStatement");
+        }
+
+        final int numParams = stmt.inOutParam.length;
+        Parameter[] params = new Parameter[numParams];
+        for (int i = 0; i < numParams; i++)
+            params[i] = stmt.inOutParam[i].cloneForBatch();
+
+        executions.add(new PipelinedExecution(stmt, executeMethod, params));
+    }
+
+    /**
+     * Sends all executions added to the pipeline to the server in a single request. Call {@link #next()} to move to
+     * the results of the first execution.
+     *
+     * @throws SQLServerException
+     *         if the pipeline is empty, was already executed, or the request could not be sent
+     * @throws SQLTimeoutException
+     *         if the request timed out
+     */
+    public void execute() throws SQLServerException, SQLTimeoutException {
+        loggerExternal.entering(loggerClassName, "execute");
+        if (loggerExternal.isLoggable(Level.FINER) && Util.IsActivityTraceOn()) {
+            loggerExternal.finer(toString() + " ActivityId: " + ActivityCorrelator.getNext().toString());
+        }
+        checkClosed();
+        if (null != command)
+            throwError("R_pipelineAlreadyExecuted");
+        if (executions.isEmpty())
+            throwError("R_pipelineEmpty");
+
+        // A query timeout of 0 means no timeout, so the pipeline only times out if all of its statements do.
+        boolean hasQueryTimeout = true;
+        int queryTimeout = 0;
+        int cancelQueryTimeoutSeconds = 0;
+        for (PipelinedExecution execution : executions) {
+            if (0 == execution.stmt.queryTimeout)
+                hasQueryTimeout = false;
+            queryTimeout = Math.max(queryTimeout, execution.stmt.queryTimeout);
+            cancelQueryTimeoutSeconds = Math.max(cancelQueryTimeoutSeconds, execution.stmt.cancelQueryTimeoutSeconds);
+        }
+
+        command = new PipelineCmd(hasQueryTimeout ? queryTimeout : 0, cancelQueryTimeoutSeconds);
+        try {
+            for (PipelinedExecution execution : executions)
+                execution.stmt.startPipelinedExecution(command);
+
+            connection.executeCommand(command);
+        } catch (SQLServerException e) {
+            isClosed = true;
+            if (e.getDriverErrorCode() == SQLServerException.ERROR_QUERY_TIMEOUT)
+                throw new SQLTimeoutException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e.getCause());
+            else
+                throw e;
+        }
+        loggerExternal.exiting(loggerClassName, "execute");
+    }
+
+    private final class PipelineCmd extends TDSCommand {
+        PipelineCmd(int queryTimeout, int cancelQueryTimeoutSeconds) {
+            super(SQLServerPipeline.this.toString() + " execute", queryTimeout, cancelQueryTimeoutSeconds);
+        }
+
+        final boolean doExecute() throws SQLServerException {
+            doExecutePipeline(this);
+            return false;
+        }
+
+        final void processResponse(TDSReader tdsReader) throws SQLServerException {
+            discardResults();
+        }
+    }
+
+    private void doExecutePipeline(PipelineCmd pipelineCmd) throws SQLServerException {
+        // Build the prepared strings, and retrieve any parameter encryption metadata, before the request is started.
+        for (PipelinedExecution execution : executions) {
+            execution.hasExistingTypeDefinitions = execution.stmt.hasPreparedTypeDefinitions();
+            execution.hasNewTypeDefinitions = execution.stmt.prepareForPipelinedExecution(execution.executeMethod,
+                    execution.params);
+        }
+
+        // The row count and field size limits are session settings, so they cannot differ between executions.
+        // Note: similar logic in SQLServerStatement.setMaxRowsAndMaxFieldSize
+        int maxRows = -1;
+        int maxFieldSize = -1;
+        for (PipelinedExecution execution : executions) {
+            int rows = (SQLServerStatement.EXECUTE_UPDATE == execution.executeMethod) ? 0 : execution.stmt.maxRows;
+            if (-1 != maxRows && rows != maxRows)
+                throwError("R_pipelineLimitsMismatch");
+            maxRows = rows;
+
+            if (SQLServerStatement.EXECUTE_UPDATE != execution.executeMethod) {
+                if (-1 != maxFieldSize && execution.stmt.maxFieldSize != maxFieldSize)
+                    throwError("R_pipelineLimitsMismatch");
+                maxFieldSize = execution.stmt.maxFieldSize;
+            }
+        }
+        connection.setMaxRows(maxRows);
+        if (-1 != maxFieldSize)
+            connection.setMaxFieldSize(maxFieldSize);
+
+        // Send the executions as consecutive RPCs of one request.
+        boolean isResponseBufferingAdaptive = true;
+        TDSWriter tdsWriter = pipelineCmd.startRequest(TDS.PKT_RPC);
+        for (int i = 0; i < executions.size(); i++) {
+            PipelinedExecution execution = executions.get(i);
+            if (0 < i)
+                tdsWriter.writeByte((byte) execution.stmt.nBatchStatementDelimiter);
+
+            execution.needsPrepare = execution.stmt.doPipelinedPrepExec(tdsWriter, execution.params,
+                    execution.hasNewTypeDefinitions, execution.hasExistingTypeDefinitions);
+            isResponseBufferingAdaptive &= execution.stmt.getIsResponseBufferingAdaptive();
+        }
+
+        tdsReader = pipelineCmd.startResponse(isResponseBufferingAdaptive);
+    }
+
+    /**
+     * Moves to the results of the next execution, discarding the unread results of the current one.
+     *
+     * @return true if the results of the next execution are available from {@link #getStatement()}; false if there
+     *         are no more executions
+     * @throws SQLServerException
+     *         if the pipeline was not executed, or the server returned an error for the next execution
+     */
+    public boolean next() throws SQLServerException {
+        loggerExternal.entering(loggerClassName, "next");
+        checkClosed();
+        if (null == command)
+            throwError("R_pipelineNotExecuted");
+
+        if (current < executions.size()) {
+            finishCurrentExecution();
+            ++current;
+        }
+
+        if (current == executions.size()) {
+            // Process the rest of the response, such as ENVCHANGE tokens.
+            command.close();
+            loggerExternal.exiting(loggerClassName, "next", false);
+            return false;
+        }
+
+        PipelinedExecution execution = executions.get(current);
+        SQLServerPreparedStatement stmt = execution.stmt;
+        stmt.ensureExecuteResultsReader(tdsReader);
+        stmt.startResults();
+        try {
+            stmt.getNextResult(true);
+        } catch (SQLServerException e) {
+            stmt.onPipelinedExecutionError(e, execution.needsPrepare);
+            throw e;
+        }
+
+        if (SQLServerStatement.EXECUTE_QUERY == execution.executeMethod && null == stmt.resultSet) {
+            SQLServerException.makeFromDriverError(connection, stmt,
+                    SQLServerException.getErrString("R_noResultset"), null, true);
+        } else if (SQLServerStatement.EXECUTE_UPDATE == execution.executeMethod && null != stmt.resultSet) {
+            SQLServerException.makeFromDriverError(connection, stmt,
+                    SQLServerException.getErrString("R_resultsetGeneratedForUpdate"), null, false);
+        }
+
+        loggerExternal.exiting(loggerClassName, "next", true);
+        return true;
+    }
+
+    /**
+     * Returns the statement of the current execution, through which its results are read.
+     *
+     * @return the statement of the current execution, or null if {@link #next()} has not moved to an execution
+     */
+    public PreparedStatement getStatement() {
+        return (0 <= current && current < executions.size()) ? executions.get(current).stmt : null;
+    }
+
+    /**
+     * Closes the pipeline, discarding all unread results.
+     */
+    @Override
+    public void close() {
+        loggerExternal.entering(loggerClassName, "close");
+        if (!isClosed) {
+            isClosed = true;
+            if (null != command)
+                command.close();
+        }
+        loggerExternal.exiting(loggerClassName, "close");
+    }
+
+    /**
+     * Consumes the results of the current execution, leaving the response positioned at the results of the next one.
+     */
+    private void finishCurrentExecution() throws SQLServerException {
+        if (0 <= current && current < executions.size()) {
+            SQLServerPreparedStatement stmt = executions.get(current).stmt;
+            if (tdsReader == stmt.resultsReader())
+                stmt.processBatch();
+        }
+    }
+
+    /**
+     * Consumes the results of the current and all remaining executions, and the rest of the response.
+     */
+    private void discardResults() throws SQLServerException {
+        while (current < executions.size()) {
+            finishCurrentExecution();
+            if (++current < executions.size()) {
+                SQLServerPreparedStatement stmt = executions.get(current).stmt;
+                stmt.ensureExecuteResultsReader(tdsReader);
+                stmt.startResults();
+            }
+        }
+
+        if (null != tdsReader)
+            TDSParser.parse(tdsReader, "pipeline completion");
+    }
+
+    private void checkClosed() throws SQLServerException {
+        if (isClosed || connection.isClosed())
+            SQLServerException.makeFromDriverError(connection, this,
+                    SQLServerException.getErrString("R_pipelineClosed"), null, false);
+    }
+
+    private void throwError(String errorKey) throws SQLServerException {
+        SQLServerException.makeFromDriverError(connection, this, SQLServerException.getErrString(errorKey), null,
+                false);
+    }
+}
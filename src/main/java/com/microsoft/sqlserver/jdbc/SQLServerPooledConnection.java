@@ -9,6 +9,8 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Vector;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 import javax.sql.ConnectionEvent;
@@ -34,6 +36,10 @@ public class SQLServerPooledConnection implements PooledConnection {
                                                                                       // (used for logging).
     private final String traceID;
 
+    // Locks rather than monitors, since connections are opened and closed and listeners called while they are held.
+    final Lock lock = new ReentrantLock();
+    private final Lock listenersLock = new ReentrantLock();
+
     SQLServerPooledConnection(SQLServerDataSource ds, String user, String password) throws SQLException {
         listeners = new Vector<>();
         // Piggyback SQLServerDataSource logger for now.
@@ -81,7 +87,8 @@ public class SQLServerPooledConnection implements PooledConnection {
     public Connection getConnection() throws SQLException {
         if (pcLogger.isLoggable(Level.FINER))
             pcLogger.finer(toString() + " user:(default).");
-        synchronized (this) {
+        lock.lock();
+        try {
             // If physical connection is closed, throw exception per spec, this PooledConnection is dead.
             if (physicalConnection == null) {
                 SQLServerException.makeFromDriverError(null, this,
@@ -117,6 +124,8 @@ public class SQLServerPooledConnection implements PooledConnection {
                 pcLogger.fine(toString() + " proxy " + lastProxyConnection.toString() + " is returned.");
 
             return lastProxyConnection;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -131,16 +140,20 @@ public class SQLServerPooledConnection implements PooledConnection {
 
         // close the proxy on fatal error event. Note exception is null then the event comes from the proxy close.
         if (null != e) {
-            synchronized (this) {
+            lock.lock();
+            try {
                 if (null != lastProxyConnection) {
                     lastProxyConnection.internalClose();
                     lastProxyConnection = null;
                 }
+            } finally {
+                lock.unlock();
             }
         }
 
         // A connection handle issued from this pooled connection is closing or an error occurred in the connection
-        synchronized (listeners) {
+        listenersLock.lock();
+        try {
             for (int i = 0; i < listeners.size(); i++) {
                 ConnectionEventListener listener = listeners.elementAt(i);
 
@@ -158,6 +171,8 @@ public class SQLServerPooledConnection implements PooledConnection {
                     listener.connectionErrorOccurred(ev);
                 }
             }
+        } finally {
+            listenersLock.unlock();
         }
     }
 
@@ -165,8 +180,11 @@ public class SQLServerPooledConnection implements PooledConnection {
     public void addConnectionEventListener(ConnectionEventListener listener) {
         if (pcLogger.isLoggable(Level.FINER))
             pcLogger.finer(toString() + safeCID());
-        synchronized (listeners) {
+        listenersLock.lock();
+        try {
             listeners.add(listener);
+        } finally {
+            listenersLock.unlock();
         }
     }
 
@@ -174,7 +192,8 @@ public class SQLServerPooledConnection implements PooledConnection {
     public void close() throws SQLException {
         if (pcLogger.isLoggable(Level.FINER))
             pcLogger.finer(toString() + " Closing physical connection, " + safeCID());
-        synchronized (this) {
+        lock.lock();
+        try {
             // First close the last proxy
             if (null != lastProxyConnection)
                 // use internal close so there wont be an event due to us closing the connection, if not closed already.
@@ -184,9 +203,14 @@ public class SQLServerPooledConnection implements PooledConnection {
                 physicalConnection.close();
             }
             physicalConnection = null;
+        } finally {
+            lock.unlock();
         }
-        synchronized (listeners) {
+        listenersLock.lock();
+        try {
             listeners.clear();
+        } finally {
+            listenersLock.unlock();
         }
 
     }
@@ -195,8 +219,11 @@ public class SQLServerPooledConnection implements PooledConnection {
     public void removeConnectionEventListener(ConnectionEventListener listener) {
         if (pcLogger.isLoggable(Level.FINER))
             pcLogger.finer(toString() + safeCID());
-        synchronized (listeners) {
+        listenersLock.lock();
+        try {
             listeners.remove(listener);
+        } finally {
+            listenersLock.unlock();
         }
     }
 
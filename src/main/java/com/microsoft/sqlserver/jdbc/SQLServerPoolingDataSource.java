@@ -0,0 +1,282 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.sql.Connection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+import javax.naming.Reference;
+import javax.naming.StringRefAddr;
+
+
+/**
+ * Provides pooled database connections without requiring an external connection pool. SQLServerPoolingDataSource
+ * pools the physical connections provided by {@link SQLServerConnectionPoolDataSource}: {@link #getConnection()}
+ * borrows a connection from the pool, and closing the returned connection returns it to the pool.
+ *
+ * Returned connections are not validated with a round trip to the server. Instead, the driver hands out only
+ * connections whose session is still open and resets the session state on the server along with the next request.
+ *
+ * The pool is created when the first connection is requested; pool settings changed after that have no effect. Call
+ * {@link #close()} to close the pooled connections when the data source is no longer needed. A closed data source does
+ * not hand out connections anymore.
+ */
+public class SQLServerPoolingDataSource extends SQLServerConnectionPoolDataSource implements AutoCloseable {
+    /**
+     * Always refresh SerialVersionUID when prompted
+     */
+    private static final long serialVersionUID = 1437652387342716934L;
+
+    static final int DEFAULT_MIN_POOL_SIZE = 0;
+    static final int DEFAULT_MAX_POOL_SIZE = 10;
+    static final int DEFAULT_CONNECTION_WAIT_TIMEOUT = 30000;
+
+    private int minPoolSize = DEFAULT_MIN_POOL_SIZE;
+    private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    private int connectionWaitTimeout = DEFAULT_CONNECTION_WAIT_TIMEOUT;
+
+    private transient volatile SQLServerConnectionPool pool;
+    private transient volatile boolean isClosed;
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Sets the number of connections the pool opens in the background and keeps open.
+     *
+     * @param minPoolSize
+     *        the minimum number of pooled connections, 0 by default
+     */
+    public void setMinPoolSize(int minPoolSize) {
+        this.minPoolSize = minPoolSize;
+    }
+
+    /**
+     * Returns the minimum number of pooled connections.
+     *
+     * @return the minimum number of pooled connections
+     */
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of connections the pool opens.
+     *
+     * @param maxPoolSize
+     *        the maximum number of pooled connections, 10 by default
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * Returns the maximum number of pooled connections.
+     *
+     * @return the maximum number of pooled connections
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Sets how long {@link #getConnection()} waits for a connection to be returned to the pool when all connections
+     * are in use.
+     *
+     * @param connectionWaitTimeout
+     *        the timeout in milliseconds, 30000 by default
+     */
+    public void setConnectionWaitTimeout(int connectionWaitTimeout) {
+        this.connectionWaitTimeout = connectionWaitTimeout;
+    }
+
+    /**
+     * Returns how long {@link #getConnection()} waits for a connection to be returned to the pool.
+     *
+     * @return the timeout in milliseconds
+     */
+    public int getConnectionWaitTimeout() {
+        return connectionWaitTimeout;
+    }
+
+    /**
+     * Returns the number of connections the pool currently holds, whether idle or in use.
+     *
+     * @return the number of pooled connections
+     */
+    public int getTotalConnections() {
+        SQLServerConnectionPool p = pool;
+        return (null == p) ? 0 : p.getTotalConnections();
+    }
+
+    /**
+     * Returns the number of idle connections in the pool.
+     *
+     * @return the number of idle connections
+     */
+    public int getIdleConnections() {
+        SQLServerConnectionPool p = pool;
+        return (null == p) ? 0 : p.getIdleConnections();
+    }
+
+    /**
+     * Returns the number of threads waiting for a connection to be returned to the pool.
+     *
+     * @return the number of waiting threads
+     */
+    public int getThreadsAwaitingConnection() {
+        SQLServerConnectionPool p = pool;
+        return (null == p) ? 0 : p.getThreadsAwaitingConnection();
+    }
+
+    /**
+     * Borrows a connection from the pool. The pool is created, and starts opening its minimum number of connections in
+     * the background, on the first call.
+     */
+    @Override
+    public Connection getConnection() throws SQLServerException {
+        loggerExternal.entering(getClassNameLogging(), "getConnection");
+        Connection con = getPool().getConnection();
+        loggerExternal.exiting(getClassNameLogging(), "getConnection", con);
+        return con;
+    }
+
+    /**
+     * Returns a new, unpooled connection for the given user. Only connections for the user configured on the data
+     * source are pooled.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLServerException {
+        return super.getConnection(username, password);
+    }
+
+    /**
+     * Closes the pool. Idle connections are closed right away; connections in use are closed when they are returned.
+     * {@link #getConnection()} throws an exception once the pool is closed.
+     */
+    @Override
+    public void close() {
+        loggerExternal.entering(getClassNameLogging(), "close");
+        lock.lock();
+        try {
+            isClosed = true;
+            if (null != pool) {
+                pool.close();
+                pool = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        loggerExternal.exiting(getClassNameLogging(), "close");
+    }
+
+    private SQLServerConnectionPool getPool() throws SQLServerException {
+        SQLServerConnectionPool p = pool;
+        if (null == p) {
+            lock.lock();
+            try {
+                p = pool;
+                if (null == p) {
+                    // Do not create a new pool once the data source is closed.
+                    if (isClosed) {
+                        SQLServerException.makeFromDriverError(null, this,
+                                SQLServerException.getErrString("R_connectionPoolClosed"),
+                                SQLServerException.EXCEPTION_XOPEN_CONNECTION_DOES_NOT_EXIST, false);
+                    }
+
+                    if (minPoolSize < 0 || maxPoolSize <= 0 || minPoolSize > maxPoolSize
+                            || connectionWaitTimeout < 0) {
+                        SQLServerException.makeFromDriverError(null, this,
+                                SQLServerException.getErrString("R_invalidConnectionPoolSettings"), null, false);
+                    }
+
+                    if (dsLogger.isLoggable(Level.FINER))
+                        dsLogger.finer(toString() + " Creating connection pool. minPoolSize:" + minPoolSize
+                                + " maxPoolSize:" + maxPoolSize + " connectionWaitTimeout:" + connectionWaitTimeout);
+
+                    p = new SQLServerConnectionPool(this, minPoolSize, maxPoolSize, connectionWaitTimeout);
+                    p.fill();
+                    pool = p;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return p;
+    }
+
+    // Implement javax.naming.Referenceable interface methods.
+
+    @Override
+    public Reference getReference() {
+        if (loggerExternal.isLoggable(Level.FINER))
+            loggerExternal.entering(getClassNameLogging(), "getReference");
+        Reference ref = getReferenceInternal("com.microsoft.sqlserver.jdbc.SQLServerPoolingDataSource");
+        if (loggerExternal.isLoggable(Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getReference", ref);
+        return ref;
+    }
+
+    @Override
+    Reference getReferenceInternal(String dataSourceClassString) {
+        Reference ref = super.getReferenceInternal(dataSourceClassString);
+        ref.add(new StringRefAddr("minPoolSize", Integer.toString(minPoolSize)));
+        ref.add(new StringRefAddr("maxPoolSize", Integer.toString(maxPoolSize)));
+        ref.add(new StringRefAddr("connectionWaitTimeout", Integer.toString(connectionWaitTimeout)));
+        return ref;
+    }
+
+    @Override
+    void initializeFromReference(Reference ref) {
+        // The pool settings are not connection properties; take them out before the rest is initialized.
+        Reference connectionRef = new Reference(ref.getClassName(), ref.getFactoryClassName(),
+                ref.getFactoryClassLocation());
+        for (int i = 0; i < ref.size(); i++) {
+            StringRefAddr addr = (StringRefAddr) ref.get(i);
+            String value = (String) addr.getContent();
+            if ("minPoolSize".equals(addr.getType())) {
+                minPoolSize = Integer.parseInt(value);
+            } else if ("maxPoolSize".equals(addr.getType())) {
+                maxPoolSize = Integer.parseInt(value);
+            } else if ("connectionWaitTimeout".equals(addr.getType())) {
+                connectionWaitTimeout = Integer.parseInt(value);
+            } else {
+                connectionRef.add(addr);
+            }
+        }
+        super.initializeFromReference(connectionRef);
+    }
+
+    private Object writeReplace() throws java.io.ObjectStreamException {
+        return new SerializationProxy(this);
+    }
+
+    private void readObject(java.io.ObjectInputStream stream) throws java.io.InvalidObjectException {
+        // For added security/robustness, the only way to rehydrate a serialized SQLServerDataSource
+        // is to use a SerializationProxy. Direct use of readObject() is not supported.
+        throw new java.io.InvalidObjectException("");
+    }
+
+    /**
+     * Implements java.io.Serializable the same way as {@link SQLServerDataSource}
+     */
+    private static class SerializationProxy implements java.io.Serializable {
+        private final Reference ref;
+        private static final long serialVersionUID = 5497158265417243215L;
+
+        SerializationProxy(SQLServerPoolingDataSource ds) {
+            // We do not need the class name so pass null, serialization mechanism
+            // stores the class info.
+            ref = ds.getReferenceInternal(null);
+        }
+
+        private Object readResolve() {
+            SQLServerPoolingDataSource ds = new SQLServerPoolingDataSource();
+            ds.initializeFromReference(ref);
+            return ds;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 import com.microsoft.sqlserver.jdbc.SQLServerConnection.CityHash128Key;
@@ -179,6 +181,9 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
      */
     private boolean encryptionMetadataIsRetrieved = false;
 
+    /** The key of the parameter encryption metadata of this statement in the connection's cache */
+    private CityHash128Key parameterEncryptionMetadataCacheKey;
+
     private String localUserSQL;
 
     // Internal function used in tracing
@@ -495,9 +500,56 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
         return null != resultSet;
     }
 
+    @Override
+    public CompletableFuture<ResultSet> executeQueryAsync() {
+        return executeQueryAsync(SharedSelector.getDefaultExecutor());
+    }
+
+    @Override
+    public CompletableFuture<ResultSet> executeQueryAsync(Executor executor) {
+        loggerExternal.entering(getClassNameLogging(), "executeQueryAsync");
+        PrepStmtExecCmd command = new PrepStmtExecCmd(this, EXECUTE_QUERY);
+        CompletableFuture<ResultSet> future = executeAsync(command, () -> {
+            readDeferredResponse(command);
+            return null;
+        }, () -> resultSet, executor);
+        loggerExternal.exiting(getClassNameLogging(), "executeQueryAsync", future);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdateAsync() {
+        return executeUpdateAsync(SharedSelector.getDefaultExecutor());
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdateAsync(Executor executor) {
+        loggerExternal.entering(getClassNameLogging(), "executeUpdateAsync");
+        PrepStmtExecCmd command = new PrepStmtExecCmd(this, EXECUTE_UPDATE);
+        CompletableFuture<Integer> future = executeAsync(command, () -> {
+            readDeferredResponse(command);
+            return null;
+        }, this::getIntUpdateCount, executor);
+        loggerExternal.exiting(getClassNameLogging(), "executeUpdateAsync", future);
+        return future;
+    }
+
+    @Override
+    public SQLServerRowPublisher executeQueryPublisher() {
+        return executeQueryPublisher(SharedSelector.getDefaultExecutor());
+    }
+
+    @Override
+    public SQLServerRowPublisher executeQueryPublisher(Executor executor) {
+        return new SQLServerRowPublisher(this, () -> executeQueryAsync(executor), executor);
+    }
+
     private final class PrepStmtExecCmd extends TDSCommand {
         private final SQLServerPreparedStatement stmt;
 
+        // Whether the request of an asynchronous execution (re)prepares the statement
+        private boolean needsPrepare;
+
         PrepStmtExecCmd(SQLServerPreparedStatement stmt, int executeMethod) {
             super(stmt.toString() + " executeXXX", queryTimeout, cancelQueryTimeoutSeconds);
             this.stmt = stmt;
@@ -573,18 +625,54 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
 
                 needsPrepare = doPrepExec(tdsWriter, inOutParam, hasNewTypeDefinitions, hasExistingTypeDefinitions);
 
+                // The response of an asynchronous execution is read by readDeferredResponse
+                if (command.isAsync()) {
+                    command.needsPrepare = needsPrepare;
+                    command.deferResponse();
+                    return;
+                }
+
                 ensureExecuteResultsReader(command.startResponse(getIsResponseBufferingAdaptive()));
                 startResults();
                 getNextResult(true);
             } catch (SQLException e) {
                 if (retryBasedOnFailedReuseOfCachedHandle(e, attempt, needsPrepare, false))
                     continue;
-                else
-                    throw e;
+
+                evictCachedMetadataOnError(e);
+                throw e;
             }
             break;
         }
 
+        checkResultSetForExecuteMethod();
+    }
+
+    /**
+     * Reads the response of an asynchronous execution, whose request doExecutePreparedStatement finished without
+     * waiting for the response. If the server no longer accepts a re-used cached handle, the handle is discarded and
+     * the statement is executed again, this time waiting for the response.
+     */
+    private void readDeferredResponse(PrepStmtExecCmd command) throws SQLServerException, SQLTimeoutException {
+        try {
+            ensureExecuteResultsReader(command.readResponse(getIsResponseBufferingAdaptive()));
+            startResults();
+            getNextResult(true);
+        } catch (SQLServerException e) {
+            if (retryBasedOnFailedReuseOfCachedHandle(e, 1, command.needsPrepare, false)) {
+                reuseCachedHandle(false, true);
+                executeStatement(new PrepStmtExecCmd(this, executeMethod));
+                return;
+            }
+
+            evictCachedMetadataOnError(e);
+            throw e;
+        }
+
+        checkResultSetForExecuteMethod();
+    }
+
+    private void checkResultSetForExecuteMethod() throws SQLServerException {
         if (EXECUTE_QUERY == executeMethod && null == resultSet) {
             SQLServerException.makeFromDriverError(connection, this, SQLServerException.getErrString("R_noResultset"),
                     null, true);
@@ -611,6 +699,95 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
                 && connection.isStatementPoolingEnabled();
     }
 
+    /**
+     * Readies this statement for an execution with the given parameter values as part of a pipeline, retrieving the
+     * parameter encryption metadata first if needed. Like batch execution, this does not change the values set on the
+     * statement itself.
+     *
+     * @return true if the type definitions of the parameters are new
+     */
+    final boolean prepareForPipelinedExecution(int method, Parameter[] params) throws SQLServerException {
+        resetForReexecute();
+        executeMethod = method;
+
+        boolean hasNewTypeDefinitions = buildPreparedStrings(params, false);
+
+        if ((Util.shouldHonorAEForParameters(stmtColumnEncriptionSetting, connection)) && (0 < params.length)
+                && !isInternalEncryptionQuery) {
+            if (!encryptionMetadataIsRetrieved)
+                getParameterEncryptionMetadata(params);
+
+            hasNewTypeDefinitions = buildPreparedStrings(params, true);
+        }
+        return hasNewTypeDefinitions;
+    }
+
+    final boolean hasPreparedTypeDefinitions() {
+        return null != preparedTypeDefinitions;
+    }
+
+    /**
+     * Writes the RPC for a pipelined execution of this statement, re-using a cached prepared statement handle if one is
+     * available.
+     *
+     * @return true if the RPC (re)prepares the statement
+     */
+    final boolean doPipelinedPrepExec(TDSWriter tdsWriter, Parameter[] params, boolean hasNewTypeDefinitions,
+            boolean hasExistingTypeDefinitions) throws SQLServerException {
+        if (reuseCachedHandle(hasNewTypeDefinitions, false))
+            hasNewTypeDefinitions = false;
+
+        return doPrepExec(tdsWriter, params, hasNewTypeDefinitions, hasExistingTypeDefinitions);
+    }
+
+    /**
+     * Handles an error returned for a pipelined execution of this statement. A pipelined execution cannot be retried
+     * when the server no longer accepts a re-used cached handle, so the handle is discarded instead and the next
+     * execution prepares the statement again.
+     */
+    final void onPipelinedExecutionError(SQLException e, boolean needsPrepare) {
+        if (retryBasedOnFailedReuseOfCachedHandle(e, 1, needsPrepare, false))
+            reuseCachedHandle(false, true);
+        else
+            evictCachedMetadataOnError(e);
+    }
+
+    /**
+     * Discards the cached metadata of this statement if the server rejected it. The parameter encryption metadata is
+     * discarded so that the next execution calls sp_describe_parameter_encryption again instead of re-using it, and the
+     * parameter metadata when the objects the statement refers to have changed.
+     */
+    private void evictCachedMetadataOnError(SQLException e) {
+        // Only evict the parameter metadata based on these error codes:
+        // 201: A procedure or function expects a parameter that was not supplied.
+        // 207: Invalid column name.
+        // 208: Invalid object name.
+        // 213: The column name or number of supplied values does not match the table definition.
+        // 2801: The definition of an object changed since it was compiled.
+        // 8144: A procedure or function has too many arguments specified.
+        switch (e.getErrorCode()) {
+            case 201:
+            case 207:
+            case 208:
+            case 213:
+            case 2801:
+            case 8144:
+                connection.evictCachedParameterMetadata(sqlTextCacheKey, userSQL);
+                break;
+            default:
+                break;
+        }
+
+        // Only evict the parameter encryption metadata based on these error codes:
+        // 33514: Incorrect parameter encryption metadata was received from the client.
+        // 206: Operand type clash, for example when a column has been encrypted since the metadata was retrieved.
+        if (null == parameterEncryptionMetadataCacheKey || (33514 != e.getErrorCode() && 206 != e.getErrorCode()))
+            return;
+
+        connection.evictCachedParameterEncryptionMetadata(parameterEncryptionMetadataCacheKey);
+        encryptionMetadataIsRetrieved = false;
+    }
+
     /**
      * Consumes the OUT parameter for the statement object itself.
      *
@@ -679,6 +856,7 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
             getStatementLogger().fine(toString() + ": calling sp_cursorprepexec: PreparedHandle:"
                     + getPreparedStatementHandle() + ", SQL:" + preparedSQL);
 
+        connection.countPreparedStatementExecution(SQLServerStatementHandleStatistics.Counters.PREPEXEC_CALLS);
         expectPrepStmtHandle = true;
         executedSqlDirectly = false;
         expectCursorOutParams = true;
@@ -722,6 +900,7 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
             getStatementLogger().fine(toString() + ": calling sp_prepexec: PreparedHandle:"
                     + getPreparedStatementHandle() + ", SQL:" + preparedSQL);
 
+        connection.countPreparedStatementExecution(SQLServerStatementHandleStatistics.Counters.PREPEXEC_CALLS);
         expectPrepStmtHandle = true;
         executedSqlDirectly = true;
         expectCursorOutParams = false;
@@ -749,6 +928,7 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
         if (getStatementLogger().isLoggable(java.util.logging.Level.FINE))
             getStatementLogger().fine(toString() + ": calling sp_executesql: SQL:" + preparedSQL);
 
+        connection.countPreparedStatementExecution(SQLServerStatementHandleStatistics.Counters.EXECUTESQL_CALLS);
         expectPrepStmtHandle = false;
         executedSqlDirectly = true;
         expectCursorOutParams = false;
@@ -775,6 +955,7 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
             getStatementLogger().fine(toString() + ": calling sp_cursorexecute: PreparedHandle:"
                     + getPreparedStatementHandle() + ", SQL:" + preparedSQL);
 
+        connection.countPreparedStatementExecution(SQLServerStatementHandleStatistics.Counters.EXECUTE_CALLS);
         expectPrepStmtHandle = false;
         executedSqlDirectly = false;
         expectCursorOutParams = true;
@@ -807,6 +988,7 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
             getStatementLogger().fine(toString() + ": calling sp_execute: PreparedHandle:"
                     + getPreparedStatementHandle() + ", SQL:" + preparedSQL);
 
+        connection.countPreparedStatementExecution(SQLServerStatementHandleStatistics.Counters.EXECUTE_CALLS);
         expectPrepStmtHandle = false;
         executedSqlDirectly = true;
         expectCursorOutParams = false;
@@ -833,6 +1015,18 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
 
         assert connection != null : "Connection should not be null";
 
+        parameterEncryptionMetadataCacheKey = new CityHash128Key(connection.getSCatalog(), preparedSQL,
+                preparedTypeDefinitions);
+        CryptoMetadata[] cachedCryptoMetadata = connection
+                .getCachedParameterEncryptionMetadata(parameterEncryptionMetadataCacheKey);
+        if (null != cachedCryptoMetadata && cachedCryptoMetadata.length == params.length) {
+            if (getStatementLogger().isLoggable(java.util.logging.Level.FINE)) {
+                getStatementLogger().fine("Parameter encryption metadata is retrieved from the connection cache.");
+            }
+            setCachedParameterEncryptionMetadata(params, cachedCryptoMetadata);
+            return;
+        }
+
         try {
             if (getStatementLogger().isLoggable(java.util.logging.Level.FINE)) {
                 getStatementLogger().fine(
@@ -899,6 +1093,7 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
 
         // Parameter count in the result set.
         int paramCount = 0;
+        CryptoMetadata[] describedCryptoMetadata = new CryptoMetadata[params.length];
         try {
             rs = (SQLServerResultSet) stmt.getResultSet();
             while (rs.next()) {
@@ -922,6 +1117,7 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
                             (byte) rs.getInt(DescribeParameterEncryptionResultSet2.ColumnEncryptionAlgorithm.value()),
                             null, encType.value,
                             (byte) rs.getInt(DescribeParameterEncryptionResultSet2.NormalizationRuleVersion.value()));
+                    describedCryptoMetadata[paramIndex] = params[paramIndex].cryptoMeta;
                     // Decrypt the symmetric key.(This will also validate and throw if needed).
                     SQLServerSecurityUtility.decryptSymmetricKey(params[paramIndex].cryptoMeta, connection);
                 } else {
@@ -955,6 +1151,9 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
             throw new SQLServerException(this, form.format(msgArgs), null, 0, false);
         }
 
+        connection.registerCachedParameterEncryptionMetadata(parameterEncryptionMetadataCacheKey,
+                describedCryptoMetadata);
+
         // Null check for rs is done already.
         rs.close();
 
@@ -964,6 +1163,29 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
         connection.resetCurrentCommand();
     }
 
+    /**
+     * Sets the parameter encryption metadata from an entry of the connection's cache. Each encrypted parameter gets
+     * its own CryptoMetadata, as the cached entry is shared with other statements, and its symmetric key is decrypted
+     * as if the metadata had just been returned by sp_describe_parameter_encryption.
+     */
+    private void setCachedParameterEncryptionMetadata(Parameter[] params,
+            CryptoMetadata[] cachedCryptoMetadata) throws SQLServerException {
+        for (int paramIndex = 0; paramIndex < params.length; paramIndex++) {
+            CryptoMetadata cryptoMeta = cachedCryptoMetadata[paramIndex];
+            if (null != cryptoMeta) {
+                params[paramIndex].cryptoMeta = new CryptoMetadata(cryptoMeta.cekTableEntry, cryptoMeta.ordinal,
+                        cryptoMeta.cipherAlgorithmId, null, cryptoMeta.encryptionType.value,
+                        cryptoMeta.normalizationRuleVersion);
+                SQLServerSecurityUtility.decryptSymmetricKey(params[paramIndex].cryptoMeta, connection);
+            } else if (params[paramIndex].getForceEncryption()) {
+                MessageFormat form = new MessageFormat(
+                        SQLServerException.getErrString("R_ForceEncryptionTrue_HonorAETrue_UnencryptedColumn"));
+                Object[] msgArgs = {userSQL, paramIndex + 1};
+                SQLServerException.makeFromDriverError(connection, this, form.format(msgArgs), null, true);
+            }
+        }
+    }
+
     /**
      * Manages re-using cached handles.
      */
@@ -2797,6 +3019,8 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
                                     break;
                                 }
 
+                                evictCachedMetadataOnError(e);
+
                                 // Otherwise, the connection is OK and the transaction is still intact,
                                 // so just record the failure for the particular batch item.
                                 updateCount = Statement.EXECUTE_FAILED;
@@ -3062,7 +3286,15 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
         } else {
             loggerExternal.entering(getClassNameLogging(), "getParameterMetaData");
             checkClosed();
-            pmd = new SQLServerParameterMetaData(this, userSQL);
+
+            // Another connection of the data source may have retrieved the metadata already.
+            SQLServerParameterMetaData sharedPmd = forceRefresh ? null : connection.getSharedParameterMetadata(userSQL);
+            if (null != sharedPmd) {
+                pmd = new SQLServerParameterMetaData(this, sharedPmd);
+            } else {
+                pmd = new SQLServerParameterMetaData(this, userSQL);
+                connection.registerSharedParameterMetadata(userSQL, pmd);
+            }
             connection.registerCachedParameterMetadata(sqlTextCacheKey, pmd);
             loggerExternal.exiting(getClassNameLogging(), "getParameterMetaData", pmd);
             return pmd;
@@ -3122,6 +3354,28 @@ public class SQLServerPreparedStatement extends SQLServerStatement implements IS
         throw new SQLServerException(this, form.format(msgArgs), null, 0, false);
     }
 
+    @Override
+    public final CompletableFuture<ResultSet> executeQueryAsync(String sql, Executor executor) {
+        loggerExternal.entering(getClassNameLogging(), "executeQueryAsync", sql);
+        MessageFormat form = new MessageFormat(
+                SQLServerException.getErrString("R_cannotTakeArgumentsPreparedOrCallable"));
+        Object[] msgArgs = {"executeQueryAsync()"};
+        CompletableFuture<ResultSet> future = new CompletableFuture<>();
+        future.completeExceptionally(new SQLServerException(this, form.format(msgArgs), null, 0, false));
+        return future;
+    }
+
+    @Override
+    public final CompletableFuture<Integer> executeUpdateAsync(String sql, Executor executor) {
+        loggerExternal.entering(getClassNameLogging(), "executeUpdateAsync", sql);
+        MessageFormat form = new MessageFormat(
+                SQLServerException.getErrString("R_cannotTakeArgumentsPreparedOrCallable"));
+        Object[] msgArgs = {"executeUpdateAsync()"};
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        future.completeExceptionally(new SQLServerException(this, form.format(msgArgs), null, 0, false));
+        return future;
+    }
+
     @Override
     public void addBatch(String sql) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "addBatch", sql);
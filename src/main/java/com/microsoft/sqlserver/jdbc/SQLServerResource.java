@@ -244,6 +244,12 @@ public final class SQLServerResource extends ListResourceBundle {
                     "This setting specifies whether a prepared statement is prepared (sp_prepexec) on first use (property=true) or on second after first calling sp_executesql (property=false)."},
             {"R_statementPoolingCacheSizePropertyDescription",
                     "This setting specifies the size of the prepared statement cache for a connection. A value less than 1 means no cache."},
+            {"R_maxStatementPoolingCacheSizePropertyDescription",
+                    "This setting specifies the size up to which the prepared statement cache of a connection is grown while statements are evicted from it at a high rate. A value not greater than statementPoolingCacheSize keeps the cache at that size."},
+            {"R_sharedParameterMetadataCacheSizePropertyDescription",
+                    "This setting specifies how many statements the parameter metadata is cached for by a data source, to be shared by the connections it opens while statement pooling is enabled. A value less than 1 means no cache."},
+            {"R_parameterEncryptionMetadataCacheSizePropertyDescription",
+                    "This setting specifies how many statements the parameter encryption metadata returned by sp_describe_parameter_encryption is cached for on a connection. A value less than 1 means no cache."},
             {"R_gsscredentialPropertyDescription", "Impersonated GSS Credential to access SQL Server."},
             {"R_noParserSupport", "An error occurred while instantiating the required parser. Error: \"{0}\""},
             {"R_writeOnlyXML", "Cannot read from this SQLXML instance. This instance is for writing data only."},
@@ -509,6 +515,8 @@ public final class SQLServerResource extends ListResourceBundle {
             {"R_serverPreparedStatementDiscardThreshold",
                     "The serverPreparedStatementDiscardThreshold {0} is not valid."},
             {"R_statementPoolingCacheSize", "The statementPoolingCacheSize {0} is not valid."},
+            {"R_parameterEncryptionMetadataCacheSize", "The parameterEncryptionMetadataCacheSize {0} is not valid."},
+            {"R_maxStatementPoolingCacheSize", "The maxStatementPoolingCacheSize {0} is not valid."},
             {"R_kerberosLoginFailedForUsername",
                     "Cannot login with Kerberos principal {0}, check your credentials. {1}"},
             {"R_kerberosLoginFailed", "Kerberos Login failed: {0} due to {1} ({2})"},
@@ -529,10 +537,50 @@ public final class SQLServerResource extends ListResourceBundle {
             {"R_invalidCancelQueryTimeout", "The cancel timeout value {0} is not valid."},
             {"R_useBulkCopyForBatchInsertPropertyDescription",
                     "Whether the driver will use bulk copy API for batch insert operations"},
+            {"R_useSocketChannelPropertyDescription",
+                    "Whether the driver will communicate with the server over a java.nio SocketChannel instead of socket streams."},
+            {"R_multipleActiveResultSetsPropertyDescription",
+                    "Whether the driver will request Multiple Active Result Sets (MARS), which lets commands run while the results of other commands are still being read, without buffering those results."},
+            {"R_useFedAuthTokenCachePropertyDescription",
+                    "Whether the driver will share the access tokens of ActiveDirectoryPassword and ActiveDirectoryIntegrated authentication across the connections of the process, and refresh them before they expire."},
+            {"R_endpointCacheTtlPropertyDescription",
+                    "The number of seconds for which the driver remembers the addresses, SQL Browser instance port and routing target of a server, so that new connections to it skip those lookups. 0 does not remember them."},
+            {"R_invalidEndpointCacheTtl", "The endpointCacheTtl {0} is not valid."},
+            {"R_responseBufferSpillThresholdPropertyDescription",
+                    "The number of bytes of response data a connection buffers in memory, as when a command is executed before the results of another command are read, beyond which it writes the data to a temporary file. 0 never writes to a file."},
+            {"R_invalidResponseBufferSpillThreshold", "The responseBufferSpillThreshold {0} is not valid."},
             {"R_UnknownDataClsTokenNumber", "Unknown token for Data Classification."}, // From Server
             {"R_InvalidDataClsVersionNumber", "Invalid version number {0} for Data Classification."}, // From Server
             {"R_unknownUTF8SupportValue", "Unknown value for UTF8 support."},
             {"R_illegalWKT", "Illegal Well-Known text. Please make sure Well-Known text is valid."},
             {"R_illegalTypeForGeometry", "{0} is not supported for Geometry."},
-            {"R_illegalWKTposition", "Illegal character in Well-Known text at position {0}."},};
+            {"R_illegalWKTposition", "Illegal character in Well-Known text at position {0}."},
+            {"R_readTimedOut", "Read timed out"},
+            {"R_connectionPoolTimeout", "Timed out after {0} milliseconds waiting for a pooled connection."},
+            {"R_connectionPoolClosed", "The connection pool is closed."},
+            {"R_invalidConnectionPoolSettings",
+                    "The connection pool settings are not valid. maxPoolSize must be positive and not less than minPoolSize, and minPoolSize and connectionWaitTimeout must not be negative."},
+            {"R_socketChannelClosed", "The socket channel was closed."},
+            {"R_sslEngineFailed", "The SSL engine returned an unexpected status: "},
+            {"R_pipelineClosed", "The pipeline is closed."},
+            {"R_pipelineEmpty", "No statements were added to the pipeline."},
+            {"R_pipelineAlreadyExecuted", "The pipeline has already been executed."},
+            {"R_pipelineNotExecuted", "The pipeline has not been executed."},
+            {"R_pipelineUnsupportedStatement",
+                    "Only prepared statements created on the same connection as the pipeline can be added to the pipeline. Callable statements are not supported."},
+            {"R_pipelineDuplicateStatement", "The statement has already been added to the pipeline."},
+            {"R_pipelineLimitsMismatch",
+                    "The statements in a pipeline must use the same maxRows and maxFieldSize settings."},
+            {"R_columnBatchNotSupported",
+                    "Column batches can only be read from forward only result sets that do not use a server cursor."},
+            {"R_columnValueReadIntoBatch",
+                    "The column value was read into a column batch and cannot be retrieved from the result set."},
+            {"R_bulkCopyStreamStopped", "The bulk copy stream was stopped because another stream failed."},
+            {"R_partitionedBulkCopyTableLock",
+                    "The table lock option cannot be used to copy over several streams into a table with a clustered index, because the streams would block each other."},
+            {"R_asyncExecutionInProgress", "An asynchronous execution of the statement is already in progress."},
+            {"R_rowPublisherAlreadySubscribed", "The row publisher has already been subscribed to."},
+            {"R_invalidRowPublisherRequest", "The number of requested rows must be positive."},
+            {"R_fedAuthTokenTimedOut",
+                    "The login timed out while waiting for another login to fetch a federated authentication access token."},};
 }
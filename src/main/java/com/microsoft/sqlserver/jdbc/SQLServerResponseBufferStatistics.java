@@ -0,0 +1,125 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A snapshot of the counters that track the response data a connection buffers.
+ *
+ * Response packets are buffered when they are read from the server ahead of their processing: when the response of a
+ * command is detached because another command is executed on the connection, or when the response is read in full
+ * because responseBuffering is set to full. Once the buffered packets of a connection exceed the
+ * responseBufferSpillThreshold connection property, further buffered packets are written to a temporary file and read
+ * back from it as they are processed.
+ */
+public final class SQLServerResponseBufferStatistics {
+    /**
+     * The live counters of a connection.
+     */
+    static final class Counters {
+        static final int BUFFERED_BYTES = 0;
+        static final int PEAK_BUFFERED_BYTES = 1;
+        static final int SPILLED_BYTES = 2;
+        static final int TOTAL_SPILLED_BYTES = 3;
+        static final int SPILL_FILES = 4;
+        private static final int COUNTER_COUNT = 5;
+
+        private final AtomicLongArray values = new AtomicLongArray(COUNTER_COUNT);
+
+        void add(int counter, long delta) {
+            values.addAndGet(counter, delta);
+        }
+
+        long get(int counter) {
+            return values.get(counter);
+        }
+
+        /**
+         * Adds to the bytes buffered in memory, keeping track of their peak.
+         */
+        void addBuffered(long delta) {
+            long bufferedBytes = values.addAndGet(BUFFERED_BYTES, delta);
+            if (delta > 0)
+                values.accumulateAndGet(PEAK_BUFFERED_BYTES, bufferedBytes, Math::max);
+        }
+
+        /**
+         * Adds to the bytes spilled to temporary files and not yet read back.
+         */
+        void addSpilled(long delta) {
+            values.addAndGet(SPILLED_BYTES, delta);
+            if (delta > 0)
+                values.addAndGet(TOTAL_SPILLED_BYTES, delta);
+        }
+
+        SQLServerResponseBufferStatistics snapshot() {
+            long[] snapshot = new long[COUNTER_COUNT];
+            for (int i = 0; i < COUNTER_COUNT; i++)
+                snapshot[i] = values.get(i);
+            return new SQLServerResponseBufferStatistics(snapshot);
+        }
+    }
+
+    private final long[] values;
+
+    private SQLServerResponseBufferStatistics(long[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of bytes of response data currently buffered in memory ahead of their processing.
+     *
+     * @return the number of buffered bytes
+     */
+    public long getBufferedBytes() {
+        return values[Counters.BUFFERED_BYTES];
+    }
+
+    /**
+     * Returns the highest number of bytes of response data that were buffered in memory at once.
+     *
+     * @return the peak number of buffered bytes
+     */
+    public long getPeakBufferedBytes() {
+        return values[Counters.PEAK_BUFFERED_BYTES];
+    }
+
+    /**
+     * Returns the number of bytes of response data currently held in temporary files.
+     *
+     * @return the number of spilled bytes not yet read back
+     */
+    public long getSpilledBytes() {
+        return values[Counters.SPILLED_BYTES];
+    }
+
+    /**
+     * Returns the number of bytes of response data written to temporary files over the life of the connection.
+     *
+     * @return the total number of spilled bytes
+     */
+    public long getTotalSpilledBytes() {
+        return values[Counters.TOTAL_SPILLED_BYTES];
+    }
+
+    /**
+     * Returns the number of temporary files created for response data over the life of the connection.
+     *
+     * @return the number of spill files
+     */
+    public long getSpillFileCount() {
+        return values[Counters.SPILL_FILES];
+    }
+
+    @Override
+    public String toString() {
+        return "SQLServerResponseBufferStatistics[bufferedBytes=" + getBufferedBytes() + ", peakBufferedBytes="
+                + getPeakBufferedBytes() + ", spilledBytes=" + getSpilledBytes() + ", totalSpilledBytes="
+                + getTotalSpilledBytes() + ", spillFiles=" + getSpillFileCount() + "]";
+    }
+}
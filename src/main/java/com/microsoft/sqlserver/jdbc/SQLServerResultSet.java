@@ -220,6 +220,15 @@ public class SQLServerResultSet implements ISQLServerResultSet, java.io.Serializ
         return tdsReader;
     }
 
+    /**
+     * Returns true if moving to the next row has to wait for the server: none of the rest of the response is buffered
+     * and the server has yet to send it.
+     */
+    final boolean needsResponseData() {
+        TDSCommand command = (null != tdsReader) ? tdsReader.getCommand() : null;
+        return null != command && command.readingResponse() && 0 == tdsReader.available();
+    }
+
     private final FetchBuffer fetchBuffer;
 
     @Override
@@ -753,6 +762,11 @@ public class SQLServerResultSet implements ISQLServerResultSet, java.io.Serializ
 
         initializeNullCompressedColumns();
 
+        // Values read into a column batch are not retained by the columns.
+        if (index < lastColumnIndex && !this.columns[index - 1].isInitialized())
+            SQLServerException.makeFromDriverError(stmt.connection, this,
+                    SQLServerException.getErrString("R_columnValueReadIntoBatch"), null, false);
+
         // Skip any columns between the last indexed column and the target column,
         // retaining their values so they can be retrieved later.
         if (index > lastColumnIndex && (!this.columns[index - 1].isInitialized()))
@@ -1068,6 +1082,42 @@ public class SQLServerResultSet implements ISQLServerResultSet, java.io.Serializ
         return false;
     }
 
+    @Override
+    public int readBatch(SQLServerColumnBatch batch) throws SQLServerException {
+        loggerExternal.entering(getClassNameLogging(), "readBatch", batch);
+        checkClosed();
+
+        if (!isForwardOnly() || 0 != serverCursorId)
+            SQLServerException.makeFromDriverError(stmt.connection, this,
+                    SQLServerException.getErrString("R_columnBatchNotSupported"), null, true);
+
+        batch.start(columns);
+        int rowCount = 0;
+        while (rowCount < batch.getCapacity() && next()) {
+            initializeNullCompressedColumns();
+
+            // Read the columns in order, straight from the response where the batch decodes the values itself.
+            for (int columnIndex = 1; columnIndex <= columns.length; ++columnIndex) {
+                Column column = columns[columnIndex - 1];
+                if (column.isInitialized()) {
+                    // Null value from an NBCROW
+                    batch.setValue(columnIndex, rowCount, null);
+                } else if (batch.readsValues(columnIndex)) {
+                    batch.readValue(columnIndex, rowCount, tdsReader);
+                } else {
+                    batch.setValue(columnIndex, rowCount,
+                            column.getValue(column.getTypeInfo().getSSType().getJDBCType(), null, null, tdsReader));
+                }
+                lastColumnIndex = columnIndex + 1;
+            }
+            ++rowCount;
+        }
+        batch.setRowCount(rowCount);
+
+        loggerExternal.exiting(getClassNameLogging(), "readBatch", rowCount);
+        return rowCount;
+    }
+
     @Override
     public boolean wasNull() throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "wasNull");
@@ -2045,6 +2095,60 @@ public class SQLServerResultSet implements ISQLServerResultSet, java.io.Serializ
         return o;
     }
 
+    /**
+     * Returns a column value for the primitive getters of the integral types. BIT, TINYINT, SMALLINT, INTEGER and
+     * BIGINT values, and DECIMAL and NUMERIC values unless integralTypesOnly is set, are read without boxing them;
+     * other values are converted to the given JDBC type. NULL is returned as 0.
+     */
+    private long getLongValue(int columnIndex, JDBCType jdbcType,
+            boolean integralTypesOnly) throws SQLServerException {
+        Column column = getterGetColumn(columnIndex);
+        if (column.hasPrimitiveLongValue(integralTypesOnly)) {
+            long value = column.getLongValue(tdsReader);
+            lastValueWasNull = column.isNull();
+            return value;
+        }
+
+        Object o = column.getValue(jdbcType, null, null, tdsReader);
+        lastValueWasNull = (null == o);
+        return (null != o) ? ((Number) o).longValue() : 0;
+    }
+
+    /**
+     * Returns a column value for the primitive getters of the floating point types. FLOAT and REAL values, and integral
+     * values unless floatingTypesOnly is set, are read without boxing them; other values are converted to the given
+     * JDBC type. NULL is returned as 0.
+     */
+    private double getDoubleValue(int columnIndex, JDBCType jdbcType,
+            boolean floatingTypesOnly) throws SQLServerException {
+        Column column = getterGetColumn(columnIndex);
+        if (column.hasPrimitiveDoubleValue(floatingTypesOnly)) {
+            double value = column.getDoubleValue(tdsReader);
+            lastValueWasNull = column.isNull();
+            return value;
+        }
+
+        Object o = column.getValue(jdbcType, null, null, tdsReader);
+        lastValueWasNull = (null == o);
+        return (null != o) ? ((Number) o).doubleValue() : 0;
+    }
+
+    /**
+     * Returns a column value for getBoolean, reading integral values without boxing them. NULL is returned as false.
+     */
+    private boolean getBooleanValue(int columnIndex) throws SQLServerException {
+        Column column = getterGetColumn(columnIndex);
+        if (column.hasPrimitiveLongValue(true)) {
+            long value = column.getLongValue(tdsReader);
+            lastValueWasNull = column.isNull();
+            return 0 != value;
+        }
+
+        Boolean value = (Boolean) column.getValue(JDBCType.BIT, null, null, tdsReader);
+        lastValueWasNull = (null == value);
+        return null != value ? value : false;
+    }
+
     void setInternalVariantType(int columnIndex, SqlVariant type) throws SQLServerException {
         getterGetColumn(columnIndex).setInternalVariant(type);
     }
@@ -2136,36 +2240,40 @@ public class SQLServerResultSet implements ISQLServerResultSet, java.io.Serializ
     public boolean getBoolean(int columnIndex) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getBoolean", columnIndex);
         checkClosed();
-        Boolean value = (Boolean) getValue(columnIndex, JDBCType.BIT);
-        loggerExternal.exiting(getClassNameLogging(), "getBoolean", value);
-        return null != value ? value : false;
+        boolean value = getBooleanValue(columnIndex);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getBoolean", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public boolean getBoolean(String columnName) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getBoolean", columnName);
         checkClosed();
-        Boolean value = (Boolean) getValue(findColumn(columnName), JDBCType.BIT);
-        loggerExternal.exiting(getClassNameLogging(), "getBoolean", value);
-        return null != value ? value : false;
+        boolean value = getBooleanValue(findColumn(columnName));
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getBoolean", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public byte getByte(int columnIndex) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getByte", columnIndex);
         checkClosed();
-        Short value = (Short) getValue(columnIndex, JDBCType.TINYINT);
-        loggerExternal.exiting(getClassNameLogging(), "getByte", value);
-        return null != value ? value.byteValue() : 0;
+        byte value = (byte) getLongValue(columnIndex, JDBCType.TINYINT, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getByte", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public byte getByte(String columnName) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getByte", columnName);
         checkClosed();
-        Short value = (Short) getValue(findColumn(columnName), JDBCType.TINYINT);
-        loggerExternal.exiting(getClassNameLogging(), "getByte", value);
-        return null != value ? value.byteValue() : 0;
+        byte value = (byte) getLongValue(findColumn(columnName), JDBCType.TINYINT, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getByte", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
@@ -2228,36 +2336,40 @@ public class SQLServerResultSet implements ISQLServerResultSet, java.io.Serializ
     public double getDouble(int columnIndex) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getDouble", columnIndex);
         checkClosed();
-        Double value = (Double) getValue(columnIndex, JDBCType.DOUBLE);
-        loggerExternal.exiting(getClassNameLogging(), "getDouble", value);
-        return null != value ? value : 0;
+        double value = getDoubleValue(columnIndex, JDBCType.DOUBLE, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getDouble", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public double getDouble(String columnName) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getDouble", columnName);
         checkClosed();
-        Double value = (Double) getValue(findColumn(columnName), JDBCType.DOUBLE);
-        loggerExternal.exiting(getClassNameLogging(), "getDouble", value);
-        return null != value ? value : 0;
+        double value = getDoubleValue(findColumn(columnName), JDBCType.DOUBLE, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getDouble", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public float getFloat(int columnIndex) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getFloat", columnIndex);
         checkClosed();
-        Float value = (Float) getValue(columnIndex, JDBCType.REAL);
-        loggerExternal.exiting(getClassNameLogging(), "getFloat", value);
-        return null != value ? value : 0;
+        float value = (float) getDoubleValue(columnIndex, JDBCType.REAL, true);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getFloat", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public float getFloat(String columnName) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getFloat", columnName);
         checkClosed();
-        Float value = (Float) getValue(findColumn(columnName), JDBCType.REAL);
-        loggerExternal.exiting(getClassNameLogging(), "getFloat", value);
-        return null != value ? value : 0;
+        float value = (float) getDoubleValue(findColumn(columnName), JDBCType.REAL, true);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getFloat", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
@@ -2300,36 +2412,40 @@ public class SQLServerResultSet implements ISQLServerResultSet, java.io.Serializ
     public int getInt(int columnIndex) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getInt", columnIndex);
         checkClosed();
-        Integer value = (Integer) getValue(columnIndex, JDBCType.INTEGER);
-        loggerExternal.exiting(getClassNameLogging(), "getInt", value);
-        return null != value ? value : 0;
+        int value = (int) getLongValue(columnIndex, JDBCType.INTEGER, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getInt", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public int getInt(String columnName) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getInt", columnName);
         checkClosed();
-        Integer value = (Integer) getValue(findColumn(columnName), JDBCType.INTEGER);
-        loggerExternal.exiting(getClassNameLogging(), "getInt", value);
-        return null != value ? value : 0;
+        int value = (int) getLongValue(findColumn(columnName), JDBCType.INTEGER, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getInt", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public long getLong(int columnIndex) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getLong", columnIndex);
         checkClosed();
-        Long value = (Long) getValue(columnIndex, JDBCType.BIGINT);
-        loggerExternal.exiting(getClassNameLogging(), "getLong", value);
-        return null != value ? value : 0;
+        long value = getLongValue(columnIndex, JDBCType.BIGINT, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getLong", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public long getLong(String columnName) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getLong", columnName);
         checkClosed();
-        Long value = (Long) getValue(findColumn(columnName), JDBCType.BIGINT);
-        loggerExternal.exiting(getClassNameLogging(), "getLong", value);
-        return null != value ? value : 0;
+        long value = getLongValue(findColumn(columnName), JDBCType.BIGINT, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getLong", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
@@ -2454,18 +2570,20 @@ public class SQLServerResultSet implements ISQLServerResultSet, java.io.Serializ
     public short getShort(int columnIndex) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getShort", columnIndex);
         checkClosed();
-        Short value = (Short) getValue(columnIndex, JDBCType.SMALLINT);
-        loggerExternal.exiting(getClassNameLogging(), "getShort", value);
-        return null != value ? value : 0;
+        short value = (short) getLongValue(columnIndex, JDBCType.SMALLINT, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getShort", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
     public short getShort(String columnName) throws SQLServerException {
         loggerExternal.entering(getClassNameLogging(), "getShort", columnName);
         checkClosed();
-        Short value = (Short) getValue(findColumn(columnName), JDBCType.SMALLINT);
-        loggerExternal.exiting(getClassNameLogging(), "getShort", value);
-        return null != value ? value : 0;
+        short value = (short) getLongValue(findColumn(columnName), JDBCType.SMALLINT, false);
+        if (loggerExternal.isLoggable(java.util.logging.Level.FINER))
+            loggerExternal.exiting(getClassNameLogging(), "getShort", lastValueWasNull ? null : value);
+        return value;
     }
 
     @Override
@@ -0,0 +1,94 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.text.MessageFormat;
+
+
+/**
+ * A row of a result set published by {@link SQLServerRowPublisher}.
+ *
+ * The values are read when the row is published, as {@link java.sql.ResultSet#getObject(int)} returns them, so a row
+ * stays valid after the result set has moved on or been closed. Column indexes start at 1, as in
+ * {@link java.sql.ResultSet}.
+ */
+public final class SQLServerRow {
+    // Column labels, shared by all rows of a result set
+    private final String[] labels;
+    private final Object[] values;
+
+    SQLServerRow(String[] labels, Object[] values) {
+        this.labels = labels;
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return values.length;
+    }
+
+    /**
+     * Returns the label of a column.
+     *
+     * @param columnIndex
+     *        the first column is 1, the second is 2, ...
+     * @return the column label
+     * @throws SQLServerException
+     *         if the column index is not valid
+     */
+    public String getColumnLabel(int columnIndex) throws SQLServerException {
+        checkColumnIndex(columnIndex);
+        return labels[columnIndex - 1];
+    }
+
+    /**
+     * Returns the value of a column.
+     *
+     * @param columnIndex
+     *        the first column is 1, the second is 2, ...
+     * @return the value, or null if the value is SQL NULL
+     * @throws SQLServerException
+     *         if the column index is not valid
+     */
+    public Object getObject(int columnIndex) throws SQLServerException {
+        checkColumnIndex(columnIndex);
+        return values[columnIndex - 1];
+    }
+
+    /**
+     * Returns the value of a column. As with {@link java.sql.ResultSet#findColumn(String)}, the label is matched
+     * without regard to case, and the first matching column is used.
+     *
+     * @param columnLabel
+     *        the column label
+     * @return the value, or null if the value is SQL NULL
+     * @throws SQLServerException
+     *         if no column has the label
+     */
+    public Object getObject(String columnLabel) throws SQLServerException {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(columnLabel))
+                return values[i];
+        }
+
+        MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_invalidColumnName"));
+        Object[] msgArgs = {columnLabel};
+        SQLServerException.makeFromDriverError(null, this, form.format(msgArgs), "07009", false);
+        return null;
+    }
+
+    private void checkColumnIndex(int columnIndex) throws SQLServerException {
+        if (columnIndex < 1 || columnIndex > values.length) {
+            MessageFormat form = new MessageFormat(SQLServerException.getErrString("R_indexOutOfRange"));
+            Object[] msgArgs = {columnIndex};
+            SQLServerException.makeFromDriverError(null, this, form.format(msgArgs), "07009", false);
+        }
+    }
+}
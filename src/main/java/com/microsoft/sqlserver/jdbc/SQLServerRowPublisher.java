@@ -0,0 +1,299 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Publishes the rows of a query to a subscriber as the subscriber requests them, following the Reactive Streams
+ * protocol. The {@link Subscriber} and {@link Subscription} interfaces have the same methods as those of
+ * java.util.concurrent.Flow and org.reactivestreams, so each can be adapted to either with a delegating wrapper.
+ *
+ * The query is executed asynchronously, as by {@link ISQLServerStatement#executeQueryAsync(String, Executor)}, when the
+ * subscriber first requests rows. Rows are then read from the response only while the subscriber has outstanding
+ * demand. Once the demand is met, the driver stops reading from the connection, and TCP flow control holds back the
+ * server until more rows are requested. With responseBuffering=adaptive, the default, memory use is therefore bounded
+ * by the requested rows and a few TDS packets, whatever the size of the result.
+ *
+ * Rows are published on a thread of the executor. When the useSocketChannel connection property is set and the
+ * connection is not encrypted after login, no thread is held while the server sends more of the response: a selector
+ * shared by all connections waits for it. Otherwise an executor thread waits for the response data.
+ *
+ * A publisher can be subscribed to once. Until the subscription is completed, failed or cancelled, the statement must
+ * not be used otherwise. Cancelling the subscription cancels the execution and closes the result set.
+ */
+public final class SQLServerRowPublisher {
+    private static final Logger logger = Logger
+            .getLogger("com.microsoft.sqlserver.jdbc.internals.SQLServerRowPublisher");
+
+    /**
+     * Receives the rows of a {@link SQLServerRowPublisher}. Calls to a subscriber are serialized.
+     */
+    public interface Subscriber {
+        /**
+         * Called once, before any other method, with the subscription used to request rows.
+         *
+         * @param subscription
+         *        the subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next row, at most as many times as rows have been requested.
+         *
+         * @param row
+         *        the row
+         */
+        void onNext(SQLServerRow row);
+
+        /**
+         * Called once if the query or reading its rows fails. No other method is called afterwards.
+         *
+         * @param throwable
+         *        the error, typically an SQLException
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once after the last row. No other method is called afterwards.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a {@link SQLServerRowPublisher} and its {@link Subscriber}.
+     */
+    public interface Subscription {
+        /**
+         * Requests more rows. Demand accumulates; Long.MAX_VALUE requests all remaining rows.
+         *
+         * @param n
+         *        the number of rows, which must be positive
+         */
+        void request(long n);
+
+        /**
+         * Stops publishing rows, cancels the execution and closes the result set.
+         */
+        void cancel();
+    }
+
+    private final SQLServerStatement stmt;
+    private final Supplier<CompletableFuture<ResultSet>> execution;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    SQLServerRowPublisher(SQLServerStatement stmt, Supplier<CompletableFuture<ResultSet>> execution,
+            Executor executor) {
+        this.stmt = stmt;
+        this.execution = execution;
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes to the rows of the query.
+     *
+     * @param subscriber
+     *        the subscriber; a second subscriber is failed with an IllegalStateException
+     */
+    public void subscribe(Subscriber subscriber) {
+        if (null == subscriber)
+            throw new NullPointerException();
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(
+                    new IllegalStateException(SQLServerException.getErrString("R_rowPublisherAlreadySubscribed")));
+            return;
+        }
+
+        subscriber.onSubscribe(new RowSubscription(subscriber));
+    }
+
+    private final class RowSubscription implements Subscription {
+        private final Subscriber subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicBoolean executed = new AtomicBoolean();
+
+        // Number of signals to drain. The signal that raises it from 0 starts a drain on the executor, which keeps
+        // draining until it drops back to 0, so that at most one thread publishes rows at a time.
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException invalidRequest;
+        private volatile Throwable executionError;
+        private volatile SQLServerResultSet resultSet;
+
+        // State of the draining thread
+        private boolean done;
+        private boolean resultSetClosed;
+        private boolean resumed;
+        private String[] labels;
+
+        RowSubscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException(
+                        SQLServerException.getErrString("R_invalidRowPublisherRequest"));
+            } else {
+                requested.accumulateAndGet(n, (current, added) -> {
+                    long sum = current + added;
+                    return (sum < 0) ? Long.MAX_VALUE : sum;
+                });
+                if (executed.compareAndSet(false, true))
+                    execute();
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            signal();
+        }
+
+        private void execute() {
+            CompletableFuture<ResultSet> future;
+            try {
+                future = execution.get();
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+
+            future.whenComplete((rs, e) -> {
+                if (null != e)
+                    executionError = (e instanceof CompletionException && null != e.getCause()) ? e.getCause() : e;
+                else
+                    resultSet = (SQLServerResultSet) rs;
+                signal();
+            });
+        }
+
+        private void signal() {
+            if (0 == pendingSignals.getAndIncrement())
+                executor.execute(this::drain);
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                // Waiting for response data keeps the signals pending; the drain resumes once the data arrives.
+                if (!drainOnce())
+                    return;
+                missed = pendingSignals.addAndGet(-missed);
+            } while (0 != missed);
+        }
+
+        /**
+         * Delivers what the subscriber is due.
+         *
+         * @return false if the drain waits for response data
+         */
+        private boolean drainOnce() {
+            if (!done) {
+                if (cancelled) {
+                    done = true;
+                } else if (null != invalidRequest) {
+                    done = true;
+                    subscriber.onError(invalidRequest);
+                } else if (null != executionError) {
+                    done = true;
+                    subscriber.onError(executionError);
+                } else if (null != resultSet) {
+                    return publishRows(resultSet);
+                }
+            }
+
+            // The result set may arrive after the subscription was cancelled.
+            if (done && null != resultSet && !resultSetClosed)
+                closeResultSet(true);
+            return true;
+        }
+
+        private boolean publishRows(SQLServerResultSet rs) {
+            try {
+                if (null == labels) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    labels = new String[metaData.getColumnCount()];
+                    for (int i = 0; i < labels.length; i++)
+                        labels[i] = metaData.getColumnLabel(i + 1);
+                }
+
+                while (0 != requested.get() && !cancelled) {
+                    // Rather than block on the socket, leave it to the server to fill the TCP window while a selector
+                    // waits for the data. The row after the wait is read without checking again, since the data may
+                    // have arrived on a channel that cannot be waited on.
+                    if (!resumed && rs.needsResponseData()) {
+                        resumed = true;
+                        stmt.connection.awaitReadable(() -> executor.execute(this::drain));
+                        return false;
+                    }
+                    resumed = false;
+
+                    if (!rs.next()) {
+                        done = true;
+                        closeResultSet(false);
+                        subscriber.onComplete();
+                        return true;
+                    }
+
+                    Object[] values = new Object[labels.length];
+                    for (int i = 0; i < values.length; i++)
+                        values[i] = rs.getObject(i + 1);
+                    if (Long.MAX_VALUE != requested.get())
+                        requested.decrementAndGet();
+                    subscriber.onNext(new SQLServerRow(labels, values));
+                }
+            } catch (SQLException | RuntimeException e) {
+                done = true;
+                closeResultSet(true);
+                subscriber.onError(e);
+            }
+
+            if (cancelled && !done) {
+                done = true;
+                closeResultSet(true);
+            }
+            return true;
+        }
+
+        private void closeResultSet(boolean cancelExecution) {
+            resultSetClosed = true;
+            try {
+                // Cancel rather than read and discard the rest of the response.
+                if (cancelExecution)
+                    stmt.cancel();
+                resultSet.close();
+            } catch (SQLException e) {
+                if (logger.isLoggable(Level.FINE))
+                    logger.fine(stmt.toString() + " Ignored error closing the published result set: " + e.getMessage());
+            }
+        }
+    }
+}
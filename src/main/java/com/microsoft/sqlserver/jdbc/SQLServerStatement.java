@@ -20,6 +20,10 @@ import java.util.ListIterator;
 import java.util.Stack;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
@@ -226,6 +230,95 @@ public class SQLServerStatement implements ISQLServerStatement {
         }
     }
 
+    /**
+     * A step of an asynchronous execution.
+     */
+    interface AsyncStep<T> {
+        T run() throws SQLException;
+    }
+
+    // Set while an asynchronous execution of this Statement has not completed
+    private final AtomicBoolean asyncExecutionPending = new AtomicBoolean(false);
+
+    /**
+     * Executes this Statement asynchronously using TDSCommand command.
+     *
+     * The request is sent from a thread of the executor. If the command deferred reading its response, the connection
+     * waits for the response without holding a thread, and readResponse then reads it on the executor. Otherwise, as
+     * for server cursors, the command completed on the executor. The returned future is completed with the value of
+     * getResult, or with the exception thrown by any of the steps.
+     */
+    final <T> CompletableFuture<T> executeAsync(TDSCommand command, AsyncStep<Void> readResponse,
+            AsyncStep<T> getResult, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            checkClosed();
+            if (!asyncExecutionPending.compareAndSet(false, true))
+                SQLServerException.makeFromDriverError(connection, this,
+                        SQLServerException.getErrString("R_asyncExecutionInProgress"), null, false);
+        } catch (SQLServerException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        CompletableFuture<Void> responseReady = new CompletableFuture<>();
+        command.setResponseReadyCallback(() -> responseReady.complete(null));
+
+        CompletableFuture.supplyAsync(() -> {
+            runAsyncStep(() -> {
+                executeStatement(command);
+                return null;
+            });
+            if (command.isResponseDeferred())
+                connection.awaitResponse(command);
+            return command.isResponseDeferred();
+        }, executor).thenCompose(
+                deferred -> deferred ? responseReady.thenApply(v -> true) : CompletableFuture.completedFuture(false))
+                .thenApplyAsync(deferred -> {
+                    if (deferred)
+                        runAsyncStep(readResponse);
+                    return runAsyncStep(getResult);
+                }, executor).whenComplete((value, e) -> {
+                    asyncExecutionPending.set(false);
+                    if (null == e)
+                        future.complete(value);
+                    else
+                        future.completeExceptionally(
+                                (e instanceof CompletionException && null != e.getCause()) ? e.getCause() : e);
+                });
+
+        return future;
+    }
+
+    private static <T> T runAsyncStep(AsyncStep<T> step) {
+        try {
+            return step.run();
+        } catch (SQLServerException e) {
+            if (e.getDriverErrorCode() == SQLServerException.ERROR_QUERY_TIMEOUT)
+                throw new CompletionException(
+                        new SQLTimeoutException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e.getCause()));
+            throw new CompletionException(e);
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Readies this Statement for an execution that is part of a pipeline executed by TDSCommand pipelineCmd.
+     *
+     * Any response left over from a previous execution is processed first. The pipeline command then becomes the
+     * current command, so that Statement.cancel() cancels the pipeline, and the last execution command, so that
+     * re-executing or closing this Statement discards the remaining results of the pipeline.
+     */
+    final void startPipelinedExecution(TDSCommand pipelineCmd) throws SQLServerException {
+        discardLastExecutionResults();
+        checkClosed();
+
+        execProps = new ExecuteProperties(this);
+        currentCommand = pipelineCmd;
+        lastStmtExecCmd = pipelineCmd;
+    }
+
     /**
      * Executes TDSCommand newCommand through this Statement object, allowing it to be cancelled through
      * Statement.cancel().
@@ -741,6 +834,59 @@ public class SQLServerStatement implements ISQLServerStatement {
         return null != resultSet;
     }
 
+    @Override
+    public CompletableFuture<ResultSet> executeQueryAsync(String sql) {
+        return executeQueryAsync(sql, SharedSelector.getDefaultExecutor());
+    }
+
+    @Override
+    public CompletableFuture<ResultSet> executeQueryAsync(String sql, Executor executor) {
+        loggerExternal.entering(getClassNameLogging(), "executeQueryAsync", sql);
+        StmtExecCmd command = new StmtExecCmd(this, sql, EXECUTE_QUERY, NO_GENERATED_KEYS);
+        CompletableFuture<ResultSet> future = executeAsync(command, () -> {
+            readDeferredResponse(command);
+            return null;
+        }, () -> resultSet, executor);
+        loggerExternal.exiting(getClassNameLogging(), "executeQueryAsync", future);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdateAsync(String sql) {
+        return executeUpdateAsync(sql, SharedSelector.getDefaultExecutor());
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdateAsync(String sql, Executor executor) {
+        loggerExternal.entering(getClassNameLogging(), "executeUpdateAsync", sql);
+        StmtExecCmd command = new StmtExecCmd(this, sql, EXECUTE_UPDATE, NO_GENERATED_KEYS);
+        CompletableFuture<Integer> future = executeAsync(command, () -> {
+            readDeferredResponse(command);
+            return null;
+        }, this::getIntUpdateCount, executor);
+        loggerExternal.exiting(getClassNameLogging(), "executeUpdateAsync", future);
+        return future;
+    }
+
+    @Override
+    public SQLServerRowPublisher executeQueryPublisher(String sql) {
+        return executeQueryPublisher(sql, SharedSelector.getDefaultExecutor());
+    }
+
+    @Override
+    public SQLServerRowPublisher executeQueryPublisher(String sql, Executor executor) {
+        return new SQLServerRowPublisher(this, () -> executeQueryAsync(sql, executor), executor);
+    }
+
+    final Integer getIntUpdateCount() throws SQLServerException {
+        // this shouldn't happen, caller probably meant to call executeLargeUpdate
+        if (updateCount < Integer.MIN_VALUE || updateCount > Integer.MAX_VALUE)
+            SQLServerException.makeFromDriverError(connection, this,
+                    SQLServerException.getErrString("R_updateCountOutofRange"), null, true);
+
+        return (int) updateCount;
+    }
+
     private final class StmtExecCmd extends TDSCommand {
         final SQLServerStatement stmt;
         final String sql;
@@ -853,12 +999,32 @@ public class SQLServerStatement implements ISQLServerStatement {
             if (stmtlogger.isLoggable(java.util.logging.Level.FINE))
                 stmtlogger.fine(toString() + " Executing (not server cursor) " + sql);
 
-            // Start the response
+            // Start the response, unless it is read asynchronously by readDeferredResponse
+            if (execCmd.isAsync()) {
+                execCmd.deferResponse();
+                return;
+            }
+
             ensureExecuteResultsReader(execCmd.startResponse(isResponseBufferingAdaptive));
             startResults();
             getNextResult(true);
         }
 
+        checkResultSetForExecuteMethod();
+    }
+
+    /**
+     * Reads the response of an asynchronous execution, whose request doExecuteStatement finished without waiting for
+     * the response.
+     */
+    private void readDeferredResponse(StmtExecCmd execCmd) throws SQLServerException {
+        ensureExecuteResultsReader(execCmd.readResponse(isResponseBufferingAdaptive));
+        startResults();
+        getNextResult(true);
+        checkResultSetForExecuteMethod();
+    }
+
+    private void checkResultSetForExecuteMethod() throws SQLServerException {
         // If execution produced no result set, then throw an exception if executeQuery() was used.
         if (null == resultSet) {
             if (EXECUTE_QUERY == executeMethod) {
@@ -1504,6 +1670,14 @@ public class SQLServerStatement implements ISQLServerStatement {
                             return false;
                         }
                     }
+
+                    // When several statements are executed in one request (see SQLServerPipeline),
+                    // the done token that ends this statement's RPC marks the end of its results.
+                    // The results that follow belong to the next statement.
+                    else if (TDS.TDS_DONEINPROC != doneToken.getTokenType() && doneToken.wasRPCInBatch()) {
+                        moreResults = false;
+                        return false;
+                    }
                 }
 
                 // If the current command (whatever it was) produced an error then stop parsing and propagate it up.
@@ -0,0 +1,188 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A snapshot of the counters that track the life cycle of the prepared statement handles of a connection, or of all
+ * connections opened by a data source.
+ *
+ * The counters show how well the prepared statement handle cache, sized by the statementPoolingCacheSize connection
+ * property, fits the workload: a low hit ratio and a high eviction count mean that statements are prepared and
+ * unprepared over and over. They also show how often discarded handles are unprepared in batches, as configured by the
+ * serverPreparedStatementDiscardThreshold connection property, and which system procedures execute the prepared
+ * statements.
+ */
+public final class SQLServerStatementHandleStatistics {
+    /**
+     * The live counters of a connection or data source. The counters of a connection also add to those of the data
+     * source that opened it.
+     */
+    static final class Counters {
+        static final int CACHE_HITS = 0;
+        static final int CACHE_MISSES = 1;
+        static final int CACHE_EVICTIONS = 2;
+        static final int CACHE_RESIZES = 3;
+        static final int PENDING_DISCARDS = 4;
+        static final int UNPREPARE_BATCHES = 5;
+        static final int UNPREPARED_HANDLES = 6;
+        static final int PREPEXEC_CALLS = 7;
+        static final int EXECUTE_CALLS = 8;
+        static final int EXECUTESQL_CALLS = 9;
+        private static final int COUNTER_COUNT = 10;
+
+        private final AtomicLongArray values = new AtomicLongArray(COUNTER_COUNT);
+        private final Counters parent;
+
+        Counters(Counters parent) {
+            this.parent = parent;
+        }
+
+        void increment(int counter) {
+            add(counter, 1);
+        }
+
+        void add(int counter, long delta) {
+            values.addAndGet(counter, delta);
+            if (null != parent)
+                parent.add(counter, delta);
+        }
+
+        long get(int counter) {
+            return values.get(counter);
+        }
+
+        SQLServerStatementHandleStatistics snapshot() {
+            long[] snapshot = new long[COUNTER_COUNT];
+            for (int i = 0; i < COUNTER_COUNT; i++)
+                snapshot[i] = values.get(i);
+            return new SQLServerStatementHandleStatistics(snapshot);
+        }
+    }
+
+    private final long[] values;
+
+    private SQLServerStatementHandleStatistics(long[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of times a prepared statement found a handle for its SQL text and parameter definitions in the
+     * prepared statement handle cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getCacheHitCount() {
+        return values[Counters.CACHE_HITS];
+    }
+
+    /**
+     * Returns the number of times a prepared statement looked for a handle in the prepared statement handle cache and
+     * did not find one.
+     *
+     * @return the number of cache misses
+     */
+    public long getCacheMissCount() {
+        return values[Counters.CACHE_MISSES];
+    }
+
+    /**
+     * Returns the ratio of cache hits to cache lookups.
+     *
+     * @return the hit ratio between 0 and 1, or 0 if the cache has not been used
+     */
+    public double getCacheHitRatio() {
+        long lookups = getCacheHitCount() + getCacheMissCount();
+        return (0 == lookups) ? 0 : (double) getCacheHitCount() / lookups;
+    }
+
+    /**
+     * Returns the number of handles evicted from the prepared statement handle cache to make room for other handles.
+     * An evicted handle is unprepared once no statement uses it any more.
+     *
+     * @return the number of cache evictions
+     */
+    public long getCacheEvictionCount() {
+        return values[Counters.CACHE_EVICTIONS];
+    }
+
+    /**
+     * Returns the number of times the prepared statement handle cache was grown because of the rate of evictions. See
+     * the maxStatementPoolingCacheSize connection property.
+     *
+     * @return the number of cache resizes
+     */
+    public long getCacheResizeCount() {
+        return values[Counters.CACHE_RESIZES];
+    }
+
+    /**
+     * Returns the number of discarded prepared statement handles that are waiting to be unprepared on the server.
+     *
+     * @return the number of pending discards
+     */
+    public long getPendingDiscardCount() {
+        return values[Counters.PENDING_DISCARDS];
+    }
+
+    /**
+     * Returns the number of batches of sp_unprepare and sp_cursorunprepare calls sent to the server.
+     *
+     * @return the number of unprepare batches
+     */
+    public long getUnprepareBatchCount() {
+        return values[Counters.UNPREPARE_BATCHES];
+    }
+
+    /**
+     * Returns the number of prepared statement handles unprepared in batches.
+     *
+     * @return the number of handles unprepared in batches
+     */
+    public long getUnpreparedHandleCount() {
+        return values[Counters.UNPREPARED_HANDLES];
+    }
+
+    /**
+     * Returns the number of prepared statement executions that prepared the statement with sp_prepexec or
+     * sp_cursorprepexec.
+     *
+     * @return the number of sp_prepexec calls
+     */
+    public long getPrepExecCount() {
+        return values[Counters.PREPEXEC_CALLS];
+    }
+
+    /**
+     * Returns the number of prepared statement executions that reused a prepared handle with sp_execute or
+     * sp_cursorexecute.
+     *
+     * @return the number of sp_execute calls
+     */
+    public long getExecuteCount() {
+        return values[Counters.EXECUTE_CALLS];
+    }
+
+    /**
+     * Returns the number of prepared statement executions that did not prepare the statement and used sp_executesql.
+     *
+     * @return the number of sp_executesql calls
+     */
+    public long getExecuteSqlCount() {
+        return values[Counters.EXECUTESQL_CALLS];
+    }
+
+    @Override
+    public String toString() {
+        return "SQLServerStatementHandleStatistics[cacheHits=" + getCacheHitCount() + ", cacheMisses="
+                + getCacheMissCount() + ", cacheEvictions=" + getCacheEvictionCount() + ", cacheResizes="
+                + getCacheResizeCount() + ", pendingDiscards=" + getPendingDiscardCount() + ", unprepareBatches="
+                + getUnprepareBatchCount() + ", unpreparedHandles=" + getUnpreparedHandleCount() + ", prepExec="
+                + getPrepExecCount() + ", execute=" + getExecuteCount() + ", executeSql=" + getExecuteSqlCount() + "]";
+    }
+}
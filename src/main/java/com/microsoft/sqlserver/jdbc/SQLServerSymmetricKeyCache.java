@@ -14,7 +14,9 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 class CacheClear implements Runnable {
@@ -31,7 +33,8 @@ class CacheClear implements Runnable {
     public void run() {
         // remove() is a no-op if the key is not in the map.
         // It is a concurrentHashMap, update/remove operations are thread safe.
-        synchronized (SQLServerSymmetricKeyCache.lock) {
+        SQLServerSymmetricKeyCache.lock.lock();
+        try {
             SQLServerSymmetricKeyCache instance = SQLServerSymmetricKeyCache.getInstance();
             if (instance.getCache().containsKey(keylookupValue)) {
                 instance.getCache().get(keylookupValue).zeroOutKey();
@@ -40,6 +43,8 @@ class CacheClear implements Runnable {
                     aeLogger.fine("Removed encryption key from cache...");
                 }
             }
+        } finally {
+            SQLServerSymmetricKeyCache.lock.unlock();
         }
     }
 }
@@ -51,7 +56,8 @@ class CacheClear implements Runnable {
  *
  */
 final class SQLServerSymmetricKeyCache {
-    static Object lock = new Object();
+    // Key store providers may call out to a key vault while the lock is held.
+    static final Lock lock = new ReentrantLock();
     private final ConcurrentHashMap<String, SQLServerSymmetricKey> cache;
     private static final SQLServerSymmetricKeyCache instance = new SQLServerSymmetricKeyCache();
     private static ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1, new ThreadFactory() {
@@ -88,7 +94,8 @@ final class SQLServerSymmetricKeyCache {
      */
     SQLServerSymmetricKey getKey(EncryptionKeyInfo keyInfo, SQLServerConnection connection) throws SQLServerException {
         SQLServerSymmetricKey encryptionKey = null;
-        synchronized (lock) {
+        lock.lock();
+        try {
             String serverName = connection.getTrustedServerNameAE();
             assert null != serverName : "serverName should not be null in getKey.";
 
@@ -174,6 +181,8 @@ final class SQLServerSymmetricKeyCache {
             } else {
                 encryptionKey = cache.get(keyLookupValue);
             }
+        } finally {
+            lock.unlock();
         }
         return encryptionKey;
     }
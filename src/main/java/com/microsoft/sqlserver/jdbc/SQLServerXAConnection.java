@@ -58,13 +58,18 @@ public final class SQLServerXAConnection extends SQLServerPooledConnection imple
     }
 
     @Override
-    public synchronized XAResource getXAResource() throws java.sql.SQLException {
-        // All connections handed out from this physical connection have a common XAResource
-        // for transaction control. IE the XAResource is one to one with the physical connection.
+    public XAResource getXAResource() throws java.sql.SQLException {
+        lock.lock();
+        try {
+            // All connections handed out from this physical connection have a common XAResource
+            // for transaction control. IE the XAResource is one to one with the physical connection.
 
-        if (XAResource == null)
-            XAResource = new SQLServerXAResource(getPhysicalConnection(), physicalControlConnection, toString());
-        return XAResource;
+            if (XAResource == null)
+                XAResource = new SQLServerXAResource(getPhysicalConnection(), physicalControlConnection, toString());
+            return XAResource;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -72,7 +77,8 @@ public final class SQLServerXAConnection extends SQLServerPooledConnection imple
      */
     @Override
     public void close() throws SQLException {
-        synchronized (this) {
+        lock.lock();
+        try {
             if (XAResource != null) {
                 XAResource.close();
                 XAResource = null;
@@ -81,6 +87,8 @@ public final class SQLServerXAConnection extends SQLServerPooledConnection imple
                 physicalControlConnection.close();
                 physicalControlConnection = null;
             }
+        } finally {
+            lock.unlock();
         }
         super.close();
     }
@@ -15,6 +15,8 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -155,7 +157,7 @@ public final class SQLServerXAResource implements javax.transaction.xa.XAResourc
     private int ArchitectureMSSQL, ArchitectureOS;
 
     private static boolean xaInitDone;
-    private static final Object xaInitLock;
+    private static final Lock xaInitLock;
     private String sResourceManagerId;
     private int enlistedTransactionCount;
     final private Logger xaLogger;
@@ -167,12 +169,13 @@ public final class SQLServerXAResource implements javax.transaction.xa.XAResourc
     public static final int SSTRANSTIGHTLYCPLD = 0x8000;
     private SQLServerCallableStatement[] xaStatements = {null, null, null, null, null, null, null, null, null, null};
     private final String traceID;
+    private final Lock lock = new ReentrantLock();
     /**
      * Variable that shows how many times we attempt the recovery, e.g in case of MSDTC restart
      */
     private int recoveryAttempt = 0;
     static {
-        xaInitLock = new Object();
+        xaInitLock = new ReentrantLock();
     }
 
     @Override
@@ -206,73 +209,88 @@ public final class SQLServerXAResource implements javax.transaction.xa.XAResourc
 
     }
 
-    private synchronized SQLServerCallableStatement getXACallableStatementHandle(int number) throws SQLServerException {
-        assert number >= XA_START && number <= XA_FORGET_EX;
-        assert number < xaStatements.length;
-        if (null != xaStatements[number])
-            return xaStatements[number];
-
-        CallableStatement CS = null;
-
-        switch (number) {
-            case SQLServerXAResource.XA_START:
-                CS = controlConnection.prepareCall(
-                        "{call master..xp_sqljdbc_xa_start(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_END:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_end(?, ?, ?, ?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_PREPARE:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_prepare(?, ?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_COMMIT:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_commit(?, ?, ?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_ROLLBACK:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_rollback(?, ?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_FORGET:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_forget(?, ?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_RECOVER:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_recover(?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_PREPARE_EX:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_prepare_ex(?, ?, ?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_ROLLBACK_EX:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_rollback_ex(?, ?, ?, ?, ?, ?)}");
-                break;
-            case SQLServerXAResource.XA_FORGET_EX:
-                CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_forget_ex(?, ?, ?, ?, ?, ?)}");
-                break;
-            default:
-                assert false : "Bad handle request:" + number;
-                break;
-        }
+    private SQLServerCallableStatement getXACallableStatementHandle(int number) throws SQLServerException {
+        lock.lock();
+        try {
+            assert number >= XA_START && number <= XA_FORGET_EX;
+            assert number < xaStatements.length;
+            if (null != xaStatements[number])
+                return xaStatements[number];
 
-        xaStatements[number] = (SQLServerCallableStatement) CS;
-        return xaStatements[number];
-    }
+            CallableStatement CS = null;
 
-    private synchronized void closeXAStatements() throws SQLServerException {
-        for (int i = 0; i < xaStatements.length; i++)
-            if (null != xaStatements[i]) {
-                xaStatements[i].close();
-                xaStatements[i] = null;
+            switch (number) {
+                case SQLServerXAResource.XA_START:
+                    CS = controlConnection.prepareCall(
+                            "{call master..xp_sqljdbc_xa_start(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_END:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_end(?, ?, ?, ?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_PREPARE:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_prepare(?, ?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_COMMIT:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_commit(?, ?, ?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_ROLLBACK:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_rollback(?, ?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_FORGET:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_forget(?, ?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_RECOVER:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_recover(?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_PREPARE_EX:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_prepare_ex(?, ?, ?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_ROLLBACK_EX:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_rollback_ex(?, ?, ?, ?, ?, ?)}");
+                    break;
+                case SQLServerXAResource.XA_FORGET_EX:
+                    CS = controlConnection.prepareCall("{call master..xp_sqljdbc_xa_forget_ex(?, ?, ?, ?, ?, ?)}");
+                    break;
+                default:
+                    assert false : "Bad handle request:" + number;
+                    break;
             }
+
+            xaStatements[number] = (SQLServerCallableStatement) CS;
+            return xaStatements[number];
+        } finally {
+            lock.unlock();
+        }
     }
 
-    final synchronized void close() throws SQLServerException {
+    private void closeXAStatements() throws SQLServerException {
+        lock.lock();
         try {
-            closeXAStatements();
-        } catch (Exception e) {
-            if (xaLogger.isLoggable(Level.WARNING))
-                xaLogger.warning(toString() + "Closing exception ignored: " + e);
+            for (int i = 0; i < xaStatements.length; i++)
+                if (null != xaStatements[i]) {
+                    xaStatements[i].close();
+                    xaStatements[i] = null;
+                }
+        } finally {
+            lock.unlock();
         }
+    }
+
+    final void close() throws SQLServerException {
+        lock.lock();
+        try {
+            try {
+                closeXAStatements();
+            } catch (Exception e) {
+                if (xaLogger.isLoggable(Level.WARNING))
+                    xaLogger.warning(toString() + "Closing exception ignored: " + e);
+            }
 
-        if (null != controlConnection)
-            controlConnection.close();
+            if (null != controlConnection)
+                controlConnection.close();
+        } finally {
+            lock.unlock();
+        }
     }
 
     // Returns displayable representation of XID flags for logging purposes.
@@ -382,10 +400,12 @@ public final class SQLServerXAResource implements javax.transaction.xa.XAResourc
 
         SQLServerCallableStatement cs = null;
         try {
-            synchronized (this) {
+            lock.lock();
+            try {
                 if (!xaInitDone) {
                     try {
-                        synchronized (xaInitLock) {
+                        xaInitLock.lock();
+                        try {
                             SQLServerCallableStatement initCS = null;
 
                             initCS = (SQLServerCallableStatement) controlConnection
@@ -436,6 +456,8 @@ public final class SQLServerXAResource implements javax.transaction.xa.XAResourc
                                     xaLogger.finer(toString() + " exception:" + xex);
                                 throw xex;
                             }
+                        } finally {
+                            xaInitLock.unlock();
                         }
                     } catch (SQLServerException e1) {
                         MessageFormat form = new MessageFormat(
@@ -447,6 +469,8 @@ public final class SQLServerXAResource implements javax.transaction.xa.XAResourc
                     }
                     xaInitDone = true;
                 }
+            } finally {
+                lock.unlock();
             }
 
             switch (nType) {
@@ -0,0 +1,150 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mssql.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import mssql.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap.Builder;
+
+
+/**
+ * Remembers, for the endpointCacheTtl connection property number of seconds, how logins reached a server: the
+ * addresses its host name resolved to, the port of a named instance returned by SQL Browser, and the server a login
+ * was routed to. New logins to the same server then skip the DNS and SQL Browser lookups and connect to the routing
+ * target directly. Entries are removed as soon as a login that used them fails to connect, and each cache keeps only
+ * the most recently used entries.
+ *
+ * Unlike FailoverMapSingleton, which keeps the failover partners of database mirroring for the life of the process,
+ * these entries expire, since the addresses and ports of a server may change when it fails over.
+ */
+final class ServerEndpointCache {
+    private static final Logger logger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.ServerEndpointCache");
+
+    // Maximum number of entries of each cache.
+    static final int MAX_ENTRIES = 1024;
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, int ttlSeconds) {
+            this.value = value;
+            this.expiresAt = System.currentTimeMillis() + ttlSeconds * 1000L;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    private static final ConcurrentLinkedHashMap<String, Entry<InetAddress[]>> addresses = newCache();
+    private static final ConcurrentLinkedHashMap<String, Entry<String>> instancePorts = newCache();
+    private static final ConcurrentLinkedHashMap<String, Entry<ServerPortPlaceHolder>> routingTargets = newCache();
+
+    private ServerEndpointCache() {
+        /* hide the constructor to stop the instantiation of this class. */}
+
+    private static <V> ConcurrentLinkedHashMap<String, Entry<V>> newCache() {
+        return new Builder<String, Entry<V>>().maximumWeightedCapacity(MAX_ENTRIES).build();
+    }
+
+    private static <V> V get(ConcurrentLinkedHashMap<String, Entry<V>> cache, String key) {
+        Entry<V> entry = cache.get(key);
+        if (null == entry)
+            return null;
+
+        if (entry.isExpired()) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private static String getInstanceKey(String server, String instance) {
+        return server.toLowerCase(Locale.ENGLISH) + "\\" + instance.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Returns the addresses of a host, resolving them if they are not cached.
+     */
+    static InetAddress[] getAllByName(String hostName, int ttlSeconds) throws UnknownHostException {
+        String key = hostName.toLowerCase(Locale.ENGLISH);
+        InetAddress[] inetAddrs = get(addresses, key);
+        if (null != inetAddrs) {
+            if (logger.isLoggable(Level.FINER))
+                logger.finer("Using " + inetAddrs.length + " cached addresses of host: " + hostName);
+            return inetAddrs.clone();
+        }
+
+        inetAddrs = InetAddress.getAllByName(hostName);
+        addresses.put(key, new Entry<>(inetAddrs.clone(), ttlSeconds));
+        return inetAddrs;
+    }
+
+    static void removeAddresses(String hostName) {
+        addresses.remove(hostName.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Returns the cached port of a named instance, or null if none is cached.
+     */
+    static String getInstancePort(String server, String instance) {
+        return get(instancePorts, getInstanceKey(server, instance));
+    }
+
+    static void putInstancePort(String server, String instance, String port, int ttlSeconds) {
+        instancePorts.put(getInstanceKey(server, instance), new Entry<>(port, ttlSeconds));
+    }
+
+    static void removeInstancePort(String server, String instance) {
+        instancePorts.remove(getInstanceKey(server, instance));
+    }
+
+    /**
+     * Returns the key of the routing target of logins to a server, which is specific to the database and application
+     * intent since both decide where the server routes a login.
+     */
+    static String getRoutingKey(String server, String instance, int port, String database,
+            ApplicationIntent applicationIntent) {
+        StringBuilder key = new StringBuilder(server.toLowerCase(Locale.ENGLISH));
+        if (null != instance)
+            key.append('\\').append(instance.toLowerCase(Locale.ENGLISH));
+        key.append(':').append(port).append(';').append(database).append(';').append(applicationIntent);
+        return key.toString();
+    }
+
+    /**
+     * Returns the cached server logins with the given key were routed to, or null if none is cached.
+     */
+    static ServerPortPlaceHolder getRoutingTarget(String key) {
+        return get(routingTargets, key);
+    }
+
+    static void putRoutingTarget(String key, ServerPortPlaceHolder target, int ttlSeconds) {
+        if (logger.isLoggable(Level.FINER))
+            logger.finer("Caching routing target " + target.getServerName() + ":" + target.getPortNumber()
+                    + " for key: " + key);
+        routingTargets.put(key, new Entry<>(target, ttlSeconds));
+    }
+
+    static void removeRoutingTarget(String key) {
+        routingTargets.remove(key);
+    }
+
+    /**
+     * Drops all cached entries.
+     */
+    static void clear() {
+        addresses.clear();
+        instancePorts.clear();
+        routingTargets.clear();
+    }
+}
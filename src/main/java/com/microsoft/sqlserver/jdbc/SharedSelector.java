@@ -0,0 +1,149 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Selector shared by all connections to wait for the responses of asynchronous statement executions.
+ *
+ * A single daemon thread waits until the SocketChannel of any connection with an outstanding asynchronous request has
+ * response data to read, and then runs the continuation of that request, which hands the reading of the response off
+ * to an executor. No thread is held while the server executes the request. Channels stay registered with the selector
+ * between requests and are deregistered when they are closed.
+ */
+final class SharedSelector {
+    private static final Logger logger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.SharedSelector");
+    private static final String threadName = "mssql-jdbc-SharedSelector";
+
+    // Channels to wait on, queued for the selector thread, which is the only one to change the selection keys.
+    private static final Queue<Registration> registrations = new ConcurrentLinkedQueue<>();
+
+    private static Selector selector;
+
+    private static final ExecutorService defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "mssql-jdbc-AsyncExecution-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private SharedSelector() {
+        /* hide the constructor to stop the instantiation of this class. */}
+
+    private static final class Registration {
+        final SocketChannel channel;
+        final Runnable onReadable;
+
+        Registration(SocketChannel channel, Runnable onReadable) {
+            this.channel = channel;
+            this.onReadable = onReadable;
+        }
+    }
+
+    /**
+     * Returns the executor that runs asynchronous executions for which the application did not provide one.
+     */
+    static Executor getDefaultExecutor() {
+        Executor executor = SQLServerConnection.getBackgroundTaskExecutor();
+        return (null != executor) ? executor : defaultExecutor;
+    }
+
+    /**
+     * Waits until the channel has data to read.
+     *
+     * @param channel
+     *        a non-blocking SocketChannel
+     * @param onReadable
+     *        run once when the channel has data to read or is closed; it runs on the selector thread and must not block
+     * @throws IOException
+     *         if the selector thread cannot be started
+     */
+    static void await(SocketChannel channel, Runnable onReadable) throws IOException {
+        registrations.add(new Registration(channel, onReadable));
+        startOrWakeup();
+    }
+
+    private static synchronized void startOrWakeup() throws IOException {
+        if (null != selector) {
+            selector.wakeup();
+            return;
+        }
+
+        selector = Selector.open();
+        Thread t = new Thread(SharedSelector::run, threadName);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void run() {
+        while (true) {
+            try {
+                // A registration queued after the queue is drained wakes up the following select.
+                for (Registration registration; null != (registration = registrations.poll());)
+                    register(registration);
+
+                selector.select();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    fire(key);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Keep serving the other connections. Their callbacks run once their channels become readable again.
+                if (logger.isLoggable(Level.FINE))
+                    logger.log(Level.FINE, threadName + ": Ignored error waiting for channels", e);
+            }
+        }
+    }
+
+    private static void register(Registration registration) {
+        try {
+            SelectionKey key = registration.channel.keyFor(selector);
+            if (null != key && key.isValid()) {
+                key.attach(registration);
+                key.interestOps(SelectionKey.OP_READ);
+            } else {
+                registration.channel.register(selector, SelectionKey.OP_READ, registration);
+            }
+        } catch (ClosedChannelException | RuntimeException e) {
+            // The connection was closed while the request was outstanding, or the channel can no longer be selected.
+            // Reading the response, which then blocks, reports any error.
+            registration.onReadable.run();
+        }
+    }
+
+    private static void fire(SelectionKey key) {
+        Registration registration = (Registration) key.attachment();
+        key.attach(null);
+        if (key.isValid())
+            key.interestOps(0);
+
+        if (null != registration)
+            registration.onReadable.run();
+    }
+}
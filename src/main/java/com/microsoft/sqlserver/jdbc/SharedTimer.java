@@ -0,0 +1,92 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Scheduler shared by all connections for query, keep-alive and bulk copy timeouts.
+ *
+ * A single daemon thread waits for the earliest armed timer instead of one sleeping thread per timed command. Timers
+ * are scheduled with millisecond resolution, and stopped timers are removed from the schedule right away so that the
+ * number of armed timers stays accurate. Expired timers are handed off to a separate pool because timing out a
+ * command involves I/O (sending an attention signal or closing the connection) that must not hold up other timers.
+ */
+final class SharedTimer {
+    private static final String threadGroupName = "mssql-jdbc-TimeoutTimer";
+
+    // Idle threads of either pool exit after this many seconds.
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final ScheduledThreadPoolExecutor scheduler;
+    static {
+        scheduler = new ScheduledThreadPoolExecutor(1, new TimerThreadFactory());
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+    }
+
+    private static final ExecutorService expirationExecutor = Executors.newCachedThreadPool(new TimerThreadFactory());
+
+    private SharedTimer() {
+        /* hide the constructor to stop the instantiation of this class. */}
+
+    /**
+     * Arms a timer.
+     *
+     * @param task
+     *        the task to run on expiration; it runs on the shared timer thread and must not block
+     * @param delayMillis
+     *        the number of milliseconds after which the timer expires
+     * @return the handle used to stop the timer
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the (possibly blocking) work resulting from an expired timer off the shared timer thread.
+     */
+    static void execute(Runnable expirationTask) {
+        Executor executor = SQLServerConnection.getBackgroundTaskExecutor();
+        ((null != executor) ? executor : expirationExecutor).execute(expirationTask);
+    }
+
+    /**
+     * Returns the number of timers that are currently armed across all connections.
+     */
+    static int getArmedTimerCount() {
+        return scheduler.getQueue().size();
+    }
+
+    private static final class TimerThreadFactory implements ThreadFactory {
+        private static final AtomicReference<ThreadGroup> tgr = new AtomicReference<>();
+        private static final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            ThreadGroup tg = tgr.get();
+
+            if (tg == null || tg.isDestroyed()) {
+                tg = new ThreadGroup(threadGroupName);
+                tgr.set(tg);
+            }
+
+            Thread t = new Thread(tg, r, tg.getName() + "-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
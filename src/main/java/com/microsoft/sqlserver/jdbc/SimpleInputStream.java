@@ -19,6 +19,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 abstract class BaseInputStream extends InputStream {
     abstract byte[] getBytes() throws SQLServerException;
 
+    /**
+     * Returns the entire stream decoded as a string in the given encoding.
+     */
+    String getString(Encoding encoding) throws SQLServerException {
+        return new String(getBytes(), encoding.charset());
+    }
+
     // Flag indicating whether the stream conforms to adaptive response buffering API restrictions
     final boolean isAdaptive;
 
@@ -358,4 +365,23 @@ final class SimpleInputStream extends BaseInputStream {
         return value;
     }
 
+    /**
+     * Returns the value decoded straight from the TDS packets, without first copying it into a byte array of its own.
+     */
+    @Override
+    final String getString(Encoding encoding) throws SQLServerException {
+        // We should always retrieve the entire stream, and only once.
+        assert 0 == streamPos;
+
+        String value = tdsReader.readString(payloadLength, encoding);
+        streamPos = payloadLength;
+        try {
+            close();
+        } catch (IOException e) {
+            SQLServerException.makeFromDriverError(null, null, e.getMessage(), null, true);
+        }
+
+        return value;
+    }
+
 }
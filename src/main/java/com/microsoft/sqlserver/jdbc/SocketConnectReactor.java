@@ -0,0 +1,361 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+
+package com.microsoft.sqlserver.jdbc;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Makes the parallel connection attempts of multiSubnetFailover and TNIR for all connections of the process with
+ * non-blocking socket channels on a single selector thread, instead of a thread per attempt. Connections that do not
+ * use a SocketChannel only take the address of the winning channel and connect a plain socket to it: up to Java 12, a
+ * read from the input stream of a socket obtained from a SocketChannel holds the blocking lock of the channel, which
+ * blocks the cancels and timeouts that close or write to the socket from other threads.
+ *
+ * The attempts of a search for a socket are started one at a time in the manner of Happy Eyeballs (RFC 8305): the
+ * addresses of the host are ordered so that IPv6 and IPv4 addresses alternate, starting with the family of the first
+ * address, and each attempt is started once the previous one failed or CONNECTION_ATTEMPT_DELAY_MILLIS after it
+ * started, whichever comes first. The first attempt to connect wins and the others are closed. The number of attempts
+ * in flight across the process is capped at MAX_CONCURRENT_ATTEMPTS, so that many connections reconnecting at once,
+ * as after an availability group failover, wait for a slot rather than each open a socket per address.
+ *
+ * The selector thread is started by the first search and exits after IDLE_TIMEOUT_MILLIS without searches.
+ */
+final class SocketConnectReactor {
+    private static final Logger logger = Logger
+            .getLogger("com.microsoft.sqlserver.jdbc.internals.SocketConnectReactor");
+
+    // Time after which the next attempt of a search is started while the previous attempts are still pending.
+    static final long CONNECTION_ATTEMPT_DELAY_MILLIS = 100;
+
+    // Maximum number of connection attempts in flight across the process.
+    static final int MAX_CONCURRENT_ATTEMPTS = 256;
+
+    // The selector thread exits after this many milliseconds without searches.
+    static final long IDLE_TIMEOUT_MILLIS = 60 * 1000L;
+
+    private static final String threadName = "mssql-jdbc-SocketConnectReactor";
+
+    /**
+     * A search for a socket connected to one of the addresses of a host.
+     */
+    private static final class Search {
+        final SocketFinder socketFinder;
+        final InetSocketAddress[] addresses;
+        final long deadline;
+
+        // Completed with the connected channel, in blocking mode, or with null if no attempt succeeded in time.
+        final CompletableFuture<SocketChannel> result = new CompletableFuture<>();
+
+        volatile boolean isCancelled = false;
+
+        // The rest is only used by the selector thread.
+        final List<SelectionKey> pendingAttempts = new ArrayList<>();
+        int nextAddress = 0;
+        long nextAttemptTime = 0;
+
+        Search(SocketFinder socketFinder, InetSocketAddress[] addresses, long deadline) {
+            this.socketFinder = socketFinder;
+            this.addresses = addresses;
+            this.deadline = deadline;
+        }
+
+        boolean hasNextAddress() {
+            return nextAddress < addresses.length;
+        }
+    }
+
+    // Searches submitted to the selector thread.
+    private static final ConcurrentLinkedQueue<Search> newSearches = new ConcurrentLinkedQueue<>();
+
+    // The selector of the running selector thread, or null if none is running. Guarded by the class.
+    private static Selector runningSelector;
+
+    // The state of a selector thread, only used by that thread.
+    private final Selector selector;
+    private final List<Search> searches = new ArrayList<>();
+    private int attemptsInFlight = 0;
+
+    private SocketConnectReactor(Selector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Connects a socket channel to one of the given addresses.
+     *
+     * @return the connected channel, in blocking mode, or null if no attempt succeeded in time, in which case the
+     *         errors of the attempts are reported to the socket finder
+     */
+    static SocketChannel connect(SocketFinder socketFinder, InetAddress[] inetAddrs, int portNumber,
+            int timeoutInMilliSeconds) throws IOException, InterruptedException {
+        InetAddress[] orderedAddrs = interleaveAddressFamilies(inetAddrs);
+        InetSocketAddress[] addresses = new InetSocketAddress[orderedAddrs.length];
+        for (int i = 0; i < orderedAddrs.length; i++)
+            addresses[i] = new InetSocketAddress(orderedAddrs[i], portNumber);
+
+        Search search = new Search(socketFinder, addresses, System.currentTimeMillis() + timeoutInMilliSeconds);
+        submit(search);
+
+        try {
+            // The selector thread completes the search by its deadline; the grace period covers its scheduling.
+            return search.result.get(timeoutInMilliSeconds + CONNECTION_ATTEMPT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(search);
+            return null;
+        } catch (InterruptedException e) {
+            cancel(search);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void cancel(Search search) {
+        search.isCancelled = true;
+        wakeup();
+
+        // Close the channel of an attempt that succeeds after all.
+        search.result.thenAccept(channel -> {
+            if (null != channel)
+                search.socketFinder.close(channel);
+        });
+    }
+
+    /**
+     * Orders addresses so that the IPv6 and IPv4 addresses alternate, starting with the family of the first address.
+     */
+    static InetAddress[] interleaveAddressFamilies(InetAddress[] inetAddrs) {
+        List<InetAddress> first = new ArrayList<>();
+        List<InetAddress> second = new ArrayList<>();
+        boolean isFirstIPv6 = inetAddrs.length > 0 && inetAddrs[0] instanceof Inet6Address;
+        for (InetAddress inetAddr : inetAddrs)
+            ((inetAddr instanceof Inet6Address) == isFirstIPv6 ? first : second).add(inetAddr);
+
+        InetAddress[] orderedAddrs = new InetAddress[inetAddrs.length];
+        for (int i = 0, f = 0, s = 0; i < orderedAddrs.length; i++) {
+            boolean takeFirst = (0 == i % 2) ? f < first.size() : s >= second.size();
+            orderedAddrs[i] = takeFirst ? first.get(f++) : second.get(s++);
+        }
+        return orderedAddrs;
+    }
+
+    private static synchronized void submit(Search search) throws IOException {
+        if (null == runningSelector) {
+            Selector selector = Selector.open();
+            newSearches.add(search);
+            Thread thread = new Thread(() -> new SocketConnectReactor(selector).run(), threadName);
+            thread.setDaemon(true);
+            thread.start();
+            runningSelector = selector;
+        } else {
+            newSearches.add(search);
+            runningSelector.wakeup();
+        }
+    }
+
+    private static synchronized void wakeup() {
+        if (null != runningSelector)
+            runningSelector.wakeup();
+    }
+
+    /**
+     * Stops the selector thread unless a search was submitted since it last looked.
+     */
+    private static synchronized boolean stopIfIdle() {
+        if (!newSearches.isEmpty())
+            return false;
+
+        runningSelector = null;
+        return true;
+    }
+
+    private void run() {
+        long idleSince = System.currentTimeMillis();
+
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                for (Search search; null != (search = newSearches.poll());)
+                    searches.add(search);
+
+                if (searches.isEmpty()) {
+                    if (now - idleSince >= IDLE_TIMEOUT_MILLIS && stopIfIdle())
+                        break;
+                } else {
+                    idleSince = now;
+                }
+
+                // Start due attempts and work out how long to wait for the channels to connect.
+                long selectTimeout = IDLE_TIMEOUT_MILLIS;
+                for (Iterator<Search> it = searches.iterator(); it.hasNext();) {
+                    Search search = it.next();
+                    if (search.isCancelled || now >= search.deadline) {
+                        finish(search, null);
+                    } else {
+                        startAttempts(search, now);
+                    }
+
+                    if (search.result.isDone()) {
+                        it.remove();
+                        continue;
+                    }
+
+                    selectTimeout = Math.min(selectTimeout, search.deadline - now);
+                    if (search.hasNextAddress() && attemptsInFlight < MAX_CONCURRENT_ATTEMPTS)
+                        selectTimeout = Math.min(selectTimeout, search.nextAttemptTime - now);
+                }
+
+                selector.select(Math.max(1, selectTimeout));
+
+                // Completing a search selects the keys that became ready meanwhile, so the selected keys are taken
+                // out before they are handled and handled until none are left.
+                now = System.currentTimeMillis();
+                while (!selector.selectedKeys().isEmpty()) {
+                    List<SelectionKey> readyKeys = new ArrayList<>(selector.selectedKeys());
+                    selector.selectedKeys().clear();
+                    for (SelectionKey key : readyKeys)
+                        onConnectable(key, now);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (logger.isLoggable(Level.FINE))
+                logger.log(Level.FINE, threadName + " failed", e);
+
+            synchronized (SocketConnectReactor.class) {
+                for (Search search; null != (search = newSearches.poll());)
+                    searches.add(search);
+                runningSelector = null;
+            }
+            for (Search search : searches) {
+                for (SelectionKey key : search.pendingAttempts)
+                    search.socketFinder.close((SocketChannel) key.channel());
+                search.result.completeExceptionally(e);
+            }
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                if (logger.isLoggable(Level.FINE))
+                    logger.log(Level.FINE, threadName + " ignored the following error while closing Selector", e);
+            }
+        }
+    }
+
+    /**
+     * Starts the attempts of a search that are due, as long as slots are available.
+     */
+    private void startAttempts(Search search, long now) throws IOException {
+        while (search.hasNextAddress() && now >= search.nextAttemptTime
+                && attemptsInFlight < MAX_CONCURRENT_ATTEMPTS) {
+            InetSocketAddress address = search.addresses[search.nextAddress++];
+            search.nextAttemptTime = now + CONNECTION_ATTEMPT_DELAY_MILLIS;
+
+            if (logger.isLoggable(Level.FINER))
+                logger.finer(search.socketFinder.toString() + " initiated connection to address: " + address);
+
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                if (channel.connect(address)) {
+                    finish(search, channel);
+                    return;
+                }
+                search.pendingAttempts.add(channel.register(selector, SelectionKey.OP_CONNECT, search));
+                ++attemptsInFlight;
+            } catch (IOException e) {
+                onAttemptFailed(search, channel, e, now);
+            }
+        }
+
+        if (!search.hasNextAddress() && search.pendingAttempts.isEmpty())
+            finish(search, null);
+    }
+
+    private void onConnectable(SelectionKey key, long now) throws IOException {
+        Search search = (Search) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (search.result.isDone() || !key.isValid())
+            return;
+
+        try {
+            // finishConnect either returns true or throws, as the channel is ready to connect.
+            if (!channel.finishConnect())
+                return;
+
+            search.pendingAttempts.remove(key);
+            --attemptsInFlight;
+            finish(search, channel);
+        } catch (IOException e) {
+            search.pendingAttempts.remove(key);
+            --attemptsInFlight;
+            onAttemptFailed(search, channel, e, now);
+
+            if (!search.hasNextAddress() && search.pendingAttempts.isEmpty())
+                finish(search, null);
+        }
+    }
+
+    private static void onAttemptFailed(Search search, SocketChannel channel, IOException e, long now) {
+        if (logger.isLoggable(Level.FINER))
+            logger.finer(search.socketFinder.toString() + " the exception: " + e.getClass() + " with message: "
+                    + e.getMessage() + " occurred while processing the channel: " + channel);
+
+        // Only this thread reports errors to the socket finder, until the caller stops waiting for the search.
+        if (!search.isCancelled)
+            search.socketFinder.updateSelectedException(e, search.socketFinder.toString());
+        search.socketFinder.close(channel);
+
+        // Start the next attempt right away.
+        search.nextAttemptTime = now;
+    }
+
+    /**
+     * Completes a search with the given connected channel, or with null if it failed, and closes its other attempts.
+     */
+    private void finish(Search search, SocketChannel channel) throws IOException {
+        for (SelectionKey key : search.pendingAttempts) {
+            key.cancel();
+            search.socketFinder.close((SocketChannel) key.channel());
+        }
+        attemptsInFlight -= search.pendingAttempts.size();
+        search.pendingAttempts.clear();
+
+        if (null != channel) {
+            SelectionKey key = channel.keyFor(selector);
+            if (null != key) {
+                // The channel can only be made blocking once the selector has deregistered it.
+                key.cancel();
+                selector.selectNow();
+            }
+            channel.configureBlocking(true);
+
+            if (logger.isLoggable(Level.FINER))
+                logger.finer(search.socketFinder.toString() + " selected the channel :" + channel);
+        }
+
+        if (!search.result.complete(channel) && null != channel)
+            search.socketFinder.close(channel);
+    }
+}
@@ -126,6 +126,12 @@ final class DTV {
     /** The source (app or server) providing the data for this value. */
     private DTVImpl impl;
 
+    /**
+     * Server value read by the primitive getters, kept to be reused for the value of this column in the next row. The
+     * primitive getters only read numeric values, which are never handed out to a stream that could outlive the row.
+     */
+    private ServerDTVImpl primitiveServerImpl;
+
     CryptoMetadata cryptoMeta = null;
     JDBCType jdbcTypeSetByUser = null;
     int valueLength = 0;
@@ -246,6 +252,39 @@ final class DTV {
         return impl.getValue(this, jdbcType, scale, streamGetterArgs, cal, typeInfo, cryptoMetadata, tdsReader);
     }
 
+    /**
+     * Returns whether the DTV's current value, if any, was read from the server rather than set by the app.
+     */
+    final boolean holdsServerValue() {
+        return null == impl || impl instanceof ServerDTVImpl;
+    }
+
+    /**
+     * Returns the DTV's server value as a long, without boxing it. Returns 0 if the value is NULL.
+     */
+    final long getLongValue(TypeInfo typeInfo, TDSReader tdsReader) throws SQLServerException {
+        return primitiveServerImpl().getLongValue(typeInfo, tdsReader);
+    }
+
+    /**
+     * Returns the DTV's server value as a double, without boxing it. Returns 0 if the value is NULL.
+     */
+    final double getDoubleValue(TypeInfo typeInfo, TDSReader tdsReader) throws SQLServerException {
+        return primitiveServerImpl().getDoubleValue(typeInfo, tdsReader);
+    }
+
+    private ServerDTVImpl primitiveServerImpl() {
+        assert holdsServerValue();
+        if (null == impl) {
+            if (null == primitiveServerImpl)
+                primitiveServerImpl = new ServerDTVImpl();
+            else
+                primitiveServerImpl.reset();
+            impl = primitiveServerImpl;
+        }
+        return (ServerDTVImpl) impl;
+    }
+
     Object getSetterValue() {
         return impl.getSetterValue();
     }
@@ -2028,7 +2067,7 @@ final class AppDTVImpl extends DTVImpl {
                 byte[] nativeEncoding = null;
 
                 if (null != strValue) {
-                    nativeEncoding = strValue.getBytes(collation.getCharset());
+                    nativeEncoding = collation.encode(strValue);
                 }
 
                 dtv.setValue(nativeEncoding, JavaType.BYTEARRAY);
@@ -2380,6 +2419,7 @@ final class TypeInfo {
 
     // Collation (will be null for non-textual types).
     private SQLCollation collation;
+    private Encoding encoding;
     private Charset charset;
 
     SSType getSSType() {
@@ -2438,6 +2478,15 @@ final class TypeInfo {
         this.collation = collation;
     }
 
+    Encoding getEncoding() {
+        return encoding;
+    }
+
+    void setEncoding(Encoding encoding) throws SQLServerException {
+        this.encoding = encoding;
+        this.charset = encoding.charset();
+    }
+
     Charset getCharset() {
         return charset;
     }
@@ -2743,7 +2792,8 @@ final class TypeInfo {
                 typeInfo.displaySize = typeInfo.precision = typeInfo.maxLength;
                 typeInfo.ssType = SSType.CHAR;
                 typeInfo.collation = tdsReader.readCollation();
-                typeInfo.charset = typeInfo.collation.getCharset();
+                typeInfo.encoding = typeInfo.collation.getEncoding();
+                typeInfo.charset = typeInfo.encoding.charset();
             }
         }),
 
@@ -2775,7 +2825,8 @@ final class TypeInfo {
                 }
 
                 typeInfo.collation = tdsReader.readCollation();
-                typeInfo.charset = typeInfo.collation.getCharset();
+                typeInfo.encoding = typeInfo.collation.getEncoding();
+                typeInfo.charset = typeInfo.encoding.charset();
             }
         }),
 
@@ -2798,7 +2849,8 @@ final class TypeInfo {
                 typeInfo.ssType = SSType.TEXT;
                 typeInfo.displaySize = typeInfo.precision = Integer.MAX_VALUE;
                 typeInfo.collation = tdsReader.readCollation();
-                typeInfo.charset = typeInfo.collation.getCharset();
+                typeInfo.encoding = typeInfo.collation.getEncoding();
+                typeInfo.charset = typeInfo.encoding.charset();
             }
         }),
 
@@ -2821,6 +2873,7 @@ final class TypeInfo {
                 typeInfo.displaySize = typeInfo.precision = typeInfo.maxLength / 2;
                 typeInfo.ssType = SSType.NCHAR;
                 typeInfo.collation = tdsReader.readCollation();
+                typeInfo.encoding = Encoding.UNICODE;
                 typeInfo.charset = Encoding.UNICODE.charset();
             }
         }),
@@ -2854,6 +2907,7 @@ final class TypeInfo {
                     tdsReader.throwInvalidTDS();
                 }
                 typeInfo.collation = tdsReader.readCollation();
+                typeInfo.encoding = Encoding.UNICODE;
                 typeInfo.charset = Encoding.UNICODE.charset();
             }
         }),
@@ -2877,6 +2931,7 @@ final class TypeInfo {
                 typeInfo.ssType = SSType.NTEXT;
                 typeInfo.displaySize = typeInfo.precision = Integer.MAX_VALUE / 2;
                 typeInfo.collation = tdsReader.readCollation();
+                typeInfo.encoding = Encoding.UNICODE;
                 typeInfo.charset = Encoding.UNICODE.charset();
             }
         }),
@@ -2954,6 +3009,7 @@ final class TypeInfo {
                 typeInfo.ssLenType = SSLenType.PARTLENTYPE;
                 typeInfo.ssType = SSType.XML;
                 typeInfo.displaySize = typeInfo.precision = Integer.MAX_VALUE / 2;
+                typeInfo.encoding = Encoding.UNICODE;
                 typeInfo.charset = Encoding.UNICODE.charset();
             }
         }),
@@ -3250,8 +3306,23 @@ final class ServerDTVImpl extends DTVImpl {
         assert false;
     }
 
+    // Mark of a previous value, moved to the next value read rather than allocating a new mark.
+    private TDSReaderMark reusableMark;
+
     private final static int STREAMCONSUMED = -2;
 
+    /**
+     * Resets this instance so that it can be reused for a value in the next row.
+     */
+    final void reset() {
+        if (null != valueMark)
+            reusableMark = valueMark;
+        valueMark = null;
+        valueLength = 0;
+        isNull = false;
+        internalVariant = null;
+    }
+
     // This function is used by Adaptive stream objects to denote that the
     // whole value of the stream has been consumed.
     // Note this only to be used by the streams returned to the user.
@@ -3413,7 +3484,82 @@ final class ServerDTVImpl extends DTVImpl {
         if (valueLength > typeInfo.getMaxLength())
             tdsReader.throwInvalidTDS();
 
-        valueMark = tdsReader.mark();
+        valueMark = tdsReader.mark(reusableMark);
+        reusableMark = null;
+    }
+
+    /**
+     * Returns a BIT, TINYINT, SMALLINT, INTEGER, BIGINT, DECIMAL or NUMERIC value as a long, without boxing it. The
+     * result is the same as the value converted to BIGINT by getValue.
+     */
+    final long getLongValue(TypeInfo typeInfo, TDSReader tdsReader) throws SQLServerException {
+        if (!prepPrimitiveValue(typeInfo, tdsReader))
+            return 0;
+
+        switch (typeInfo.getSSType()) {
+            case DECIMAL:
+            case NUMERIC:
+                return tdsReader.readDecimalAsLong(valueLength, typeInfo.getScale());
+
+            default:
+                return readIntegralValue(tdsReader);
+        }
+    }
+
+    /**
+     * Returns a FLOAT, REAL, BIT, TINYINT, SMALLINT, INTEGER or BIGINT value as a double, without boxing it. The
+     * result is the same as the value converted to DOUBLE by getValue.
+     */
+    final double getDoubleValue(TypeInfo typeInfo, TDSReader tdsReader) throws SQLServerException {
+        if (!prepPrimitiveValue(typeInfo, tdsReader))
+            return 0;
+
+        switch (typeInfo.getSSType()) {
+            case FLOAT:
+                if (8 != valueLength)
+                    tdsReader.throwInvalidTDS();
+                return Double.longBitsToDouble(tdsReader.readLong());
+
+            case REAL:
+                if (4 != valueLength)
+                    tdsReader.throwInvalidTDS();
+                return Float.intBitsToFloat(tdsReader.readInt());
+
+            default:
+                return readIntegralValue(tdsReader);
+        }
+    }
+
+    /**
+     * Positions the reader at the value, unless the value is NULL.
+     *
+     * @return false if the value is NULL
+     */
+    private boolean prepPrimitiveValue(TypeInfo typeInfo, TDSReader tdsReader) throws SQLServerException {
+        if (null == valueMark && !isNull)
+            getValuePrep(typeInfo, tdsReader);
+
+        if (isNull)
+            return false;
+
+        tdsReader.reset(valueMark);
+        return true;
+    }
+
+    private long readIntegralValue(TDSReader tdsReader) throws SQLServerException {
+        switch (valueLength) {
+            case 8:
+                return tdsReader.readLong();
+            case 4:
+                return tdsReader.readInt();
+            case 2:
+                return tdsReader.readShort();
+            case 1:
+                return tdsReader.readUnsignedByte();
+            default:
+                tdsReader.throwInvalidTDS();
+                return 0;
+        }
     }
 
     Object denormalizedValue(byte[] decryptedValue, JDBCType jdbcType, TypeInfo baseTypeInfo, SQLServerConnection con,
@@ -4044,7 +4190,7 @@ final class ServerDTVImpl extends DTVImpl {
                 typeInfo.setPrecision(maxLength);
                 internalVariant.setPrecision(maxLength);
                 internalVariant.setCollation(collation);
-                typeInfo.setCharset(collation.getCharset());
+                typeInfo.setEncoding(collation.getEncoding());
                 convertedValue = DDC.convertStreamToObject(
                         new SimpleInputStream(tdsReader, expectedValueLength, streamGetterArgs, this), typeInfo,
                         jdbcType, streamGetterArgs);
@@ -4069,7 +4215,7 @@ final class ServerDTVImpl extends DTVImpl {
                 typeInfo.setPrecision(maxLength / 2);
                 internalVariant.setPrecision(maxLength / 2);
                 internalVariant.setCollation(collation);
-                typeInfo.setCharset(Encoding.UNICODE.charset());
+                typeInfo.setEncoding(Encoding.UNICODE);
                 convertedValue = DDC.convertStreamToObject(
                         new SimpleInputStream(tdsReader, expectedValueLength, streamGetterArgs, this), typeInfo,
                         jdbcType, streamGetterArgs);
@@ -20,6 +20,7 @@ import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 
 import com.microsoft.sqlserver.jdbc.RandomUtil;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
 import com.microsoft.sqlserver.jdbc.TestUtils;
 import com.microsoft.sqlserver.testframework.AbstractSQLGenerator;
 
@@ -82,6 +83,28 @@ public class RegressionAlwaysEncryptedTest extends AESetup {
         }
     }
 
+    @Test
+    public void alwaysEncryptedParameterEncryptionMetadataCache() throws SQLException {
+        try (SQLServerConnection connection = (SQLServerConnection) DriverManager.getConnection(
+                connectionString + ";trustservercertificate=true;columnEncryptionSetting=enabled;", AEInfo);
+                Statement stmt = connection.createStatement()) {
+            dropTables(stmt);
+
+            createNumericTable(stmt);
+            populateNumericTable(connection);
+            assertEquals(0, connection.getParameterEncryptionMetadataCacheHitCount());
+            assertEquals(1, connection.getParameterEncryptionMetadataCacheMissCount());
+
+            // The second statement with the same SQL text re-uses the metadata described for the first one.
+            populateNumericTable(connection);
+            assertEquals(1, connection.getParameterEncryptionMetadataCacheHitCount());
+            assertEquals(1, connection.getParameterEncryptionMetadataCacheMissCount());
+            verifyNumericTable(connection, false);
+
+            dropTables(stmt);
+        }
+    }
+
     private void populateDateTable(Connection connection) throws SQLException {
         String sql = "insert into " + AbstractSQLGenerator.escapeIdentifier(dateTable) + " values( " + "?" + ")";
         try (PreparedStatement sqlPstmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
@@ -0,0 +1,97 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+
+/**
+ * Tests the ascii fast path of the Encoding class against new String(bytes, charset) and String.getBytes(charset)
+ *
+ */
+@RunWith(JUnitPlatform.class)
+public class EncodingTest {
+    private static final int VALUES = 2000;
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        switch (random.nextInt(3)) {
+            case 0:
+                // Only ascii
+                for (int i = 0; i < length; i++)
+                    bytes[i] = (byte) random.nextInt(0x80);
+                break;
+            case 1:
+                // Ascii with an occasional byte that is not
+                for (int i = 0; i < length; i++)
+                    bytes[i] = (byte) (0 == random.nextInt(8) ? random.nextInt(0x100) : random.nextInt(0x80));
+                break;
+            default:
+                random.nextBytes(bytes);
+                break;
+        }
+        return bytes;
+    }
+
+    private static String randomString(Random random, Charset charset, int length) {
+        StringBuilder value = new StringBuilder(length);
+        while (value.length() < length) {
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    value.append((char) random.nextInt(0x80));
+                    break;
+                case 2:
+                    // Characters of the encoding, from decoding bytes in it
+                    value.append(new String(randomBytes(random, 4), charset));
+                    break;
+                default:
+                    // Any character, including ones that the encoding cannot map and unpaired surrogates
+                    value.append((char) random.nextInt(0x10000));
+                    break;
+            }
+        }
+        return value.toString();
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        Random random = new Random(0);
+        for (Encoding encoding : Encoding.values()) {
+            Charset charset = encoding.charset();
+            for (int i = 0; i < VALUES; i++) {
+                byte[] bytes = randomBytes(random, random.nextInt(600));
+                int offset = 0 == bytes.length ? 0 : random.nextInt(bytes.length);
+                int length = random.nextInt(bytes.length - offset + 1);
+                assertEquals(new String(bytes, offset, length, charset),
+                        encoding.decodeWithAsciiFastPath(bytes, offset, length), encoding.toString());
+                assertEquals(new String(bytes, offset, length, charset), encoding.decode(bytes, offset, length),
+                        encoding.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        Random random = new Random(0);
+        for (Encoding encoding : Encoding.values()) {
+            Charset charset = encoding.charset();
+            for (int i = 0; i < VALUES; i++) {
+                String value = randomString(random, charset, random.nextInt(600));
+                assertArrayEquals(value.getBytes(charset), encoding.encodeWithAsciiFastPath(value),
+                        encoding.toString());
+                assertArrayEquals(value.getBytes(charset), encoding.encode(value), encoding.toString());
+            }
+        }
+    }
+}
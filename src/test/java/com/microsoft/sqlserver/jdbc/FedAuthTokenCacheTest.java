@@ -0,0 +1,168 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+
+/**
+ * Tests the FedAuthTokenCache class
+ *
+ */
+@RunWith(JUnitPlatform.class)
+public class FedAuthTokenCacheTest {
+    private static final String STS_URL = "https://login.windows.net/tenant";
+    private static final String SPN = "https://database.windows.net/";
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @AfterEach
+    public void clearCache() {
+        FedAuthTokenCache.clear();
+    }
+
+    @Test
+    public void testCachedToken() throws SQLServerException {
+        String key = FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, SPN, "user", "password");
+        AtomicInteger fetches = new AtomicInteger();
+        FedAuthTokenCache.TokenSource source = () -> new SqlFedAuthToken("token" + fetches.incrementAndGet(), 3600);
+
+        long hits = FedAuthTokenCache.getStatistics().getCacheHitCount();
+        SqlFedAuthToken token = FedAuthTokenCache.getToken(key, source, TIMEOUT_MILLIS);
+        assertSame(token, FedAuthTokenCache.getToken(key, source, TIMEOUT_MILLIS));
+        assertEquals(1, fetches.get());
+        assertEquals(hits + 1, FedAuthTokenCache.getStatistics().getCacheHitCount());
+    }
+
+    @Test
+    public void testKeys() {
+        String key = FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, SPN, "user", "password");
+        assertEquals(key, FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, SPN, "user", "password"));
+        assertNotEquals(key, FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, SPN, "user", "other"));
+        assertNotEquals(key, FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, SPN, "other", "password"));
+        assertNotEquals(key, FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, "spn", "user", "password"));
+        assertTrue(!key.contains("password"), key);
+    }
+
+    @Test
+    public void testExpiringTokenIsFetchedAgain() throws SQLServerException {
+        String key = FedAuthTokenCache.getKey("activedirectoryintegrated", STS_URL, SPN, null, null);
+        AtomicInteger fetches = new AtomicInteger();
+        FedAuthTokenCache.TokenSource source = () -> new SqlFedAuthToken("token" + fetches.incrementAndGet(), 30);
+
+        FedAuthTokenCache.getToken(key, source, TIMEOUT_MILLIS);
+        FedAuthTokenCache.getToken(key, source, TIMEOUT_MILLIS);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        String key = FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, SPN, "user", "password");
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        FedAuthTokenCache.TokenSource source = () -> {
+            fetches.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new SqlFedAuthToken("token", 3600);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SqlFedAuthToken>> tokens = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                tokens.add(executor.submit(() -> FedAuthTokenCache.getToken(key, source, TIMEOUT_MILLIS)));
+
+            Thread.sleep(500);
+            release.countDown();
+
+            SqlFedAuthToken token = tokens.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<SqlFedAuthToken> other : tokens)
+                assertSame(token, other.get(10, TimeUnit.SECONDS));
+            assertEquals(1, fetches.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSharedFetchTimeout() throws Exception {
+        String key = FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, SPN, "user", "password");
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FedAuthTokenCache.TokenSource source = () -> {
+            fetching.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new SqlFedAuthToken("token", 3600);
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SqlFedAuthToken> token = executor
+                    .submit(() -> FedAuthTokenCache.getToken(key, source, TIMEOUT_MILLIS));
+            assertTrue(fetching.await(10, TimeUnit.SECONDS));
+
+            // A login that waits on the fetch of another fails once its own timeout passes.
+            long start = System.nanoTime();
+            try {
+                FedAuthTokenCache.getToken(key, source, 200);
+                fail("Waiting on the fetch did not time out.");
+            } catch (SQLServerException e) {
+                assertEquals(SQLServerException.getErrString("R_fedAuthTokenTimedOut"), e.getMessage());
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis >= 200 && elapsedMillis < 5000, "elapsed " + elapsedMillis + " ms");
+
+            // The fetch itself goes on.
+            release.countDown();
+            assertEquals("token", token.get(10, TimeUnit.SECONDS).accessToken);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedFetch() throws SQLServerException {
+        String key = FedAuthTokenCache.getKey("activedirectorypassword", STS_URL, SPN, "user", "password");
+        long failures = FedAuthTokenCache.getStatistics().getFailedFetchCount();
+        try {
+            FedAuthTokenCache.getToken(key, () -> {
+                throw new SQLServerException("failed", null);
+            }, TIMEOUT_MILLIS);
+            fail("The fetch did not fail.");
+        } catch (SQLServerException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals(failures + 1, FedAuthTokenCache.getStatistics().getFailedFetchCount());
+
+        // Failures are not cached.
+        assertEquals("token",
+                FedAuthTokenCache.getToken(key, () -> new SqlFedAuthToken("token", 3600), TIMEOUT_MILLIS).accessToken);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests the ServerEndpointCache class and the endpointCacheTtl connection property
+ *
+ */
+@RunWith(JUnitPlatform.class)
+public class ServerEndpointCacheTest extends AbstractTest {
+
+    @AfterEach
+    public void clearCache() {
+        ServerEndpointCache.clear();
+    }
+
+    @Test
+    public void testAddresses() throws Exception {
+        InetAddress[] inetAddrs = ServerEndpointCache.getAllByName("localhost", 60);
+        assertArrayEquals(InetAddress.getAllByName("localhost"), inetAddrs);
+
+        // Callers may not change the cached addresses.
+        inetAddrs[0] = null;
+        assertArrayEquals(InetAddress.getAllByName("localhost"), ServerEndpointCache.getAllByName("LOCALHOST", 60));
+
+        ServerEndpointCache.removeAddresses("localhost");
+        assertArrayEquals(InetAddress.getAllByName("localhost"), ServerEndpointCache.getAllByName("localhost", 60));
+    }
+
+    @Test
+    public void testInstancePorts() {
+        assertNull(ServerEndpointCache.getInstancePort("server", "instance"));
+        ServerEndpointCache.putInstancePort("server", "instance", "1533", 60);
+        assertEquals("1533", ServerEndpointCache.getInstancePort("SERVER", "INSTANCE"));
+
+        ServerEndpointCache.removeInstancePort("server", "instance");
+        assertNull(ServerEndpointCache.getInstancePort("server", "instance"));
+
+        // Entries expire.
+        ServerEndpointCache.putInstancePort("server", "instance", "1533", 0);
+        assertNull(ServerEndpointCache.getInstancePort("server", "instance"));
+    }
+
+    @Test
+    public void testRoutingTargets() {
+        String key = ServerEndpointCache.getRoutingKey("server", null, 1433, "db", ApplicationIntent.READ_ONLY);
+        assertNotEquals(key,
+                ServerEndpointCache.getRoutingKey("server", null, 1433, "db", ApplicationIntent.READ_WRITE));
+        assertNotEquals(key,
+                ServerEndpointCache.getRoutingKey("server", null, 1433, "other", ApplicationIntent.READ_ONLY));
+
+        ServerPortPlaceHolder target = new ServerPortPlaceHolder("replica", 11000, null, false);
+        ServerEndpointCache.putRoutingTarget(key, target, 60);
+        assertSame(target, ServerEndpointCache.getRoutingTarget(key));
+
+        ServerEndpointCache.removeRoutingTarget(key);
+        assertNull(ServerEndpointCache.getRoutingTarget(key));
+    }
+
+    /**
+     * Opens connections to the same server with the cache enabled.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConnections() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            try (Connection con = DriverManager.getConnection(connectionString + ";endpointCacheTtl=60");
+                    Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery("select 1")) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+
+        SQLServerDataSource ds = new SQLServerDataSource();
+        assertEquals(0, ds.getEndpointCacheTtl());
+        ds.setEndpointCacheTtl(60);
+        assertEquals(60, ds.getEndpointCacheTtl());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+
+/**
+ * Tests the SharedTimer class
+ *
+ */
+@RunWith(JUnitPlatform.class)
+public class SharedTimerTest {
+
+    @Test
+    public void testStop() throws Exception {
+        int armedTimers = SQLServerConnection.getArmedTimerCount();
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> timer = SharedTimer.schedule(() -> expired.set(true), 60000);
+        assertEquals(armedTimers + 1, SQLServerConnection.getArmedTimerCount());
+
+        // A stopped timer leaves the schedule right away.
+        assertTrue(timer.cancel(false));
+        assertEquals(armedTimers, SQLServerConnection.getArmedTimerCount());
+        assertFalse(expired.get());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        int armedTimers = SQLServerConnection.getArmedTimerCount();
+        CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        SharedTimer.schedule(expired::countDown, 100);
+        assertEquals(armedTimers + 1, SQLServerConnection.getArmedTimerCount());
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 100 && elapsedMillis < 1000, "elapsed " + elapsedMillis + " ms");
+        assertEquals(armedTimers, SQLServerConnection.getArmedTimerCount());
+    }
+
+    @Test
+    public void testManyTimers() throws Exception {
+        int armedTimers = SQLServerConnection.getArmedTimerCount();
+        ScheduledFuture<?>[] timers = new ScheduledFuture<?>[1000];
+        CountDownLatch expired = new CountDownLatch(timers.length / 2);
+        for (int i = 0; i < timers.length; i++)
+            timers[i] = SharedTimer.schedule(expired::countDown, (i % 2 == 0) ? 10 : 60000);
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+
+        for (int i = 1; i < timers.length; i += 2)
+            timers[i].cancel(false);
+        assertEquals(armedTimers, SQLServerConnection.getArmedTimerCount());
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        CountDownLatch executed = new CountDownLatch(1);
+        AtomicReference<Thread> expirationThread = new AtomicReference<>();
+        AtomicReference<Thread> timerThread = new AtomicReference<>();
+        SharedTimer.schedule(() -> {
+            timerThread.set(Thread.currentThread());
+            SharedTimer.execute(() -> {
+                expirationThread.set(Thread.currentThread());
+                executed.countDown();
+            });
+        }, 10);
+
+        assertTrue(executed.await(5, TimeUnit.SECONDS));
+        // Expiration work runs off the timer thread so that it cannot hold up other timers.
+        assertNotSame(timerThread.get(), expirationThread.get());
+        assertTrue(expirationThread.get().isDaemon());
+    }
+}
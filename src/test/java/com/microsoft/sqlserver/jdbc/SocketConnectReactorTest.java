@@ -0,0 +1,176 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+
+/**
+ * Tests the SocketConnectReactor class
+ *
+ */
+@RunWith(JUnitPlatform.class)
+public class SocketConnectReactorTest {
+
+    @Test
+    public void testInterleaveAddressFamilies() throws Exception {
+        InetAddress v4a = InetAddress.getByName("10.0.0.1");
+        InetAddress v4b = InetAddress.getByName("10.0.0.2");
+        InetAddress v4c = InetAddress.getByName("10.0.0.3");
+        InetAddress v6a = InetAddress.getByName("fd00::1");
+        InetAddress v6b = InetAddress.getByName("fd00::2");
+
+        assertArrayEquals(new InetAddress[] {v6a, v4a, v6b, v4b, v4c},
+                SocketConnectReactor.interleaveAddressFamilies(new InetAddress[] {v6a, v6b, v4a, v4b, v4c}));
+        assertArrayEquals(new InetAddress[] {v4a, v6a, v4b, v6b, v4c},
+                SocketConnectReactor.interleaveAddressFamilies(new InetAddress[] {v4a, v4b, v4c, v6a, v6b}));
+        assertArrayEquals(new InetAddress[] {v4a, v4b},
+                SocketConnectReactor.interleaveAddressFamilies(new InetAddress[] {v4a, v4b}));
+    }
+
+    @Test
+    public void testConnect() throws Exception {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        try (ServerSocket server = new ServerSocket(0, 50, loopback)) {
+            SocketFinder socketFinder = new SocketFinder("testConnect", null);
+            SocketChannel channel = SocketConnectReactor.connect(socketFinder,
+                    new InetAddress[] {loopback, loopback}, server.getLocalPort(), 5000);
+            assertNotNull(channel);
+            try {
+                assertTrue(channel.isConnected());
+                assertTrue(channel.isBlocking());
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Closes a socket connected by the reactor while another thread is blocked reading from its input stream. The read
+     * must return right away, as it does when a query timeout or cancel closes the connection.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCloseDuringRead() throws Exception {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ServerSocket server = new ServerSocket(0, 50, loopback)) {
+            SocketFinder socketFinder = new SocketFinder("testCloseDuringRead", null);
+            SocketChannel channel = SocketConnectReactor.connect(socketFinder, new InetAddress[] {loopback, loopback},
+                    server.getLocalPort(), 5000);
+            assertNotNull(channel);
+            try (Socket accepted = server.accept()) {
+                InputStream input = channel.socket().getInputStream();
+                CountDownLatch reading = new CountDownLatch(1);
+                Future<Integer> read = executor.submit(() -> {
+                    reading.countDown();
+                    return input.read();
+                });
+                assertTrue(reading.await(5, TimeUnit.SECONDS));
+                Thread.sleep(200);
+
+                long start = System.nanoTime();
+                channel.close();
+                try {
+                    read.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException, e.getCause().toString());
+                }
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+            } finally {
+                channel.close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes to a socket channel connected by the reactor while another thread waits to read from it, as a cancel sends
+     * an attention while a command waits for its response. The channel is used in non-blocking mode, as TDSChannel
+     * uses it, so the write does not wait for the read.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWriteDuringRead() throws Exception {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ServerSocket server = new ServerSocket(0, 50, loopback)) {
+            SocketFinder socketFinder = new SocketFinder("testWriteDuringRead", null);
+            SocketChannel channel = SocketConnectReactor.connect(socketFinder, new InetAddress[] {loopback, loopback},
+                    server.getLocalPort(), 5000);
+            assertNotNull(channel);
+            try (Socket accepted = server.accept(); Selector selector = Selector.open()) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ);
+                CountDownLatch reading = new CountDownLatch(1);
+                Future<Integer> read = executor.submit(() -> {
+                    reading.countDown();
+                    ByteBuffer buffer = ByteBuffer.allocate(1);
+                    int bytesRead;
+                    while (0 == (bytesRead = channel.read(buffer)))
+                        selector.select(10000);
+                    return bytesRead;
+                });
+                assertTrue(reading.await(5, TimeUnit.SECONDS));
+                Thread.sleep(200);
+
+                // The write completes and reaches the server while the read is pending.
+                assertEquals(1, channel.write(ByteBuffer.wrap(new byte[] {1})));
+                accepted.setSoTimeout(5000);
+                assertEquals(1, accepted.getInputStream().read());
+
+                // The server's response completes the read.
+                accepted.getOutputStream().write(2);
+                assertEquals(1, (int) read.get(5, TimeUnit.SECONDS));
+            } finally {
+                channel.close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConnectionRefused() throws Exception {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        int port;
+        try (ServerSocket server = new ServerSocket(0, 50, loopback)) {
+            port = server.getLocalPort();
+        }
+
+        // All attempts fail before the timeout.
+        SocketFinder socketFinder = new SocketFinder("testConnectionRefused", null);
+        long start = System.currentTimeMillis();
+        assertNull(SocketConnectReactor.connect(socketFinder, new InetAddress[] {loopback, loopback}, port, 10000));
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+}
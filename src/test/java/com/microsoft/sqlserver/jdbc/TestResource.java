@@ -153,6 +153,9 @@ public final class TestResource extends ListResourceBundle {
             {"R_expectedValue", "Expected value: "}, {"R_expectedValueAtIndex", "Expected value at index: "},
             {"R_switchFailed", "Switch case is not matched with data"},
             {"R_resultsetNotInstance", "Result set is not instance of SQLServerResultSet"},
+            {"R_connectionPoolClosed", "The connection pool is closed."},
+            {"R_partitionedBulkCopyTableLock",
+                    "The table lock option cannot be used to copy over several streams into a table with a clustered index, because the streams would block each other."},
 
     };
 }
@@ -6,6 +6,7 @@
 package com.microsoft.sqlserver.jdbc;
 
 import static org.junit.Assert.fail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -67,6 +68,15 @@ public class TestUtils {
     // private static SqlType types = null;
     private static ArrayList<SqlType> types = null;
 
+    // Number of rows of LARGE_QUERY.
+    public static final int LARGE_QUERY_ROWS = 100000;
+
+    // A result set large enough to span many packets, with ids counting from 0 and a 100 character name, that needs no
+    // table.
+    public static final String LARGE_QUERY = "select top " + LARGE_QUERY_ROWS
+            + " row_number() over (order by (select null)) - 1 as id, replicate('x', 100) as name"
+            + " from sys.all_objects a cross join sys.all_objects b";
+
     /**
      * Returns serverType
      * 
@@ -268,6 +278,24 @@ public class TestUtils {
         return null;
     }
 
+    /**
+     * Reads the rest of a result set of LARGE_QUERY and checks that the ids follow on from the rows already read.
+     * 
+     * @param rs
+     *        result set of LARGE_QUERY
+     * @param rowsRead
+     *        number of rows that were already read
+     * @throws SQLException
+     */
+    public static void assertLargeQueryRows(ResultSet rs, int rowsRead) throws SQLException {
+        int rows = rowsRead;
+        while (rs.next()) {
+            assertEquals(rows, rs.getInt(1));
+            rows++;
+        }
+        assertEquals(LARGE_QUERY_ROWS, rows);
+    }
+
     /**
      * mimic "DROP TABLE IF EXISTS ..." for older versions of SQL Server
      */
@@ -28,6 +28,7 @@ import com.microsoft.sqlserver.jdbc.ComparisonUtil;
 import com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord;
 import com.microsoft.sqlserver.jdbc.SQLServerBulkCSVFileRecord;
 import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
 import com.microsoft.sqlserver.jdbc.TestUtils;
 import com.microsoft.sqlserver.testframework.AbstractTest;
 import com.microsoft.sqlserver.testframework.DBConnection;
@@ -116,7 +117,26 @@ public class BulkCopyCSVTest extends AbstractTest {
         }
     }
 
+    /**
+     * test simple csv file for bulkcopy with the rows encoded on worker threads
+     */
+    @Test
+    @DisplayName("Test SQLServerBulkCSVFileRecord with encoding threads")
+    public void testCSVWithEncodingThreads() {
+        try (SQLServerBulkCSVFileRecord fileRecord = new SQLServerBulkCSVFileRecord(filePath + inputFile, encoding,
+                delimiter, true)) {
+            testBulkCopyCSV(fileRecord, true, 2);
+        } catch (SQLException e) {
+            fail(e.getMessage());
+        }
+    }
+
     private void testBulkCopyCSV(SQLServerBulkCSVFileRecord fileRecord, boolean firstLineIsColumnNames) {
+        testBulkCopyCSV(fileRecord, firstLineIsColumnNames, 0);
+    }
+
+    private void testBulkCopyCSV(SQLServerBulkCSVFileRecord fileRecord, boolean firstLineIsColumnNames,
+            int encodingThreadCount) {
         DBTable destTable = null;
         try (BufferedReader br = new BufferedReader(
                 new InputStreamReader(new FileInputStream(filePath + inputFile), encoding))) {
@@ -128,6 +148,9 @@ public class BulkCopyCSVTest extends AbstractTest {
             destTable = new DBTable(false);
             try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy((Connection) con.product())) {
                 bulkCopy.setDestinationTableName(destTable.getEscapedTableName());
+                SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+                options.setEncodingThreadCount(encodingThreadCount);
+                bulkCopy.setBulkCopyOptions(options);
 
                 // add a column in destTable for each datatype in csv
                 for (int i = 0; i < numberOfColumns; i++) {
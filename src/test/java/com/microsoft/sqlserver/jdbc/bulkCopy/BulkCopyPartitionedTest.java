@@ -0,0 +1,268 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.bulkCopy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord;
+import com.microsoft.sqlserver.jdbc.RandomUtil;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+import com.microsoft.sqlserver.jdbc.SQLServerPartitionedBulkCopy;
+import com.microsoft.sqlserver.jdbc.TestResource;
+import com.microsoft.sqlserver.jdbc.TestUtils;
+import com.microsoft.sqlserver.testframework.AbstractSQLGenerator;
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests copying one source over several connections with SQLServerPartitionedBulkCopy
+ */
+@RunWith(JUnitPlatform.class)
+@DisplayName("Test partitioned bulk copy")
+public class BulkCopyPartitionedTest extends AbstractTest {
+    private static final String tableName = AbstractSQLGenerator
+            .escapeIdentifier(RandomUtil.getIdentifier("BulkCopyPartitionedTest"));
+    private static final int rowCount = 10000;
+
+    @BeforeAll
+    public static void setupTests() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            TestUtils.dropTableIfExists(tableName, stmt);
+            stmt.execute("create table " + tableName + " (id int, name nvarchar(50))");
+        }
+    }
+
+    @BeforeEach
+    public void truncateTable() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("truncate table " + tableName);
+        }
+    }
+
+    /**
+     * Copies rows round robin over four streams into a heap with table locks.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testRoundRobin() throws SQLException {
+        try (SQLServerPartitionedBulkCopy bulkCopy = new SQLServerPartitionedBulkCopy(connectionString, 4)) {
+            SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+            options.setTableLock(true);
+            bulkCopy.setBulkCopyOptions(options);
+            bulkCopy.setDestinationTableName(tableName);
+            bulkCopy.writeToServer(new Rows(rowCount, -1));
+
+            assertEquals(rowCount, bulkCopy.getRowsCopied());
+            assertEquals(4, bulkCopy.getStreamStatistics().size());
+            for (SQLServerPartitionedBulkCopy.StreamStatistics statistics : bulkCopy.getStreamStatistics())
+                assertEquals(rowCount / 4, statistics.getRowsCopied());
+        }
+        assertTableContents(rowCount);
+    }
+
+    /**
+     * Copies rows over two streams chosen by a partitioning function.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testPartitioner() throws SQLException {
+        try (Connection connection2 = DriverManager.getConnection(connectionString);
+                SQLServerPartitionedBulkCopy bulkCopy = new SQLServerPartitionedBulkCopy(
+                        Arrays.asList(connection, connection2))) {
+            bulkCopy.setDestinationTableName(tableName);
+            bulkCopy.setPartitioner(row -> ((Integer) row[0] < 100) ? 0 : 1);
+            bulkCopy.writeToServer(new Rows(rowCount, -1));
+
+            assertEquals(100, bulkCopy.getStreamStatistics().get(0).getRowsCopied());
+            assertEquals(rowCount - 100, bulkCopy.getStreamStatistics().get(1).getRowsCopied());
+        }
+        assertTableContents(rowCount);
+    }
+
+    /**
+     * Checks that a row that cannot be copied stops all streams, and that only the rows of completed batches count as
+     * copied.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testStreamFailure() throws SQLException {
+        try (SQLServerPartitionedBulkCopy bulkCopy = new SQLServerPartitionedBulkCopy(connectionString, 2)) {
+            SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+            options.setBatchSize(1000);
+            bulkCopy.setBulkCopyOptions(options);
+            bulkCopy.setDestinationTableName(tableName);
+            try {
+                bulkCopy.writeToServer(new Rows(rowCount, rowCount / 2));
+                fail("A row with an invalid value was copied.");
+            } catch (SQLServerException e) {
+                assertTrue(bulkCopy.getRowsCopied() < rowCount);
+                for (SQLServerPartitionedBulkCopy.StreamStatistics statistics : bulkCopy.getStreamStatistics())
+                    assertEquals(0, statistics.getRowsCopied() % 1000);
+            }
+            try (Statement stmt = connection.createStatement();
+                    ResultSet rs = stmt.executeQuery("select count(*) from " + tableName)) {
+                rs.next();
+                assertEquals(bulkCopy.getRowsCopied(), rs.getLong(1));
+            }
+        }
+    }
+
+    /**
+     * Checks that a table lock is rejected for a table with a clustered index, where the streams would block each
+     * other.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testTableLockWithClusteredIndex() throws SQLException {
+        String clusteredTableName = AbstractSQLGenerator
+                .escapeIdentifier(RandomUtil.getIdentifier("BulkCopyPartitionedClusteredTest"));
+        try (Statement stmt = connection.createStatement();
+                SQLServerPartitionedBulkCopy bulkCopy = new SQLServerPartitionedBulkCopy(connectionString, 2)) {
+            TestUtils.dropTableIfExists(clusteredTableName, stmt);
+            stmt.execute("create table " + clusteredTableName + " (id int primary key clustered, name nvarchar(50))");
+            try {
+                SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+                options.setTableLock(true);
+                bulkCopy.setBulkCopyOptions(options);
+                bulkCopy.setDestinationTableName(clusteredTableName);
+                try {
+                    bulkCopy.writeToServer(new Rows(rowCount, -1));
+                    fail(TestResource.getResource("R_expectedExceptionNotThrown"));
+                } catch (SQLServerException e) {
+                    assertEquals(TestResource.getResource("R_partitionedBulkCopyTableLock"), e.getMessage());
+                }
+
+                // Without the table lock the streams load the table concurrently.
+                bulkCopy.setBulkCopyOptions(new SQLServerBulkCopyOptions());
+                bulkCopy.writeToServer(new Rows(rowCount, -1));
+                assertEquals(rowCount, bulkCopy.getRowsCopied());
+            } finally {
+                TestUtils.dropTableIfExists(clusteredTableName, stmt);
+            }
+        }
+    }
+
+    private static void assertTableContents(int expectedRows) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("select count(*), sum(cast(id as bigint)) from " + tableName)) {
+            rs.next();
+            assertEquals(expectedRows, rs.getInt(1));
+            assertEquals((long) expectedRows * (expectedRows - 1) / 2, rs.getLong(2));
+        }
+    }
+
+    @AfterAll
+    public static void terminate() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            TestUtils.dropTableIfExists(tableName, stmt);
+        }
+    }
+
+    /**
+     * Rows with ids from 0, where the row with id invalidRow has a value that is not an int.
+     */
+    static final class Rows implements ISQLServerBulkRecord {
+        private static final int[] types = {Types.INTEGER, Types.NVARCHAR};
+
+        private final int rowCount;
+        private final int invalidRow;
+        private int current = -1;
+
+        Rows(int rowCount, int invalidRow) {
+            this.rowCount = rowCount;
+            this.invalidRow = invalidRow;
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            return new LinkedHashSet<>(Arrays.asList(1, 2));
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return (1 == column) ? "id" : "name";
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return types[column - 1];
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return (1 == column) ? 10 : 50;
+        }
+
+        @Override
+        public int getScale(int column) {
+            return 0;
+        }
+
+        @Override
+        public boolean isAutoIncrement(int column) {
+            return false;
+        }
+
+        @Override
+        public Object[] getRowData() {
+            return new Object[] {(current == invalidRow) ? "invalid" : current, "name " + current};
+        }
+
+        @Override
+        public boolean next() {
+            return ++current < rowCount;
+        }
+
+        @Override
+        public void addColumnMetadata(int positionInFile, String name, int jdbcType, int precision, int scale,
+                DateTimeFormatter dateTimeFormatter) {}
+
+        @Override
+        public void addColumnMetadata(int positionInFile, String name, int jdbcType, int precision, int scale) {}
+
+        @Override
+        public void setTimestampWithTimezoneFormat(String dateTimeFormat) {}
+
+        @Override
+        public void setTimestampWithTimezoneFormat(DateTimeFormatter dateTimeFormatter) {}
+
+        @Override
+        public void setTimeWithTimezoneFormat(String timeFormat) {}
+
+        @Override
+        public void setTimeWithTimezoneFormat(DateTimeFormatter dateTimeFormatter) {}
+
+        @Override
+        public DateTimeFormatter getColumnDateTimeFormatter(int column) {
+            return null;
+        }
+    }
+}
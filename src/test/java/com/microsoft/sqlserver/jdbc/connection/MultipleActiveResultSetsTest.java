@@ -0,0 +1,202 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.jdbc.SQLServerDataSource;
+import com.microsoft.sqlserver.jdbc.TestResource;
+import com.microsoft.sqlserver.jdbc.TestUtils;
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests the multipleActiveResultSets connection property
+ */
+@RunWith(JUnitPlatform.class)
+public class MultipleActiveResultSetsTest extends AbstractTest {
+    /**
+     * Reads a large result set while another statement executes on its connection, with and without SocketChannel I/O.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInterleavedResultSets() throws Exception {
+        for (boolean useSocketChannel : new boolean[] {true, false}) {
+            try (Connection con = DriverManager.getConnection(
+                    connectionString + ";multipleActiveResultSets=true;useSocketChannel=" + useSocketChannel);
+                    Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(TestUtils.LARGE_QUERY);
+                    PreparedStatement lookup = con.prepareStatement("select ? + 1")) {
+                int rows = 0;
+                while (rs.next()) {
+                    assertEquals(rows, rs.getInt(1));
+                    if (0 == rows % 10000) {
+                        lookup.setInt(1, rows);
+                        try (ResultSet lookupRs = lookup.executeQuery()) {
+                            assertTrue(lookupRs.next());
+                            assertEquals(rows + 1, lookupRs.getInt(1));
+                        }
+                    }
+                    rows++;
+                }
+                assertEquals(TestUtils.LARGE_QUERY_ROWS, rows);
+            }
+        }
+    }
+
+    /**
+     * Keeps several result sets of one connection open and reads them in turns.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testManyOpenResultSets() throws Exception {
+        try (Connection con = DriverManager.getConnection(connectionString + ";multipleActiveResultSets=true")) {
+            List<Statement> statements = new ArrayList<>();
+            List<ResultSet> resultSets = new ArrayList<>();
+            try {
+                for (int i = 0; i < 8; i++) {
+                    Statement stmt = con.createStatement();
+                    statements.add(stmt);
+                    resultSets.add(stmt.executeQuery(TestUtils.LARGE_QUERY));
+                }
+
+                for (int row = 0; row < TestUtils.LARGE_QUERY_ROWS; row++) {
+                    for (ResultSet rs : resultSets) {
+                        assertTrue(rs.next());
+                        assertEquals(row, rs.getInt(1));
+                    }
+                }
+
+                for (ResultSet rs : resultSets)
+                    assertFalse(rs.next());
+            } finally {
+                for (Statement stmt : statements)
+                    stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Executes queries on one connection from several threads at once.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (Connection con = DriverManager.getConnection(connectionString + ";multipleActiveResultSets=true")) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> {
+                    try (Statement stmt = con.createStatement();
+                            ResultSet rs = stmt.executeQuery(TestUtils.LARGE_QUERY)) {
+                        int rows = 0;
+                        while (rs.next())
+                            rows++;
+                        return rows;
+                    }
+                }));
+            }
+
+            for (Future<Integer> result : results)
+                assertEquals(TestUtils.LARGE_QUERY_ROWS, (int) result.get(120, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that a statement timing out leaves the result set of another session readable.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTimeoutOnOtherSession() throws Exception {
+        try (Connection con = DriverManager.getConnection(connectionString + ";multipleActiveResultSets=true");
+                Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(TestUtils.LARGE_QUERY);
+                Statement waitStmt = con.createStatement()) {
+            assertTrue(rs.next());
+
+            waitStmt.setQueryTimeout(1);
+            try {
+                waitStmt.execute("waitfor delay '00:00:10'");
+                fail("The statement did not time out.");
+            } catch (SQLException e) {
+                assertEquals(TestResource.getResource("R_queryTimedOut"), e.getMessage());
+            }
+
+            TestUtils.assertLargeQueryRows(rs, 1);
+        }
+    }
+
+    /**
+     * Logs in with federated authentication, whose access token is sent on the MARS session of the login. Runs only when
+     * mssql_jdbc_test_fedauth_connection_properties holds a connection string with an Azure Active Directory
+     * authentication such as ActiveDirectoryPassword.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFederatedAuthentication() throws Exception {
+        String fedAuthConnectionString = getConfiguredProperty("mssql_jdbc_test_fedauth_connection_properties");
+        assumeTrue(null != fedAuthConnectionString, "No federated authentication connection string is configured.");
+
+        try (Connection con = DriverManager.getConnection(
+                fedAuthConnectionString + ";multipleActiveResultSets=true;useFedAuthTokenCache=false");
+                Statement stmt1 = con.createStatement(); Statement stmt2 = con.createStatement();
+                ResultSet rs1 = stmt1.executeQuery(TestUtils.LARGE_QUERY);
+                ResultSet rs2 = stmt2.executeQuery("select 1")) {
+            assertTrue(rs1.next());
+            assertTrue(rs2.next());
+            assertEquals(1, rs2.getInt(1));
+            TestUtils.assertLargeQueryRows(rs1, 1);
+        }
+    }
+
+    /**
+     * Tests the data source property.
+     */
+    @Test
+    public void testDataSource() throws SQLException {
+        SQLServerDataSource ds = new SQLServerDataSource();
+        assertFalse(ds.getMultipleActiveResultSets());
+
+        ds.setURL(connectionString);
+        ds.setMultipleActiveResultSets(true);
+        assertTrue(ds.getMultipleActiveResultSets());
+
+        try (Connection con = ds.getConnection(); Statement stmt1 = con.createStatement();
+                Statement stmt2 = con.createStatement(); ResultSet rs1 = stmt1.executeQuery(TestUtils.LARGE_QUERY);
+                ResultSet rs2 = stmt2.executeQuery("select 1")) {
+            assertTrue(rs1.next());
+            assertTrue(rs2.next());
+            assertEquals(1, rs2.getInt(1));
+            assertTrue(rs1.next());
+            assertEquals(1, rs1.getInt(1));
+        }
+    }
+}
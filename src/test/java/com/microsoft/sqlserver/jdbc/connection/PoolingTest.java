@@ -18,6 +18,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 import javax.sql.PooledConnection;
@@ -30,6 +34,7 @@ import org.junit.runner.RunWith;
 
 import com.microsoft.sqlserver.jdbc.ISQLServerConnection;
 import com.microsoft.sqlserver.jdbc.RandomUtil;
+import com.microsoft.sqlserver.jdbc.SQLServerPoolingDataSource;
 import com.microsoft.sqlserver.jdbc.SQLServerXADataSource;
 import com.microsoft.sqlserver.jdbc.TestResource;
 import com.microsoft.sqlserver.jdbc.TestUtils;
@@ -209,6 +214,107 @@ public class PoolingTest extends AbstractTest {
         }
     }
 
+    /**
+     * test the built-in connection pool of SQLServerPoolingDataSource
+     * 
+     * @throws SQLException
+     */
+    @Test
+    public void testSQLServerPoolingDataSource() throws SQLException {
+        SQLServerPoolingDataSource ds = new SQLServerPoolingDataSource();
+        ds.setURL(connectionString);
+        ds.setMaxPoolSize(2);
+
+        try {
+            connect(ds);
+            connect(ds);
+            assertEquals(1, ds.getTotalConnections(), "The pooled connection was not reused.");
+            assertEquals(1, ds.getIdleConnections(), "The pooled connection was not returned to the pool.");
+
+            try (Connection con1 = ds.getConnection(); Connection con2 = ds.getConnection()) {
+                assertEquals(2, ds.getTotalConnections());
+                assertEquals(0, ds.getIdleConnections());
+            }
+            assertEquals(2, ds.getIdleConnections());
+        } finally {
+            ds.close();
+        }
+        assertEquals(0, ds.getTotalConnections());
+
+        // A closed data source does not create a new pool.
+        try (Connection con = ds.getConnection()) {
+            fail(TestResource.getResource("R_expectedExceptionNotThrown"));
+        } catch (SQLException e) {
+            assertEquals(TestResource.getResource("R_connectionPoolClosed"), e.getMessage());
+        }
+        assertEquals(0, ds.getTotalConnections());
+    }
+
+    /**
+     * test that a thread waiting on a full SQLServerPoolingDataSource gets the connection returned to the pool, or
+     * opens a new one when the connection in use breaks
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSQLServerPoolingDataSourceWaiters() throws Exception {
+        SQLServerPoolingDataSource ds = new SQLServerPoolingDataSource();
+        ds.setURL(connectionString);
+        ds.setMaxPoolSize(1);
+        ds.setConnectionWaitTimeout(60000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // The connection is closed normally and handed to the waiter.
+            Connection con = ds.getConnection();
+            Future<?> waiter = executor.submit(() -> {
+                connect(ds);
+                return null;
+            });
+            awaitWaiter(ds);
+            con.close();
+            waiter.get(60, TimeUnit.SECONDS);
+            assertEquals(1, ds.getTotalConnections());
+
+            // The session of the connection is killed, and the waiter opens a new connection in its place.
+            con = ds.getConnection();
+            int spid;
+            try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery("SELECT @@SPID")) {
+                rs.next();
+                spid = rs.getInt(1);
+            }
+            waiter = executor.submit(() -> {
+                connect(ds);
+                return null;
+            });
+            awaitWaiter(ds);
+            try (Connection killer = DriverManager.getConnection(connectionString);
+                    Statement stmt = killer.createStatement()) {
+                stmt.execute("KILL " + spid);
+            }
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute("SELECT 1");
+                fail(TestResource.getResource("R_expectedExceptionNotThrown"));
+            } catch (SQLException e) {
+                // The connection is broken and removed from the pool.
+            }
+            waiter.get(60, TimeUnit.SECONDS);
+            con.close();
+            assertEquals(1, ds.getTotalConnections());
+        } finally {
+            executor.shutdownNow();
+            ds.close();
+        }
+    }
+
+    private static void awaitWaiter(SQLServerPoolingDataSource ds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60000;
+        while (0 == ds.getThreadsAwaitingConnection()) {
+            assertTrue(System.currentTimeMillis() < deadline, "The thread did not wait for a connection.");
+            Thread.sleep(10);
+        }
+    }
+
     /**
      * setup connection, get connection from pool, and test threads
      * 
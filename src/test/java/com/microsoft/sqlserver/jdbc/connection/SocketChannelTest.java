@@ -0,0 +1,151 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.jdbc.TestResource;
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests statement execution, cancellation and timeouts over the SocketChannel transport, on unencrypted connections
+ * and on connections encrypted with an SSL engine.
+ */
+@RunWith(JUnitPlatform.class)
+public class SocketChannelTest extends AbstractTest {
+    private static final String[] ENCRYPTION = {"encrypt=false", "encrypt=true;trustServerCertificate=true"};
+    private static final int ROWS = 20000;
+    private static final String WAITFOR = "WAITFOR DELAY '00:00:10'";
+
+    private static Connection getConnection(String encryption) throws SQLException {
+        return DriverManager.getConnection(connectionString + ";useSocketChannel=true;" + encryption);
+    }
+
+    /**
+     * Reads a result set that spans many packets.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExecute() throws Exception {
+        for (String encryption : ENCRYPTION) {
+            try (Connection con = getConnection(encryption); Statement stmt = con.createStatement();
+                    ResultSet rs = stmt.executeQuery("select top " + ROWS
+                            + " row_number() over (order by (select null)) as id, replicate(N'x', 100) as name"
+                            + " from sys.all_objects a cross join sys.all_objects b")) {
+                int rows = 0;
+                while (rs.next()) {
+                    assertEquals(++rows, rs.getInt(1));
+                    assertEquals(100, rs.getString(2).length());
+                }
+                assertEquals(ROWS, rows, encryption);
+            }
+        }
+    }
+
+    /**
+     * Cancels a statement from another thread while the executing thread waits for the response.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCancel() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (String encryption : ENCRYPTION) {
+                try (Connection con = getConnection(encryption); Statement stmt = con.createStatement()) {
+                    executor.schedule(() -> {
+                        stmt.cancel();
+                        return null;
+                    }, 1, TimeUnit.SECONDS);
+
+                    long start = System.currentTimeMillis();
+                    try {
+                        stmt.execute(WAITFOR);
+                        fail(TestResource.getResource("R_expectedExceptionNotThrown"));
+                    } catch (SQLException e) {
+                        assertTrue(e.getMessage().startsWith(TestResource.getResource("R_queryCancelled")),
+                                e.getMessage());
+                    }
+                    assertTrue(System.currentTimeMillis() - start < 5000, encryption);
+
+                    // The connection is still usable.
+                    try (ResultSet rs = stmt.executeQuery("select 1")) {
+                        assertTrue(rs.next());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Times out a statement with a query timeout.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testQueryTimeout() throws Exception {
+        for (String encryption : ENCRYPTION) {
+            try (Connection con = getConnection(encryption); Statement stmt = con.createStatement()) {
+                stmt.setQueryTimeout(1);
+
+                long start = System.currentTimeMillis();
+                try {
+                    stmt.execute(WAITFOR);
+                    fail(TestResource.getResource("R_expectedExceptionNotThrown"));
+                } catch (SQLException e) {
+                    assertEquals(TestResource.getResource("R_queryTimedOut"), e.getMessage());
+                }
+                assertTrue(System.currentTimeMillis() - start < 5000, encryption);
+
+                stmt.setQueryTimeout(0);
+                try (ResultSet rs = stmt.executeQuery("select 1")) {
+                    assertTrue(rs.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Times out a read with the socketTimeout connection property, which closes the connection.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSocketTimeout() throws Exception {
+        for (String encryption : ENCRYPTION) {
+            try (Connection con = getConnection(encryption + ";socketTimeout=1000");
+                    Statement stmt = con.createStatement()) {
+                long start = System.currentTimeMillis();
+                try {
+                    stmt.execute(WAITFOR);
+                    fail(TestResource.getResource("R_expectedExceptionNotThrown"));
+                } catch (SQLException e) {
+                    assertTrue(e.getMessage().contains(TestResource.getResource("R_readTimedOut")), e.getMessage());
+                }
+                assertTrue(System.currentTimeMillis() - start < 5000, encryption);
+                assertTrue(con.isClosed());
+            }
+        }
+    }
+}
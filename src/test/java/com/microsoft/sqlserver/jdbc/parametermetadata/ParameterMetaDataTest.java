@@ -4,9 +4,13 @@
  */
 package com.microsoft.sqlserver.jdbc.parametermetadata;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ParameterMetaData;
@@ -19,6 +23,7 @@ import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 
 import com.microsoft.sqlserver.jdbc.RandomUtil;
+import com.microsoft.sqlserver.jdbc.SQLServerDataSource;
 import com.microsoft.sqlserver.jdbc.TestUtils;
 import com.microsoft.sqlserver.testframework.AbstractSQLGenerator;
 import com.microsoft.sqlserver.testframework.AbstractTest;
@@ -122,4 +127,61 @@ public class ParameterMetaDataTest extends AbstractTest {
             }
         }
     }
+
+    /**
+     * Test that the connections of a data source share parameter metadata, and that it is discarded when the table
+     * changes.
+     * 
+     * @throws SQLException
+     */
+    @Test
+    public void testSharedParameterMetaData() throws SQLException {
+        SQLServerDataSource dataSource = new SQLServerDataSource();
+        dataSource.setURL(connectionString);
+        dataSource.setDisableStatementPooling(false);
+        dataSource.setStatementPoolingCacheSize(10);
+
+        String escapedTableName = AbstractSQLGenerator.escapeIdentifier(tableName);
+        String query = "insert into " + escapedTableName + " (c1) values (?)";
+
+        try (Connection con = DriverManager.getConnection(connectionString); Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("create table " + escapedTableName + " (c1 decimal(38,5))");
+            try {
+                ParameterMetaData metadata;
+                try (Connection con1 = dataSource.getConnection();
+                        PreparedStatement pstmt = con1.prepareStatement(query)) {
+                    metadata = pstmt.getParameterMetaData();
+                    assertTrue(metadata.getParameterTypeName(1).equalsIgnoreCase("decimal"));
+                }
+
+                // The metadata retrieved on the closed connection is shared with a new connection.
+                try (Connection con2 = dataSource.getConnection();
+                        PreparedStatement pstmt = con2.prepareStatement(query)) {
+                    ParameterMetaData sharedMetadata = pstmt.getParameterMetaData();
+                    assertNotSame(metadata, sharedMetadata);
+                    assertTrue(sharedMetadata.getParameterTypeName(1).equalsIgnoreCase("decimal"));
+                    assertEquals(38, sharedMetadata.getPrecision(1));
+                    assertEquals(5, sharedMetadata.getScale(1));
+
+                    // An invalid object name discards the metadata.
+                    TestUtils.dropTableIfExists(escapedTableName, stmt);
+                    try {
+                        pstmt.setBigDecimal(1, BigDecimal.ONE);
+                        pstmt.executeUpdate();
+                        fail("The insert into the dropped table did not fail.");
+                    } catch (SQLException e) {
+                        assertEquals(208, e.getErrorCode());
+                    }
+                }
+
+                stmt.executeUpdate("create table " + escapedTableName + " (c1 varchar(10))");
+                try (Connection con3 = dataSource.getConnection();
+                        PreparedStatement pstmt = con3.prepareStatement(query)) {
+                    assertTrue(pstmt.getParameterMetaData().getParameterTypeName(1).equalsIgnoreCase("varchar"));
+                }
+            } finally {
+                TestUtils.dropTableIfExists(escapedTableName, stmt);
+            }
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.preparedStatement;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests NVARCHAR parameters that span several request packets. The smallest packet size puts packet boundaries every
+ * 504 bytes of payload; a binary parameter of one or two bytes before the string shifts the string by one byte, so that
+ * in one of the two cases every boundary falls in the middle of a character.
+ */
+@RunWith(JUnitPlatform.class)
+public class StringParameterTest extends AbstractTest {
+    // Holds on to the packet logger, whose level the test changes
+    private static final Logger packetLogger = Logger.getLogger("com.microsoft.sqlserver.jdbc.internals.TDS.DATA");
+
+    // Fits in a non-PLP NVARCHAR(4000) parameter, and spans several packets
+    private static final int SHORT_LENGTH = 1500;
+    // Sent as a PLP NVARCHAR(max) parameter
+    private static final int LONG_LENGTH = 5000;
+
+    private static String makeString(int length) {
+        // ASCII, other BMP characters and surrogate pairs
+        String pattern = "abc\u00e9\u4e2d\ud83d\ude00xyz";
+        StringBuilder value = new StringBuilder(length);
+        while (value.length() < length)
+            value.append(pattern);
+        value.setLength(length);
+        return value.toString();
+    }
+
+    private static void testRoundTrip() throws Exception {
+        try (Connection con = DriverManager.getConnection(connectionString + ";packetSize=512");
+                PreparedStatement pstmt = con.prepareStatement("select ?, ?")) {
+            for (int prefixLength = 1; prefixLength <= 2; prefixLength++) {
+                for (int length : new int[] {SHORT_LENGTH, LONG_LENGTH}) {
+                    byte[] prefix = new byte[prefixLength];
+                    String value = makeString(length);
+                    pstmt.setBytes(1, prefix);
+                    pstmt.setString(2, value);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        assertTrue(rs.next());
+                        assertArrayEquals(prefix, rs.getBytes(1));
+                        assertEquals(value, rs.getString(2), "prefix " + prefixLength + ", length " + length);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends strings whose characters straddle packet boundaries.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPacketBoundaries() throws Exception {
+        testRoundTrip();
+    }
+
+    /**
+     * Sends strings whose characters straddle packet boundaries while the packets are logged. The packet log is
+     * written along with the packets, so it takes the same path through the boundaries.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPacketBoundariesWithPacketLogging() throws Exception {
+        AtomicInteger loggedPackets = new AtomicInteger();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                loggedPackets.incrementAndGet();
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        handler.setLevel(Level.FINEST);
+
+        // Packet logging is enabled for the connections opened while the logger is at FINEST.
+        Level level = packetLogger.getLevel();
+        boolean useParentHandlers = packetLogger.getUseParentHandlers();
+        packetLogger.setLevel(Level.FINEST);
+        packetLogger.setUseParentHandlers(false);
+        packetLogger.addHandler(handler);
+        try {
+            testRoundTrip();
+        } finally {
+            packetLogger.removeHandler(handler);
+            packetLogger.setUseParentHandlers(useParentHandlers);
+            packetLogger.setLevel(level);
+        }
+        assertTrue(loggedPackets.get() > 0);
+    }
+}
@@ -33,6 +33,7 @@ import org.junit.runner.RunWith;
 
 import com.microsoft.sqlserver.jdbc.ISQLServerResultSet;
 import com.microsoft.sqlserver.jdbc.RandomUtil;
+import com.microsoft.sqlserver.jdbc.SQLServerColumnBatch;
 import com.microsoft.sqlserver.jdbc.TestUtils;
 import com.microsoft.sqlserver.testframework.AbstractSQLGenerator;
 import com.microsoft.sqlserver.testframework.AbstractTest;
@@ -329,4 +330,80 @@ public class ResultSetTest extends AbstractTest {
             assertEquals(null, rs.getTime(1));
         }
     }
+
+    /**
+     * Tests reading rows into column vectors with ISQLServerResultSet#readBatch.
+     * 
+     * @throws SQLException
+     */
+    @Test
+    public void testReadBatch() throws SQLException {
+        try (Connection con = DriverManager.getConnection(connectionString); Statement stmt = con.createStatement();
+                ResultSet rs = stmt.executeQuery("select cast(n as int), cast(n as bigint), cast(n as float) / 2, "
+                        + "cast(n as nvarchar(10)), cast(n as decimal(10,1)) from (values (1), (2), (null)) t(n)")) {
+            SQLServerColumnBatch batch = new SQLServerColumnBatch(2);
+
+            assertEquals(2, rs.unwrap(ISQLServerResultSet.class).readBatch(batch));
+            assertEquals(5, batch.getColumnCount());
+            assertEquals(SQLServerColumnBatch.VectorType.LONG, batch.getVectorType(1));
+            assertEquals(SQLServerColumnBatch.VectorType.DOUBLE, batch.getVectorType(3));
+            assertEquals(SQLServerColumnBatch.VectorType.BYTES, batch.getVectorType(4));
+            assertEquals(SQLServerColumnBatch.VectorType.OBJECT, batch.getVectorType(5));
+            assertEquals(1, batch.getLong(1, 0));
+            assertEquals(2, batch.getLong(2, 1));
+            assertEquals(1.0, batch.getDouble(3, 1));
+            assertEquals("2", batch.getString(4, 1));
+            assertEquals(new BigDecimal("1.0"), batch.getObject(5, 0));
+
+            assertEquals(1, rs.unwrap(ISQLServerResultSet.class).readBatch(batch));
+            for (int column = 1; column <= batch.getColumnCount(); column++)
+                assertTrue(batch.isNull(column, 0));
+
+            assertEquals(0, rs.unwrap(ISQLServerResultSet.class).readBatch(batch));
+        }
+    }
+
+    /**
+     * Tests that the primitive getters return the same values as the boxed conversions, across rows and when a column
+     * is read more than once.
+     * 
+     * @throws SQLException
+     */
+    @Test
+    public void testPrimitiveGetters() throws SQLException {
+        try (Connection con = DriverManager.getConnection(connectionString); Statement stmt = con.createStatement();
+                ResultSet rs = stmt.executeQuery("select cast(n as int), cast(n as bigint) * 100000000000, "
+                        + "cast(n as float) / 2, cast(n as real) / 4, cast(-n as decimal(18,0)), "
+                        + "cast(n as decimal(10,2)) / 4, cast(n as bit), cast(n as tinyint) * 100, "
+                        + "cast(n as smallint) from (values (1), (2), (null)) t(n)")) {
+            for (int row = 1; row <= 2; row++) {
+                assertTrue(rs.next());
+                assertEquals(row, rs.getInt(1));
+                assertFalse(rs.wasNull());
+                assertEquals(row * 100000000000L, rs.getLong(2));
+                assertEquals((int) (row * 100000000000L), rs.getInt(2));
+                assertEquals(row / 2.0, rs.getDouble(3));
+                assertEquals(row / 4.0f, rs.getFloat(4));
+                assertEquals(row / 4.0, rs.getDouble(4));
+                assertEquals(-row, rs.getLong(5));
+                assertEquals(row / 4, rs.getLong(6));
+                assertEquals(0.25 * row, rs.getDouble(6));
+                assertTrue(rs.getBoolean(7));
+                assertEquals((byte) (row * 100), rs.getByte(8));
+                assertEquals(row * 100, rs.getShort(8));
+                assertEquals(row, rs.getShort(9));
+                assertEquals(row, rs.getInt(1));
+                assertEquals(Integer.valueOf(row), rs.getObject(1));
+            }
+
+            assertTrue(rs.next());
+            for (int column = 1; column <= 9; column++) {
+                assertEquals(0, rs.getLong(column));
+                assertTrue(rs.wasNull());
+            }
+            assertFalse(rs.getBoolean(7));
+            assertTrue(rs.wasNull());
+            assertFalse(rs.next());
+        }
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.resultset;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests reading NVARCHAR and VARCHAR columns whose values either fit in the packet they start in or span one or more
+ * packets. The smallest packet size puts packet boundaries every 504 bytes of payload, so the longer values always
+ * cross a boundary, and consecutive rows of different lengths reuse the same decoding buffers.
+ */
+@RunWith(JUnitPlatform.class)
+public class StringColumnTest extends AbstractTest {
+    private static final String TABLE_NAME = "#StringColumnTest";
+
+    // Lengths in characters, shorter and longer than a packet, in an order that alternates between the two
+    private static final int[] LENGTHS = {0, 1, 100, 3000, 7, 600, 250, 4000, 503, 1500, 2, 8000};
+
+    private static String makeNString(int length) {
+        // ASCII, other BMP characters and surrogate pairs
+        return makeString("abc\u00e9\u4e2d\ud83d\ude00xyz", length);
+    }
+
+    private static String makeVarcharString(int length) {
+        // Characters of the Latin1_General code page, which are one byte each
+        return makeString("abc\u00e9\u00fcxyz", length);
+    }
+
+    private static String makeString(String pattern, int length) {
+        StringBuilder value = new StringBuilder(length);
+        while (value.length() < length)
+            value.append(pattern);
+        value.setLength(length);
+        // Keeps a surrogate pair from being cut in half at the end
+        if (0 < length && Character.isHighSurrogate(value.charAt(length - 1)))
+            value.setCharAt(length - 1, 'x');
+        return value.toString();
+    }
+
+    private static String readAll(Reader reader) throws Exception {
+        StringBuilder value = new StringBuilder();
+        char[] buffer = new char[1000];
+        int count;
+        while (-1 != (count = reader.read(buffer)))
+            value.append(buffer, 0, count);
+        return value.toString();
+    }
+
+    private static byte[] readAll(InputStream stream) throws Exception {
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int count;
+        while (-1 != (count = stream.read(buffer)))
+            value.write(buffer, 0, count);
+        return value.toByteArray();
+    }
+
+    private static void testRead(int packetSize, String responseBuffering) throws Exception {
+        try (Connection con = DriverManager.getConnection(
+                connectionString + ";packetSize=" + packetSize + ";responseBuffering=" + responseBuffering);
+                Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("create table " + TABLE_NAME
+                    + " (id int primary key, n nvarchar(4000), v varchar(8000) collate Latin1_General_CI_AS)");
+            try (PreparedStatement pstmt = con
+                    .prepareStatement("insert into " + TABLE_NAME + " (id, n, v) values (?, ?, ?)")) {
+                for (int i = 0; i < LENGTHS.length; i++) {
+                    pstmt.setInt(1, i);
+                    pstmt.setNString(2, makeNString(Math.min(LENGTHS[i], 4000)));
+                    pstmt.setString(3, makeVarcharString(LENGTHS[i]));
+                    pstmt.addBatch();
+                }
+                pstmt.setInt(1, LENGTHS.length);
+                pstmt.setNull(2, Types.NVARCHAR);
+                pstmt.setNull(3, Types.VARCHAR);
+                pstmt.addBatch();
+                pstmt.executeBatch();
+            }
+
+            // Each column is read by one getter per pass, since the non-adaptive streams can be read only once.
+            for (int pass = 0; pass < 5; pass++) {
+                try (ResultSet rs = stmt.executeQuery("select id, n, v from " + TABLE_NAME + " order by id")) {
+                    for (int i = 0; i < LENGTHS.length; i++) {
+                        assertTrue(rs.next());
+                        assertEquals(i, rs.getInt(1));
+                        String n = makeNString(Math.min(LENGTHS[i], 4000));
+                        String v = makeVarcharString(LENGTHS[i]);
+                        String message = "packetSize " + packetSize + ", responseBuffering " + responseBuffering
+                                + ", pass " + pass + ", length " + LENGTHS[i];
+                        switch (pass) {
+                            case 0:
+                                assertEquals(n, rs.getString(2), message);
+                                assertEquals(v, rs.getString(3), message);
+                                break;
+                            case 1:
+                                assertEquals(n, rs.getObject(2), message);
+                                assertEquals(v, rs.getObject(3), message);
+                                break;
+                            case 2:
+                                assertEquals(n, readAll(rs.getCharacterStream(2)), message);
+                                assertEquals(v, readAll(rs.getCharacterStream(3)), message);
+                                break;
+                            case 3:
+                                // Characters outside of 7-bit ASCII read as '?'
+                                assertArrayEquals(n.getBytes(US_ASCII), readAll(rs.getAsciiStream(2)), message);
+                                assertArrayEquals(v.getBytes(US_ASCII), readAll(rs.getAsciiStream(3)), message);
+                                break;
+                            default:
+                                assertEquals(n, rs.getNString(2), message);
+                                assertEquals(v, rs.getNString(3), message);
+                                break;
+                        }
+                    }
+                    assertTrue(rs.next());
+                    assertNull(rs.getString(2));
+                    assertTrue(rs.wasNull());
+                    assertNull(rs.getString(3));
+                    assertTrue(rs.wasNull());
+                    assertFalse(rs.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads strings with the smallest packet size, where most values span packets.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSmallPackets() throws Exception {
+        testRead(512, "adaptive");
+        testRead(512, "full");
+    }
+
+    /**
+     * Reads strings with the largest packet size, where most values fit in the packet they start in.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLargePackets() throws Exception {
+        testRead(32767, "adaptive");
+        testRead(32767, "full");
+    }
+}
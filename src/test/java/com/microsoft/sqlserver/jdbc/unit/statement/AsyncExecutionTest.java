@@ -0,0 +1,140 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.unit.statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerPreparedStatement;
+import com.microsoft.sqlserver.jdbc.ISQLServerStatement;
+import com.microsoft.sqlserver.jdbc.RandomUtil;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+import com.microsoft.sqlserver.jdbc.TestUtils;
+import com.microsoft.sqlserver.testframework.AbstractSQLGenerator;
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests executeQueryAsync and executeUpdateAsync
+ */
+@RunWith(JUnitPlatform.class)
+public class AsyncExecutionTest extends AbstractTest {
+    private static final String tableName = AbstractSQLGenerator
+            .escapeIdentifier(RandomUtil.getIdentifier("AsyncExecutionTest"));
+
+    @BeforeAll
+    public static void setupTests() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            TestUtils.dropTableIfExists(tableName, stmt);
+            stmt.execute("create table " + tableName + " (id int, name varchar(50))");
+        }
+    }
+
+    /**
+     * Executes updates and queries asynchronously on many connections that share a small executor, with and without
+     * SocketChannel I/O.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExecuteAsync() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (boolean useSocketChannel : new boolean[] {true, false}) {
+                List<Connection> connections = new ArrayList<>();
+                List<CompletableFuture<Integer>> futures = new ArrayList<>();
+                try {
+                    for (int i = 0; i < 10; i++) {
+                        Connection con = DriverManager
+                                .getConnection(connectionString + ";useSocketChannel=" + useSocketChannel);
+                        connections.add(con);
+                        ISQLServerPreparedStatement pstmt = (ISQLServerPreparedStatement) con
+                                .prepareStatement("waitfor delay '00:00:01'; insert into " + tableName
+                                        + " values (?, 'async')");
+                        pstmt.setInt(1, i);
+                        futures.add(pstmt.executeUpdateAsync(executor));
+                    }
+
+                    for (CompletableFuture<Integer> future : futures)
+                        assertEquals(1, (int) future.get());
+
+                    ISQLServerStatement stmt = (ISQLServerStatement) connections.get(0).createStatement();
+                    try (ResultSet rs = stmt.executeQueryAsync("select count(*) from " + tableName, executor).get()) {
+                        assertTrue(rs.next());
+                        assertEquals(10, rs.getInt(1));
+                    }
+                    assertEquals(10, (int) stmt.executeUpdateAsync("delete from " + tableName, executor).get());
+                } finally {
+                    for (Connection con : connections)
+                        con.close();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Checks that errors, including query timeouts, complete the future exceptionally.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExecuteAsyncErrors() throws Exception {
+        try (Connection con = DriverManager.getConnection(connectionString + ";useSocketChannel=true");
+                ISQLServerStatement stmt = (ISQLServerStatement) con.createStatement()) {
+            try {
+                stmt.executeQueryAsync("select * from " + tableName + "_doesNotExist").get();
+                fail("The query of a missing table succeeded.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SQLServerException);
+            }
+
+            CompletableFuture<Integer> pending = stmt.executeUpdateAsync("waitfor delay '00:00:01'");
+            try {
+                stmt.executeUpdateAsync("waitfor delay '00:00:01'").get();
+                fail("A second asynchronous execution of the statement was started.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SQLServerException);
+            }
+            pending.get();
+
+            stmt.setQueryTimeout(1);
+            try {
+                stmt.executeUpdateAsync("waitfor delay '00:00:05'").get();
+                fail("The query did not time out.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SQLTimeoutException);
+            }
+        }
+    }
+
+    @AfterAll
+    public static void terminate() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            TestUtils.dropTableIfExists(tableName, stmt);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.unit.statement;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+import com.microsoft.sqlserver.jdbc.SQLServerPacketPoolStatistics;
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests that response packets recycled by a connection are never reused while a mark or a detached response can still
+ * reach them. The smallest packet size makes every row span several packets.
+ */
+@RunWith(JUnitPlatform.class)
+public class PacketPoolTest extends AbstractTest {
+    private static final int ROWS = 2000;
+    private static final int WIDTH = 1500;
+    private static final String QUERY = "select top " + ROWS
+            + " row_number() over (order by (select null)) as id, replicate(cast(char(65 + (row_number() over"
+            + " (order by (select null))) % 26) as varchar(max)), " + WIDTH + ") as name"
+            + " from sys.all_objects a cross join sys.all_objects b";
+
+    private static String expectedName(int id) {
+        StringBuilder name = new StringBuilder(WIDTH);
+        for (int i = 0; i < WIDTH; i++)
+            name.append((char) ('A' + id % 26));
+        return name.toString();
+    }
+
+    private static void assertRow(ResultSet rs) throws Exception {
+        int id = rs.getInt(1);
+        assertEquals(expectedName(id), rs.getString(2));
+    }
+
+    /**
+     * Streams a result set, then reads one detached by the execution of another statement.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStreamingAndDetachedResultSets() throws Exception {
+        try (SQLServerConnection con = (SQLServerConnection) DriverManager
+                .getConnection(connectionString + ";packetSize=512");
+                Statement stmt = con.createStatement(); Statement otherStmt = con.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(QUERY)) {
+                int rows = 0;
+                while (rs.next()) {
+                    assertRow(rs);
+                    rows++;
+                }
+                assertEquals(ROWS, rows);
+            }
+
+            SQLServerPacketPoolStatistics statistics = con.getPacketPoolStatistics();
+            assertTrue(statistics.getHitCount() > 0, statistics.toString());
+            assertTrue(statistics.getRecycledPacketCount() > 0, statistics.toString());
+
+            try (ResultSet rs = stmt.executeQuery(QUERY)) {
+                assertTrue(rs.next());
+                assertRow(rs);
+
+                // Buffers the rest of the result set while the other result set reuses pooled packets.
+                try (ResultSet otherRs = otherStmt.executeQuery(QUERY)) {
+                    while (otherRs.next())
+                        assertRow(otherRs);
+                }
+
+                int rows = 1;
+                while (rs.next()) {
+                    assertRow(rs);
+                    rows++;
+                }
+                assertEquals(ROWS, rows);
+            }
+        }
+    }
+
+    /**
+     * Moves back and forth through a scrollable result set, whose rows are read again from marks.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testScrollableResultSet() throws Exception {
+        try (SQLServerConnection con = (SQLServerConnection) DriverManager
+                .getConnection(connectionString + ";packetSize=512");
+                Statement stmt = con.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(50);
+            try (ResultSet rs = stmt.executeQuery(QUERY)) {
+                for (int row = 1; row <= ROWS; row += 7) {
+                    assertTrue(rs.absolute(row));
+                    assertRow(rs);
+                    if (rs.previous())
+                        assertRow(rs);
+                    assertTrue(rs.relative(1));
+                    assertRow(rs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets binary streams that span packets to their marks.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStreamMarks() throws Exception {
+        try (SQLServerConnection con = (SQLServerConnection) DriverManager
+                .getConnection(connectionString + ";packetSize=512"); Statement stmt = con.createStatement();
+                ResultSet rs = stmt.executeQuery("select id, cast(name as varbinary(max)) from (" + QUERY + ") t")) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                try (InputStream stream = rs.getBinaryStream(2)) {
+                    assertTrue(stream.markSupported());
+                    byte[] bytes = new byte[WIDTH];
+                    assertEquals('A' + id % 26, stream.read());
+                    stream.mark(WIDTH);
+                    assertEquals(WIDTH - 1, read(stream, bytes));
+                    stream.reset();
+                    assertEquals(WIDTH - 1, read(stream, bytes));
+                    assertEquals(expectedName(id).substring(1), new String(bytes, 0, WIDTH - 1, US_ASCII));
+                }
+            }
+        }
+    }
+
+    private static int read(InputStream stream, byte[] bytes) throws Exception {
+        int bytesRead = 0;
+        for (int n; bytesRead < bytes.length && -1 != (n = stream.read(bytes, bytesRead, bytes.length - bytesRead));)
+            bytesRead += n;
+        return bytesRead;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.unit.statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.jdbc.RandomUtil;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+import com.microsoft.sqlserver.jdbc.SQLServerPipeline;
+import com.microsoft.sqlserver.jdbc.TestResource;
+import com.microsoft.sqlserver.jdbc.TestUtils;
+import com.microsoft.sqlserver.testframework.AbstractSQLGenerator;
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests executing several prepared statements in one round trip with SQLServerPipeline
+ */
+@RunWith(JUnitPlatform.class)
+public class PipelineTest extends AbstractTest {
+    private static final String tableName = RandomUtil.getIdentifier("PipelineTest");
+
+    @BeforeAll
+    public static void setupTests() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            TestUtils.dropTableIfExists(AbstractSQLGenerator.escapeIdentifier(tableName), stmt);
+            stmt.execute(
+                    "create table " + AbstractSQLGenerator.escapeIdentifier(tableName) + " (id int, name varchar(50))");
+        }
+    }
+
+    /**
+     * Executes updates and queries in one pipeline and reads the results in order.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testPipelineResultsInOrder() throws SQLException {
+        String escapedTableName = AbstractSQLGenerator.escapeIdentifier(tableName);
+        try (PreparedStatement insert = connection
+                .prepareStatement("insert into " + escapedTableName + " values (?, ?)");
+                PreparedStatement select = connection
+                        .prepareStatement("select name from " + escapedTableName + " where id = ?");
+                PreparedStatement delete = connection.prepareStatement("delete from " + escapedTableName);
+                SQLServerPipeline pipeline = connection.pipeline()) {
+            insert.setInt(1, 1);
+            insert.setString(2, "one");
+            pipeline.addUpdate(insert);
+            select.setInt(1, 1);
+            pipeline.addQuery(select);
+            pipeline.addUpdate(delete);
+
+            // Parameter values are copied when the statement is added
+            select.setInt(1, 2);
+
+            pipeline.execute();
+
+            assertTrue(pipeline.next());
+            assertEquals(insert, pipeline.getStatement());
+            assertEquals(1, insert.getUpdateCount());
+
+            assertTrue(pipeline.next());
+            assertEquals(select, pipeline.getStatement());
+            try (ResultSet rs = select.getResultSet()) {
+                assertTrue(rs.next());
+                assertEquals("one", rs.getString(1));
+                assertFalse(rs.next());
+            }
+
+            assertTrue(pipeline.next());
+            assertEquals(1, delete.getUpdateCount());
+
+            assertFalse(pipeline.next());
+        }
+    }
+
+    /**
+     * An error in one execution is reported for that execution only.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testPipelineError() throws SQLException {
+        try (PreparedStatement raiseError = connection.prepareStatement("raiserror(?, 16, 1)");
+                PreparedStatement select = connection.prepareStatement("select ?");
+                SQLServerPipeline pipeline = connection.pipeline()) {
+            raiseError.setString(1, "pipelined error");
+            pipeline.addUpdate(raiseError);
+            select.setInt(1, 2);
+            pipeline.addQuery(select);
+            pipeline.execute();
+
+            try {
+                pipeline.next();
+                fail(TestResource.getResource("R_expectedExceptionNotThrown"));
+            } catch (SQLServerException e) {
+                assertEquals("pipelined error", e.getMessage());
+            }
+
+            assertTrue(pipeline.next());
+            try (ResultSet rs = select.getResultSet()) {
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt(1));
+            }
+            assertFalse(pipeline.next());
+        }
+    }
+
+    @AfterAll
+    public static void terminate() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            TestUtils.dropTableIfExists(AbstractSQLGenerator.escapeIdentifier(tableName), stmt);
+        }
+    }
+}
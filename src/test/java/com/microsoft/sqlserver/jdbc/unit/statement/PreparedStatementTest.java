@@ -5,6 +5,7 @@
 package com.microsoft.sqlserver.jdbc.unit.statement;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -32,6 +33,7 @@ import com.microsoft.sqlserver.jdbc.RandomUtil;
 import com.microsoft.sqlserver.jdbc.SQLServerConnection;
 import com.microsoft.sqlserver.jdbc.SQLServerDataSource;
 import com.microsoft.sqlserver.jdbc.SQLServerPreparedStatement;
+import com.microsoft.sqlserver.jdbc.SQLServerStatementHandleStatistics;
 import com.microsoft.sqlserver.jdbc.TestResource;
 import com.microsoft.sqlserver.testframework.AbstractSQLGenerator;
 import com.microsoft.sqlserver.testframework.AbstractTest;
@@ -260,6 +262,101 @@ public class PreparedStatementTest extends AbstractTest {
         }
     }
 
+    /**
+     * Test the prepared statement handle counters of a connection and of its data source.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testStatementHandleStatistics() throws SQLException {
+        SQLServerDataSource dataSource = new SQLServerDataSource();
+        dataSource.setURL(connectionString);
+        dataSource.setDisableStatementPooling(false);
+        dataSource.setStatementPoolingCacheSize(2);
+        dataSource.setServerPreparedStatementDiscardThreshold(2);
+
+        String query = String.format("/*statementhandlestatisticstest_%s*/SELECT * FROM sys.tables; -- ",
+                UUID.randomUUID().toString());
+
+        try (SQLServerConnection con = (SQLServerConnection) dataSource.getConnection()) {
+            for (int i = 0; i < 4; ++i) {
+                try (SQLServerPreparedStatement pstmt = (SQLServerPreparedStatement) con
+                        .prepareStatement(query + String.valueOf(i))) {
+                    pstmt.execute(); // sp_executesql
+                    pstmt.execute(); // sp_prepexec, handle cached.
+                    pstmt.execute(); // sp_execute
+                }
+            }
+
+            // Reuse the handle of the last statement.
+            try (SQLServerPreparedStatement pstmt = (SQLServerPreparedStatement) con.prepareStatement(query + "3")) {
+                pstmt.execute(); // sp_execute
+            }
+
+            SQLServerStatementHandleStatistics statistics = con.getStatementHandleStatistics();
+            assertEquals(4, statistics.getExecuteSqlCount());
+            assertEquals(4, statistics.getPrepExecCount());
+            assertEquals(5, statistics.getExecuteCount());
+            assertEquals(1, statistics.getCacheHitCount());
+            assertEquals(2, statistics.getCacheEvictionCount());
+            assertEquals(con.getDiscardedServerPreparedStatementCount(), statistics.getPendingDiscardCount());
+            assertEquals(statistics.getPendingDiscardCount() + statistics.getUnpreparedHandleCount(),
+                    statistics.getCacheEvictionCount());
+
+            con.closeUnreferencedPreparedStatementHandles();
+            statistics = con.getStatementHandleStatistics();
+            assertEquals(0, statistics.getPendingDiscardCount());
+            assertEquals(2, statistics.getUnpreparedHandleCount());
+            assertTrue(0 < statistics.getUnprepareBatchCount());
+        }
+
+        // A new connection adds to the counters of the data source.
+        try (SQLServerConnection con = (SQLServerConnection) dataSource.getConnection();
+                SQLServerPreparedStatement pstmt = (SQLServerPreparedStatement) con.prepareStatement(query + "4")) {
+            pstmt.execute(); // sp_executesql
+            assertEquals(1, con.getStatementHandleStatistics().getExecuteSqlCount());
+        }
+        assertEquals(5, dataSource.getStatementHandleStatistics().getExecuteSqlCount());
+        assertEquals(2, dataSource.getStatementHandleStatistics().getUnpreparedHandleCount());
+    }
+
+    /**
+     * Test growing the statement pooling cache while statements are evicted at a high rate.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testAdaptiveStatementPoolingCacheSize() throws SQLException {
+        try (SQLServerConnection con = (SQLServerConnection) DriverManager.getConnection(
+                connectionString + ";disableStatementPooling=false;statementPoolingCacheSize=4;"
+                        + "maxStatementPoolingCacheSize=32;enablePrepareOnFirstPreparedStatementCall=true")) {
+            assertEquals(32, con.getMaxStatementPoolingCacheSize());
+
+            String query = String.format("/*adaptivestatementpoolingtest_%s*/SELECT * FROM sys.tables; -- ",
+                    UUID.randomUUID().toString());
+
+            // Cycle through more statements than the cache holds, so that nearly every lookup evicts a handle.
+            for (int i = 0; i < 1000 && con.getStatementPoolingCacheSize() < 32; ++i) {
+                try (SQLServerPreparedStatement pstmt = (SQLServerPreparedStatement) con
+                        .prepareStatement(query + String.valueOf(i % 20))) {
+                    pstmt.execute();
+                }
+            }
+            assertEquals(32, con.getStatementPoolingCacheSize());
+            assertTrue(0 < con.getStatementHandleStatistics().getCacheResizeCount());
+
+            // Once all statements fit, they are found in the cache.
+            long hits = con.getStatementHandleStatistics().getCacheHitCount();
+            for (int i = 0; i < 20; ++i) {
+                try (SQLServerPreparedStatement pstmt = (SQLServerPreparedStatement) con
+                        .prepareStatement(query + String.valueOf(i))) {
+                    pstmt.execute();
+                }
+            }
+            assertTrue(hits < con.getStatementHandleStatistics().getCacheHitCount());
+        }
+    }
+
     final class TestPrepareRace implements Runnable {
 
         SQLServerConnection con;
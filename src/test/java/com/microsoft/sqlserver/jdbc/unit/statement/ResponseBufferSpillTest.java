@@ -0,0 +1,120 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.unit.statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+import com.microsoft.sqlserver.jdbc.SQLServerDataSource;
+import com.microsoft.sqlserver.jdbc.SQLServerResponseBufferStatistics;
+import com.microsoft.sqlserver.jdbc.TestUtils;
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests the responseBufferSpillThreshold connection property
+ */
+@RunWith(JUnitPlatform.class)
+public class ResponseBufferSpillTest extends AbstractTest {
+    /**
+     * Reads a result set detached by the execution of another statement, past a threshold small enough to spill most
+     * of it.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDetachedResultSetSpills() throws Exception {
+        try (SQLServerConnection con = (SQLServerConnection) DriverManager
+                .getConnection(connectionString + ";responseBufferSpillThreshold=65536");
+                Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(TestUtils.LARGE_QUERY);
+                Statement otherStmt = con.createStatement()) {
+            assertTrue(rs.next());
+
+            // Buffers the rest of the result set.
+            try (ResultSet otherRs = otherStmt.executeQuery("select 1")) {
+                assertTrue(otherRs.next());
+            }
+
+            SQLServerResponseBufferStatistics statistics = con.getResponseBufferStatistics();
+            assertTrue(statistics.getSpilledBytes() > 0, statistics.toString());
+            assertTrue(statistics.getPeakBufferedBytes() <= 65536, statistics.toString());
+            assertEquals(1, statistics.getSpillFileCount());
+
+            TestUtils.assertLargeQueryRows(rs, 1);
+
+            statistics = con.getResponseBufferStatistics();
+            assertEquals(0, statistics.getBufferedBytes());
+            assertEquals(0, statistics.getSpilledBytes());
+            assertTrue(statistics.getTotalSpilledBytes() > 0);
+        }
+    }
+
+    /**
+     * Reads a fully buffered result set without a threshold, which keeps it in memory.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNoThreshold() throws Exception {
+        try (SQLServerConnection con = (SQLServerConnection) DriverManager
+                .getConnection(connectionString + ";responseBuffering=full");
+                Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(TestUtils.LARGE_QUERY)) {
+            TestUtils.assertLargeQueryRows(rs, 0);
+
+            SQLServerResponseBufferStatistics statistics = con.getResponseBufferStatistics();
+            assertTrue(statistics.getPeakBufferedBytes() > 0);
+            assertEquals(0, statistics.getTotalSpilledBytes());
+            assertEquals(0, statistics.getSpillFileCount());
+        }
+    }
+
+    /**
+     * Closes a connection with spilled response data that was never read back.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCloseWithSpilledData() throws Exception {
+        SQLServerConnection con = (SQLServerConnection) DriverManager
+                .getConnection(connectionString + ";responseBufferSpillThreshold=8192;responseBuffering=full");
+        try (Statement stmt = con.createStatement()) {
+            ResultSet rs = stmt.executeQuery(TestUtils.LARGE_QUERY);
+            assertTrue(rs.next());
+            assertTrue(con.getResponseBufferStatistics().getSpilledBytes() > 0);
+        } finally {
+            con.close();
+        }
+        assertEquals(0, con.getResponseBufferStatistics().getSpilledBytes());
+    }
+
+    /**
+     * Tests the data source property and the validation of the connection property.
+     */
+    @Test
+    public void testDataSource() throws SQLException {
+        SQLServerDataSource ds = new SQLServerDataSource();
+        assertEquals(0, ds.getResponseBufferSpillThreshold());
+        ds.setResponseBufferSpillThreshold(1048576);
+        assertEquals(1048576, ds.getResponseBufferSpillThreshold());
+
+        try (SQLServerConnection con = (SQLServerConnection) DriverManager
+                .getConnection(connectionString + ";responseBufferSpillThreshold=-1")) {
+            fail("A negative responseBufferSpillThreshold was accepted.");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("responseBufferSpillThreshold"), e.getMessage());
+        }
+    }
+}
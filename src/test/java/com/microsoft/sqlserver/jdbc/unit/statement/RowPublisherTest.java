@@ -0,0 +1,164 @@
+/*
+ * Microsoft JDBC Driver for SQL Server Copyright(c) Microsoft Corporation All rights reserved. This program is made
+ * available under the terms of the MIT License. See the LICENSE file in the project root for more information.
+ */
+package com.microsoft.sqlserver.jdbc.unit.statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerPreparedStatement;
+import com.microsoft.sqlserver.jdbc.ISQLServerStatement;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+import com.microsoft.sqlserver.jdbc.SQLServerRow;
+import com.microsoft.sqlserver.jdbc.SQLServerRowPublisher;
+import com.microsoft.sqlserver.jdbc.TestUtils;
+import com.microsoft.sqlserver.testframework.AbstractTest;
+
+
+/**
+ * Tests executeQueryPublisher
+ */
+@RunWith(JUnitPlatform.class)
+public class RowPublisherTest extends AbstractTest {
+    /**
+     * Subscriber that requests rows in chunks and records how many it received.
+     */
+    private static class ChunkedSubscriber implements SQLServerRowPublisher.Subscriber {
+        final CompletableFuture<Void> completion = new CompletableFuture<>();
+        final AtomicInteger rows = new AtomicInteger();
+        private final int chunkSize;
+        private final int cancelAfter;
+        SQLServerRowPublisher.Subscription subscription;
+
+        ChunkedSubscriber(int chunkSize, int cancelAfter) {
+            this.chunkSize = chunkSize;
+            this.cancelAfter = cancelAfter;
+        }
+
+        @Override
+        public void onSubscribe(SQLServerRowPublisher.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(chunkSize);
+        }
+
+        @Override
+        public void onNext(SQLServerRow row) {
+            try {
+                assertEquals((long) rows.get(), ((Number) row.getObject("ID")).longValue());
+            } catch (SQLServerException e) {
+                completion.completeExceptionally(e);
+            }
+
+            int received = rows.incrementAndGet();
+            if (received == cancelAfter) {
+                subscription.cancel();
+                completion.complete(null);
+            } else if (0 == received % chunkSize) {
+                subscription.request(chunkSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+    }
+
+    /**
+     * Publishes all rows of a large query in chunks, with and without SocketChannel I/O.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPublishRows() throws Exception {
+        for (boolean useSocketChannel : new boolean[] {true, false}) {
+            try (Connection con = DriverManager
+                    .getConnection(connectionString + ";useSocketChannel=" + useSocketChannel);
+                    ISQLServerStatement stmt = (ISQLServerStatement) con.createStatement()) {
+                ChunkedSubscriber subscriber = new ChunkedSubscriber(1000, -1);
+                stmt.executeQueryPublisher(TestUtils.LARGE_QUERY).subscribe(subscriber);
+                subscriber.completion.get(60, TimeUnit.SECONDS);
+                assertEquals(TestUtils.LARGE_QUERY_ROWS, subscriber.rows.get());
+            }
+        }
+    }
+
+    /**
+     * Checks that no more rows than requested are published, and that cancelling leaves the connection usable.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDemandAndCancel() throws Exception {
+        try (Connection con = DriverManager.getConnection(connectionString);
+                ISQLServerPreparedStatement pstmt = (ISQLServerPreparedStatement) con
+                        .prepareStatement(TestUtils.LARGE_QUERY)) {
+            ChunkedSubscriber subscriber = new ChunkedSubscriber(10, 25);
+            pstmt.executeQueryPublisher().subscribe(subscriber);
+            subscriber.completion.get(60, TimeUnit.SECONDS);
+
+            // The last chunk was requested, but the subscription was cancelled in the middle of it.
+            Thread.sleep(1000);
+            assertEquals(25, subscriber.rows.get());
+
+            try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery("select 1")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    /**
+     * Checks that errors are signalled to the subscriber.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPublisherErrors() throws Exception {
+        try (Connection con = DriverManager.getConnection(connectionString);
+                ISQLServerStatement stmt = (ISQLServerStatement) con.createStatement()) {
+            ChunkedSubscriber subscriber = new ChunkedSubscriber(10, -1);
+            stmt.executeQueryPublisher("select * from table_that_does_not_exist").subscribe(subscriber);
+            assertCompletedWith(subscriber, SQLServerException.class);
+
+            SQLServerRowPublisher publisher = stmt.executeQueryPublisher(TestUtils.LARGE_QUERY);
+            subscriber = new ChunkedSubscriber(0, -1);
+            publisher.subscribe(subscriber);
+            assertCompletedWith(subscriber, IllegalArgumentException.class);
+
+            subscriber = new ChunkedSubscriber(10, -1);
+            publisher.subscribe(subscriber);
+            assertCompletedWith(subscriber, IllegalStateException.class);
+            assertEquals(0, subscriber.rows.get());
+        }
+    }
+
+    private static void assertCompletedWith(ChunkedSubscriber subscriber, Class<?> exceptionClass) throws Exception {
+        try {
+            subscriber.completion.get(60, TimeUnit.SECONDS);
+            assertFalse(true, "The subscriber was completed without an error.");
+        } catch (ExecutionException e) {
+            assertTrue(exceptionClass.isInstance(e.getCause()), e.getCause().toString());
+        }
+    }
+}